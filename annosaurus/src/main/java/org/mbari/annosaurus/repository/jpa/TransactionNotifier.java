@@ -17,6 +17,7 @@
 package org.mbari.annosaurus.repository.jpa;
 
 import io.reactivex.rxjava3.annotations.NonNull;
+import io.reactivex.rxjava3.core.Observable;
 import io.reactivex.rxjava3.subjects.PublishSubject;
 import io.reactivex.rxjava3.subjects.Subject;
 import jakarta.persistence.PostPersist;
@@ -27,6 +28,11 @@ import org.mbari.annosaurus.repository.jpa.entity.AssociationEntity;
 import org.mbari.annosaurus.repository.jpa.entity.IPersistentObject;
 import org.mbari.annosaurus.repository.jpa.entity.ObservationEntity;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -38,15 +44,79 @@ public class TransactionNotifier {
         REMOVE
     }
 
-    public record Message<T>(Action action, Class<T> clazz, UUID uuid) {}
+    /**
+     * A change to one row.
+     *
+     * @param videoReferenceUuid The video the row belongs to. Null if it is not known
+     * @param concept The concept of an observation. Null for other entities or if it is not known
+     */
+    public record Message<T>(Action action, Class<T> clazz, UUID uuid, UUID videoReferenceUuid, String concept) {
+
+        public Message(Action action, Class<T> clazz, UUID uuid) {
+            this(action, clazz, uuid, null, null);
+        }
+    }
+
+    /**
+     * All the rows of one entity class, video and concept that had the same action applied in one transaction.
+     * Published once per group when the transaction commits, instead of one {@link Message} per row.
+     */
+    public record BatchMessage<T>(
+            Action action,
+            Class<T> clazz,
+            List<UUID> uuids,
+            UUID videoReferenceUuid,
+            String concept) {
+
+        public BatchMessage(Action action, Class<T> clazz, List<UUID> uuids) {
+            this(action, clazz, uuids, null, null);
+        }
+
+        /** @return One {@link Message} per row, for consumers that want the per-row form */
+        public List<Message<T>> messages() {
+            var xs = new ArrayList<Message<T>>(uuids.size());
+            for (var uuid : uuids) {
+                xs.add(new Message<>(action, clazz, uuid, videoReferenceUuid, concept));
+            }
+            return xs;
+        }
+    }
+
+    /**
+     * A single message describing a value that was renamed across many rows, e.g. a concept rename. Published instead
+     * of one UPDATE message per row.
+     */
+    public record RenameMessage<T>(Class<T> clazz, String field, String oldValue, String newValue, int count) {}
 
     private static final @NonNull Subject<Object> rxSubject = PublishSubject.create().toSerialized();
 
+    /**
+     * Lifecycle callbacks fire during the flush, before the transaction commits. Inside a transaction their messages
+     * are collected here and only handed out by {@link #endTransaction()}, so nothing is published for writes that
+     * roll back.
+     */
+    private static final ThreadLocal<List<Message<?>>> pending = new ThreadLocal<>();
+
 
     public static Subject<Object> getRxSubject() {
         return rxSubject;
     }
 
+    /**
+     * @return The change messages on the subject, one per row. {@link BatchMessage}s are expanded into their rows
+     */
+    public static Observable<Message<?>> getMessages() {
+        return rxSubject.concatMapIterable(obj -> {
+            if (obj instanceof Message<?> message) {
+                return List.<Message<?>>of(message);
+            }
+            else if (obj instanceof BatchMessage<?> batch) {
+                return List.<Message<?>>copyOf(batch.messages());
+            }
+            return List.<Message<?>>of();
+        });
+    }
+
     @PostPersist
     public void notifyPersist(Object o) {
         notify(Action.CREATE, o);
@@ -62,12 +132,156 @@ public class TransactionNotifier {
         notify(Action.REMOVE, o);
     }
 
+    /**
+     * Publish messages for rows that were changed without going through the entity lifecycle (e.g. bulk deletes).
+     * Inside a transaction the messages are collected with the lifecycle ones, otherwise they are published at once.
+     *
+     * @param action The action applied to the rows
+     * @param entityClass The entity class of the rows
+     * @param uuids The primary keys of the rows
+     */
+    public static <T> void publish(Action action, Class<T> entityClass, Collection<UUID> uuids) {
+        publish(action, entityClass, null, uuids);
+    }
+
+    /**
+     * Publish messages for rows of one video that were changed without going through the entity lifecycle.
+     *
+     * @param action The action applied to the rows
+     * @param entityClass The entity class of the rows
+     * @param videoReferenceUuid The video the rows belong to
+     * @param uuids The primary keys of the rows
+     */
+    public static <T> void publish(
+            Action action,
+            Class<T> entityClass,
+            UUID videoReferenceUuid,
+            Collection<UUID> uuids) {
+        var messages = new ArrayList<Message<?>>(uuids.size());
+        for (var uuid : uuids) {
+            messages.add(new Message<>(action, entityClass, uuid, videoReferenceUuid, null));
+        }
+        var collected = pending.get();
+        if (collected != null) {
+            collected.addAll(messages);
+        }
+        else {
+            publishAll(messages);
+        }
+    }
+
+    /**
+     * Publish one message for a value that was renamed with set-based updates.
+     *
+     * @param entityClass The entity class of the renamed rows
+     * @param field The renamed field
+     * @param oldValue The value before the rename
+     * @param newValue The value after the rename
+     * @param count The number of rows that were renamed
+     */
+    public static <T> void publishRename(Class<T> entityClass, String field, String oldValue, String newValue, int count) {
+        getRxSubject().onNext(new RenameMessage<>(entityClass, field, oldValue, newValue, count));
+    }
+
+    /**
+     * Start collecting lifecycle messages for a transaction on this thread.
+     *
+     * @return true if this call started the collection. False if an enclosing transaction on this thread is already
+     *     collecting; only the caller that started it should call {@link #endTransaction()}
+     */
+    public static boolean beginTransaction() {
+        if (pending.get() != null) {
+            return false;
+        }
+        pending.set(new ArrayList<>());
+        return true;
+    }
+
+    /**
+     * Stop collecting lifecycle messages on this thread.
+     *
+     * @return The messages collected since {@link #beginTransaction()}. The caller decides whether to publish them
+     */
+    public static List<Message<?>> endTransaction() {
+        var messages = pending.get();
+        pending.remove();
+        return messages == null ? List.of() : messages;
+    }
+
+    /**
+     * Publish messages that were collected during a transaction. They are coalesced into one {@link BatchMessage} per
+     * action and entity class, in the order each group first appeared.
+     *
+     * @param messages The messages to publish
+     */
+    public static void publishAll(Collection<? extends Message<?>> messages) {
+        for (var batch : coalesce(messages)) {
+            getRxSubject().onNext(batch);
+        }
+    }
+
+    /**
+     * Group messages by action, entity class, video and concept. Duplicate rows within a group are dropped.
+     *
+     * @param messages The messages to group
+     * @return One batch per group
+     */
+    public static List<BatchMessage<?>> coalesce(Collection<? extends Message<?>> messages) {
+        record Key(Action action, Class<?> clazz, UUID videoReferenceUuid, String concept) {}
+        var groups = new LinkedHashMap<Key, LinkedHashSet<UUID>>();
+        for (var m : messages) {
+            groups.computeIfAbsent(
+                    new Key(m.action(), m.clazz(), m.videoReferenceUuid(), m.concept()),
+                    k -> new LinkedHashSet<>()).add(m.uuid());
+        }
+        var batches = new ArrayList<BatchMessage<?>>(groups.size());
+        for (var e : groups.entrySet()) {
+            var k = e.getKey();
+            batches.add(newBatch(k.clazz(), k.action(), e.getValue(), k.videoReferenceUuid(), k.concept()));
+        }
+        return batches;
+    }
+
+    private static <T> BatchMessage<T> newBatch(
+            Class<T> clazz,
+            Action action,
+            Collection<UUID> uuids,
+            UUID videoReferenceUuid,
+            String concept) {
+        return new BatchMessage<>(action, clazz, List.copyOf(uuids), videoReferenceUuid, concept);
+    }
+
+    private static UUID videoReferenceUuid(Object obj) {
+        ObservationEntity observation = null;
+        if (obj instanceof ObservationEntity o) {
+            observation = o;
+        }
+        else if (obj instanceof AssociationEntity a) {
+            observation = a.getObservation();
+        }
+        if (observation == null || observation.getImagedMoment() == null) {
+            return null;
+        }
+        return observation.getImagedMoment().getVideoReferenceUuid();
+    }
+
+    private static String concept(Object obj) {
+        return obj instanceof ObservationEntity o ? o.getConcept() : null;
+    }
+
     private void notify(Action action, Object obj) {
 
         if (obj instanceof IPersistentObject persistentObject) {
             Class<?> entityClass = Hibernate.getClass(obj);
             var uuid = persistentObject.getUuid();
-            getRxSubject().onNext(new Message<>(action, entityClass, uuid));
+            var message = new Message<>(action, entityClass, uuid, videoReferenceUuid(obj), concept(obj));
+            var messages = pending.get();
+            if (messages != null) {
+                messages.add(message);
+            }
+            else {
+                getRxSubject().onNext(message);
+            }
         }
 
     }
@@ -38,6 +38,29 @@ import java.util.UUID;
 @EntityListeners({TransactionLogger.class, TransactionNotifier.class})
 @NamedNativeQueries(
         {
+                @NamedNativeQuery(
+                        name = "Association.deleteByVideoReferenceUuid",
+                        query = "DELETE FROM associations WHERE observation_uuid IN (SELECT obs.uuid FROM observations obs " +
+                                "INNER JOIN imaged_moments im ON obs.imaged_moment_uuid = im.uuid WHERE im.video_reference_uuid = ?1)"
+                ),
+                @NamedNativeQuery(
+                        name = "Association.deleteByUuids",
+                        query = "DELETE FROM associations WHERE uuid IN ?1"
+                ),
+                @NamedNativeQuery(
+                        name = "Association.deleteByObservationUuids",
+                        query = "DELETE FROM associations WHERE observation_uuid IN ?1"
+                ),
+                @NamedNativeQuery(
+                        name = "Association.auditDeleteByUuids",
+                        query = "INSERT INTO associations_AUD (REV, REVTYPE, uuid) SELECT ?1, 2, uuid FROM associations WHERE uuid IN ?2"
+                ),
+                @NamedNativeQuery(
+                        name = "Association.auditDeleteByVideoReferenceUuid",
+                        query = "INSERT INTO associations_AUD (REV, REVTYPE, uuid) SELECT ?1, 2, a.uuid FROM associations a " +
+                                "INNER JOIN observations obs ON a.observation_uuid = obs.uuid " +
+                                "INNER JOIN imaged_moments im ON obs.imaged_moment_uuid = im.uuid WHERE im.video_reference_uuid = ?2"
+                ),
                 @NamedNativeQuery(
                         name = "Association.findAllToConcepts",
                         query = "SELECT DISTINCT to_concept FROM associations ORDER BY to_concept"
@@ -55,6 +78,14 @@ import java.util.UUID;
                 @NamedNativeQuery(
                         name = "Association.updateToConcept",
                         query = "UPDATE associations SET to_concept = ?1 WHERE to_concept = ?2"
+                ),
+                @NamedNativeQuery(
+                        name = "Association.findUUIDsByToConceptAfter",
+                        query = "SELECT uuid FROM associations WHERE to_concept = ?1 AND uuid > ?2 ORDER BY uuid"
+                ),
+                @NamedNativeQuery(
+                        name = "Association.updateToConceptByUuids",
+                        query = "UPDATE associations SET to_concept = ?1, last_updated_timestamp = ?2 WHERE uuid IN ?3"
                 )
         }
 )
@@ -64,6 +95,18 @@ import java.util.UUID;
                         name = "Association.findAll",
                         query = "SELECT a FROM Association a ORDER BY a.uuid"
                 ),
+                @NamedQuery(
+                        name = "Association.findUUIDsByUUIDs",
+                        query = "SELECT a.uuid FROM Association a WHERE a.uuid IN :uuids"
+                ),
+                @NamedQuery(
+                        name = "Association.findUUIDsByObservationUUIDs",
+                        query = "SELECT a.uuid FROM Association a WHERE a.observation.uuid IN :uuids"
+                ),
+                @NamedQuery(
+                        name = "Association.findUUIDsByVideoReferenceUUID",
+                        query = "SELECT a.uuid FROM Association a WHERE a.observation.imagedMoment.videoReferenceUuid = :uuid"
+                ),
                 @NamedQuery(
                         name = "Association.findByLinkName",
                         query = "SELECT a FROM Association a WHERE a.linkName = :linkName ORDER BY a.uuid"
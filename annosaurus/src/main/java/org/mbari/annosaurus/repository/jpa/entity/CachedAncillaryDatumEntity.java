@@ -50,6 +50,12 @@ import org.mbari.annosaurus.repository.jpa.TransactionLogger;
                         name = "AncillaryDatum.deleteByVideoReferenceUuid",
                         query =
                                 "DELETE FROM ancillary_data WHERE imaged_moment_uuid IN (SELECT uuid FROM imaged_moments WHERE video_reference_uuid = ?1)"
+                ),
+                @NamedNativeQuery(
+                        name = "AncillaryDatum.deleteByEmptyImagedMomentUuids",
+                        query = "DELETE FROM ancillary_data WHERE imaged_moment_uuid IN ?1 " +
+                                "AND NOT EXISTS (SELECT 1 FROM observations obs WHERE obs.imaged_moment_uuid = ancillary_data.imaged_moment_uuid) " +
+                                "AND NOT EXISTS (SELECT 1 FROM image_references ir WHERE ir.imaged_moment_uuid = ancillary_data.imaged_moment_uuid)"
                 )
         }
 )
@@ -17,8 +17,11 @@
 package org.mbari.annosaurus.repository.jpa.entity;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.annotations.UuidGenerator;
+import org.hibernate.jpa.HibernateHints;
 import org.hibernate.type.SqlTypes;
 import org.mbari.annosaurus.repository.jpa.TransactionLogger;
 import org.mbari.annosaurus.repository.jpa.UUIDConverter;
@@ -43,6 +46,8 @@ import java.util.UUID;
         }
 )
 @EntityListeners({TransactionLogger.class})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CachedVideoReferenceInfoEntity.CACHE_REGION)
 @NamedNativeQueries(
         {
                 @NamedNativeQuery(
@@ -53,17 +58,32 @@ import java.util.UUID;
                 @NamedNativeQuery(
                         name = "VideoReferenceInfo.findAllMissionContacts",
                         query =
-                                "SELECT DISTINCT mission_contact FROM video_reference_information ORDER BY mission_contact ASC"
+                                "SELECT DISTINCT mission_contact FROM video_reference_information ORDER BY mission_contact ASC",
+                        hints = {
+                                @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+                                @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = CachedVideoReferenceInfoEntity.QUERY_CACHE_REGION),
+                                @QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "video_reference_information")
+                        }
                 ),
                 @NamedNativeQuery(
                         name = "VideoReferenceInfo.findAllPlatformNames",
                         query =
-                                "SELECT DISTINCT platform_name FROM video_reference_information ORDER BY platform_name ASC"
+                                "SELECT DISTINCT platform_name FROM video_reference_information ORDER BY platform_name ASC",
+                        hints = {
+                                @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+                                @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = CachedVideoReferenceInfoEntity.QUERY_CACHE_REGION),
+                                @QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "video_reference_information")
+                        }
                 ),
                 @NamedNativeQuery(
                         name = "VideoReferenceInfo.findAllMissionIDs",
                         query =
-                                "SELECT DISTINCT mission_id FROM video_reference_information ORDER BY mission_id ASC"
+                                "SELECT DISTINCT mission_id FROM video_reference_information ORDER BY mission_id ASC",
+                        hints = {
+                                @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+                                @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = CachedVideoReferenceInfoEntity.QUERY_CACHE_REGION),
+                                @QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "video_reference_information")
+                        }
                 )
         }
 )
@@ -76,7 +96,11 @@ import java.util.UUID;
                 @NamedQuery(
                         name = "VideoReferenceInfo.findByVideoReferenceUUID",
                         query =
-                                "SELECT v FROM CachedVideoReferenceInfo v WHERE v.videoReferenceUuid = :uuid ORDER BY v.uuid"
+                                "SELECT v FROM CachedVideoReferenceInfo v WHERE v.videoReferenceUuid = :uuid ORDER BY v.uuid",
+                        hints = {
+                                @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+                                @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = CachedVideoReferenceInfoEntity.QUERY_CACHE_REGION)
+                        }
                 ),
                 @NamedQuery(
                         name = "VideoReferenceInfo.findByPlatformName",
@@ -97,6 +121,12 @@ import java.util.UUID;
 )
 public class CachedVideoReferenceInfoEntity implements IPersistentObject {
 
+    /** Second-level cache region for the entities. These rows are small and rarely change */
+    public static final String CACHE_REGION = "annosaurus.video-reference-information";
+
+    /** Query cache region for the cacheable named queries on video_reference_information */
+    public static final String QUERY_CACHE_REGION = "annosaurus.video-reference-information.queries";
+
     @Id
     @GeneratedValue
     @UuidGenerator(style = UuidGenerator.Style.VERSION_7)
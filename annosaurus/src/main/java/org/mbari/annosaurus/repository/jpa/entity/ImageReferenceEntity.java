@@ -25,12 +25,13 @@ import java.util.Objects;
 import org.hibernate.annotations.UuidGenerator;
 import org.mbari.annosaurus.repository.jpa.TransactionLogger;
 import org.mbari.annosaurus.repository.jpa.URLConverter;
+import org.mbari.annosaurus.util.UrlHash;
 
 @Entity(name = "ImageReference")
 @Table(
         name = "image_references",
         indexes = {
-                @Index(name = "idx_image_references__url", columnList = "url"),
+                @Index(name = "idx_image_references__url_hash", columnList = "url_hash"),
                 @Index(
                         name = "idx_image_references__imaged_moment_uuid",
                         columnList = "imaged_moment_uuid"
@@ -44,6 +45,15 @@ import org.mbari.annosaurus.repository.jpa.URLConverter;
         }
 )
 @EntityListeners({TransactionLogger.class})
+@NamedNativeQueries(
+        {
+                @NamedNativeQuery(
+                        name = "ImageReference.deleteByVideoReferenceUuid",
+                        query = "DELETE FROM image_references WHERE imaged_moment_uuid IN " +
+                                "(SELECT uuid FROM imaged_moments WHERE video_reference_uuid = ?1)"
+                )
+        }
+)
 @NamedQueries(
         {
                 @NamedQuery(
@@ -58,6 +68,18 @@ import org.mbari.annosaurus.repository.jpa.URLConverter;
                         name = "ImageReference.findByURL",
                         query = "SELECT r FROM ImageReference r WHERE r.url = :url ORDER BY r.url"
                 ),
+                @NamedQuery(
+                        name = "ImageReference.findByURLs",
+                        query = "SELECT r FROM ImageReference r JOIN FETCH r.imagedMoment WHERE r.url IN :urls"
+                ),
+                @NamedQuery(
+                        name = "ImageReference.findByURLHash",
+                        query = "SELECT r FROM ImageReference r WHERE r.urlHash = :hash"
+                ),
+                @NamedQuery(
+                        name = "ImageReference.findByURLHashes",
+                        query = "SELECT r FROM ImageReference r JOIN FETCH r.imagedMoment WHERE r.urlHash IN :hashes"
+                ),
                 @NamedQuery(
                         name = "ImageReference.findDTOByVideoReferenceUuid",
                         query =
@@ -106,6 +128,10 @@ public class ImageReferenceEntity implements IPersistentObject {
     @Convert(converter = URLConverter.class)
     URL url;
 
+    /** First 16 bytes of the SHA-256 of the url. Kept in sync with url. See {@link UrlHash} */
+    @Column(name = "url_hash", length = UrlHash.LENGTH, nullable = true)
+    byte[] urlHash;
+
     @ManyToOne(
             cascade = {CascadeType.PERSIST, CascadeType.DETACH},
             optional = false
@@ -130,11 +156,11 @@ public class ImageReferenceEntity implements IPersistentObject {
     }
 
     public ImageReferenceEntity(URL url) {
-        this.url = url;
+        setUrl(url);
     }
 
     public ImageReferenceEntity(URL url, Integer height, Integer width, String format, String description) {
-        this.url = url;
+        setUrl(url);
         this.description = description;
         this.height = height;
         this.width = width;
@@ -172,6 +198,20 @@ public class ImageReferenceEntity implements IPersistentObject {
 
     public void setUrl(URL url) {
         this.url = url;
+        this.urlHash = UrlHash.of(url);
+    }
+
+    public byte[] getUrlHash() {
+        return urlHash;
+    }
+
+    /** Rows written before url_hash existed are filled in by the backfill job or on their next update */
+    @PrePersist
+    @PreUpdate
+    void updateUrlHash() {
+        if (urlHash == null && url != null) {
+            urlHash = UrlHash.of(url);
+        }
     }
 
     public ImagedMomentEntity getImagedMoment() {
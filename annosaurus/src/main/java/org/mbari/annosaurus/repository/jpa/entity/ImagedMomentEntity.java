@@ -121,6 +121,12 @@ import org.mbari.vcr4j.time.Timecode;
             "INNER JOIN associations a ON a.observation_uuid = o.uuid " +
             "WHERE a.link_name = ?1"
         ),
+        @NamedNativeQuery(
+            name = "ImagedMoment.deleteEmptyByUuids",
+            query = "DELETE FROM imaged_moments WHERE uuid IN ?1 " +
+            "AND NOT EXISTS (SELECT 1 FROM observations obs WHERE obs.imaged_moment_uuid = imaged_moments.uuid) " +
+            "AND NOT EXISTS (SELECT 1 FROM image_references ir WHERE ir.imaged_moment_uuid = imaged_moments.uuid)"
+        ),
         @NamedNativeQuery(
             name = "ImagedMoment.moveToVideoReference",
             query = "UPDATE imaged_moments SET video_reference_uuid = ?1 WHERE uuid IN ?2"
@@ -167,6 +173,10 @@ import org.mbari.vcr4j.time.Timecode;
             name = "ImagedMoment.findByVideoReferenceUUID",
             query = "SELECT i FROM ImagedMoment i WHERE i.videoReferenceUuid = :uuid ORDER BY i.uuid"
         ),
+        @NamedQuery(
+            name = "ImagedMoment.findByVideoReferenceUUIDWithAncillaryDatum",
+            query = "SELECT i FROM ImagedMoment i LEFT JOIN FETCH i.ancillaryDatum WHERE i.videoReferenceUuid = :uuid"
+        ),
         @NamedQuery(
             name = "ImagedMoment.findByVideoReferenceUUIDAndTimestamps",
             query = "SELECT i FROM ImagedMoment i WHERE i.videoReferenceUuid = :uuid AND " +
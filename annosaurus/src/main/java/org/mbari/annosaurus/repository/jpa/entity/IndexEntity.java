@@ -38,6 +38,10 @@ import java.util.UUID;
                 @NamedQuery(
                         name = "Index.findByVideoReferenceUUID",
                         query = "SELECT i FROM Index i WHERE i.videoReferenceUuid = :uuid ORDER BY i.uuid"
+                ),
+                @NamedQuery(
+                        name = "Index.findByUUIDs",
+                        query = "SELECT i FROM Index i WHERE i.uuid IN :uuids ORDER BY i.uuid"
                 )
         }
 )
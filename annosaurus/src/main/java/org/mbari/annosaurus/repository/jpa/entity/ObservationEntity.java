@@ -45,6 +45,24 @@ import java.util.Objects;
 @EntityListeners({TransactionLogger.class, TransactionNotifier.class})
 @NamedNativeQueries(
         {
+                @NamedNativeQuery(
+                        name = "Observation.deleteByVideoReferenceUuid",
+                        query = "DELETE FROM observations WHERE imaged_moment_uuid IN " +
+                                "(SELECT uuid FROM imaged_moments WHERE video_reference_uuid = ?1)"
+                ),
+                @NamedNativeQuery(
+                        name = "Observation.deleteByUuids",
+                        query = "DELETE FROM observations WHERE uuid IN ?1"
+                ),
+                @NamedNativeQuery(
+                        name = "Observation.auditDeleteByUuids",
+                        query = "INSERT INTO observations_AUD (REV, REVTYPE, uuid) SELECT ?1, 2, uuid FROM observations WHERE uuid IN ?2"
+                ),
+                @NamedNativeQuery(
+                        name = "Observation.auditDeleteByVideoReferenceUuid",
+                        query = "INSERT INTO observations_AUD (REV, REVTYPE, uuid) SELECT ?1, 2, obs.uuid FROM observations obs " +
+                                "INNER JOIN imaged_moments im ON obs.imaged_moment_uuid = im.uuid WHERE im.video_reference_uuid = ?2"
+                ),
                 @NamedNativeQuery(
                         name = "Observation.findAllNames",
                         query = "SELECT DISTINCT concept FROM observations ORDER BY concept"
@@ -94,6 +112,14 @@ import java.util.Objects;
                         name = "Observation.updateConcept",
                         query = "UPDATE observations SET concept = ?1 WHERE concept = ?2"
                 ),
+                @NamedNativeQuery(
+                        name = "Observation.findUUIDsByConceptAfter",
+                        query = "SELECT uuid FROM observations WHERE concept = ?1 AND uuid > ?2 ORDER BY uuid"
+                ),
+                @NamedNativeQuery(
+                        name = "Observation.updateConceptByUuids",
+                        query = "UPDATE observations SET concept = ?1, last_updated_timestamp = ?2 WHERE uuid IN ?3"
+                ),
                 @NamedNativeQuery(
                         name = "Observation.updateImagedMomentUUID",
                         query = "UPDATE observations SET imaged_moment_uuid = ?1 WHERE uuid = ?2"
@@ -106,6 +132,18 @@ import java.util.Objects;
                         name = "Observation.findAll",
                         query = "SELECT o FROM Observation o ORDER BY o.uuid"
                 ),
+                @NamedQuery(
+                        name = "Observation.findUUIDsByUUIDs",
+                        query = "SELECT o.uuid FROM Observation o WHERE o.uuid IN :uuids"
+                ),
+                @NamedQuery(
+                        name = "Observation.findImagedMomentUUIDsByUUIDs",
+                        query = "SELECT DISTINCT o.imagedMoment.uuid FROM Observation o WHERE o.uuid IN :uuids"
+                ),
+                @NamedQuery(
+                        name = "Observation.findUUIDsByVideoReferenceUUID",
+                        query = "SELECT o.uuid FROM Observation o WHERE o.imagedMoment.videoReferenceUuid = :uuid"
+                ),
                 @NamedQuery(
                         name = "Observation.findByMultiRequest",
                         query =
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2017 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.annosaurus.util;
+
+/**
+ * Linear interpolation of sampled data onto a new set of sample points. The work is split
+ * into two steps: {@link #brackets(long[], long[], long)} locates each new point between two
+ * samples once, and {@link #interpolate(Brackets, double[])} applies those brackets to any
+ * number of value arrays. This lets many fields that share the same sample times (e.g.
+ * latitude, longitude and depth from a navigation record) be interpolated without
+ * repeating the search.
+ *
+ * @author Brian Schlining
+ * @since 2026-10-19
+ */
+public class LinearInterpolator {
+
+    /**
+     * The bracketing samples for each interpolated point. For point k, the value is
+     * <code>y[lower[k]] + (y[upper[k]] - y[lower[k]]) * weight[k]</code>. When a point
+     * could only be matched to a single sample, lower[k] == upper[k] and weight[k] is 0.
+     * If no sample was within the tolerance then lower[k] and upper[k] are -1.
+     */
+    public record Brackets(int[] lower, int[] upper, double[] weight) {
+
+        public int size() {
+            return lower.length;
+        }
+
+        /**
+         * @param k The index of the interpolated point
+         * @return The index of the sample nearest to point k, or -1 if there is no match.
+         *      Useful for values that can not be interpolated, like strings.
+         */
+        public int nearest(int k) {
+            return weight[k] <= 0.5 ? lower[k] : upper[k];
+        }
+    }
+
+    /**
+     * Finds the bracketing samples in x for each point in xi using a single linear sweep.
+     * A point is interpolated between its two neighbors when both are within
+     * <i>tolerance</i> of it. If only one neighbor is within the tolerance (e.g. at the
+     * ends of x or across a gap in the data) then that neighbor is used as is.
+     *
+     * @param x The sample points. MUST be sorted in ascending order
+     * @param xi The points to interpolate to. MUST be sorted in ascending order
+     * @param tolerance The maximum distance between a point in xi and a sample used for it
+     * @return The brackets for each point in xi
+     */
+    public static Brackets brackets(long[] x, long[] xi, long tolerance) {
+        if (x == null) {
+            throw new IllegalArgumentException("The x array can not be null");
+        }
+
+        if (xi == null) {
+            throw new IllegalArgumentException("The xi array can not be null");
+        }
+
+        int m = xi.length;
+        int n = x.length;
+        int[] lower = new int[m];
+        int[] upper = new int[m];
+        double[] weight = new double[m];
+
+        int j = 0; // first index in x where x[j] >= xi[k]
+        for (int k = 0; k < m; k++) {
+            long v = xi[k];
+            while (j < n && x[j] < v) {
+                j++;
+            }
+
+            int lo = j - 1;
+            int hi = j < n ? j : -1;
+
+            if (hi >= 0 && x[hi] == v) {
+                lo = hi;
+            }
+
+            boolean loOk = lo >= 0 && v - x[lo] <= tolerance;
+            boolean hiOk = hi >= 0 && x[hi] - v <= tolerance;
+
+            if (loOk && hiOk) {
+                lower[k] = lo;
+                upper[k] = hi;
+                long dx = x[hi] - x[lo];
+                weight[k] = dx == 0 ? 0D : (double) (v - x[lo]) / (double) dx;
+            }
+            else if (loOk || hiOk) {
+                int idx = loOk ? lo : hi;
+                lower[k] = idx;
+                upper[k] = idx;
+                weight[k] = 0D;
+            }
+            else {
+                lower[k] = -1;
+                upper[k] = -1;
+                weight[k] = 0D;
+            }
+        }
+
+        return new Brackets(lower, upper, weight);
+    }
+
+    /**
+     * Interpolates y at each bracketed point.
+     * @param brackets The result of {@link #brackets(long[], long[], long)}
+     * @param y The values at each sample point. Use NaN for missing values
+     * @return The interpolated values. NaN is returned for unmatched points. If one of
+     *      the bracketing values is NaN, the value of the nearer sample is returned.
+     */
+    public static double[] interpolate(Brackets brackets, double[] y) {
+        int[] lower = brackets.lower();
+        int[] upper = brackets.upper();
+        double[] weight = brackets.weight();
+        double[] yi = new double[lower.length];
+        for (int k = 0; k < yi.length; k++) {
+            int lo = lower[k];
+            if (lo < 0) {
+                yi[k] = Double.NaN;
+                continue;
+            }
+            double a = y[lo];
+            double b = y[upper[k]];
+            double w = weight[k];
+            if (Double.isNaN(a) || Double.isNaN(b)) {
+                yi[k] = w <= 0.5 ? a : b;
+            }
+            else {
+                yi[k] = a + (b - a) * w;
+            }
+        }
+        return yi;
+    }
+
+    /**
+     * Interpolates angles, in degrees, along the shortest arc between the bracketing
+     * values so that, for example, a heading going from 359 to 1 passes through 0
+     * rather than 180. Results are returned in [0, 360) when both bracketing values are
+     * non-negative, otherwise in [-180, 180).
+     * @param brackets The result of {@link #brackets(long[], long[], long)}
+     * @param y The angles, in degrees, at each sample point. Use NaN for missing values
+     * @return The interpolated angles. NaN is returned for unmatched points.
+     */
+    public static double[] interpolateDegrees(Brackets brackets, double[] y) {
+        int[] lower = brackets.lower();
+        int[] upper = brackets.upper();
+        double[] weight = brackets.weight();
+        double[] yi = new double[lower.length];
+        for (int k = 0; k < yi.length; k++) {
+            int lo = lower[k];
+            if (lo < 0) {
+                yi[k] = Double.NaN;
+                continue;
+            }
+            double a = y[lo];
+            double b = y[upper[k]];
+            double w = weight[k];
+            if (Double.isNaN(a) || Double.isNaN(b)) {
+                yi[k] = w <= 0.5 ? a : b;
+            }
+            else if (lo == upper[k]) {
+                yi[k] = a;
+            }
+            else {
+                double d = wrap180(b - a);
+                double v = a + d * w;
+                yi[k] = a >= 0 && b >= 0 ? wrap360(v) : wrap180(v);
+            }
+        }
+        return yi;
+    }
+
+    private static double wrap180(double degrees) {
+        double v = (degrees + 180D) % 360D;
+        if (v < 0) {
+            v += 360D;
+        }
+        return v - 180D;
+    }
+
+    private static double wrap360(double degrees) {
+        double v = degrees % 360D;
+        if (v < 0) {
+            v += 360D;
+        }
+        return v;
+    }
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2017 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.annosaurus.util;
+
+import java.util.Arrays;
+
+/**
+ * A boxing-free collator for data keyed by primitive longs (e.g. epoch milliseconds).
+ * Instead of sorting the data itself, the keys are sorted indirectly and the results
+ * are returned as parallel index arrays into the caller's original, unsorted data.
+ *
+ * @author Brian Schlining
+ * @since 2026-10-19
+ */
+public class LongCollator {
+
+    /**
+     * The result of a collation. Both arrays are the same length as the <i>a</i>
+     * keys and are ordered by ascending key of <i>a</i>.
+     *
+     * @param indexA indexA[i] is the index into the original <i>a</i> data
+     * @param indexB indexB[i] is the index into the original <i>b</i> data of the nearest
+     *               neighbor of a[indexA[i]], or -1 if none was within the tolerance
+     */
+    public record Collation(int[] indexA, int[] indexB) {
+        public int size() {
+            return indexA.length;
+        }
+    }
+
+    /**
+     * Matches each key in a with it's nearest neighbor in b.
+     * @param a The keys to be matched. These do not need to be sorted
+     * @param b The keys to match against. These do not need to be sorted
+     * @param tolerance The maximum allowed distance between a key in a and it's match in b
+     * @return The matching indices into a and b.
+     */
+    public static Collation apply(long[] a, long[] b, long tolerance) {
+        if (a == null) {
+            throw new IllegalArgumentException("The a array can not be null");
+        }
+
+        if (b == null) {
+            throw new IllegalArgumentException("The b array can not be null");
+        }
+
+        int[] pa = sortIndices(a);
+        int[] pb = sortIndices(b);
+        long[] sortedA = gather(a, pa);
+        long[] sortedB = gather(b, pb);
+        int[] nn = sortedA.length > NearestNeighbor.PARALLEL_THRESHOLD
+                ? NearestNeighbor.applyParallel(sortedB, sortedA, tolerance)
+                : NearestNeighbor.applySorted(sortedB, sortedA, tolerance);
+        return new Collation(pa, NearestNeighbor.collate(pb, nn));
+    }
+
+    /**
+     * Returns the permutation that sorts keys in ascending order. The sort is stable. If
+     * the keys are already sorted no sorting is done. When the span of the keys leaves
+     * enough room, each key and it's index are packed into a single long and sorted
+     * with {@link Arrays#sort(long[])}; otherwise an LSD radix sort is used.
+     * @param keys The keys to sort. This array is not modified
+     * @return An array where the i-th element is the index in keys of the i-th smallest key
+     */
+    public static int[] sortIndices(long[] keys) {
+        int n = keys.length;
+        int[] idx = new int[n];
+        if (n == 0) {
+            return idx;
+        }
+
+        boolean sorted = true;
+        long min = keys[0];
+        long max = keys[0];
+        for (int i = 1; i < n; i++) {
+            long k = keys[i];
+            if (k < keys[i - 1]) {
+                sorted = false;
+            }
+            if (k < min) {
+                min = k;
+            }
+            if (k > max) {
+                max = k;
+            }
+        }
+
+        if (sorted) {
+            for (int i = 0; i < n; i++) {
+                idx[i] = i;
+            }
+            return idx;
+        }
+
+        int bits = Math.max(1, 32 - Integer.numberOfLeadingZeros(n - 1));
+        long span = max - min;
+        if (span >= 0 && span < (1L << (63 - bits))) {
+            long mask = (1L << bits) - 1;
+            long[] packed = new long[n];
+            for (int i = 0; i < n; i++) {
+                packed[i] = ((keys[i] - min) << bits) | i;
+            }
+            Arrays.sort(packed);
+            for (int i = 0; i < n; i++) {
+                idx[i] = (int) (packed[i] & mask);
+            }
+            return idx;
+        }
+
+        return radixSortIndices(keys);
+    }
+
+    /**
+     * Stable LSD radix sort, 16 bits per pass, of the indices of keys.
+     */
+    private static int[] radixSortIndices(long[] keys) {
+        int n = keys.length;
+        long[] k0 = new long[n];
+        long[] k1 = new long[n];
+        int[] i0 = new int[n];
+        int[] i1 = new int[n];
+        for (int i = 0; i < n; i++) {
+            // Flip the sign bit so that negative keys sort before positive keys
+            k0[i] = keys[i] ^ Long.MIN_VALUE;
+            i0[i] = i;
+        }
+
+        int[] counts = new int[1 << 16];
+        for (int shift = 0; shift < 64; shift += 16) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < n; i++) {
+                counts[(int) ((k0[i] >>> shift) & 0xFFFF)]++;
+            }
+            int total = 0;
+            for (int b = 0; b < counts.length; b++) {
+                int c = counts[b];
+                counts[b] = total;
+                total += c;
+            }
+            for (int i = 0; i < n; i++) {
+                int pos = counts[(int) ((k0[i] >>> shift) & 0xFFFF)]++;
+                k1[pos] = k0[i];
+                i1[pos] = i0[i];
+            }
+            long[] kt = k0;
+            k0 = k1;
+            k1 = kt;
+            int[] it = i0;
+            i0 = i1;
+            i1 = it;
+        }
+        return i0;
+    }
+
+    private static long[] gather(long[] values, int[] idx) {
+        long[] data = new long[idx.length];
+        for (int i = 0; i < idx.length; i++) {
+            data[i] = values[idx[i]];
+        }
+        return data;
+    }
+
+}
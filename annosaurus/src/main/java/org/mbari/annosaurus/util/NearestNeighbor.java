@@ -19,6 +19,8 @@ package org.mbari.annosaurus.util;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * @author Brian Schlining
@@ -26,6 +28,13 @@ import java.util.List;
  */
 public class NearestNeighbor {
 
+    /**
+     * The minimum number of xi values handled by a single fork-join task in
+     * {@link #applyParallel(long[], long[], long)}. Below this size the cost of forking
+     * outweighs the work done by the linear merge.
+     */
+    public static final int PARALLEL_THRESHOLD = 1 << 16;
+
     /**
      * Performs a nearest neighbor search. Returns an array of indices of nearest
      * neighbors
@@ -144,6 +153,181 @@ public class NearestNeighbor {
         return n;
     }
 
+    /**
+     * Performs a nearest neighbor search using a single linear sweep over both arrays.
+     * This is equivalent to {@link #apply(long[], long[], long)} but runs in O(n + m)
+     * instead of O(m log n). Both arrays MUST be sorted in ascending order.
+     * @param x An ordered array.
+     * @param xi An ordered array of values that you are interpolating too.
+     * @param epsilon A delta specifying the acceptable offset between each value in xi
+     *                and it's nearest neighbor in x
+     * @return An array of indices associating each value in xi with it's nearest neighbor
+     *         in x. If the nearest neighbor is more than <i>epsilon</i> away, then -1 is
+     *         returned
+     */
+    public static int[] applySorted(long[] x, long[] xi, long epsilon) {
+        if (x == null) {
+            throw new IllegalArgumentException("The x array can not be null");
+        }
+
+        if (xi == null) {
+            throw new IllegalArgumentException("The xi array can not be null");
+        }
+
+        int[] idx = new int[xi.length];
+        merge(x, xi, epsilon, idx, 0, xi.length);
+        return idx;
+    }
+
+    /**
+     * Performs a nearest neighbor search, splitting xi into chunks that are searched
+     * concurrently on the common fork-join pool. Each chunk is located in x with a
+     * single binary search and then swept linearly, so xi MUST be sorted in
+     * ascending order. For small inputs this simply delegates to
+     * {@link #applySorted(long[], long[], long)}.
+     * @param x An ordered array.
+     * @param xi An ordered array of values that you are interpolating too.
+     * @param epsilon A delta specifying the acceptable offset between each value in xi
+     *                and it's nearest neighbor in x
+     * @return An array of indices associating each value in xi with it's nearest neighbor
+     *         in x. If the nearest neighbor is more than <i>epsilon</i> away, then -1 is
+     *         returned
+     */
+    public static int[] applyParallel(long[] x, long[] xi, long epsilon) {
+        return applyParallel(x, xi, epsilon, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Same as {@link #applyParallel(long[], long[], long)} but runs on the provided pool.
+     * @param x An ordered array.
+     * @param xi An ordered array of values that you are interpolating too.
+     * @param epsilon A delta specifying the acceptable offset between each value in xi
+     *                and it's nearest neighbor in x
+     * @param pool The pool used to run the search
+     * @return An array of indices associating each value in xi with it's nearest neighbor
+     *         in x. If the nearest neighbor is more than <i>epsilon</i> away, then -1 is
+     *         returned
+     */
+    public static int[] applyParallel(long[] x, long[] xi, long epsilon, ForkJoinPool pool) {
+        if (x == null) {
+            throw new IllegalArgumentException("The x array can not be null");
+        }
+
+        if (xi == null) {
+            throw new IllegalArgumentException("The xi array can not be null");
+        }
+
+        if (pool == null) {
+            throw new IllegalArgumentException("The pool can not be null");
+        }
+
+        int[] idx = new int[xi.length];
+        if (xi.length <= PARALLEL_THRESHOLD) {
+            merge(x, xi, epsilon, idx, 0, xi.length);
+        }
+        else {
+            pool.invoke(new MergeTask(x, xi, epsilon, idx, 0, xi.length));
+        }
+        return idx;
+    }
+
+    /**
+     * Sweeps xi[from, to) against x, writing the nearest neighbor indices into idx.
+     */
+    private static void merge(long[] x, long[] xi, long epsilon, int[] idx, int from, int to) {
+        if (from >= to) {
+            return;
+        }
+
+        if (x.length == 0) {
+            Arrays.fill(idx, from, to, -1);
+            return;
+        }
+
+        // j is the first index in x where x[j] >= xi[k]. Seed it with a binary search
+        // so that chunks starting in the middle of xi don't have to scan x from 0.
+        int j = lowerBound(x, xi[from]);
+        for (int k = from; k < to; k++) {
+            long v = xi[k];
+            while (j < x.length && x[j] < v) {
+                j++;
+            }
+
+            if (j < x.length && x[j] == v) {
+                idx[k] = j;
+                continue;
+            }
+
+            int lower = j - 1;
+            if (lower < 0) {
+                lower = 0;
+            }
+            int upper = j;
+            if (upper >= x.length) {
+                upper = x.length - 1;
+            }
+
+            long da = Math.abs(x[lower] - v);
+            long db = Math.abs(x[upper] - v);
+
+            if (da <= db && da <= epsilon) {
+                idx[k] = lower;
+            }
+            else if (db <= epsilon) {
+                idx[k] = upper;
+            }
+            else {
+                idx[k] = -1;
+            }
+        }
+    }
+
+    private static int lowerBound(long[] x, long v) {
+        int lo = 0;
+        int hi = x.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (x[mid] < v) {
+                lo = mid + 1;
+            }
+            else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static class MergeTask extends RecursiveAction {
+
+        private final long[] x;
+        private final long[] xi;
+        private final long epsilon;
+        private final int[] idx;
+        private final int from;
+        private final int to;
+
+        MergeTask(long[] x, long[] xi, long epsilon, int[] idx, int from, int to) {
+            this.x = x;
+            this.xi = xi;
+            this.epsilon = epsilon;
+            this.idx = idx;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                merge(x, xi, epsilon, idx, from, to);
+            }
+            else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new MergeTask(x, xi, epsilon, idx, from, mid),
+                        new MergeTask(x, xi, epsilon, idx, mid, to));
+            }
+        }
+    }
+
     /**
      * Return the values in x at idx.
      * @param x The original data set
@@ -166,4 +350,32 @@ public class NearestNeighbor {
         return data;
     }
 
-}
\ No newline at end of file
+    /**
+     * Maps the indices returned by the <i>apply</i> methods through a permutation. This
+     * is useful when x was sorted indirectly (e.g. by sorting an index array by a key)
+     * and you need indices into the original, unsorted data. Unlike
+     * {@link #collate(List, int[])} this does not box or allocate a list.
+     * @param permutation The permutation that was used to order x. permutation[i] is the
+     *                    index in the original data of the i-th element of x
+     * @param idx The indices into x. This is what is returned by the <i>apply</i> method
+     * @return An array the same length as idx containing indices into the original data.
+     *      If idx contains -1 in an array cell, then -1 is returned at that index.
+     */
+    public static int[] collate(int[] permutation, int[] idx) {
+        if (permutation == null) {
+            throw new IllegalArgumentException("The permutation array can not be null");
+        }
+
+        if (idx == null) {
+            throw new IllegalArgumentException("The idx array can not be null");
+        }
+
+        int[] data = new int[idx.length];
+        for (int i = 0; i < idx.length; i++) {
+            int j = idx[i];
+            data[i] = j == -1 ? -1 : permutation[j];
+        }
+        return data;
+    }
+
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2017 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mbari.annosaurus.util;
+
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+/**
+ * Fixed-width hash of an image URL, stored in image_references.url_hash. Indexing the hash
+ * instead of the full URL gives a narrow index no matter how long the URLs are. Different URLs
+ * may share a hash, so a match on the hash must be confirmed against the full URL.
+ *
+ * @author Brian Schlining
+ * @since 2026-10-19
+ */
+public final class UrlHash {
+
+    /** Number of bytes kept from the SHA-256 digest */
+    public static final int LENGTH = 16;
+
+    private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required by every Java platform", e);
+        }
+    });
+
+    private UrlHash() {
+    }
+
+    /**
+     * @param url The URL to hash. May be null
+     * @return The first 16 bytes of the SHA-256 of the URL's external form, or null if url is null
+     */
+    public static byte[] of(URL url) {
+        return url == null ? null : of(url.toExternalForm());
+    }
+
+    /**
+     * @param url The external form of a URL. May be null
+     * @return The first 16 bytes of the SHA-256 of the UTF-8 bytes of url, or null if url is null
+     */
+    public static byte[] of(String url) {
+        if (url == null) {
+            return null;
+        }
+        var digest = DIGEST.get();
+        digest.reset();
+        return Arrays.copyOf(digest.digest(url.getBytes(StandardCharsets.UTF_8)), LENGTH);
+    }
+}
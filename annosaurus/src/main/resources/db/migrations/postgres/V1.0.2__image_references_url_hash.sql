@@ -0,0 +1,12 @@
+-- Fixed-width hash of image_references.url (first 16 bytes of SHA-256 of the UTF-8 url).
+-- URL lookups probe this narrow index and then confirm the full url. Existing rows are
+-- filled in by the application's backfill job in small batches rather than here, so the
+-- migration does not hold a long lock on a large table.
+ALTER TABLE image_references
+    ADD COLUMN url_hash bytea NULL;
+
+CREATE INDEX idx_image_references__url_hash
+    ON image_references (url_hash);
+
+-- Duplicates the index behind the UNIQUE(url) constraint
+DROP INDEX IF EXISTS idx_image_references__url;
@@ -0,0 +1,9 @@
+-- Transactional outbox for change messages. Rows are written in the same transaction as the
+-- changes they describe and deleted by the application's relay once they are published.
+CREATE TABLE outbox_events (
+    id                bigserial PRIMARY KEY,
+    action            varchar(16) NOT NULL,
+    entity            varchar(255) NOT NULL,
+    uuid              varchar(36) NOT NULL,
+    created_timestamp timestamp NOT NULL DEFAULT now()
+);
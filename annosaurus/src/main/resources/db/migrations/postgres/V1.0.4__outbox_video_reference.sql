@@ -0,0 +1,6 @@
+-- The video and concept of each change, so the relay can publish it to a per-video subject
+ALTER TABLE outbox_events
+    ADD COLUMN video_reference_uuid varchar(36) NULL;
+
+ALTER TABLE outbox_events
+    ADD COLUMN concept varchar(256) NULL;
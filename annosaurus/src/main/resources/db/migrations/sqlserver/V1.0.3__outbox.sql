@@ -0,0 +1,11 @@
+-- Transactional outbox for change messages. Rows are written in the same transaction as the
+-- changes they describe and deleted by the application's relay once they are published.
+CREATE TABLE outbox_events (
+    id                bigint IDENTITY(1,1) NOT NULL,
+    action            varchar(16) NOT NULL,
+    entity            varchar(255) NOT NULL,
+    uuid              varchar(36) NOT NULL,
+    created_timestamp datetime2 NOT NULL DEFAULT SYSUTCDATETIME(),
+    CONSTRAINT PK_outbox_events PRIMARY KEY CLUSTERED (id)
+)
+GO
@@ -0,0 +1,5 @@
+-- The video and concept of each change, so the relay can publish it to a per-video subject
+ALTER TABLE outbox_events
+    ADD video_reference_uuid varchar(36) NULL,
+        concept varchar(256) NULL
+GO
@@ -17,14 +17,21 @@
 package org.mbari.annosaurus
 
 import com.typesafe.config.ConfigFactory
-import org.mbari.annosaurus.etc.jdbc.Databases
+import com.zaxxer.hikari.HikariDataSource
+import org.mbari.annosaurus.etc.jdbc.{DatabaseExecutor, Databases, PoolMetrics, ReadRouter}
 import org.mbari.annosaurus.etc.jdbc.Databases.DatabaseType
 import org.mbari.annosaurus.etc.jdk.Loggers
 import org.mbari.annosaurus.etc.jdk.Loggers.given
 import org.mbari.annosaurus.etc.jwt.JwtService
 import org.mbari.annosaurus.etc.nats.NatsConfig
+import org.mbari.annosaurus.etc.rxjava.{ChangeFeedConfig, DedupeConfig}
+import org.mbari.annosaurus.etc.vertx.Bulkhead
 import org.mbari.annosaurus.etc.zeromq.ZeroMQConfig
+import org.mbari.annosaurus.messaging.MessageEncoding
 
+import java.nio.file.Path
+import java.time.Duration
+import javax.sql.DataSource
 import scala.util.Try
 import scala.util.control.NonFatal
 
@@ -58,12 +65,31 @@ object AppConfig:
         contextPath = Config.getString("http.context.path")
     )
 
+    /** One bulkhead config per workload. Empty when bulkheads are disabled */
+    lazy val DefaultBulkheadConfigs: Map[Bulkhead.Workload, BulkheadConfig] =
+        if !Config.getBoolean("http.bulkhead.enable") then Map.empty
+        else
+            Bulkhead
+                .Workload
+                .values
+                .map(w =>
+                    w -> BulkheadConfig(
+                        concurrency = Config.getInt(s"http.bulkhead.${w.key}.concurrency"),
+                        queueSize = Config.getInt(s"http.bulkhead.${w.key}.queue.size"),
+                        queueTimeout = Config.getDuration("http.bulkhead.queue.timeout"),
+                        retryAfter = Config.getDuration("http.bulkhead.retry.after")
+                    )
+                )
+                .toMap
+
     lazy val DefaultZeroMQConfig: Option[ZeroMQConfig] =
         try
-            val port   = Config.getInt("messaging.zeromq.port")
-            val enable = Config.getBoolean("messaging.zeromq.enable")
-            val topic  = Config.getString("messaging.zeromq.topic")
-            Some(ZeroMQConfig(port, enable, topic))
+            val port     = Config.getInt("messaging.zeromq.port")
+            val enable   = Config.getBoolean("messaging.zeromq.enable")
+            val topic    = Config.getString("messaging.zeromq.topic")
+            val encoding = MessageEncoding.parse(Config.getString("messaging.zeromq.encoding"))
+            val size     = Config.getInt("messaging.zeromq.queue.size")
+            Some(ZeroMQConfig(port, enable, topic, encoding, size))
         catch
             case NonFatal(e) =>
                 log.atWarn.withCause(e).log("Failed to load ZeroMQ configuration")
@@ -74,20 +100,111 @@ object AppConfig:
             val enable = Config.getBoolean("messaging.nats.enable")
             val url    = Config.getString("messaging.nats.url")
             val topic  = Config.getString("messaging.nats.topic")
-            Some(NatsConfig(url, enable, topic))
+            val spill  = Config.getString("messaging.nats.spill.directory")
+            val parsed = NatsConfig.Overflow.parse(Config.getString("messaging.nats.overflow"))
+            // drop-oldest would delete outbox rows whose messages were never sent. With the outbox the relay is the
+            // only thread that emits to NATS, so blocking it costs nothing but relay throughput
+            val overflow =
+                if DefaultOutboxConfig.enable && parsed == NatsConfig.Overflow.DropOldest then
+                    log.atWarn.log("messaging.nats.overflow = drop-oldest loses outbox messages. Using block instead")
+                    NatsConfig.Overflow.Block
+                else parsed
+            Some(
+                NatsConfig(
+                    url,
+                    enable,
+                    topic,
+                    batchSize = Config.getInt("messaging.nats.batch.size"),
+                    batchTimeout = Config.getDuration("messaging.nats.batch.timeout"),
+                    queueSize = Config.getInt("messaging.nats.queue.size"),
+                    overflow = overflow,
+                    spillDirectory = Option(spill).filter(_.nonEmpty).map(Path.of(_)),
+                    jetStream = Config.getBoolean("messaging.nats.jetstream"),
+                    coalesce = Config.getBoolean("messaging.nats.coalesce.enable"),
+                    coalesceSize = Config.getInt("messaging.nats.coalesce.size"),
+                    partitions = Config.getInt("messaging.nats.partitions"),
+                    encoding = MessageEncoding.parse(Config.getString("messaging.nats.encoding"))
+                )
+            )
         catch
             case NonFatal(e) =>
                 log.atWarn.withCause(e).log("Failed to load NATS configuration")
                 None
 
+    lazy val DefaultOutboxConfig: OutboxConfig = OutboxConfig(
+        enable = Config.getBoolean("messaging.outbox.enable"),
+        batchSize = Config.getInt("messaging.outbox.batch.size"),
+        pollInterval = Config.getDuration("messaging.outbox.poll.interval")
+    )
+
+    lazy val DefaultChangeFeedConfig: ChangeFeedConfig = ChangeFeedConfig(
+        bufferSize = Config.getInt("http.changes.buffer.size"),
+        heartbeat = Config.getDuration("http.changes.heartbeat")
+    )
+
+    lazy val DefaultDedupeConfig: DedupeConfig = DedupeConfig(
+        size = Config.getInt("messaging.dedupe.size"),
+        window = Config.getDuration("messaging.dedupe.window")
+    )
+
     lazy val DefaultDatabaseConfig: DatabaseConfig = DatabaseConfig(
         url = Config.getString("database.url"),
         user = Config.getString("database.user"),
         password = Config.getString("database.password"),
         driver = Config.getString("database.driver"),
-        queryView = Config.getString("database.query.view")
+        queryView = Config.getString("database.query.view"),
+        replica = DefaultReplicaConfig,
+        pools = DefaultPoolConfig
+    )
+
+    lazy val DefaultPoolConfig: PoolConfig = PoolConfig(
+        interactive = Config.getInt("database.pool.interactive.size"),
+        bulk = Config.getInt("database.pool.bulk.size"),
+        query = Config.getInt("database.pool.query.size"),
+        replica = Config.getInt("database.pool.replica.size"),
+        minimumIdle = Config.getInt("database.pool.minimum.idle"),
+        idleTimeout = Config.getDuration("database.pool.idle.timeout"),
+        maxLifetime = Config.getDuration("database.pool.max.lifetime")
     )
 
+    lazy val DefaultDatabaseExecutorConfig: DatabaseExecutorConfig =
+        val threads = Config.getInt("database.executor.threads")
+        DatabaseExecutorConfig(
+            threads = if threads > 0 then threads else DefaultPoolConfig.primarySize,
+            queueSize = Config.getInt("database.executor.queue.size"),
+            rejection = DatabaseExecutor.Rejection.parse(Config.getString("database.executor.rejection")),
+            mode = DatabaseExecutor.Mode.parse(Config.getString("database.executor.mode"))
+        )
+
+    lazy val DefaultReplicaConfig: Option[ReplicaConfig] =
+        val urls = Config
+            .getString("database.replica.urls")
+            .split(",")
+            .map(_.trim)
+            .filter(_.nonEmpty)
+            .toSeq
+        if urls.isEmpty then None
+        else
+            Some(
+                ReplicaConfig(
+                    urls = urls,
+                    user = Config.getString("database.replica.user"),
+                    password = Config.getString("database.replica.password"),
+                    policy = ReadRouter.Policy.parse(Config.getString("database.replica.policy")),
+                    staleness = Config.getDuration("database.replica.staleness")
+                )
+            )
+
+    lazy val DefaultDatabaseCacheConfig: DatabaseCacheConfig = DatabaseCacheConfig(
+        enable = Config.getBoolean("database.cache.enable"),
+        ttl = Config.getDuration("database.cache.ttl"),
+        pollInterval = Config.getDuration("database.cache.poll.interval")
+    )
+
+case class DatabaseCacheConfig(enable: Boolean, ttl: Duration, pollInterval: Duration)
+
+case class OutboxConfig(enable: Boolean, batchSize: Int, pollInterval: Duration)
+
 case class HttpConfig(
     port: Int,
     stopTimeout: Int,
@@ -95,24 +212,138 @@ case class HttpConfig(
     contextPath: String
 )
 
+/**
+ * Limits for one class of requests. See [[org.mbari.annosaurus.etc.vertx.Bulkhead]]
+ *
+ * @param concurrency
+ *   The number of requests that run at once
+ * @param queueSize
+ *   The number of requests that can wait
+ * @param queueTimeout
+ *   How long a request can wait before it gets a 503
+ * @param retryAfter
+ *   The Retry-After sent with a 503
+ */
+case class BulkheadConfig(concurrency: Int, queueSize: Int, queueTimeout: Duration, retryAfter: Duration)
+
+/**
+ * Read-only replicas of the primary database. They use the same driver as the primary.
+ *
+ * @param urls
+ *   JDBC URLs of the replicas
+ * @param policy
+ *   How reads are spread over the replicas
+ * @param staleness
+ *   How long after a write read-your-writes calls stay on the primary
+ */
+case class ReplicaConfig(
+    urls: Seq[String],
+    user: String,
+    password: String,
+    policy: ReadRouter.Policy,
+    staleness: Duration
+)
+
+/**
+ * Sizes of the connection pools. Each workload class can have its own pool so that, for example, a large export can't
+ * take every connection from annotators. A size of 0 shares the interactive pool.
+ *
+ * @param interactive
+ *   The pool Hibernate uses for regular API calls
+ * @param bulk
+ *   Bulk ingest
+ * @param query
+ *   The /query endpoints
+ * @param replica
+ *   The pool for each read replica
+ */
+case class PoolConfig(
+    interactive: Int = AppConfig.NumberOfVertxWorkers * 2,
+    bulk: Int = 0,
+    query: Int = 0,
+    replica: Int = AppConfig.NumberOfVertxWorkers,
+    minimumIdle: Int = 2,
+    idleTimeout: Duration = Duration.ofSeconds(30),
+    maxLifetime: Duration = Duration.ofMinutes(30)
+):
+
+    /** The total number of connections to the primary database */
+    def primarySize: Int = interactive + bulk + query
+
+/**
+ * The executor that runs blocking database work.
+ *
+ * @param threads
+ *   The number of tasks that run at once. Matches the connection pools by default
+ * @param queueSize
+ *   The number of tasks that can wait to run
+ * @param rejection
+ *   What happens to a task when the queue is full
+ * @param mode
+ *   Run tasks on platform or virtual threads
+ */
+case class DatabaseExecutorConfig(
+    threads: Int,
+    queueSize: Int,
+    rejection: DatabaseExecutor.Rejection,
+    mode: DatabaseExecutor.Mode = DatabaseExecutor.Mode.Platform
+)
+
 case class DatabaseConfig(
     url: String,
     user: String,
     password: String,
     driver: String,
-    queryView: String
+    queryView: String,
+    replica: Option[ReplicaConfig] = None,
+    pools: PoolConfig = PoolConfig()
 ):
-    lazy val dataSource                      =
-        val ds = new com.zaxxer.hikari.HikariDataSource()
-        ds.setJdbcUrl(url)
-        ds.setUsername(user)
-        ds.setPassword(password)
+
+    /** The pool for interactive work. Hibernate and every workload without its own pool use it */
+    lazy val dataSource: HikariDataSource = newDataSource("interactive", url, user, password, pools.interactive)
+
+    /** The pool for bulk ingest */
+    lazy val bulkDataSource: DataSource =
+        if pools.bulk > 0 then newDataSource("bulk", url, user, password, pools.bulk) else dataSource
+
+    /** The pool for /query */
+    lazy val queryDataSource: DataSource =
+        if pools.query > 0 then newDataSource("query", url, user, password, pools.query) else dataSource
+
+    /** One pool per read replica */
+    lazy val replicaDataSources: Seq[HikariDataSource] =
+        replica
+            .toSeq
+            .flatMap(r =>
+                r.urls.zipWithIndex.map((u, i) => newDataSource(s"replica-$i", u, r.user, r.password, pools.replica))
+            )
+
+    /** Routes read-only JDBC work (/query) to the replicas, if any */
+    lazy val readRouter: ReadRouter[DataSource] = replica match
+        case Some(r) => ReadRouter[DataSource](queryDataSource, replicaDataSources, r.policy, r.staleness)
+        case None    => ReadRouter.primaryOnly[DataSource](queryDataSource)
+
+    private def newDataSource(workload: String, jdbcUrl: String, username: String, pwd: String, size: Int) =
+        val ds = new HikariDataSource()
+        ds.setPoolName(s"annosaurus-$workload")
+        ds.setJdbcUrl(jdbcUrl)
+        ds.setUsername(username)
+        ds.setPassword(pwd)
         ds.setDriverClassName(driver)
-        ds.setMaximumPoolSize(AppConfig.NumberOfVertxWorkers)
+        ds.setMaximumPoolSize(size)
+        ds.setMinimumIdle(Math.min(pools.minimumIdle, size))
+        ds.setIdleTimeout(pools.idleTimeout.toMillis)
+        ds.setMaxLifetime(pools.maxLifetime.toMillis)
+        ds.setMetricsTrackerFactory(PoolMetrics)
         ds
+
     def newConnection(): java.sql.Connection =
-        dataSource.getConnection()
+        queryDataSource.getConnection()
         // Class.forName(driver)
         // java.sql.DriverManager.getConnection(url, user, password)
 
+    /** A connection for read-only work. Comes from a replica when replicas are configured */
+    def newReadOnlyConnection(): java.sql.Connection =
+        readRouter.next().getConnection()
+
     lazy val databaseType: DatabaseType = Databases.typeFromUrl(url)
@@ -18,9 +18,11 @@ package org.mbari.annosaurus
 
 import org.mbari.annosaurus.controllers.*
 import org.mbari.annosaurus.endpoints.*
+import org.mbari.annosaurus.etc.jpa.CacheMetrics
 import org.mbari.annosaurus.etc.jwt.JwtService
 import org.mbari.annosaurus.repository.jdbc.{AnalysisRepository, JdbcRepository}
 import org.mbari.annosaurus.repository.jpa.JPADAOFactory
+import org.mbari.annosaurus.repository.jpa.entity.CachedVideoReferenceInfoEntity
 import sttp.tapir.server.ServerEndpoint
 import sttp.tapir.server.metrics.prometheus.PrometheusMetrics
 import sttp.tapir.swagger.bundle.SwaggerInterpreter
@@ -30,6 +32,7 @@ import scala.concurrent.{ExecutionContext, Future}
 object Endpoints:
 
     // --------------------------------
+    // Transactions run on DatabaseExecutor (see extensions.runTransaction). Continuations must never be rejected
     given ExecutionContext = ExecutionContext.global
     given JwtService       = AppConfig.DefaultJwtService
     val daoFactory         = JPADAOFactory
@@ -51,7 +54,7 @@ object Endpoints:
 
     // --------------------------------
     val analysisRepository = new AnalysisRepository(daoFactory.entityManagerFactory)
-    val jdbcRepository     = new JdbcRepository(daoFactory.entityManagerFactory)
+    val jdbcRepository     = new JdbcRepository(daoFactory.entityManagerFactory, daoFactory.readRouter)
 
     // --------------------------------
     val analysisEndpoints                 = new AnalysisEndpoints(analysisRepository)
@@ -95,6 +98,11 @@ object Endpoints:
         queryEndpoints.allImpl
     ).flatten
 
+    // Endpoints that consume the request body as a Vert.x stream. These are routed as non-blocking
+    val streamingEndpoints = List(
+        cachedAncillaryDatumEndpoints.streamingImpl
+    ).flatten
+
     val apiEndpoints = nonBlockingEndpoints ++ blockingEndpoints
 
 //    val apiEndpoints = analysisEndpoints.allImpl ++
@@ -112,10 +120,15 @@ object Endpoints:
 //        observationEndpoints.allImpl
 
     val docEndpoints: List[ServerEndpoint[Any, Future]] =
-        SwaggerInterpreter().fromServerEndpoints(apiEndpoints, AppConfig.Name, AppConfig.Version)
+        SwaggerInterpreter().fromServerEndpoints(apiEndpoints ++ streamingEndpoints, AppConfig.Name, AppConfig.Version)
 
     val prometheusMetrics: PrometheusMetrics[Future] = PrometheusMetrics.default[Future]()
     val metricsEndpoint: ServerEndpoint[Any, Future] = prometheusMetrics.metricsEndpoint
+    if AppConfig.DefaultDatabaseCacheConfig.enable then
+        CacheMetrics.register(
+            daoFactory.entityManagerFactory,
+            Seq(CachedVideoReferenceInfoEntity.CACHE_REGION, CachedVideoReferenceInfoEntity.QUERY_CACHE_REGION)
+        )
 
     val all: List[ServerEndpoint[Any, Future]] =
         apiEndpoints ++ docEndpoints ++ List(metricsEndpoint)
@@ -16,13 +16,19 @@
 
 package org.mbari.annosaurus
 
+import io.reactivex.rxjava3.subjects.PublishSubject
 import io.vertx.core.http.HttpServerOptions
 import io.vertx.core.{Vertx, VertxOptions}
 import io.vertx.ext.web.Router
+import org.mbari.annosaurus.etc.jdbc.DatabaseExecutor
 import org.mbari.annosaurus.etc.jdk.Loggers
 import org.mbari.annosaurus.etc.jdk.Loggers.given
-import org.mbari.annosaurus.etc.nats.NatsPublisher
+import org.mbari.annosaurus.etc.jpa.CacheInvalidator
+import org.mbari.annosaurus.etc.nats.{NatsBridge, NatsEvent, NatsPublisher}
+import org.mbari.annosaurus.etc.rxjava.ChangeFeed
+import org.mbari.annosaurus.etc.vertx.{Bulkhead, ChangeFeedHandler}
 import org.mbari.annosaurus.etc.zeromq.ZeroMQPublisher
+import org.mbari.annosaurus.repository.jpa.{JPADAOFactory, Outbox, OutboxRelay, TransactionNotifier, UrlHashBackfill}
 import sttp.tapir.server.vertx.VertxFutureServerInterpreter.VertxFutureToScalaFuture
 import sttp.tapir.server.vertx.{VertxFutureServerInterpreter, VertxFutureServerOptions}
 
@@ -32,8 +38,32 @@ import scala.concurrent.{Await, ExecutionContext}
 object Main:
 
     // hold on to messaging objects so they don't get GC'd
-    private val zmq = ZeroMQPublisher.autowire(AppConfig.DefaultZeroMQConfig)
-    private val nats = NatsPublisher.autowire(AppConfig.DefaultNatsConfig)
+    private val zmq = ZeroMQPublisher.autowire(AppConfig.DefaultZeroMQConfig, dedupe = AppConfig.DefaultDedupeConfig)
+    // Nothing reads the outbox unless NATS is on. With it, NATS gets its messages from the outbox relay
+    private val useOutbox = AppConfig.DefaultOutboxConfig.enable && AppConfig.DefaultNatsConfig.exists(_.enable)
+    private val nats = NatsPublisher.autowire(
+        AppConfig.DefaultNatsConfig,
+        dedupe = AppConfig.DefaultDedupeConfig,
+        source = if useOutbox then Outbox.messages else TransactionNotifier.getRxSubject
+    )
+    private val outbox = OutboxRelay.autowire(
+        JPADAOFactory.entityManagerFactory,
+        useOutbox,
+        AppConfig.DefaultOutboxConfig.batchSize,
+        AppConfig.DefaultOutboxConfig.pollInterval,
+        // Outbox rows are only deleted once NATS has confirmed their messages
+        delivered = () => nats.forall(_.awaitDelivered(java.time.Duration.ofSeconds(30)))
+    )
+    private val cacheInvalidator = CacheInvalidator.autowire(
+        JPADAOFactory.entityManagerFactory,
+        AppConfig.DefaultDatabaseCacheConfig.pollInterval
+    )
+    // Recent changes for clients of GET /changes, in the same coalesced form that is sent to NATS. They come from the
+    // commits on this instance, with or without the outbox, so with several instances each feed has only its own
+    // writes. Clients that need every change should subscribe to NATS instead
+    private val changeEvents = PublishSubject.create[NatsEvent]().toSerialized
+    private val changeBridge = new NatsBridge(TransactionNotifier.getRxSubject, changeEvents, coalesce = true)
+    private val changes      = ChangeFeed[NatsEvent]("changes", changeEvents, AppConfig.DefaultChangeFeedConfig)
     private val log = Loggers(this.getClass)
 
     def main(args: Array[String]): Unit =
@@ -48,6 +78,10 @@ object Main:
 
         println(s)
 
+        // Hash image URLs written before image_references.url_hash existed
+        UrlHashBackfill.start(JPADAOFactory.entityManagerFactory)
+
+        // Transactions run on the bounded DatabaseExecutor. Everything else uses the global pool, which never rejects
         given ExecutionContext = ExecutionContext.global
 
         // Disable server log: https://github.com/softwaremill/tapir/issues/3272
@@ -92,6 +126,29 @@ object Main:
                 ctx.next()
             })
 
+        // The change feed holds its connection open, so it is routed ahead of the bulkheads
+        val contextPath = AppConfig.DefaultHttpConfig.contextPath
+        router
+            .get(s"/$contextPath/changes")
+            .handler(new ChangeFeedHandler(changes, AppConfig.DefaultChangeFeedConfig.heartbeat)(_.toJson))
+
+        // Bulkheads must run before the endpoint routes
+        val bulkheads = AppConfig
+            .DefaultBulkheadConfigs
+            .map((workload, c) =>
+                workload -> Bulkhead.register(
+                    new Bulkhead(workload.key, c.concurrency, c.queueSize, c.queueTimeout, c.retryAfter)
+                )
+            )
+        if bulkheads.nonEmpty then
+            router
+                .route(s"/$contextPath/*")
+                .handler(ctx =>
+                    Bulkhead.classify(ctx.request().method(), ctx.request().path(), contextPath) match
+                        case Some(workload) => bulkheads(workload).handle(ctx)
+                        case None           => ctx.next()
+                )
+
         val interpreter = VertxFutureServerInterpreter(serverOptions)
 
         // For VertX, we need to separate the non-blocking endpoints from the blocking ones
@@ -103,12 +160,24 @@ object Main:
                     .apply(router) // attaches to vertx router
             )
 
+        // In virtual mode the blocking endpoints do their work on virtual threads from the database executor, so they
+        // don't need a Vert.x worker to wait on
+        val virtual = AppConfig.DefaultDatabaseExecutorConfig.mode == DatabaseExecutor.Mode.Virtual
+        if virtual then log.atInfo.log("Running blocking endpoints on virtual threads")
         Endpoints
             .blockingEndpoints
+            .foreach(endpoint =>
+                val route = if virtual then interpreter.route(endpoint) else interpreter.blockingRoute(endpoint)
+                route.apply(router) // attaches to vertx router
+            )
+
+        // Streaming uploads are consumed asynchronously on the event loop, so they must not be blocking routes
+        Endpoints
+            .streamingEndpoints
             .foreach(endpoint =>
                 interpreter
-                    .blockingRoute(endpoint)
-                    .apply(router) // attaches to vertx router
+                    .route(endpoint)
+                    .apply(router)
             )
 
         // Add our metrics endpoints
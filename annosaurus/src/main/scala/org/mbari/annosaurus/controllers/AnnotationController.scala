@@ -18,10 +18,11 @@ package org.mbari.annosaurus.controllers
 
 import io.reactivex.rxjava3.subjects.Subject
 import org.mbari.annosaurus.domain.{Annotation, ConcurrentRequest, ImageCreateSC, MultiRequest}
+import org.mbari.annosaurus.etc.jdbc.DatabaseExecutor
 import org.mbari.annosaurus.etc.jdk.Loggers.given
 import org.mbari.annosaurus.etc.rxjava.EventBus
 import org.mbari.annosaurus.messaging.Publisher
-import org.mbari.annosaurus.repository.jpa.JPADAOFactory
+import org.mbari.annosaurus.repository.jpa.{AnnotationIngester, JPADAOFactory}
 import org.mbari.annosaurus.repository.jpa.entity.ObservationEntity
 import org.mbari.annosaurus.repository.{DAO, ObservationDAO}
 import org.mbari.vcr4j.time.Timecode
@@ -54,7 +55,7 @@ class AnnotationController(
     )(implicit ec: ExecutionContext): Future[T] =
         val dao = daoFactory.newObservationDAO()
         val f   = dao.runTransaction(fn)
-        f.onComplete(_ => dao.close())
+        f.onComplete(_ => dao.close())(using ExecutionContext.parasitic)
         f
 
     def findByUUID(uuid: UUID)(implicit ec: ExecutionContext): Future[Option[Annotation]] =
@@ -65,9 +66,9 @@ class AnnotationController(
         exec(d => d.findByUUID(uuid).map(Annotation.from(_, true)))
 
     def countByVideoReferenceUuid(uuid: UUID)(implicit ec: ExecutionContext): Future[Int] =
-        val dao = daoFactory.newObservationDAO()
+        val dao = daoFactory.readOnly().newObservationDAO()
         val f   = dao.runReadOnlyTransaction(d => d.countByVideoReferenceUUID(uuid))
-        f.onComplete(_ => dao.close())
+        f.onComplete(_ => dao.close())(using ExecutionContext.parasitic)
         f
 
     /*
@@ -84,14 +85,14 @@ class AnnotationController(
         includedAncillaryData: Boolean = false
     )(implicit ec: ExecutionContext): Future[Seq[Annotation]] =
 
-        val dao = daoFactory.newObservationDAO()
+        val dao = daoFactory.readOnly().newObservationDAO()
         val f   =
             dao.runReadOnlyTransaction(d =>
                 d.findByVideoReferenceUuid(videoReferenceUUID, limit, offset)
                     .map(obs => Annotation.from(obs, includedAncillaryData))
                     .toSeq
             )
-        f.onComplete(_ => dao.close())
+        f.onComplete(_ => dao.close())(using ExecutionContext.parasitic)
         f
         // f.map(_.map(obs => Annotation.from(obs, true)).toSeq)
 
@@ -107,7 +108,7 @@ class AnnotationController(
         limit: Option[Int] = None,
         offset: Option[Int] = None
     ): (Closeable, java.util.stream.Stream[Annotation]) =
-        val dao = daoFactory.newObservationDAO()
+        val dao = daoFactory.readOnly().newObservationDAO()
         (
             () => dao.close(),
             dao
@@ -126,7 +127,7 @@ class AnnotationController(
 //    (() => dao.close(),
 //      dao.streamByVideoReferenceUUIDAndTimestamps(videoReferenceUuid, startTimestamp, endTimestamp, limit, offset)
 //        .flatMap(im => im.javaObservations.stream().map(obs => MutableAnnotationImpl(obs))))
-        val dao = daoFactory.newObservationDAO()
+        val dao = daoFactory.readOnly().newObservationDAO()
         (
             () => dao.close(),
             dao
@@ -145,7 +146,7 @@ class AnnotationController(
         limit: Option[Int],
         offset: Option[Int]
     ): (Closeable, java.util.stream.Stream[Annotation]) =
-        val dao = daoFactory.newObservationDAO()
+        val dao = daoFactory.readOnly().newObservationDAO()
         (
             () => dao.close(),
             dao.streamByConcurrentRequest(request, limit, offset)
@@ -155,9 +156,9 @@ class AnnotationController(
     def countByConcurrentRequest(
         request: ConcurrentRequest
     )(implicit ec: ExecutionContext): Future[Long] =
-        def dao = daoFactory.newObservationDAO()
+        def dao = daoFactory.readOnly().newObservationDAO()
         val f   = dao.runReadOnlyTransaction(d => d.countByConcurrentRequest(request))
-        f.onComplete(t => dao.close())
+        f.onComplete(_ => dao.close())(using ExecutionContext.parasitic)
         f
 
     def streamByMultiRequest(
@@ -165,39 +166,39 @@ class AnnotationController(
         limit: Option[Int],
         offset: Option[Int]
     ): (Closeable, java.util.stream.Stream[Annotation]) =
-        val dao = daoFactory.newObservationDAO()
+        val dao = daoFactory.readOnly().newObservationDAO()
         (
             () => dao.close(),
             dao.streamByMultiRequest(request, limit, offset).map(obs => Annotation.from(obs))
         )
 
     def countByMultiRequest(request: MultiRequest)(implicit ec: ExecutionContext): Future[Long] =
-        def dao = daoFactory.newObservationDAO()
+        def dao = daoFactory.readOnly().newObservationDAO()
         val f   = dao.runReadOnlyTransaction(d => d.countByMultiRequest(request))
-        f.onComplete(t => dao.close())
+        f.onComplete(_ => dao.close())(using ExecutionContext.parasitic)
         f
 
     def findByAssociationUuid(associationUuid: UUID)(implicit ec: ExecutionContext): Future[Option[Annotation]] =
-        def dao = daoFactory.newAssociationDAO()
+        def dao = daoFactory.readOnly(readYourWrites = true).newAssociationDAO()
         val f   = dao.runReadOnlyTransaction(d => {
             d.findByUUID(associationUuid) match
                 case None          => None
                 case Some(assoc) => Option(Annotation.from(assoc.getObservation, true))
         })
-        f.onComplete(t => dao.close())
+        f.onComplete(_ => dao.close())(using ExecutionContext.parasitic)
         f
 
     def findByImageReferenceUUID(
         imageReferenceUUID: UUID
     )(implicit ec: ExecutionContext): Future[Iterable[Annotation]] =
 
-        val imDao = daoFactory.newImagedMomentDAO()
+        val imDao = daoFactory.readOnly(readYourWrites = true).newImagedMomentDAO()
         val f     = imDao.runReadOnlyTransaction(d =>
             d.findByImageReferenceUUID(imageReferenceUUID) match
                 case None     => Nil
                 case Some(im) => im.getObservations.asScala.map(Annotation.from(_))
         )
-        f.onComplete(t => imDao.close())
+        f.onComplete(_ => imDao.close())(using ExecutionContext.parasitic)
         f
 
     def create(
@@ -245,9 +246,7 @@ class AnnotationController(
             val newIm = imagedMomentController.create(d, entity)
             Annotation.fromImagedMoment(newIm, true)
         )
-        future.onComplete(_  => {
-            dao.close()
-        })
+        future.onComplete(_ => dao.close())(using ExecutionContext.parasitic)
         future
 
     /**
@@ -286,10 +285,40 @@ class AnnotationController(
                     )
         yield persistedAnnotations
 
-        future.onComplete(_ => obsDao.close())
+        future.onComplete(_ => obsDao.close())(using ExecutionContext.parasitic)
         future.foreach(publisher.created) // publish new annotations
         future
 
+    /**
+     * Insert annotations using a stateless bulk-ingest path. This is intended for large machine-generated batches. It
+     * avoids the persistence context, so the annotations are not re-read after insert. Images whose URLs already exist
+     * are not inserted again and are not included in the returned annotations.
+     *
+     * @param annotations
+     *   The annotations to insert. Each must have a videoReferenceUuid
+     * @return
+     *   The inserted annotations, in input order
+     */
+    def bulkIngest(
+        annotations: Iterable[Annotation]
+    )(using ec: ExecutionContext): Future[Seq[Annotation]] =
+        if annotations.isEmpty then return Future.successful(Nil)
+
+        val irDao = daoFactory.newImageReferenceDAO()
+        val urls  = annotations.flatMap(_.imageReferences.map(_.url)).toSeq.distinct
+
+        val future = for
+            existing  <- irDao.runReadOnlyTransaction(d => d.findByURLs(urls).map(_.getUrl.toExternalForm).toSet)
+            persisted <- Future(
+                             new AnnotationIngester(daoFactory.entityManagerFactory, daoFactory.bulkDataSource)
+                                 .ingest(annotations.toSeq, existing)
+                         )(using DatabaseExecutor.Default)
+        yield persisted
+
+        future.onComplete(_ => irDao.close())(using ExecutionContext.parasitic)
+        future.foreach(publisher.created)
+        future
+
     def update(observationUuid: UUID, annotation: Annotation)(implicit
         ec: ExecutionContext
     ): Future[Option[Annotation]] =
@@ -342,12 +371,12 @@ class AnnotationController(
                 activity
             )
         )
-        f.onComplete(_ => dao.close())
+        f.onComplete(_ => dao.close())(using ExecutionContext.parasitic)
 
         val g = f.flatMap(opt =>
             val dao1 = daoFactory.newObservationDAO()
             val ff   = dao1.runTransaction(d => d.findByUUID(uuid).map(Annotation.from(_, true)))
-            ff.onComplete(_ => dao1.close())
+            ff.onComplete(_ => dao1.close())(using ExecutionContext.parasitic)
             ff
         )
 
@@ -389,7 +418,7 @@ class AnnotationController(
         val h = f.flatMap(obs =>
             val dao1 = daoFactory.newObservationDAO()
             val ff   = dao.runTransaction(d => obs.flatMap(o => d.findByUUID(o.getUuid).map(Annotation.from(_, true))))
-            ff.onComplete(_ => dao1.close())
+            ff.onComplete(_ => dao1.close())(using ExecutionContext.parasitic)
             ff
         )
         h
@@ -404,13 +433,13 @@ class AnnotationController(
             val f         = dao.runTransaction(d =>
                 goodAnnos.flatMap(a => _updateRecordedTimestamp(d, a.observationUuid.get, a.recordedTimestamp))
             )
-            f.onComplete(_ => dao.close())
+            f.onComplete(_ => dao.close())(using ExecutionContext.parasitic)
             // --- After update find all the changes
             val g         = f.flatMap(obs =>
                 val dao1 = daoFactory.newObservationDAO()
                 val ff   =
                     dao1.runTransaction(d => obs.flatMap(o => d.findByUUID(o.getUuid).map(Annotation.from(_, true))))
-                ff.onComplete(_ => dao1.close())
+                ff.onComplete(_ => dao1.close())(using ExecutionContext.parasitic)
                 ff
             )
             g
@@ -536,5 +565,5 @@ class AnnotationController(
 //                        d.delete(v)
                     true
         )
-        f.onComplete(_ => obsDao.close())
+        f.onComplete(_ => obsDao.close())(using ExecutionContext.parasitic)
         f
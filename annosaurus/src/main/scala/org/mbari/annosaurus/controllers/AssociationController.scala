@@ -20,7 +20,7 @@ import io.reactivex.rxjava3.subjects.Subject
 import org.mbari.annosaurus.domain.{Association, ConceptAssociation, ConceptAssociationRequest, ConceptAssociationResponse}
 import org.mbari.annosaurus.etc.rxjava.EventBus
 import org.mbari.annosaurus.messaging.Publisher
-import org.mbari.annosaurus.repository.jpa.JPADAOFactory
+import org.mbari.annosaurus.repository.jpa.{BaseDAO, JPADAOFactory}
 import org.mbari.annosaurus.repository.jpa.entity.AssociationEntity
 import org.mbari.annosaurus.repository.{AssociationDAO, NotFoundInDatastoreException}
 
@@ -41,7 +41,7 @@ class AssociationController(
 
     private val publisher = Publisher(bus)
 
-    override def newDAO(): AssociationDAO[AssociationEntity] = daoFactory.newAssociationDAO()
+    override def newDAO(factory: JPADAOFactory): AssociationDAO[AssociationEntity] = factory.newAssociationDAO()
 
     override def transform(a: AssociationEntity): Association = Association.from(a, true)
 
@@ -86,7 +86,8 @@ class AssociationController(
         mimeType: Option[String] = None
     )(implicit ec: ExecutionContext): Future[Option[Association]] =
 
-        def fn(dao: ADAO): Option[Association] =
+        // Publish after exec so that a rolled back update is never announced
+        def fn(dao: ADAO): Option[(Association, Association)] =
             dao
                 .findByUUID(uuid)
                 .map(association =>
@@ -100,13 +101,22 @@ class AssociationController(
                         obsDao   = daoFactory.newObservationDAO(dao)
                         obs     <- obsDao.findByUUID(obsUUID)
                     do
+                        val oldVideoReferenceUuid = association.getObservation.getImagedMoment.getVideoReferenceUuid
                         association.getObservation.removeAssociation(association)
                         obs.addAssociation(association)
-                    publisher.created(Association.from(association))
-                    transform(association)
+                        publishMoved(
+                            classOf[AssociationEntity],
+                            association.getUuid,
+                            oldVideoReferenceUuid,
+                            obs.getImagedMoment.getVideoReferenceUuid
+                        )
+                    (Association.from(association), transform(association))
                 )
 
-        exec(fn)
+        exec(fn).map(_.map((updated, association) =>
+            publisher.created(updated)
+            association
+        ))
 
     def bulkUpdate(
         associations: Iterable[Association]
@@ -127,8 +137,15 @@ class AssociationController(
         exec(fn)
 
     def bulkDelete(uuids: Iterable[UUID])(implicit ec: ExecutionContext): Future[Unit] =
-        def fn(dao: ADAO): Unit = uuids.foreach(uuid => dao.deleteByUUID(uuid))
-        exec(fn)
+        bulkDeleteCount(uuids).map(_ => ())
+
+    /**
+     * Delete many associations using set-based deletes, in chunks with one transaction per chunk.
+     * @return
+     *   The number of associations deleted
+     */
+    def bulkDeleteCount(uuids: Iterable[UUID])(implicit ec: ExecutionContext): Future[Int] =
+        execBulkDelete(uuids)((dao, chunk) => dao.bulkDeleteByUuids(chunk)).map(_.associationUuids.size)
 
     def findByLinkName(
         linkName: String
@@ -164,8 +181,15 @@ class AssociationController(
         def fn(dao: ADAO): Long = dao.countByToConcept(concept)
         execReadOnly(fn)
 
-    def updateToConcept(oldToConcept: String, newToConcept: String)(implicit
+    /**
+     * Rename a toConcept in chunks, committing each chunk separately. See [[BaseController.execRename]]
+     *
+     * @param progress
+     *   Called with the number of associations renamed so far after each chunk commits
+     */
+    def updateToConcept(oldToConcept: String, newToConcept: String, progress: Int => Unit = _ => ())(implicit
         ec: ExecutionContext
     ): Future[Int] =
-        def fn(dao: ADAO): Int = dao.updateToConcept(oldToConcept, newToConcept)
-        exec(fn)
+        execRename(classOf[AssociationEntity], "toConcept", oldToConcept, newToConcept, progress)((dao, after) =>
+            dao.updateToConceptChunk(oldToConcept, newToConcept, after, BaseDAO.InClauseSize)
+        )
@@ -16,12 +16,16 @@
 
 package org.mbari.annosaurus.controllers
 
-import org.mbari.annosaurus.repository.DAO
-import org.mbari.annosaurus.repository.jpa.JPADAOFactory
-import org.mbari.annosaurus.repository.jpa.entity.IPersistentObject
+import org.mbari.annosaurus.etc.jdk.Loggers
+import org.mbari.annosaurus.etc.jdk.Loggers.given
+import org.mbari.annosaurus.repository.jpa.TransactionNotifier.Action
+import org.mbari.annosaurus.repository.jpa.entity.{AssociationEntity, IPersistentObject, ObservationEntity}
+import org.mbari.annosaurus.repository.jpa.{BaseDAO, JPADAOFactory, TransactionNotifier}
+import org.mbari.annosaurus.repository.{BulkDeleteResult, DAO}
 
 import java.util.UUID
 import scala.concurrent.{ExecutionContext, Future}
+import scala.jdk.CollectionConverters.*
 
 /**
  * @author
@@ -32,27 +36,119 @@ trait BaseController[A <: IPersistentObject, B <: DAO[A], C]:
 
     def daoFactory: JPADAOFactory
 
-    def newDAO(): B
+    /** Create a DAO from the given factory */
+    def newDAO(factory: JPADAOFactory): B
+
+    def newDAO(): B = newDAO(daoFactory)
 
     def transform(a: A): C
 
+    /**
+     * Execute a transaction. The transaction runs on the bounded [[org.mbari.annosaurus.etc.jdbc.DatabaseExecutor]]
+     * and cleanup runs on the completing thread, so a full executor queue can never skip closing the DAO.
+     */
     protected def exec[T](fn: B => T)(implicit ec: ExecutionContext): Future[T] =
         val dao = newDAO()
         val f   = dao.runTransaction(fn)
-        f.onComplete(_ => dao.close())
+        f.onComplete(_ =>
+            daoFactory.readRouter.markWrite()
+            dao.close()
+        )(using ExecutionContext.parasitic)
         f
 
     /**
      * Execute a read-only operation. This uses a read-only transaction that does not flush changes to the database,
      * preventing Hibernate from attempting to UPDATE entities that were loaded but not modified. Use this for all
-     * read-only operations (findByUUID, findAll, etc.) to support read-only database connections.
+     * read-only operations (findByUUID, findAll, etc.) to support read-only database connections. Runs on a read
+     * replica when replicas are configured.
+     *
+     * @param readYourWrites
+     *   true if the read must see writes this instance just made. See [[JPADAOFactory.readOnly]]
      */
-    protected def execReadOnly[T](fn: B => T)(implicit ec: ExecutionContext): Future[T] =
-        val dao = newDAO()
+    protected def execReadOnly[T](fn: B => T, readYourWrites: Boolean = false)(implicit
+        ec: ExecutionContext
+    ): Future[T] =
+        val dao = newDAO(daoFactory.readOnly(readYourWrites))
         val f   = dao.runReadOnlyTransaction(fn)
-        f.onComplete(_ => dao.close())
+        f.onComplete(_ => dao.close())(using ExecutionContext.parasitic)
+        f
+
+    /**
+     * Run a set-based delete over chunks of UUIDs. Each chunk runs in its own transaction, one after another, and
+     * REMOVE messages for a chunk are published only after it commits. A failed chunk stops the remaining ones; the
+     * chunks before it stay deleted.
+     */
+    protected def execBulkDelete(uuids: Iterable[UUID])(fn: (B, Seq[UUID]) => BulkDeleteResult)(implicit
+        ec: ExecutionContext
+    ): Future[BulkDeleteResult] =
+        val dao    = newDAO()
+        val chunks = uuids.toSeq.distinct.grouped(BaseDAO.InClauseSize).toSeq
+        val f      = chunks.foldLeft(Future.successful(BulkDeleteResult())) { (acc, chunk) =>
+            acc.flatMap(total =>
+                dao
+                    .runTransaction(d => fn(d, chunk))
+                    .map(result =>
+                        publishRemoved(result)
+                        total ++ result
+                    )
+            )
+        }
+        f.onComplete(_ => dao.close())(using ExecutionContext.parasitic)
         f
 
+    /**
+     * Rename a value in keyset-ordered chunks. Each chunk runs in its own short transaction so that renaming a common
+     * concept doesn't lock every matching row at once. `progress` is called with the running total after each chunk
+     * commits. When done, a single rename message is published instead of one message per row. A failed chunk stops
+     * the rename; the chunks before it stay renamed and running the rename again finishes the job.
+     *
+     * @param fn
+     *   Renames the chunk of rows after the given uuid and returns their uuids, in database order
+     */
+    protected def execRename(
+        entityClass: Class[?],
+        field: String,
+        oldValue: String,
+        newValue: String,
+        progress: Int => Unit
+    )(fn: (B, UUID) => Seq[UUID])(implicit ec: ExecutionContext): Future[Int] =
+        val dao    = newDAO()
+        val rename = s"${entityClass.getSimpleName} $field '$oldValue' to '$newValue'"
+
+        def next(after: UUID, total: Int): Future[Int] =
+            dao.runTransaction(d => fn(d, after))
+                .flatMap(uuids =>
+                    val n = total + uuids.size
+                    if uuids.nonEmpty then
+                        BaseController.log.atDebug.log(s"Renamed $n $rename")
+                        progress(n)
+                    // Resume after the last uuid in database order. java.util.UUID sorts differently
+                    if uuids.size < BaseDAO.InClauseSize then Future.successful(n)
+                    else next(uuids.last, n)
+                )
+
+        val f = next(BaseController.FirstUuid, 0)
+        f.foreach(n =>
+            BaseController.log.atInfo.log(s"Renamed $n $rename")
+            if n > 0 then TransactionNotifier.publishRename(entityClass, field, oldValue, newValue, n)
+        )
+        f.onComplete(_ => dao.close())(using ExecutionContext.parasitic)
+        f
+
+    /**
+     * Rows that move to another video are announced by the lifecycle callbacks on the new video's NATS subject only.
+     * Call this inside the transaction to announce the row on the old video's subject as well.
+     */
+    protected def publishMoved[T](entityClass: Class[T], uuid: UUID, from: UUID, to: UUID): Unit =
+        if from != null && from != to then
+            TransactionNotifier.publish(Action.UPDATE, entityClass, from, java.util.List.of(uuid))
+
+    private def publishRemoved(result: BulkDeleteResult): Unit =
+        val associationUuids = result.associationUuids.asJava
+        val observationUuids = result.observationUuids.asJava
+        TransactionNotifier.publish(Action.REMOVE, classOf[AssociationEntity], associationUuids)
+        TransactionNotifier.publish(Action.REMOVE, classOf[ObservationEntity], observationUuids)
+
     def delete(uuid: UUID)(implicit ec: ExecutionContext): Future[Boolean] =
         def fn(dao: B): Boolean =
             dao.findByUUID(uuid) match
@@ -69,4 +165,12 @@ trait BaseController[A <: IPersistentObject, B <: DAO[A], C]:
         execReadOnly(d => d.findAll(limit, offset).map(transform))
 
     def findByUUID(uuid: UUID)(implicit ec: ExecutionContext): Future[Option[C]] =
-        execReadOnly(d => d.findByUUID(uuid).map(transform))
+        // Clients often fetch what they just created or updated
+        execReadOnly(d => d.findByUUID(uuid).map(transform), readYourWrites = true)
+
+object BaseController:
+
+    private val log = Loggers(classOf[BaseController[?, ?, ?]])
+
+    /** Sorts before every other uuid. The starting point for keyset-ordered chunking */
+    val FirstUuid: UUID = new UUID(0L, 0L)
@@ -18,12 +18,13 @@ package org.mbari.annosaurus.controllers
 
 import org.mbari.annosaurus.domain.CachedAncillaryDatum
 import org.mbari.annosaurus.etc.jdk.Loggers.given
+import org.mbari.annosaurus.etc.vertx.BatchSink
 import org.mbari.annosaurus.repository.jpa.entity.{CachedAncillaryDatumEntity, ImagedMomentEntity}
 import org.mbari.annosaurus.repository.jpa.{BaseDAO, JPADAOFactory}
 import org.mbari.annosaurus.repository.{CachedAncillaryDatumDAO, NotFoundInDatastoreException}
-import org.mbari.annosaurus.util.FastCollator
+import org.mbari.annosaurus.util.{FastCollator, LinearInterpolator, LongCollator}
 
-import java.time.Duration
+import java.time.{Duration, Instant}
 import java.util.UUID
 import scala.concurrent.{ExecutionContext, Future}
 
@@ -40,8 +41,8 @@ class CachedAncillaryDatumController(val daoFactory: JPADAOFactory)
     protected type ADDAO = CachedAncillaryDatumDAO[CachedAncillaryDatumEntity]
     private val log = System.getLogger(getClass.getName)
 
-    override def newDAO(): CachedAncillaryDatumDAO[CachedAncillaryDatumEntity] =
-        daoFactory.newCachedAncillaryDatumDAO()
+    override def newDAO(factory: JPADAOFactory): CachedAncillaryDatumDAO[CachedAncillaryDatumEntity] =
+        factory.newCachedAncillaryDatumDAO()
 
     override def transform(a: CachedAncillaryDatumEntity): CachedAncillaryDatum =
         CachedAncillaryDatum.from(a, true)
@@ -291,10 +292,28 @@ class CachedAncillaryDatumController(val daoFactory: JPADAOFactory)
             im.setAncillaryDatum(d)
             im.getAncillaryDatum
 
+    /**
+     * Merge ancillary data into the imaged moments of a video by matching recorded timestamps.
+     *
+     * @param data
+     *   The ancillary data. Only data with a recordedTimestamp is used
+     * @param videoReferenceUuid
+     *   The video whose imaged moments will be updated
+     * @param tolerance
+     *   The maximum allowed time between an imaged moment and the data used for it
+     * @param interpolate
+     *   If false, each imaged moment gets the values of the nearest datum within the tolerance. If true, numeric
+     *   values are linearly interpolated between the two bracketing data (when both are within the tolerance).
+     *   Orientation angles (phi, theta, psi) are interpolated as degrees along the shortest arc and non-numeric values
+     *   are taken from the nearer datum.
+     * @return
+     *   The ancillary data that was created or updated
+     */
     def merge(
         data: Iterable[CachedAncillaryDatum],
         videoReferenceUuid: UUID,
-        tolerance: Duration = Duration.ofMillis(7500)
+        tolerance: Duration = Duration.ofMillis(7500),
+        interpolate: Boolean = false
     )(implicit ec: ExecutionContext): Future[Seq[CachedAncillaryDatum]] =
 
         def fn(dao: ADDAO): Seq[CachedAncillaryDatum] =
@@ -302,33 +321,213 @@ class CachedAncillaryDatumController(val daoFactory: JPADAOFactory)
             val imagedMoments = imDao
                 .findByVideoReferenceUUID(videoReferenceUuid)
                 .filter(ir => ir.getRecordedTimestamp != null)
+                .toIndexedSeq
+            mergeInto(dao, imagedMoments, data, tolerance, interpolate)
+
+        exec(fn)
+
+    /**
+     * Same as `merge` but only the imaged moments recorded in the time window `[start, end)` are updated. Used to merge
+     * a large upload one batch at a time.
+     */
+    def mergeBetween(
+        data: Iterable[CachedAncillaryDatum],
+        videoReferenceUuid: UUID,
+        start: Instant,
+        end: Instant,
+        tolerance: Duration = Duration.ofMillis(7500),
+        interpolate: Boolean = false
+    )(implicit ec: ExecutionContext): Future[Seq[CachedAncillaryDatum]] =
+
+        def fn(dao: ADDAO): Seq[CachedAncillaryDatum] =
+            val imDao         = daoFactory.newImagedMomentDAO(dao)
+            val imagedMoments = imDao
+                .findByVideoReferenceUUIDAndTimestamps(videoReferenceUuid, start, end)
+                .filter(ir => ir.getRecordedTimestamp != null && ir.getRecordedTimestamp.isBefore(end))
+                .toIndexedSeq
+            mergeInto(dao, imagedMoments, data, tolerance, interpolate)
+
+        if end.isAfter(start) then exec(fn)
+        else Future.successful(Nil)
 
-            val usefulData = data.filter(_.recordedTimestamp.isDefined)
+    /**
+     * A sink for streamed uploads that merges each batch into the imaged moments of a video. Records should arrive in
+     * time order. Each batch only updates the imaged moments between the end of the previous batch and the last
+     * timestamp in this batch; the data within `tolerance` of that boundary is carried into the next batch so that
+     * moments near a boundary are matched exactly as they would be by `merge`.
+     */
+    def newMergeSink(
+        videoReferenceUuid: UUID,
+        tolerance: Duration = Duration.ofMillis(7500),
+        interpolate: Boolean = false
+    )(implicit ec: ExecutionContext): BatchSink[CachedAncillaryDatum] =
+        new BatchSink[CachedAncillaryDatum]:
+            private var carry: Seq[CachedAncillaryDatum] = Nil
+            private var windowStart: Option[Instant]     = None
+
+            private def millis(d: CachedAncillaryDatum): Long = d.recordedTimestamp.get.toEpochMilli
+
+            override def accept(batch: Seq[CachedAncillaryDatum]): Future[Long] =
+                val data = (carry ++ batch.filter(_.recordedTimestamp.isDefined)).sortBy(millis)
+                if data.isEmpty then Future.successful(0L)
+                else
+                    val windowEnd = data.last.recordedTimestamp.get
+                    val start     = windowStart.getOrElse(data.head.recordedTimestamp.get.minus(tolerance))
+                    val boundary  = windowEnd.minus(tolerance).toEpochMilli
+                    carry = data.filter(millis(_) >= boundary)
+                    if windowEnd.isAfter(start) then windowStart = Some(windowEnd)
+                    mergeBetween(data, videoReferenceUuid, start, windowEnd, tolerance, interpolate)
+                        .map(_.size.toLong)
+
+            override def complete(): Future[Long] =
+                if carry.isEmpty then Future.successful(0L)
+                else
+                    val start = windowStart.getOrElse(carry.head.recordedTimestamp.get.minus(tolerance))
+                    val end   = carry.last.recordedTimestamp.get.plus(tolerance).plusMillis(1)
+                    mergeBetween(carry, videoReferenceUuid, start, end, tolerance, interpolate)
+                        .map(_.size.toLong)
 
-            def imagedMomentToMillis(im: ImagedMomentEntity) =
-                im.getRecordedTimestamp.toEpochMilli.toDouble
+    /**
+     * A sink for streamed uploads that creates or updates each batch of data by its imagedMomentUuid. Each batch is
+     * committed in its own transaction.
+     */
+    def newBulkCreateOrUpdateSink()(implicit ec: ExecutionContext): BatchSink[CachedAncillaryDatum] =
+        new BatchSink[CachedAncillaryDatum]:
+            override def accept(batch: Seq[CachedAncillaryDatum]): Future[Long] =
+                bulkCreateOrUpdate(batch).map(_.size.toLong)
 
-            def datumToMillis(cd: CachedAncillaryDatum) =
-                cd.recordedTimestamp.map(_.toEpochMilli).getOrElse(-1L).toDouble
+    /**
+     * This method should be called within a transaction!
+     */
+    private def mergeInto(
+        dao: ADDAO,
+        imagedMoments: IndexedSeq[ImagedMomentEntity],
+        data: Iterable[CachedAncillaryDatum],
+        tolerance: Duration,
+        interpolate: Boolean
+    ): Seq[CachedAncillaryDatum] =
+        val usefulData = data.filter(_.recordedTimestamp.isDefined).toIndexedSeq
 
-            if imagedMoments.isEmpty || usefulData.isEmpty then Seq.empty
+        if imagedMoments.isEmpty || usefulData.isEmpty then Seq.empty
+        else
+            val imagedMomentMillis = new Array[Long](imagedMoments.size)
+            var i                  = 0
+            while i < imagedMomentMillis.length do
+                imagedMomentMillis(i) = imagedMoments(i).getRecordedTimestamp.toEpochMilli
+                i += 1
+
+            val datumMillis = new Array[Long](usefulData.size)
+            var j           = 0
+            while j < datumMillis.length do
+                datumMillis(j) = usefulData(j).recordedTimestamp.get.toEpochMilli
+                j += 1
+
+            val merged = Seq.newBuilder[CachedAncillaryDatum]
+
+            def save(im: ImagedMomentEntity, datum: CachedAncillaryDatum): Unit =
+                val d = dao.newPersistentObject(datum.toEntity)
+                merged += transform(createOrUpdate(d, im))
+
+            if interpolate then
+                val interpolated = interpolateData(imagedMomentMillis, usefulData, datumMillis, tolerance.toMillis)
+                var k            = 0
+                while k < interpolated.length do
+                    val datum = interpolated(k)
+                    if datum != null then save(imagedMoments(k), datum)
+                    k += 1
             else
-                val mergedData = FastCollator(
-                    imagedMoments,
-                    imagedMomentToMillis,
-                    usefulData,
-                    datumToMillis,
-                    tolerance.toMillis.toDouble
-                )
+                val collation = FastCollator.collate(imagedMomentMillis, datumMillis, tolerance.toMillis)
+                val indexA    = collation.indexA()
+                val indexB    = collation.indexB()
+                var k         = 0
+                while k < indexA.length do
+                    val iB = indexB(k)
+                    if iB >= 0 then save(imagedMoments(indexA(k)), usefulData(iB))
+                    k += 1
 
-                for
-                    (im, opt) <- mergedData
-                    cad       <- opt
-                yield
-                    val d = dao.newPersistentObject(cad.toEntity)
-                    transform(createOrUpdate(d, im))
+            merged.result()
 
-        exec(fn)
+    /**
+     * Interpolates the data onto the requested times.
+     *
+     * @return
+     *   An array, in the same order as `targetMillis`, of interpolated data. Cells are null where no data was within
+     *   the tolerance.
+     */
+    private def interpolateData(
+        targetMillis: Array[Long],
+        data: IndexedSeq[CachedAncillaryDatum],
+        dataMillis: Array[Long],
+        tolerance: Long
+    ): Array[CachedAncillaryDatum] =
+        // Sort both sides by time so the brackets can be found in one sweep
+        val targetOrder = LongCollator.sortIndices(targetMillis)
+        val dataOrder   = LongCollator.sortIndices(dataMillis)
+        val xi          = targetOrder.map(targetMillis(_))
+        val x           = dataOrder.map(dataMillis(_))
+        val sorted      = dataOrder.map(data(_))
+        val brackets    = LinearInterpolator.brackets(x, xi, tolerance)
+
+        def column(fn: CachedAncillaryDatum => Option[Double]): Array[Double] =
+            val ys = new Array[Double](sorted.length)
+            var i  = 0
+            while i < ys.length do
+                ys(i) = fn(sorted(i)).getOrElse(Double.NaN)
+                i += 1
+            ys
+
+        def linear(fn: CachedAncillaryDatum => Option[Double]): Array[Double] =
+            LinearInterpolator.interpolate(brackets, column(fn))
+
+        def degrees(fn: CachedAncillaryDatum => Option[Double]): Array[Double] =
+            LinearInterpolator.interpolateDegrees(brackets, column(fn))
+
+        val latitude           = linear(_.latitude)
+        val longitude          = linear(_.longitude)
+        val depthMeters        = linear(_.depthMeters.map(_.toDouble))
+        val altitude           = linear(_.altitude.map(_.toDouble))
+        val salinity           = linear(_.salinity.map(_.toDouble))
+        val temperatureCelsius = linear(_.temperatureCelsius.map(_.toDouble))
+        val oxygenMlL          = linear(_.oxygenMlL.map(_.toDouble))
+        val pressureDbar       = linear(_.pressureDbar.map(_.toDouble))
+        val lightTransmission  = linear(_.lightTransmission.map(_.toDouble))
+        val x0                 = linear(_.x)
+        val y0                 = linear(_.y)
+        val z0                 = linear(_.z)
+        val phi                = degrees(_.phi)
+        val theta              = degrees(_.theta)
+        val psi                = degrees(_.psi)
+
+        def d(v: Double): Option[Double] = if v.isNaN then None else Some(v)
+        def f(v: Double): Option[Float]  = if v.isNaN then None else Some(v.toFloat)
+
+        val interpolated = new Array[CachedAncillaryDatum](targetMillis.length)
+        var k            = 0
+        while k < xi.length do
+            val nearest = brackets.nearest(k)
+            if nearest >= 0 then
+                val source = sorted(nearest)
+                interpolated(targetOrder(k)) = CachedAncillaryDatum(
+                    latitude = d(latitude(k)),
+                    longitude = d(longitude(k)),
+                    depthMeters = f(depthMeters(k)),
+                    altitude = f(altitude(k)),
+                    crs = source.crs,
+                    salinity = f(salinity(k)),
+                    temperatureCelsius = f(temperatureCelsius(k)),
+                    oxygenMlL = f(oxygenMlL(k)),
+                    pressureDbar = f(pressureDbar(k)),
+                    lightTransmission = f(lightTransmission(k)),
+                    x = d(x0(k)),
+                    y = d(y0(k)),
+                    z = d(z0(k)),
+                    posePositionUnits = source.posePositionUnits,
+                    phi = d(phi(k)),
+                    theta = d(theta(k)),
+                    psi = d(psi(k))
+                )
+            k += 1
+        interpolated
 
     def deleteByVideoReferenceUuid(
         videoReferenceUuid: UUID
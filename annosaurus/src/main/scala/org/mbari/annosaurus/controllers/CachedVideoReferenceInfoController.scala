@@ -36,8 +36,8 @@ class CachedVideoReferenceInfoController(val daoFactory: JPADAOFactory)
 
     protected type VRDAO = CachedVideoReferenceInfoDAO[CachedVideoReferenceInfoEntity]
 
-    override def newDAO(): CachedVideoReferenceInfoDAO[CachedVideoReferenceInfoEntity] =
-        daoFactory.newCachedVideoReferenceInfoDAO()
+    override def newDAO(factory: JPADAOFactory): CachedVideoReferenceInfoDAO[CachedVideoReferenceInfoEntity] =
+        factory.newCachedVideoReferenceInfoDAO()
 
     override def transform(a: CachedVideoReferenceInfoEntity): CachedVideoReferenceInfo =
         CachedVideoReferenceInfo.from(a, true)
@@ -16,9 +16,9 @@
 
 package org.mbari.annosaurus.controllers
 
-import org.mbari.annosaurus.domain.{Image, ImageCreateSC}
+import org.mbari.annosaurus.domain.{Image, ImageCreateResult, ImageCreateSC}
 import org.mbari.annosaurus.repository.ImagedMomentDAO
-import org.mbari.annosaurus.repository.jpa.{BaseDAO, JPADAOFactory}
+import org.mbari.annosaurus.repository.jpa.JPADAOFactory
 import org.mbari.annosaurus.repository.jpa.entity.{ImageReferenceEntity, ImagedMomentEntity}
 import org.mbari.vcr4j.time.Timecode
 import org.mbari.annosaurus.etc.jdk.Loggers.given
@@ -26,6 +26,7 @@ import org.mbari.annosaurus.etc.jdk.Loggers.given
 import java.net.URL
 import java.time.{Duration, Instant}
 import java.util.UUID
+import scala.collection.mutable
 import scala.concurrent.{ExecutionContext, Future}
 import scala.jdk.CollectionConverters.*
 
@@ -37,9 +38,9 @@ class ImageController(daoFactory: JPADAOFactory):
     private val log = System.getLogger(getClass.getName)
 
     def findByUUID(uuid: UUID)(implicit ec: ExecutionContext): Future[Option[Image]] =
-        val irDao = daoFactory.newImageReferenceDAO()
+        val irDao = daoFactory.readOnly(readYourWrites = true).newImageReferenceDAO()
         val f     = irDao.runReadOnlyTransaction(d => irDao.findByUUID(uuid))
-        f.onComplete(t => irDao.close())
+        f.onComplete(_ => irDao.close())(using ExecutionContext.parasitic)
         f.map(_.map(Image.from(_, true)))
 
     def findByVideoReferenceUUID(
@@ -47,32 +48,32 @@ class ImageController(daoFactory: JPADAOFactory):
         limit: Option[Int] = None,
         offset: Option[Int] = None
     )(implicit ec: ExecutionContext): Future[Seq[Image]] =
-        val dao = daoFactory.newImagedMomentDAO()
+        val dao = daoFactory.readOnly().newImagedMomentDAO()
         val f   =
             dao.runReadOnlyTransaction(d =>
                 d.findByVideoReferenceUUID(videoReferenceUUID, limit, offset)
                     .flatMap(_.getImageReferences.asScala)
                     .map(Image.from(_, true))
             ).map(_.toSeq)
-        f.onComplete(t => dao.close())
+        f.onComplete(_ => dao.close())(using ExecutionContext.parasitic)
         f
 
     def findByURL(url: URL)(implicit ec: ExecutionContext): Future[Option[Image]] =
-        val dao = daoFactory.newImageReferenceDAO()
+        val dao = daoFactory.readOnly(readYourWrites = true).newImageReferenceDAO()
         val f   = dao.runReadOnlyTransaction(d =>
             d.findByURL(url)
                 .map(Image.from(_, true))
         )
-        f.onComplete(_ => dao.close())
+        f.onComplete(_ => dao.close())(using ExecutionContext.parasitic)
         f
 
     def findByImageName(name: String)(implicit ec: ExecutionContext): Future[Seq[Image]] =
-        val dao = daoFactory.newImageReferenceDAO()
+        val dao = daoFactory.readOnly().newImageReferenceDAO()
         val f   = dao.runReadOnlyTransaction(d =>
             d.findByImageName(name)
                 .map(Image.from(_, true))
         )
-        f.onComplete(t => dao.close())
+        f.onComplete(_ => dao.close())(using ExecutionContext.parasitic)
         f
 
     /**
@@ -85,62 +86,62 @@ class ImageController(daoFactory: JPADAOFactory):
     def bulkCreate(imageCreates: Seq[ImageCreateSC])(using
         ec: ExecutionContext
     ): Future[Seq[Image]] =
-        val imDao      = daoFactory.newImagedMomentDAO()
-        val irDao      = daoFactory.newImageReferenceDAO()
-
-        val entityManager = imDao match
-            case jpaDao: BaseDAO[?] => 
-                jpaDao.entityManager.setFlushMode(jakarta.persistence.FlushModeType.COMMIT) // batch flush at the end of the transaction
-                Some(jpaDao.entityManager)
-            case _ =>
-                log.atWarn.log(
-                    "DAO is not a JPA DAO. Bulk create may be inefficient as it relies on batch flushing and pre-fetching existing imaged moments by video reference UUID."
-                )
-                None
+        bulkCreateWithStatus(imageCreates).map(_.filter(_.created).map(_.image))
 
-        val candidates = imageCreates.distinctBy(_.url)
-        // prefilter
+    /**
+     * Creates many images in one transaction. Existing images are found with a set-based URL lookup (one query per
+     * chunk of URLs rather than one per image). The missing ones are inserted with
+     * [[ImagedMomentController.bulkCreate]], which reuses existing imaged moments and flushes in JDBC batches.
+     *
+     * @param imageCreates
+     *   The image data to create. Duplicate URLs are collapsed to the first occurrence
+     * @return
+     *   One result per distinct URL, in input order, marking whether it was created or already existed
+     */
+    def bulkCreateWithStatus(imageCreates: Seq[ImageCreateSC])(using
+        ec: ExecutionContext
+    ): Future[Seq[ImageCreateResult]] =
+        // java.net.URL.equals resolves host names, so key by the string form
+        val candidates = imageCreates.distinctBy(_.url.toExternalForm)
         if candidates.isEmpty then return Future.successful(Seq.empty)
 
-        var n = 0 // counter for batch flushing
-        val f          = for
-            newOnes      <- irDao.runTransaction(d => candidates.filter(c => d.findByURL(c.url).isEmpty))
-            newlyCreated <- imDao.runTransaction(d =>
-                                for ic <- newOnes
-                                yield
-                                    val imagedMoment   = ImagedMomentController
-                                        .findOrCreateImagedMoment(
-                                            imDao,
-                                            ic.video_reference_uuid,
-                                            ic.timecode.map(new Timecode(_)),
-                                            ic.recorded_timestamp,
-                                            ic.elapsed_time_millis.map(Duration.ofMillis)
-                                        )
-                                    val imageReference = irDao.newPersistentObject(
-                                        ic.url,
-                                        ic.description,
-                                        ic.height_pixels,
-                                        ic.width_pixels,
-                                        ic.format
-                                    )
-                                    imagedMoment.addImageReference(imageReference)
-                                    n += 1
-                                    if (n == imDao.BatchSize) then
-                                        log.atTrace.log(() => s"Flushing batch of $n imaged moments")
-                                        imDao.flush()
-                                        entityManager.foreach(_.clear()) // clear persistence context to avoid memory issues and ensure we return detached entities
-                                        n = 0
-                                    imageReference
-                            )
-            persisted    <-
-                irDao.runTransaction(d => newlyCreated.flatMap(i => d.findByUUID(i.getUuid).map(Image.from(_, true))))
-        yield 
-            persisted
+        val irDao = daoFactory.newImageReferenceDAO()
+        val f     = irDao.runTransaction(d =>
+            val existing = d
+                .findByURLs(candidates.map(_.url))
+                .map(ir => ir.getUrl.toExternalForm -> Image.from(ir, true))
+                .toMap
+
+            val newOnes = candidates.filterNot(c => existing.contains(c.url.toExternalForm))
+            val created = mutable.Map.empty[String, ImageReferenceEntity]
+            val sourceIMs = newOnes.map(ic =>
+                val imagedMoment   = new ImagedMomentEntity(
+                    ic.video_reference_uuid,
+                    ic.recorded_timestamp.orNull,
+                    ic.timecode.map(new Timecode(_)).orNull,
+                    ic.elapsed_time_millis.map(Duration.ofMillis).orNull
+                )
+                val imageReference = d.newPersistentObject(
+                    ic.url,
+                    ic.description,
+                    ic.height_pixels,
+                    ic.width_pixels,
+                    ic.format
+                )
+                imagedMoment.addImageReference(imageReference)
+                created.put(ic.url.toExternalForm, imageReference)
+                imagedMoment
+            )
+            new ImagedMomentController(daoFactory).bulkCreate(d, sourceIMs)
 
-        f.onComplete(t => {
-            imDao.close()
-            irDao.close()
-        })
+            candidates.map(c =>
+                val key = c.url.toExternalForm
+                existing.get(key) match
+                    case Some(image) => ImageCreateResult(false, image)
+                    case None        => ImageCreateResult(true, Image.from(created(key), true))
+            )
+        )
+        f.onComplete(_ => irDao.close())(using ExecutionContext.parasitic)
         f
 
     def create(
@@ -173,7 +174,7 @@ class ImageController(daoFactory: JPADAOFactory):
             d.flush()
             Image.from(imageReference, true)
         )
-        f.onComplete(t => irDao.close())
+        f.onComplete(_ => irDao.close())(using ExecutionContext.parasitic)
         f
 
     /**
@@ -249,7 +250,7 @@ class ImageController(daoFactory: JPADAOFactory):
                 .getOrElse(Future(None))
         )
 
-        g.onComplete(_ => irDao.close())
+        g.onComplete(_ => irDao.close())(using ExecutionContext.parasitic)
         g
 
     def delete(uuid: UUID)(implicit ec: ExecutionContext): Future[Boolean] =
@@ -270,7 +271,7 @@ class ImageController(daoFactory: JPADAOFactory):
 //                        d.delete(imageReference)
                     true
         )
-        f.onComplete(t => irDao.close())
+        f.onComplete(_ => irDao.close())(using ExecutionContext.parasitic)
         f
 
     private def move(
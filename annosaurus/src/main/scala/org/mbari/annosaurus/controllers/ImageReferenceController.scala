@@ -37,7 +37,7 @@ class ImageReferenceController(val daoFactory: JPADAOFactory)
 
     type IRDAO = ImageReferenceDAO[ImageReferenceEntity]
 
-    override def newDAO(): IRDAO = daoFactory.newImageReferenceDAO()
+    override def newDAO(factory: JPADAOFactory): IRDAO = factory.newImageReferenceDAO()
 
     override def transform(a: ImageReferenceEntity): ImageReference = ImageReference.from(a, true)
 
@@ -51,7 +51,7 @@ class ImagedMomentController(val daoFactory: JPADAOFactory, bus: Subject[Any] =
 //    daoFactory.asInstanceOf[JPADAOFactory].entityManagerFactory
 //  )
 
-    override def newDAO(): IMDAO = daoFactory.newImagedMomentDAO()
+    override def newDAO(factory: JPADAOFactory): IMDAO = factory.newImagedMomentDAO()
 
     override def transform(a: ImagedMomentEntity): ImagedMoment = ImagedMoment.from(a, true)
 
@@ -137,9 +137,9 @@ class ImagedMomentController(val daoFactory: JPADAOFactory, bus: Subject[Any] =
         limit: Option[Int] = None,
         offset: Option[Int] = None
     )(implicit ec: ExecutionContext): Future[Seq[ImagedMoment]] =
-        val imDao = daoFactory.newImagedMomentDAO()
+        val imDao = daoFactory.readOnly().newImagedMomentDAO()
         val f     = imDao.runReadOnlyTransaction(d => d.findBetweenUpdatedDates(start, end, limit, offset).map(transform))
-        f.onComplete(_ => imDao.close())
+        f.onComplete(_ => imDao.close())(using ExecutionContext.parasitic)
         f.map(_.toSeq)
 
     def streamBetweenUpdatedDates(
@@ -148,7 +148,7 @@ class ImagedMomentController(val daoFactory: JPADAOFactory, bus: Subject[Any] =
         limit: Option[Int] = None,
         offset: Option[Int] = None
     ): (Closeable, java.util.stream.Stream[ImagedMomentEntity]) =
-        val dao = daoFactory.newImagedMomentDAO()
+        val dao = daoFactory.readOnly().newImagedMomentDAO()
         (() => dao.close(), dao.streamBetweenUpdatedDates(start, end, limit, offset))
 
     def streamVideoReferenceUuidsBetweenUpdatedDates(
@@ -157,7 +157,7 @@ class ImagedMomentController(val daoFactory: JPADAOFactory, bus: Subject[Any] =
         limit: Option[Int] = None,
         offset: Option[Int] = None
     ): (Closeable, java.util.stream.Stream[UUID]) =
-        val dao = daoFactory.newImagedMomentDAO()
+        val dao = daoFactory.readOnly().newImagedMomentDAO()
         (
             () => dao.close(),
             dao.streamVideoReferenceUuidsBetweenUpdatedDates(start, end, limit, offset)
@@ -166,9 +166,9 @@ class ImagedMomentController(val daoFactory: JPADAOFactory, bus: Subject[Any] =
     def countBetweenUpdatedDates(start: Instant, end: Instant)(implicit
         ec: ExecutionContext
     ): Future[Int] =
-        val imDao = daoFactory.newImagedMomentDAO()
+        val imDao = daoFactory.readOnly().newImagedMomentDAO()
         val f     = imDao.runReadOnlyTransaction(d => d.countBetweenUpdatedDates(start, end))
-        f.onComplete(_ => imDao.close())
+        f.onComplete(_ => imDao.close())(using ExecutionContext.parasitic)
         f
 
     def countAllGroupByVideoReferenceUUID()(implicit ec: ExecutionContext): Future[Map[UUID, Int]] =
@@ -180,9 +180,9 @@ class ImagedMomentController(val daoFactory: JPADAOFactory, bus: Subject[Any] =
     def findByConcept(concept: String, limit: Option[Int] = None, offset: Option[Int] = None)(implicit
         ec: ExecutionContext
     ): Future[Iterable[ImagedMoment]] =
-        val imDao = daoFactory.newImagedMomentDAO()
+        val imDao = daoFactory.readOnly().newImagedMomentDAO()
         val f     = imDao.runReadOnlyTransaction(d => d.findByConcept(concept, limit, offset).map(transform))
-        f.onComplete(_ => imDao.close())
+        f.onComplete(_ => imDao.close())(using ExecutionContext.parasitic)
         f
 
     def streamByConcept(
@@ -190,13 +190,13 @@ class ImagedMomentController(val daoFactory: JPADAOFactory, bus: Subject[Any] =
         limit: Option[Int] = None,
         offset: Option[Int] = None
     ): (Closeable, java.util.stream.Stream[ImagedMomentEntity]) =
-        val dao = daoFactory.newImagedMomentDAO()
+        val dao = daoFactory.readOnly().newImagedMomentDAO()
         (() => dao.close(), dao.streamByConcept(concept, limit, offset))
 
     def countByConcept(concept: String)(implicit ec: ExecutionContext): Future[Int] =
-        val imDao = daoFactory.newImagedMomentDAO()
+        val imDao = daoFactory.readOnly().newImagedMomentDAO()
         val f     = imDao.runReadOnlyTransaction(d => d.countByConcept(concept))
-        f.onComplete(_ => imDao.close())
+        f.onComplete(_ => imDao.close())(using ExecutionContext.parasitic)
         f
 
     def findByConceptWithImages(
@@ -204,32 +204,29 @@ class ImagedMomentController(val daoFactory: JPADAOFactory, bus: Subject[Any] =
         limit: Option[Int] = None,
         offset: Option[Int] = None
     )(implicit ec: ExecutionContext): Future[Iterable[ImagedMoment]] =
-        val imDao = daoFactory.newImagedMomentDAO()
+        val imDao = daoFactory.readOnly().newImagedMomentDAO()
         val f     = imDao.runReadOnlyTransaction(d => d.findByConceptWithImages(concept, limit, offset).map(transform))
-        f.onComplete(_ => imDao.close())
+        f.onComplete(_ => imDao.close())(using ExecutionContext.parasitic)
         f
 
     def countByConceptWithImages(concept: String)(implicit ec: ExecutionContext): Future[Int] =
-        val imDao = daoFactory.newImagedMomentDAO()
+        val imDao = daoFactory.readOnly().newImagedMomentDAO()
         val f     = imDao.runReadOnlyTransaction(d => d.countByConceptWithImages(concept))
-        f.onComplete(_ => imDao.close())
+        f.onComplete(_ => imDao.close())(using ExecutionContext.parasitic)
         f
 
     def countModifiedBeforeDate(videoReferenceUuid: UUID, date: Instant)(implicit
         ec: ExecutionContext
     ): Future[Int] =
-        val dao = daoFactory.newImagedMomentDAO()
+        val dao = daoFactory.readOnly().newImagedMomentDAO()
         val f   = dao.runReadOnlyTransaction(d => d.countModifiedBeforeDate(videoReferenceUuid, date))
-        f.onComplete(_ => dao.close())
+        f.onComplete(_ => dao.close())(using ExecutionContext.parasitic)
         f
 
     def deleteByVideoReferenceUUID(
         videoReferenceUUID: UUID
     )(implicit ec: ExecutionContext): Future[Int] =
-        def fn(dao: IMDAO): Int =
-            val moments = dao.findByVideoReferenceUUID(videoReferenceUUID)
-            moments.foreach(dao.delete)
-            moments.size
+        def fn(dao: IMDAO): Int = dao.deleteByVideoReferenceUUUID(videoReferenceUUID)
         exec(fn)
 
     def findByWindowRequest(
@@ -271,7 +268,7 @@ class ImagedMomentController(val daoFactory: JPADAOFactory, bus: Subject[Any] =
         val future1 = future.flatMap(xs =>
             dao.runTransaction(d => xs.flatMap(x => Option(x.getUuid).flatMap(d.findByUUID).map(transform)))
         )
-        future1.onComplete(_ => dao.close())
+        future1.onComplete(_ => dao.close())(using ExecutionContext.parasitic)
         future1
 
     /**
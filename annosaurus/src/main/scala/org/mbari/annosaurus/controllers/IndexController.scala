@@ -34,7 +34,7 @@ class IndexController(val daoFactory: JPADAOFactory) extends BaseController[Inde
 
     protected type IDDAO = IndexDAO[IndexEntity]
 
-    override def newDAO(): IndexDAO[IndexEntity] = daoFactory.newIndexDAO()
+    override def newDAO(factory: JPADAOFactory): IndexDAO[IndexEntity] = factory.newIndexDAO()
 
     override def transform(a: IndexEntity): Index = Index.from(a, true)
 
@@ -54,25 +54,16 @@ class IndexController(val daoFactory: JPADAOFactory) extends BaseController[Inde
         ec: ExecutionContext
     ): Future[Iterable[Index]] =
         def fn(dao: IDDAO): Iterable[Index] =
-            dao
-                .findByVideoReferenceUuid(videoReferenceUuid)
-                .map(im =>
-                    if im.getElapsedTime != null then
-                        val newRecordedDate = newStartTimestamp.plus(im.getElapsedTime)
-                        if newRecordedDate != im.getRecordedTimestamp then im.setRecordedTimestamp(newRecordedDate)
-                    transform(im)
-                )
+            dao.updateRecordedTimestampsFromStart(videoReferenceUuid, newStartTimestamp)
+            dao.findByVideoReferenceUuid(videoReferenceUuid).map(transform)
         exec(fn)
 
     def bulkUpdateRecordedTimestamps(
         imagedMoments: Iterable[IndexUpdate]
     )(implicit ec: ExecutionContext): Future[Iterable[Index]] =
         def fn(dao: IDDAO): Iterable[Index] =
-            for
-                im <- imagedMoments
-                rt <- im.recordedTimestamp
-                i  <- dao.findByUUID(im.uuid)
-            yield
-                i.setRecordedTimestamp(rt)
-                transform(i)
+            val updates = imagedMoments.flatMap(im => im.recordedTimestamp.map(im.uuid -> _)).toSeq
+            dao.updateRecordedTimestamps(updates)
+            val found   = dao.findByUuids(updates.map(_._1).distinct).map(i => i.getUuid -> i).toMap
+            updates.flatMap((uuid, _) => found.get(uuid)).map(transform)
         exec(fn)
@@ -20,9 +20,9 @@ import io.reactivex.rxjava3.subjects.Subject
 import org.mbari.annosaurus.domain.Observation
 import org.mbari.annosaurus.etc.rxjava.EventBus
 import org.mbari.annosaurus.messaging.{Publisher}
-import org.mbari.annosaurus.repository.jpa.JPADAOFactory
+import org.mbari.annosaurus.repository.jpa.{BaseDAO, JPADAOFactory}
 import org.mbari.annosaurus.repository.jpa.entity.ObservationEntity
-import org.mbari.annosaurus.repository.{NotFoundInDatastoreException, ObservationDAO}
+import org.mbari.annosaurus.repository.{BulkDeleteResult, NotFoundInDatastoreException, ObservationDAO}
 
 import java.time.{Duration, Instant}
 import java.util.UUID
@@ -42,7 +42,7 @@ class ObservationController(
 
     private val publisher = Publisher(bus)
     
-    override def newDAO(): ODAO = daoFactory.newObservationDAO()
+    override def newDAO(factory: JPADAOFactory): ODAO = factory.newObservationDAO()
 
     override def transform(a: ObservationEntity): Observation = Observation.from(a, true)
 
@@ -56,7 +56,8 @@ class ObservationController(
         activity: Option[String] = None
     )(implicit ec: ExecutionContext): Future[Observation] =
 
-        def fn(dao: ODAO): Observation =
+        // Returns what to publish along with the result. It is published only once the transaction has committed
+        def fn(dao: ODAO): (Observation, Observation) =
             val imDao = daoFactory.newImagedMomentDAO(dao)
             imDao.findByUUID(imagedMomentUUID) match
                 case None               =>
@@ -75,10 +76,12 @@ class ObservationController(
                     imagedMoment.addObservation(observation)
                     dao.flush()
                     // observation.setImagedMoment(imagedMoment)
-                    publisher.created(Observation.from(observation))
-                    transform(observation)
+                    (Observation.from(observation), transform(observation))
 
-        exec(fn)
+        exec(fn).map((created, observation) =>
+            publisher.created(created)
+            observation
+        )
 
     def update(
         uuid: UUID,
@@ -91,7 +94,7 @@ class ObservationController(
         imagedMomentUUID: Option[UUID] = None
     )(implicit ec: ExecutionContext): Future[Option[Observation]] =
 
-        def fn(dao: ODAO): Option[Observation] =
+        def fn(dao: ODAO): Option[(Observation, Observation)] =
             // --- 1. Does uuid exist?
             val observation = dao.findByUUID(uuid)
 
@@ -107,14 +110,23 @@ class ObservationController(
                     imDao   = daoFactory.newImagedMomentDAO(dao)
                     newIm  <- imDao.findByUUID(imUUID)
                 do
+                    val oldVideoReferenceUuid = obs.getImagedMoment.getVideoReferenceUuid
                     obs.getImagedMoment.removeObservation(obs)
                     newIm.addObservation(obs)
+                    publishMoved(
+                        classOf[ObservationEntity],
+                        obs.getUuid,
+                        oldVideoReferenceUuid,
+                        newIm.getVideoReferenceUuid
+                    )
 
-                publisher.created(Observation.from(obs))
-                transform(obs)
+                (Observation.from(obs), transform(obs))
             )
 
-        exec(fn)
+        exec(fn).map(_.map((updated, observation) =>
+            publisher.created(updated)
+            observation
+        ))
 
     def findAllConcepts(implicit ec: ExecutionContext): Future[Iterable[String]] =
         def fn(dao: ODAO): Iterable[String] = dao.findAllConcepts()
@@ -173,10 +185,21 @@ class ObservationController(
                 )
         exec(fn)
 
+    /**
+     * @return
+     *   true if every observation was found and deleted
+     */
     def bulkDelete(uuids: Iterable[UUID])(implicit ec: ExecutionContext): Future[Boolean] =
-        def fn(dao: ODAO): Boolean =
-            uuids.map(deleteFunction(dao, _)).toSeq.forall(b => b)
-        exec(fn)
+        bulkDeleteCount(uuids).map(_.observationUuids.size == uuids.toSet.size)
+
+    /**
+     * Delete many observations, their associations and any imaged moments left empty using set-based deletes, in
+     * chunks with one transaction per chunk.
+     * @return
+     *   What was deleted
+     */
+    def bulkDeleteCount(uuids: Iterable[UUID])(implicit ec: ExecutionContext): Future[BulkDeleteResult] =
+        execBulkDelete(uuids)((dao, chunk) => dao.bulkDeleteByUuids(chunk))
 
     def countByConcept(concept: String)(implicit ec: ExecutionContext): Future[Int] =
         def fn(dao: ODAO): Int = dao.countByConcept(concept)
@@ -199,11 +222,18 @@ class ObservationController(
     def countAllGroupByVideoReferenceUuid()(implicit ec: ExecutionContext): Future[Map[UUID, Int]] =
         execReadOnly(dao => dao.countAllByVideoReferenceUuids())
 
-    def updateConcept(oldConcept: String, newConcept: String)(implicit
+    /**
+     * Rename a concept in chunks, committing each chunk separately. See [[BaseController.execRename]]
+     *
+     * @param progress
+     *   Called with the number of observations renamed so far after each chunk commits
+     */
+    def updateConcept(oldConcept: String, newConcept: String, progress: Int => Unit = _ => ())(implicit
         ec: ExecutionContext
     ): Future[Int] =
-        def fn(dao: ODAO): Int = dao.updateConcept(oldConcept, newConcept)
-        exec(fn)
+        execRename(classOf[ObservationEntity], "concept", oldConcept, newConcept, progress)((dao, after) =>
+            dao.updateConceptChunk(oldConcept, newConcept, after, BaseDAO.InClauseSize)
+        )
 
     private def deleteFunction(dao: ODAO, uuid: UUID): Boolean =
         dao.findByUUID(uuid) match
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2017 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.annosaurus.domain
+
+/**
+ * The outcome of a bulk image create for a single image.
+ *
+ * @param created
+ *   true if the image was inserted, false if an image with the same URL already existed
+ * @param image
+ *   The newly created image or the existing one
+ */
+final case class ImageCreateResult(created: Boolean, image: Image) extends ToSnakeCase[ImageCreateResultSC]:
+    override def toSnakeCase: ImageCreateResultSC =
+        ImageCreateResultSC(
+            if created then ImageCreateResult.Created else ImageCreateResult.Existing,
+            image.toSnakeCase
+        )
+
+object ImageCreateResult:
+    val Created  = "created"
+    val Existing = "existing"
+
+final case class ImageCreateResultSC(status: String, image: ImageSC) extends ToCamelCase[ImageCreateResult]:
+    override def toCamelCase: ImageCreateResult =
+        ImageCreateResult(status == ImageCreateResult.Created, image.toCamelCase)
@@ -0,0 +1,28 @@
+/*
+ * Copyright 2017 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.annosaurus.domain
+
+/**
+ * The result of a streamed upload.
+ * @param record_count
+ *   The number of records that were parsed from the upload
+ * @param batch_count
+ *   The number of batches (and transactions) used to write the records
+ * @param written_count
+ *   The number of records that were created or updated
+ */
+case class IngestCountSC(record_count: Long, batch_count: Int, written_count: Long)
@@ -55,7 +55,7 @@ class AnalysisEndpoints(repository: AnalysisRepository)(implicit val executor: E
 
     val depthHistogramImpl: ServerEndpoint[Any, Future] =
         depthHistogram.serverLogic { case (binSizeMeters, constraints) =>
-            val f = Future(
+            val f = databaseFuture(
                 repository.depthHistogram(constraints, binSizeMeters.getOrElse(50))
             ).map(dh => QueryConstraintsResponseSC(constraints.toSnakeCase, dh.toSnakeCase))
             handleErrors(f)
@@ -75,7 +75,7 @@ class AnalysisEndpoints(repository: AnalysisRepository)(implicit val executor: E
 
     val timeHistogramImpl: ServerEndpoint[Any, Future] =
         timeHistogram.serverLogic { case (binSizeDays, constraints) =>
-            val f = Future(
+            val f = databaseFuture(
                 repository.timeHistogram(constraints, binSizeDays.getOrElse(50))
             ).map(dh => QueryConstraintsResponseSC(constraints.toSnakeCase, dh.toSnakeCase))
             handleErrors(f)
@@ -159,6 +159,26 @@ class AnnotationEndpoints(controller: AnnotationController)(using
                 val annosCc = annotations.map(_.toCamelCase)
                 handleErrors(controller.bulkCreate(annosCc).map(xs => xs.map(_.toSnakeCase)))
             }
+
+    val bulkIngestAnnotations: Endpoint[Option[String], Seq[BulkAnnotationSC], ErrorMsg, Seq[AnnotationSC], Any] =
+        secureEndpoint
+            .post
+            .in(base / "bulk" / "ingest")
+            .in(jsonBody[Seq[BulkAnnotationSC]])
+            .out(jsonBody[Seq[AnnotationSC]])
+            .name("bulkIngestAnnotations")
+            .description(
+                "Fast bulk insert of new annotations. Each annotation requires a video_reference_uuid"
+            )
+            .tag(tag)
+
+    val bulkIngestAnnotationsImpl: ServerEndpoint[Any, Future] =
+        bulkIngestAnnotations
+            .serverSecurityLogic(jwtOpt => verify(jwtOpt))
+            .serverLogic { _ => annotations =>
+                val annosCc = annotations.map(_.toCamelCase)
+                handleErrors(controller.bulkIngest(annosCc).map(xs => xs.map(_.toSnakeCase)))
+            }
 //    POST / concurrent
 
     // Use fast annotation instead
@@ -282,6 +302,7 @@ class AnnotationEndpoints(controller: AnnotationController)(using
 // use fast annotation instead
 
     override def all: List[Endpoint[?, ?, ?, ?, ?]] = List(
+        bulkIngestAnnotations,
         bulkCreateAnnotations,
         bulkUpdateAnnotations,
         countByConcurrentRequest,
@@ -295,6 +316,7 @@ class AnnotationEndpoints(controller: AnnotationController)(using
     )
 
     override def allImpl: List[ServerEndpoint[Any, Future]] = List(
+        bulkIngestAnnotationsImpl,
         bulkCreateAnnotationsImpl,
         bulkUpdateAnnotationsImpl,
         countByConcurrentRequestImpl,
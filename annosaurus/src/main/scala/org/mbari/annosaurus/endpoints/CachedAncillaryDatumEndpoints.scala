@@ -16,14 +16,20 @@
 
 package org.mbari.annosaurus.endpoints
 
+import io.circe.parser.decode
+import io.vertx.core.buffer.Buffer
+import io.vertx.core.streams.ReadStream
 import org.mbari.annosaurus.controllers.CachedAncillaryDatumController
-import org.mbari.annosaurus.domain.{CachedAncillaryDatumSC, CountForVideoReferenceSC, ErrorMsg}
+import org.mbari.annosaurus.domain.{CachedAncillaryDatum, CachedAncillaryDatumSC, CountForVideoReferenceSC, ErrorMsg, IngestCountSC}
 import org.mbari.annosaurus.endpoints.CustomTapirJsonCirce.*
 import org.mbari.annosaurus.etc.circe.CirceCodecs.given
 import org.mbari.annosaurus.etc.jwt.JwtService
+import org.mbari.annosaurus.etc.tapir.TapirCodecs.Ndjson
+import org.mbari.annosaurus.etc.vertx.{BatchResult, BatchSink, NdjsonReader}
 import sttp.tapir.*
 import sttp.tapir.generic.auto.*
 import sttp.tapir.server.ServerEndpoint
+import sttp.tapir.server.vertx.streams.VertxStreams
 
 import java.time.Duration
 import java.util.UUID
@@ -145,7 +151,9 @@ class CachedAncillaryDatumEndpoints(controller: CachedAncillaryDatumController)(
             }
 
     // PUT /merge/:uuid json body
-    val mergeManyData: Endpoint[Option[String], (UUID, Seq[CachedAncillaryDatumSC], Option[Int]), ErrorMsg, Seq[
+    val mergeManyData: Endpoint[Option[
+        String
+    ], (UUID, Seq[CachedAncillaryDatumSC], Option[Int], Option[Boolean]), ErrorMsg, Seq[
         CachedAncillaryDatumSC
     ], Any] = secureEndpoint
         .put
@@ -156,6 +164,11 @@ class CachedAncillaryDatumEndpoints(controller: CachedAncillaryDatumController)(
                 "Window in seconds to merge data. Default is +/-7.5."
             )
         )
+        .in(
+            query[Option[Boolean]]("interpolate").description(
+                "If true, linearly interpolate values between the two bracketing data instead of using the nearest. Default is false."
+            )
+        )
         .out(jsonBody[Seq[CachedAncillaryDatumSC]])
         .name("mergeManyData")
         .description("Merge ancillary data")
@@ -164,16 +177,89 @@ class CachedAncillaryDatumEndpoints(controller: CachedAncillaryDatumController)(
     val mergeManyDataImpl: ServerEndpoint[Any, Future] =
         mergeManyData
             .serverSecurityLogic(jwtOpt => verify(jwtOpt))
-            .serverLogic { - => (uuid, data, window) =>
+            .serverLogic { - => (uuid, data, window, interpolate) =>
                 val windowMillis = window.getOrElse(7500)
                 val tolerance    = Duration.ofMillis(windowMillis)
                 handleErrors(
                     controller
-                        .merge(data.map(_.toCamelCase), uuid, tolerance)
+                        .merge(data.map(_.toCamelCase), uuid, tolerance, interpolate.getOrElse(false))
                         .map(_.map(_.toSnakeCase))
                 )
             }
 
+    private def ingest(
+        stream: ReadStream[Buffer],
+        batchSize: Option[Int],
+        sink: BatchSink[CachedAncillaryDatum]
+    ): Future[IngestCountSC] =
+        val n = batchSize.filter(_ > 0).getOrElse(NdjsonReader.DefaultBatchSize)
+        NdjsonReader
+            .read(stream, n, sink)(line => decode[CachedAncillaryDatumSC](line).map(_.toCamelCase))
+            .map((r: BatchResult) => IngestCountSC(r.recordCount, r.batchCount, r.writtenCount))
+
+    private val batchSizeQuery: EndpointInput.Query[Option[Int]] =
+        query[Option[Int]]("batch_size").description(
+            s"Number of records written per transaction. Default is ${NdjsonReader.DefaultBatchSize}."
+        )
+
+    // POST /bulk/stream ndjson body
+    val createOrUpdateManyDataStreaming: Endpoint[Option[
+        String
+    ], (ReadStream[Buffer], Option[Int]), ErrorMsg, IngestCountSC, VertxStreams] = secureEndpoint
+        .post
+        .in(base / "bulk" / "stream")
+        .in(streamBinaryBody(VertxStreams)(Ndjson()))
+        .in(batchSizeQuery)
+        .out(jsonBody[IngestCountSC])
+        .name("createOrUpdateManyDataStreaming")
+        .description(
+            "Create or update many ancillary data from a newline-delimited JSON upload (one ancillary datum, with an imaged_moment_uuid, per line). Records are parsed incrementally and committed in batches."
+        )
+        .tag(tag)
+
+    val createOrUpdateManyDataStreamingImpl: ServerEndpoint[VertxStreams, Future] =
+        createOrUpdateManyDataStreaming
+            .serverSecurityLogic(jwtOpt => verify(jwtOpt))
+            .serverLogic { - => (stream, batchSize) =>
+                handleErrors(ingest(stream, batchSize, controller.newBulkCreateOrUpdateSink()))
+            }
+
+    // PUT /merge/:uuid/stream ndjson body
+    val mergeManyDataStreaming: Endpoint[Option[
+        String
+    ], (UUID, ReadStream[Buffer], Option[Int], Option[Boolean], Option[Int]), ErrorMsg, IngestCountSC, VertxStreams] =
+        secureEndpoint
+            .put
+            .in(base / "merge" / path[UUID]("videoReferenceUuid") / "stream")
+            .in(streamBinaryBody(VertxStreams)(Ndjson()))
+            .in(
+                query[Option[Int]]("window").description(
+                    "Window in seconds to merge data. Default is +/-7.5."
+                )
+            )
+            .in(
+                query[Option[Boolean]]("interpolate").description(
+                    "If true, linearly interpolate values between the two bracketing data instead of using the nearest. Default is false."
+                )
+            )
+            .in(batchSizeQuery)
+            .out(jsonBody[IngestCountSC])
+            .name("mergeManyDataStreaming")
+            .description(
+                "Merge ancillary data from a newline-delimited JSON upload (one ancillary datum, with a recorded_timestamp, per line). Records should be in time order. They are parsed incrementally and merged and committed in batches."
+            )
+            .tag(tag)
+
+    val mergeManyDataStreamingImpl: ServerEndpoint[VertxStreams, Future] =
+        mergeManyDataStreaming
+            .serverSecurityLogic(jwtOpt => verify(jwtOpt))
+            .serverLogic { - => (uuid, stream, window, interpolate, batchSize) =>
+                val windowMillis = window.getOrElse(7500)
+                val tolerance    = Duration.ofMillis(windowMillis)
+                val sink         = controller.newMergeSink(uuid, tolerance, interpolate.getOrElse(false))
+                handleErrors(ingest(stream, batchSize, sink))
+            }
+
     // PUT /:uuid form or json body
     val updateOneDatum: Endpoint[Option[
         String
@@ -219,8 +305,10 @@ class CachedAncillaryDatumEndpoints(controller: CachedAncillaryDatumController)(
             }
 
     override def all: List[Endpoint[?, ?, ?, ?, ?]] = List(
+        createOrUpdateManyDataStreaming,
         createOrUpdateManyData,
         findDataByImagedMomentUuid,
+        mergeManyDataStreaming,
         mergeManyData,
         findDataByObservationUuid,
         findDataByVideoReferenceUuid,
@@ -241,3 +329,8 @@ class CachedAncillaryDatumEndpoints(controller: CachedAncillaryDatumController)(
         updateOneDatumImpl,
         createOneDatumImpl
     )
+
+    override def streamingImpl: List[ServerEndpoint[VertxStreams, Future]] = List(
+        createOrUpdateManyDataStreamingImpl,
+        mergeManyDataStreamingImpl
+    )
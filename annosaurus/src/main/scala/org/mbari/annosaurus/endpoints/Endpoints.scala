@@ -20,6 +20,7 @@ import io.circe.Printer
 import org.mbari.annosaurus.domain.*
 import org.mbari.annosaurus.etc.circe.CirceCodecs
 import org.mbari.annosaurus.etc.circe.CirceCodecs.given
+import org.mbari.annosaurus.etc.jdbc.DatabaseExecutor
 import org.mbari.annosaurus.etc.jdk.Loggers.given
 import org.mbari.annosaurus.etc.jwt.JwtService
 import sttp.model.StatusCode
@@ -28,6 +29,7 @@ import sttp.tapir.*
 import sttp.tapir.generic.auto.*
 import sttp.tapir.json.circe.*
 import sttp.tapir.server.ServerEndpoint
+import sttp.tapir.server.vertx.streams.VertxStreams
 
 import java.net.{URI, URL}
 import java.time.Instant
@@ -83,7 +85,9 @@ trait Endpoints:
     implicit lazy val sGeographicRange: Schema[GeographicRange]                         = Schema.derived[GeographicRange]
     implicit lazy val sGeographicRangeSc: Schema[GeographicRangeSC]                     =
         Schema.derived[GeographicRangeSC]
+    implicit lazy val sIngestCountSc: Schema[IngestCountSC]                             = Schema.derived[IngestCountSC]
     implicit lazy val sImageSc: Schema[ImageSC]                                         = Schema.derived[ImageSC]
+    implicit lazy val sImageCreateResultSc: Schema[ImageCreateResultSC]                 = Schema.derived[ImageCreateResultSC]
     implicit lazy val sImageReference: Schema[ImageReference]                           = Schema.derived[ImageReference]
     implicit lazy val sImageReferenceSc: Schema[ImageReferenceSC]                       = Schema.derived[ImageReferenceSC]
     implicit lazy val sImagedMoment: Schema[ImagedMoment]                               = Schema.derived[ImagedMoment]
@@ -138,6 +142,12 @@ trait Endpoints:
     def all: List[Endpoint[?, ?, ?, ?, ?]]
     def allImpl: List[ServerEndpoint[Any, Future]]
 
+    /**
+     * Endpoints that consume the request body as a stream. These are routed separately as they need the Vert.x
+     * streaming capability and must not run on a blocking worker.
+     */
+    def streamingImpl: List[ServerEndpoint[VertxStreams, Future]] = Nil
+
     def handleErrors[T](f: Future[T])(using ec: ExecutionContext): Future[Either[ErrorMsg, T]] =
         f.transform:
             case Success(value)     =>
@@ -147,13 +157,21 @@ trait Endpoints:
                 log.atError.withCause(exception).log("Error")
                 Success(Left(ServerError(exception.getMessage)))
 
+    /**
+     * Where blocking JDBC work that bypasses the DAOs runs. It is bounded like the DAO transactions and, in virtual
+     * mode, runs on virtual threads. Continuations stay on the caller's ExecutionContext.
+     */
+    def databaseExecutor: ExecutionContext = DatabaseExecutor.Default
+
+    /** Run blocking JDBC work on the databaseExecutor */
+    def databaseFuture[T](f: => T): Future[T] = Future(f)(using databaseExecutor)
+
     def handleEitherAsync[T](
         f: => Either[Throwable, T]
     )(using ec: ExecutionContext): Future[Either[ErrorMsg, T]] =
-        Future {
-            f match
-                case Right(value) => Right(value)
-                case Left(e)      => Left(ServerError(e.getMessage))
+        databaseFuture(f).map {
+            case Right(value) => Right(value)
+            case Left(e)      => Left(ServerError(e.getMessage))
         }
 
     def handleOption[T](f: Future[Option[T]])(using
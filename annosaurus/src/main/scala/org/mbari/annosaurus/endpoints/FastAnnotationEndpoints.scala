@@ -61,7 +61,7 @@ class FastAnnotationEndpoints(jdbcRepository: JdbcRepository)(using
     val findAllAnnotationsImpl: ServerEndpoint[Any, Future] = findAllAnnotations
         .serverLogic { (paging, data) =>
             handleErrors(
-                Future(
+                databaseFuture(
                     jdbcRepository
                         .findAll(paging.limit, paging.offset, data.getOrElse(false))
                         .map(_.toSnakeCase)
@@ -86,7 +86,7 @@ class FastAnnotationEndpoints(jdbcRepository: JdbcRepository)(using
         findAnnotationsByQueryConstraints
             .serverLogic { queryConstraints =>
                 handleErrors(
-                    Future {
+                    databaseFuture {
                         val annos = jdbcRepository
                             .findByQueryConstraint(queryConstraints)
                             .map(_.toSnakeCase)
@@ -113,7 +113,7 @@ class FastAnnotationEndpoints(jdbcRepository: JdbcRepository)(using
         findGeoRangeByQueryConstraints
             .serverLogic { queryConstraints =>
                 handleOption(
-                    Future {
+                    databaseFuture {
                         jdbcRepository
                             .findGeographicRangeByQueryConstraint(queryConstraints)
                             .map(_.toSnakeCase)
@@ -140,7 +140,7 @@ class FastAnnotationEndpoints(jdbcRepository: JdbcRepository)(using
         countAnnotationsByQueryConstraints
             .serverLogic { queryConstraints =>
                 handleErrors(
-                    Future {
+                    databaseFuture {
                         val count =
                             jdbcRepository.countByQueryConstraint(queryConstraints)
                         QueryConstraintsResponseSC(queryConstraints.toSnakeCase, Count(count))
@@ -161,7 +161,7 @@ class FastAnnotationEndpoints(jdbcRepository: JdbcRepository)(using
     val countAllAnnotationsImpl: ServerEndpoint[Any, Future] = countAllAnnotations
         .serverLogic { _ =>
             handleErrors(
-                Future {
+                databaseFuture {
                     val count = jdbcRepository.countAll()
                     Count(count)
                 }
@@ -183,7 +183,7 @@ class FastAnnotationEndpoints(jdbcRepository: JdbcRepository)(using
         findAnnotationsByVideoReferenceUuid
             .serverLogic { (uuid, paging, data) =>
                 handleErrors(
-                    Future(
+                    databaseFuture(
                         jdbcRepository
                             .findByVideoReferenceUuid(
                                 uuid,
@@ -210,7 +210,7 @@ class FastAnnotationEndpoints(jdbcRepository: JdbcRepository)(using
         findImagesByVideoReferenceUuid
             .serverLogic { (uuid, paging) =>
                 handleErrors(
-                    Future(
+                    databaseFuture(
                         jdbcRepository
                             .findImagesByVideoReferenceUuid(uuid, paging.limit, paging.offset)
                             .map(_.toSnakeCase)
@@ -231,7 +231,7 @@ class FastAnnotationEndpoints(jdbcRepository: JdbcRepository)(using
         countImagesByVideoReferenceUuid
             .serverLogic { uuid =>
                 handleErrors(
-                    Future {
+                    databaseFuture {
                         val count = jdbcRepository.countImagesByVideoReferenceUuid(uuid)
                         Count(count)
                     }
@@ -253,7 +253,7 @@ class FastAnnotationEndpoints(jdbcRepository: JdbcRepository)(using
     val findAnnotationsByConceptImpl: ServerEndpoint[Any, Future] = findAnnotationsByConcept
         .serverLogic { (concept, paging, data) =>
             handleErrors(
-                Future(
+                databaseFuture(
                     jdbcRepository
                         .findByConcept(concept, paging.limit, paging.offset, data.getOrElse(false))
                         .map(_.toSnakeCase)
@@ -278,7 +278,7 @@ class FastAnnotationEndpoints(jdbcRepository: JdbcRepository)(using
         findAnnotationsWithImagesByConcept
             .serverLogic { (concept, paging, data) =>
                 handleErrors(
-                    Future(
+                    databaseFuture(
                         jdbcRepository
                             .findByConceptWithImages(
                                 concept,
@@ -308,7 +308,7 @@ class FastAnnotationEndpoints(jdbcRepository: JdbcRepository)(using
         findAnnotationsWithImagesByToConcept
             .serverLogic { (toConcept, paging, data) =>
                 handleErrors(
-                    Future(
+                    databaseFuture(
                         jdbcRepository
                             .findByToConceptWithImages(
                                 toConcept,
@@ -338,7 +338,7 @@ class FastAnnotationEndpoints(jdbcRepository: JdbcRepository)(using
         findImageMomentUuidsByConcept
             .serverLogic { (concept, paging) =>
                 handleErrors(
-                    Future(
+                    databaseFuture(
                         jdbcRepository.findImagedMomentUuidsByConceptWithImages(
                             concept,
                             paging.limit,
@@ -367,7 +367,7 @@ class FastAnnotationEndpoints(jdbcRepository: JdbcRepository)(using
         findImagedMomentUuidsByToConcept
             .serverLogic { (toConcept, paging) =>
                 handleErrors(
-                    Future(
+                    databaseFuture(
                         jdbcRepository.findImagedMomentUuidsByToConceptWithImages(
                             toConcept,
                             paging.limit,
@@ -393,7 +393,7 @@ class FastAnnotationEndpoints(jdbcRepository: JdbcRepository)(using
         findAnnotationsByLinkNameAndLinkValue
             .serverLogic { (linkName, linkValue, data) =>
                 handleErrors(
-                    Future(
+                    databaseFuture(
                         jdbcRepository
                             .findByLinkNameAndLinkValue(linkName, linkValue, data.getOrElse(false))
                             .map(_.toSnakeCase)
@@ -415,7 +415,7 @@ class FastAnnotationEndpoints(jdbcRepository: JdbcRepository)(using
         deleteAnnotationsByVideoReferenceUuid
             .serverLogic { uuid =>
                 handleErrors(
-                    Future {
+                    databaseFuture {
                         val count = jdbcRepository.deleteByVideoReferenceUuid(uuid)
                         count.toSnakeCase
                     }
@@ -439,7 +439,7 @@ class FastAnnotationEndpoints(jdbcRepository: JdbcRepository)(using
         findAnnotationsByConcurrentRequest
             .serverLogic { (paging, data, concurrentRequest) =>
                 handleErrors(
-                    Future(
+                    databaseFuture(
                         jdbcRepository
                             .findByConcurrentRequest(
                                 concurrentRequest.toCamelCase,
@@ -471,7 +471,7 @@ class FastAnnotationEndpoints(jdbcRepository: JdbcRepository)(using
         findAnnotationsByMultiRequest
             .serverLogic { (paging, data, multiRequest) =>
                 handleErrors(
-                    Future(
+                    databaseFuture(
                         jdbcRepository
                             .findByMultiRequest(
                                 multiRequest.toCamelCase,
@@ -17,7 +17,7 @@
 package org.mbari.annosaurus.endpoints
 
 import org.mbari.annosaurus.controllers.ImageController
-import org.mbari.annosaurus.domain.{ErrorMsg, ImageCreateSC, ImageSC, ImageUpdateSC}
+import org.mbari.annosaurus.domain.{ErrorMsg, ImageCreateResultSC, ImageCreateSC, ImageSC, ImageUpdateSC}
 import org.mbari.annosaurus.endpoints.CustomTapirJsonCirce.*
 import org.mbari.annosaurus.etc.circe.CirceCodecs.given
 import org.mbari.annosaurus.etc.jwt.JwtService
@@ -135,6 +135,25 @@ class ImageEndpoints(controller: ImageController)(using
             )
         }
 
+    // POST /bulk
+    val bulkCreateImages: Endpoint[Option[String], Seq[ImageCreateSC], ErrorMsg, Seq[ImageCreateResultSC], Any] =
+        secureEndpoint
+            .post
+            .in(base / "bulk")
+            .in(jsonBody[Seq[ImageCreateSC]])
+            .out(jsonBody[Seq[ImageCreateResultSC]])
+            .description(
+                "Create many images. Images whose URL already exists are not modified. Returns one result per distinct URL with a status of 'created' or 'existing'"
+            )
+            .name("bulkCreateImages")
+            .tag(tag)
+
+    val bulkCreateImagesImpl: ServerEndpoint[Any, Future] = bulkCreateImages
+        .serverSecurityLogic(jwtOpt => verify(jwtOpt))
+        .serverLogic { _ => dtos =>
+            handleErrors(controller.bulkCreateWithStatus(dtos).map(_.map(_.toSnakeCase)))
+        }
+
     // PUT /:uuid
     val updateOneImage: Endpoint[Option[String], (UUID, ImageUpdateSC), ErrorMsg, ImageSC, Any] =
         secureEndpoint
@@ -175,6 +194,7 @@ class ImageEndpoints(controller: ImageController)(using
         findByVideoReferenceUUID,
         findOneImage,
         updateOneImage,
+        bulkCreateImages,
         createOneImage
     )
 
@@ -184,5 +204,6 @@ class ImageEndpoints(controller: ImageController)(using
         findByVideoReferenceUUIDImpl,
         findOneImageImpl,
         updateOneImageImpl,
+        bulkCreateImagesImpl,
         createOneImageImpl
     )
@@ -32,7 +32,6 @@ import org.mbari.annosaurus.domain.{
 import org.mbari.annosaurus.endpoints.CustomTapirJsonCirce.*
 import org.mbari.annosaurus.etc.circe.CirceCodecs.given
 import org.mbari.annosaurus.etc.jwt.JwtService
-import org.mbari.annosaurus.etc.sdk.Futures.*
 import org.mbari.annosaurus.etc.tapir.TapirCodecs.given
 import org.mbari.vcr4j.time.Timecode
 import sttp.model.StatusCode
@@ -582,20 +581,19 @@ class ImagedMomentEndpoints(controller: ImagedMomentController)(using
         updateRecordedTimestampForObservationUuid
             .serverSecurityLogic(jwtOpt => verify(jwtOpt))
             .serverLogic { _ => annotations =>
-                var n = 0
-                for
+                val updates = for
                     a                 <- annotations
                     observationUuid   <- a.observation_uuid
                     recordedTimestamp <- a.recorded_timestamp
-                do
-                    controller
-                        .updateRecordedTimestampByObservationUuid(
-                            observationUuid,
-                            recordedTimestamp
-                        )
-                        .join
-                    n = n + 1
-                handleErrors(Future.successful(ImagedMomentTimestampUpdateSC(annotations.size, n)))
+                yield (observationUuid, recordedTimestamp)
+                // Chain the updates so they run one after another without ever blocking the calling
+                // thread; this route may be served directly on the Vert.x event loop.
+                val f       = updates.foldLeft(Future.successful(0)) { case (acc, (uuid, timestamp)) =>
+                    acc.flatMap(n =>
+                        controller.updateRecordedTimestampByObservationUuid(uuid, timestamp).map(_ => n + 1)
+                    )
+                }
+                handleErrors(f.map(n => ImagedMomentTimestampUpdateSC(annotations.size, n)))
             }
 
     // DEELTE /:uuid
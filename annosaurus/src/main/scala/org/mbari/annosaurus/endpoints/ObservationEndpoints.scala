@@ -342,7 +342,7 @@ class ObservationEndpoints(controller: ObservationController, jdbcRepository: Jd
             .serverSecurityLogic(jwtOpt => verify(jwtOpt))
             .serverLogic { _ => dto =>
                 handleErrors(
-                    Future(jdbcRepository.updateObservations(dto)).map(Count(_))
+                    databaseFuture(jdbcRepository.updateObservations(dto)).map(Count(_))
                 )
             }
 
@@ -79,13 +79,13 @@ class QueryEndpoints(queryController: QueryController)(using executionContext: E
 
     val downloadTsvImpl: Full[Unit, Unit, QueryRequest, ErrorMsg, File, Any, Future] =
         downloadTsv.serverLogic(request =>
-            val path           = Files.createTempFile("query", ".tsv")
-            val task: Runnable = () => Files.delete(path)
-            scheduler.schedule(task, 2, java.util.concurrent.TimeUnit.MINUTES)
-            val future         = handleEitherAsync(
+            // Creating the file is blocking IO too, so it runs with the query rather than on the event loop
+            handleEitherAsync {
+                val path           = Files.createTempFile("query", ".tsv")
+                val task: Runnable = () => Files.delete(path)
+                scheduler.schedule(task, 2, java.util.concurrent.TimeUnit.MINUTES)
                 queryController.queryAndSaveToTsvFile(request, path).map(_ => path.toFile())
-            )
-            future
+            }
         )
 
     // val runQueryStreaming =
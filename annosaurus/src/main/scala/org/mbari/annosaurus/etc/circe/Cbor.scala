@@ -0,0 +1,103 @@
+/*
+ * Copyright 2017 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.annosaurus.etc.circe
+
+import com.fasterxml.jackson.core.{JsonGenerator, JsonParser, JsonToken}
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory
+import io.circe.{Json, JsonNumber, JsonObject, ParsingFailure}
+
+import java.io.ByteArrayOutputStream
+import scala.collection.mutable.ArrayBuffer
+import scala.util.Using
+import scala.util.control.NonFatal
+
+/**
+ * Converts circe Json to and from CBOR (RFC 8949) using Jackson's CBOR support, so the existing circe codecs can also
+ * produce a compact binary form. Integers that fit in a Long are written as CBOR integers, other numbers as doubles.
+ * Byte strings are rejected, as they have no JSON equivalent.
+ *
+ * Use [[CirceCodecs.cborify]] and [[CirceCodecs.reifyCbor]] rather than calling this directly.
+ */
+object Cbor:
+
+    private val factory = new CBORFactory()
+
+    def encode(json: Json): Array[Byte] =
+        val out = new ByteArrayOutputStream(256)
+        Using.resource(factory.createGenerator(out))(generator => json.foldWith(new Writer(generator)))
+        out.toByteArray
+
+    def parse(bytes: Array[Byte]): Either[ParsingFailure, Json] =
+        try
+            Using.resource(factory.createParser(bytes))(parser =>
+                if parser.nextToken() == null then throw new IllegalArgumentException("No CBOR data")
+                val json = read(parser)
+                if parser.nextToken() != null then throw new IllegalArgumentException("Trailing bytes after CBOR item")
+                Right(json)
+            )
+        catch case NonFatal(e) => Left(ParsingFailure(s"Invalid CBOR: ${e.getMessage}", e))
+
+    private class Writer(generator: JsonGenerator) extends Json.Folder[Unit]:
+
+        def onNull: Unit = generator.writeNull()
+
+        def onBoolean(value: Boolean): Unit = generator.writeBoolean(value)
+
+        def onNumber(value: JsonNumber): Unit = value.toLong match
+            case Some(n) => generator.writeNumber(n)
+            case None    => generator.writeNumber(value.toDouble)
+
+        def onString(value: String): Unit = generator.writeString(value)
+
+        def onArray(value: Vector[Json]): Unit =
+            generator.writeStartArray(value, value.size)
+            value.foreach(_.foldWith(this))
+            generator.writeEndArray()
+
+        def onObject(value: JsonObject): Unit =
+            generator.writeStartObject(value, value.size)
+            value.toIterable.foreach((k, v) =>
+                generator.writeFieldName(k)
+                v.foldWith(this)
+            )
+            generator.writeEndObject()
+
+    /** Reads the item at the current token */
+    private def read(parser: JsonParser): Json =
+        parser.currentToken() match
+            case JsonToken.START_OBJECT         =>
+                val fields = ArrayBuffer[(String, Json)]()
+                while parser.nextToken() == JsonToken.FIELD_NAME do
+                    val name = parser.currentName()
+                    parser.nextToken()
+                    fields += name -> read(parser)
+                Json.fromFields(fields)
+            case JsonToken.START_ARRAY          =>
+                val values = Vector.newBuilder[Json]
+                while parser.nextToken() != JsonToken.END_ARRAY do values += read(parser)
+                Json.fromValues(values.result())
+            case JsonToken.VALUE_STRING         => Json.fromString(parser.getText)
+            case JsonToken.VALUE_NUMBER_INT     =>
+                parser.getNumberType match
+                    case JsonParser.NumberType.BIG_INTEGER => Json.fromBigInt(parser.getBigIntegerValue)
+                    case _                                 => Json.fromLong(parser.getLongValue)
+            case JsonToken.VALUE_NUMBER_FLOAT   => Json.fromDoubleOrNull(parser.getDoubleValue)
+            case JsonToken.VALUE_TRUE           => Json.True
+            case JsonToken.VALUE_FALSE          => Json.False
+            case JsonToken.VALUE_NULL           => Json.Null
+            case token                          =>
+                throw new IllegalArgumentException(s"Unsupported CBOR item: $token")
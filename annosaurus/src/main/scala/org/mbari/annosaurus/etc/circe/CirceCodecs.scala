@@ -20,7 +20,7 @@ import io.circe.*
 import io.circe.generic.semiauto.*
 import io.circe.syntax.*
 import org.mbari.annosaurus.domain.*
-import org.mbari.annosaurus.etc.nats.NatsMessage
+import org.mbari.annosaurus.etc.nats.{NatsBatchMessage, NatsMessage, NatsRenameMessage}
 import org.mbari.annosaurus.repository.query.{Constraint, JDBC, Query}
 import org.mbari.annosaurus.util.HexUtil
 
@@ -287,6 +287,9 @@ object CirceCodecs:
     given renameCountScEncoder: Encoder[RenameCountSC] = deriveEncoder
     given renameCountScDecoder: Decoder[RenameCountSC] = deriveDecoder
 
+    given ingestCountScEncoder: Encoder[IngestCountSC] = deriveEncoder
+    given ingestCountScDecoder: Decoder[IngestCountSC] = deriveDecoder
+
     given renameConceptEncoder: Encoder[RenameConcept] = deriveEncoder
     given renameConceptDecoder: Decoder[RenameConcept] = deriveDecoder
 
@@ -307,6 +310,9 @@ object CirceCodecs:
     given imageCreateScEncoder: Encoder[ImageCreateSC] = deriveEncoder
     given imageCreateScDecoder: Decoder[ImageCreateSC] = deriveDecoder
 
+    given imageCreateResultScEncoder: Encoder[ImageCreateResultSC] = deriveEncoder
+    given imageCreateResultScDecoder: Decoder[ImageCreateResultSC] = deriveDecoder
+
     given imageUpdateScEncoder: Encoder[ImageUpdateSC] = deriveEncoder
     given imageUpdateScDecoder: Decoder[ImageUpdateSC] = deriveDecoder
 
@@ -334,6 +340,10 @@ object CirceCodecs:
         
     given natsMessageAnnotationEncoder: Encoder[NatsMessage] = deriveEncoder
     given natsMessageAnnotationDecoder: Decoder[NatsMessage] = deriveDecoder
+    given natsBatchMessageEncoder: Encoder[NatsBatchMessage] = deriveEncoder
+    given natsBatchMessageDecoder: Decoder[NatsBatchMessage] = deriveDecoder
+    given natsRenameMessageEncoder: Encoder[NatsRenameMessage] = deriveEncoder
+    given natsRenameMessageDecoder: Decoder[NatsRenameMessage] = deriveDecoder
 
     // Custom Decoder for Constraint
     given constraintDecoder: Decoder[Constraint] = (c: HCursor) =>
@@ -448,3 +458,23 @@ object CirceCodecs:
                 json   <- jsonString.toJson
                 result <- Decoder[T].apply(json.hcursor)
             yield result
+
+    /**
+     * Convert an object to CBOR. Null values are dropped, as they are by stringify
+     *
+     * @param value
+     *   Any value with an implicit circe coder in scope
+     */
+    extension [T: Encoder](value: T)
+        def cborify: Array[Byte] = Cbor.encode(
+            Encoder[T]
+                .apply(value)
+                .deepDropNullValues
+        )
+
+    extension (bytes: Array[Byte])
+        def reifyCbor[T: Decoder]: Either[Error, T] =
+            for
+                json   <- Cbor.parse(bytes)
+                result <- Decoder[T].apply(json.hcursor)
+            yield result
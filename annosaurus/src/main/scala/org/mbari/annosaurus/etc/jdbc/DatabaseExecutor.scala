@@ -0,0 +1,215 @@
+/*
+ * Copyright 2017 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mbari.annosaurus.etc.jdbc
+
+import io.prometheus.metrics.core.metrics.{CounterWithCallback, GaugeWithCallback}
+import io.prometheus.metrics.model.registry.PrometheusRegistry
+import org.mbari.annosaurus.AppConfig
+import org.mbari.annosaurus.etc.jdk.Loggers
+import org.mbari.annosaurus.etc.jdk.Loggers.given
+
+import java.util.concurrent.atomic.{AtomicInteger, LongAdder}
+import java.util.concurrent.{
+    ArrayBlockingQueue,
+    ConcurrentHashMap,
+    RejectedExecutionException,
+    RejectedExecutionHandler,
+    Semaphore,
+    ThreadFactory,
+    ThreadPoolExecutor,
+    TimeUnit
+}
+import scala.concurrent.ExecutionContextExecutor
+import scala.jdk.CollectionConverters.*
+
+/**
+ * A bounded pool for blocking database work, used as the ExecutionContext for DAO transactions instead of
+ * ExecutionContext.global. The global pool is sized to the CPU cores and blocking JDBC calls on it starve everything
+ * else. Size this to the connection pool: more concurrent tasks would only wait on connections.
+ *
+ * In [[DatabaseExecutor.Mode.Platform]] mode the tasks run on a fixed pool of platform threads. In
+ * [[DatabaseExecutor.Mode.Virtual]] mode each task gets its own virtual thread and a semaphore with `threads` permits
+ * limits how many run at once. Tasks waiting for a permit are parked virtual threads, so thousands of slow requests
+ * can wait cheaply.
+ *
+ * When `threads` tasks are running, up to queueSize tasks wait. Beyond that the rejection policy applies. With
+ * [[DatabaseExecutor.Rejection.Abort]] the Future fails with a RejectedExecutionException, so an overloaded server
+ * answers quickly instead of queueing without limit.
+ *
+ * @param name
+ *   Names the threads and labels the metrics
+ * @param threads
+ *   The number of tasks that run at once
+ * @param queueSize
+ *   The number of tasks that can wait to run
+ * @param rejection
+ *   What to do with a task when the queue is full
+ * @param mode
+ *   Run tasks on platform or virtual threads
+ */
+class DatabaseExecutor(
+    val name: String,
+    val threads: Int,
+    val queueSize: Int,
+    rejection: DatabaseExecutor.Rejection = DatabaseExecutor.Rejection.Abort,
+    val mode: DatabaseExecutor.Mode = DatabaseExecutor.Mode.Platform
+) extends ExecutionContextExecutor
+    with AutoCloseable:
+
+    private val log      = Loggers(getClass)
+    private val rejected = new LongAdder
+
+    private def reject(runnable: Runnable): Unit =
+        rejected.increment()
+        rejection match
+            case DatabaseExecutor.Rejection.Abort      =>
+                throw new RejectedExecutionException(
+                    s"The $name executor is saturated: $threads tasks running and $queueSize waiting"
+                )
+            case DatabaseExecutor.Rejection.CallerRuns => runnable.run()
+
+    private lazy val platform: ThreadPoolExecutor =
+        val n                            = new AtomicInteger(0)
+        val threadFactory: ThreadFactory = r =>
+            val thread = new Thread(r, s"annosaurus-$name-${n.incrementAndGet()}")
+            thread.setDaemon(true)
+            thread
+        val e                            = new ThreadPoolExecutor(
+            threads,
+            threads,
+            60L,
+            TimeUnit.SECONDS,
+            new ArrayBlockingQueue[Runnable](queueSize),
+            threadFactory,
+            ((r, _) => reject(r)): RejectedExecutionHandler
+        )
+        e.allowCoreThreadTimeOut(true)
+        e
+
+    // -- Virtual mode
+    private lazy val permits        = new Semaphore(threads)
+    private lazy val virtualThreads = Thread.ofVirtual().name(s"annosaurus-$name-", 1).factory()
+    private val waiting             = new AtomicInteger(0)
+    private val finished            = new LongAdder
+
+    private def executeVirtual(runnable: Runnable): Unit =
+        if waiting.get() >= queueSize && permits.availablePermits() == 0 then reject(runnable)
+        else
+            waiting.incrementAndGet()
+            virtualThreads
+                .newThread(() =>
+                    permits.acquireUninterruptibly()
+                    waiting.decrementAndGet()
+                    try runnable.run()
+                    finally
+                        permits.release()
+                        finished.increment()
+                )
+                .start()
+
+    override def execute(runnable: Runnable): Unit = mode match
+        case DatabaseExecutor.Mode.Platform => platform.execute(runnable)
+        case DatabaseExecutor.Mode.Virtual  => executeVirtual(runnable)
+
+    override def reportFailure(cause: Throwable): Unit =
+        log.atError.withCause(cause).log(s"Uncaught exception in the $name executor")
+
+    /** The number of tasks that are running */
+    def active: Int = mode match
+        case DatabaseExecutor.Mode.Platform => platform.getActiveCount
+        case DatabaseExecutor.Mode.Virtual  => threads - permits.availablePermits()
+
+    /** The number of tasks waiting to run */
+    def queued: Int = mode match
+        case DatabaseExecutor.Mode.Platform => platform.getQueue.size()
+        case DatabaseExecutor.Mode.Virtual  => waiting.get()
+
+    /** The number of tasks that were rejected because the queue was full */
+    def rejectedCount: Long = rejected.sum()
+
+    /** The number of tasks that have run */
+    def completedCount: Long = mode match
+        case DatabaseExecutor.Mode.Platform => platform.getCompletedTaskCount
+        case DatabaseExecutor.Mode.Virtual  => finished.sum()
+
+    override def close(): Unit =
+        if mode == DatabaseExecutor.Mode.Platform then platform.shutdown()
+        DatabaseExecutor.executors.remove(name, this)
+
+object DatabaseExecutor:
+
+    enum Mode:
+        case Platform, Virtual
+
+    object Mode:
+        def parse(s: String): Mode = s.trim.toLowerCase match
+            case "platform" => Platform
+            case "virtual"  => Virtual
+            case _          => throw new IllegalArgumentException(s"Unknown executor mode: $s")
+
+    enum Rejection:
+        case Abort, CallerRuns
+
+    object Rejection:
+        def parse(s: String): Rejection = s.trim.toLowerCase match
+            case "abort"       => Abort
+            case "caller-runs" => CallerRuns
+            case _             => throw new IllegalArgumentException(s"Unknown executor rejection policy: $s")
+
+    private val executors = new ConcurrentHashMap[String, DatabaseExecutor]()
+
+    /** The executor for DAO work, configured under database.executor */
+    lazy val Default: DatabaseExecutor =
+        val config = AppConfig.DefaultDatabaseExecutorConfig
+        register(new DatabaseExecutor("db", config.threads, config.queueSize, config.rejection, config.mode))
+
+    /** Export the executor's metrics on /metrics */
+    def register(executor: DatabaseExecutor): DatabaseExecutor =
+        metrics
+        executors.put(executor.name, executor)
+        executor
+
+    private lazy val metrics: Unit =
+        val registry = PrometheusRegistry.defaultRegistry
+
+        def each(fn: DatabaseExecutor => Double)(call: (Double, String) => Unit): Unit =
+            for (name, e) <- executors.asScala do call(fn(e), name)
+
+        def gauge(name: String, help: String, fn: DatabaseExecutor => Double): Unit =
+            GaugeWithCallback
+                .builder()
+                .name(name)
+                .help(help)
+                .labelNames("executor")
+                .callback(cb => each(fn)((v, e) => cb.call(v, e)))
+                .register(registry)
+
+        def counter(name: String, help: String, fn: DatabaseExecutor => Double): Unit =
+            CounterWithCallback
+                .builder()
+                .name(name)
+                .help(help)
+                .labelNames("executor")
+                .callback(cb => each(fn)((v, e) => cb.call(v, e)))
+                .register(registry)
+
+        gauge("annosaurus_db_executor_active", "Tasks running database work", _.active.toDouble)
+        gauge("annosaurus_db_executor_queued", "Tasks waiting to run", _.queued.toDouble)
+        gauge("annosaurus_db_executor_threads", "Maximum number of tasks that run at once", _.threads.toDouble)
+        counter("annosaurus_db_executor_completed", "Tasks that have run", _.completedCount.toDouble)
+        counter("annosaurus_db_executor_rejected", "Tasks rejected by a full queue", _.rejectedCount.toDouble)
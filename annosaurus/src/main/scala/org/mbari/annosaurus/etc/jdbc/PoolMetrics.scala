@@ -0,0 +1,78 @@
+/*
+ * Copyright 2017 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.annosaurus.etc.jdbc
+
+import com.zaxxer.hikari.metrics.{IMetricsTracker, MetricsTrackerFactory, PoolStats}
+import io.prometheus.metrics.core.metrics.{Counter, GaugeWithCallback, Histogram}
+import io.prometheus.metrics.model.registry.PrometheusRegistry
+
+import java.util.concurrent.ConcurrentHashMap
+import scala.jdk.CollectionConverters.*
+
+/**
+ * Exports HikariCP pool metrics to Prometheus, labelled by pool name. Set it as the metrics tracker factory of each
+ * pool. Connection counts are read from the pools each time /metrics is scraped; acquire times and timeouts are
+ * recorded as they happen.
+ */
+object PoolMetrics extends MetricsTrackerFactory:
+
+    private val registry = PrometheusRegistry.defaultRegistry
+    private val pools    = new ConcurrentHashMap[String, PoolStats]()
+
+    private def eachPool(fn: PoolStats => Int)(call: (Double, String) => Unit): Unit =
+        for (name, stats) <- pools.asScala do call(fn(stats).toDouble, name)
+
+    private lazy val acquireTime = Histogram
+        .builder()
+        .name("annosaurus_db_pool_acquire_seconds")
+        .help("Time spent waiting for a connection from the pool")
+        .labelNames("pool")
+        .register(registry)
+
+    private lazy val timeouts = Counter
+        .builder()
+        .name("annosaurus_db_pool_timeouts")
+        .help("Requests for a connection that timed out")
+        .labelNames("pool")
+        .register(registry)
+
+    private lazy val gauges: Unit =
+        def gauge(name: String, help: String, fn: PoolStats => Int): Unit =
+            GaugeWithCallback
+                .builder()
+                .name(name)
+                .help(help)
+                .labelNames("pool")
+                .callback(cb => eachPool(fn)((v, p) => cb.call(v, p)))
+                .register(registry)
+
+        gauge("annosaurus_db_pool_active", "Connections in use", _.getActiveConnections)
+        gauge("annosaurus_db_pool_idle", "Idle connections", _.getIdleConnections)
+        gauge("annosaurus_db_pool_pending", "Threads waiting for a connection", _.getPendingThreads)
+        gauge("annosaurus_db_pool_total", "Open connections", _.getTotalConnections)
+        gauge("annosaurus_db_pool_max", "Maximum size of the pool", _.getMaxConnections)
+
+    override def create(poolName: String, poolStats: PoolStats): IMetricsTracker =
+        gauges
+        pools.put(poolName, poolStats)
+        new IMetricsTracker:
+            override def recordConnectionAcquiredNanos(elapsedAcquiredNanos: Long): Unit =
+                acquireTime.labelValues(poolName).observe(elapsedAcquiredNanos / 1e9)
+
+            override def recordConnectionTimeout(): Unit = timeouts.labelValues(poolName).inc()
+
+            override def close(): Unit = pools.remove(poolName, poolStats)
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2017 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.annosaurus.etc.jdbc
+
+import java.time.Duration
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Picks where read-only work runs. Reads are spread over the replicas using a load-balancing policy. Reads that must
+ * see this instance's own writes (read-your-writes) go to the primary until `staleness` has passed since the last
+ * write, which gives the replicas time to catch up. Without replicas every read goes to the primary.
+ *
+ * @param primary
+ *   The primary (writable) database
+ * @param replicas
+ *   Read-only replicas of the primary
+ * @param policy
+ *   How reads are spread over the replicas
+ * @param staleness
+ *   How long after a write read-your-writes calls stay on the primary. Zero sends them to the replicas too.
+ * @tparam A
+ *   The handle to a database, e.g. an EntityManagerFactory or a DataSource
+ */
+class ReadRouter[A](
+    val primary: A,
+    val replicas: Seq[A],
+    val policy: ReadRouter.Policy = ReadRouter.Policy.RoundRobin,
+    val staleness: Duration = Duration.ZERO
+):
+
+    private val counter              = new AtomicLong(0)
+    @volatile private var lastWrite = System.nanoTime() - staleness.toNanos - 1
+
+    /** Record that this instance just wrote to the primary */
+    def markWrite(): Unit = lastWrite = System.nanoTime()
+
+    /** @return true if read-your-writes calls should currently read from the primary */
+    def isStale: Boolean = !staleness.isZero && System.nanoTime() - lastWrite < staleness.toNanos
+
+    /**
+     * @param readYourWrites
+     *   true if the caller must see writes this instance just made
+     * @return
+     *   The database the next read-only unit of work should use
+     */
+    def next(readYourWrites: Boolean = false): A =
+        if replicas.isEmpty || (readYourWrites && isStale) then primary
+        else
+            policy match
+                case ReadRouter.Policy.RoundRobin =>
+                    replicas(Math.floorMod(counter.getAndIncrement(), replicas.size.toLong).toInt)
+                case ReadRouter.Policy.Random     =>
+                    replicas(ThreadLocalRandom.current().nextInt(replicas.size))
+
+    /** @return The primary followed by the replicas */
+    def all: Seq[A] = primary +: replicas
+
+object ReadRouter:
+
+    enum Policy:
+        case RoundRobin, Random
+
+    object Policy:
+
+        /**
+         * @param s
+         *   `round-robin` or `random`, case-insensitive
+         */
+        def parse(s: String): Policy = s.trim.toLowerCase match
+            case "round-robin" | "roundrobin" => RoundRobin
+            case "random"                     => Random
+            case _                            => throw new IllegalArgumentException(s"Unknown replica policy: $s")
+
+    /** A router that sends every read to the primary */
+    def primaryOnly[A](primary: A): ReadRouter[A] = new ReadRouter(primary, Nil)
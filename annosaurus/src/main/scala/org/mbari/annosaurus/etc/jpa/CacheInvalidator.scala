@@ -0,0 +1,133 @@
+/*
+ * Copyright 2017 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.annosaurus.etc.jpa
+
+import jakarta.persistence.EntityManagerFactory
+import org.hibernate.SessionFactory
+import org.mbari.annosaurus.etc.jdk.Loggers.given
+import org.mbari.annosaurus.repository.jpa.entity.CachedVideoReferenceInfoEntity
+
+import java.time.Duration
+import java.util.concurrent.{Executors, ScheduledExecutorService, TimeUnit}
+import scala.util.control.NonFatal
+
+/**
+ * A table whose rows are held in the second-level cache.
+ *
+ * @param table
+ *   The table name
+ * @param versionColumn
+ *   The optimistic lock column. Every insert or update sets it
+ * @param entityClass
+ *   The cached entity
+ * @param queryRegion
+ *   The query cache region used by queries against the table
+ */
+case class CachedTable(table: String, versionColumn: String, entityClass: Class[?], queryRegion: String)
+
+/**
+ * Keeps the in-process second-level cache correct when several annosaurus instances share one database. Hibernate
+ * evicts cache entries for writes made through this instance, but it can not see writes made by other instances. This
+ * polls a fingerprint (row count and latest version timestamp) of each cached table and evicts the entity and query
+ * regions for the table when the fingerprint changes. Inserts and updates advance the version timestamp and deletes
+ * change the row count. The cache TTL bounds staleness if polling fails.
+ *
+ * @param entityManagerFactory
+ *   The factory whose caches are evicted
+ * @param tables
+ *   The cached tables to watch
+ * @param interval
+ *   How often to poll
+ */
+class CacheInvalidator(
+    entityManagerFactory: EntityManagerFactory,
+    tables: Seq[CachedTable],
+    interval: Duration
+) extends AutoCloseable:
+
+    private val log                                 = System.getLogger(getClass.getName)
+    @volatile private var fingerprints              = Map.empty[String, (Long, String)]
+    private val executor: ScheduledExecutorService = Executors.newSingleThreadScheduledExecutor(r =>
+        val thread = new Thread(r, "annosaurus-cache-invalidator")
+        thread.setDaemon(true)
+        thread
+    )
+
+    executor.scheduleWithFixedDelay(() => poll(), interval.toMillis, interval.toMillis, TimeUnit.MILLISECONDS)
+
+    /**
+     * Compare the current fingerprints with the last seen ones and evict the regions of any table that changed.
+     * @return
+     *   The tables that were evicted
+     */
+    def poll(): Seq[CachedTable] =
+        try
+            val current = tables.map(t => t.table -> fingerprint(t)).toMap
+            val changed = tables.filter(t => fingerprints.get(t.table).exists(_ != current(t.table)))
+            changed.foreach(evict)
+            fingerprints = current
+            changed
+        catch
+            case NonFatal(e) =>
+                log.atWarn.withCause(e).log("Failed to poll cached tables for changes")
+                Nil
+
+    private def fingerprint(table: CachedTable): (Long, String) =
+        val entityManager = entityManagerFactory.createEntityManager()
+        try
+            val row = entityManager
+                .createNativeQuery(s"SELECT COUNT(*), MAX(${table.versionColumn}) FROM ${table.table}")
+                .getSingleResult
+                .asInstanceOf[Array[Any]]
+            (row(0).asInstanceOf[Number].longValue(), String.valueOf(row(1)))
+        finally entityManager.close()
+
+    private def evict(table: CachedTable): Unit =
+        log.atDebug.log(s"${table.table} was modified by another client. Evicting cached entities and queries")
+        entityManagerFactory.getCache.evict(table.entityClass)
+        entityManagerFactory.unwrap(classOf[SessionFactory]).getCache.evictQueryRegion(table.queryRegion)
+
+    override def close(): Unit = executor.shutdownNow()
+
+object CacheInvalidator:
+
+    private val log = System.getLogger(getClass.getName)
+
+    val DefaultTables: Seq[CachedTable] = Seq(
+        CachedTable(
+            "video_reference_information",
+            "last_updated_timestamp",
+            classOf[CachedVideoReferenceInfoEntity],
+            CachedVideoReferenceInfoEntity.QUERY_CACHE_REGION
+        )
+    )
+
+    /**
+     * Start polling if the second-level cache is enabled
+     */
+    def autowire(entityManagerFactory: EntityManagerFactory, interval: Duration): Option[CacheInvalidator] =
+        try
+            val enabled = entityManagerFactory
+                .unwrap(classOf[SessionFactory])
+                .getSessionFactoryOptions
+                .isSecondLevelCacheEnabled
+            if enabled then Some(new CacheInvalidator(entityManagerFactory, DefaultTables, interval))
+            else None
+        catch
+            case NonFatal(e) =>
+                log.atError.withCause(e).log("Failed to start the second-level cache invalidator")
+                None
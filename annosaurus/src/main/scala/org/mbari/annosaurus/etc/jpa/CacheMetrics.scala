@@ -0,0 +1,91 @@
+/*
+ * Copyright 2017 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.annosaurus.etc.jpa
+
+import io.prometheus.metrics.core.metrics.{CounterWithCallback, GaugeWithCallback}
+import io.prometheus.metrics.model.registry.PrometheusRegistry
+import jakarta.persistence.EntityManagerFactory
+import org.hibernate.SessionFactory
+import org.hibernate.stat.CacheRegionStatistics
+
+/**
+ * Exports Hibernate second-level and query cache statistics to Prometheus. Values are read from Hibernate's
+ * statistics each time /metrics is scraped.
+ */
+object CacheMetrics:
+
+    /**
+     * @param entityManagerFactory
+     *   The factory to report on. Statistics must be enabled (hibernate.generate_statistics)
+     * @param regions
+     *   The cache regions to report on
+     * @param registry
+     *   The registry backing the /metrics endpoint
+     */
+    def register(
+        entityManagerFactory: EntityManagerFactory,
+        regions: Seq[String],
+        registry: PrometheusRegistry = PrometheusRegistry.defaultRegistry
+    ): Unit =
+        val statistics = entityManagerFactory.unwrap(classOf[SessionFactory]).getStatistics
+
+        def eachRegion(fn: CacheRegionStatistics => Long)(call: (Double, String) => Unit): Unit =
+            for
+                region <- regions
+                stats  <- Option(statistics.getCacheRegionStatistics(region))
+                value = fn(stats)
+                if value >= 0 // -1 means the provider does not report it
+            do call(value.toDouble, region)
+
+        CounterWithCallback
+            .builder()
+            .name("annosaurus_cache_hits")
+            .help("Second-level and query cache hits")
+            .labelNames("region")
+            .callback(cb => eachRegion(_.getHitCount)((v, r) => cb.call(v, r)))
+            .register(registry)
+
+        CounterWithCallback
+            .builder()
+            .name("annosaurus_cache_misses")
+            .help("Second-level and query cache misses")
+            .labelNames("region")
+            .callback(cb => eachRegion(_.getMissCount)((v, r) => cb.call(v, r)))
+            .register(registry)
+
+        CounterWithCallback
+            .builder()
+            .name("annosaurus_cache_puts")
+            .help("Second-level and query cache puts")
+            .labelNames("region")
+            .callback(cb => eachRegion(_.getPutCount)((v, r) => cb.call(v, r)))
+            .register(registry)
+
+        GaugeWithCallback
+            .builder()
+            .name("annosaurus_cache_size")
+            .help("Number of entries held in memory by each cache region")
+            .labelNames("region")
+            .callback(cb => eachRegion(_.getElementCountInMemory)((v, r) => cb.call(v, r)))
+            .register(registry)
+
+        CounterWithCallback
+            .builder()
+            .name("annosaurus_cache_query_executions")
+            .help("Queries executed against the database")
+            .callback(cb => cb.call(statistics.getQueryExecutionCount.toDouble))
+            .register(registry)
@@ -16,53 +16,92 @@
 
 package org.mbari.annosaurus.etc.nats
 
+import io.reactivex.rxjava3.core.Observable
 import io.reactivex.rxjava3.subjects.Subject
 import org.mbari.annosaurus.repository.jpa.TransactionNotifier
 import org.mbari.annosaurus.repository.jpa.entity.{AssociationEntity, ObservationEntity}
 
+import scala.jdk.CollectionConverters.*
+
 /**
  * Translates JPA TransactionNotifier messages received from source into NATS messages. Then forwards the NATS messages
  * to the sink.
  *
+ * Each committed transaction arrives as one TransactionNotifier.BatchMessage per action and entity class. With
+ * coalesce on, each becomes one or more [[NatsBatchMessage]]s of at most coalesceSize uuids. With it off, each row
+ * becomes its own [[NatsMessage]], as older consumers expect.
+ *
  * @author Brian Schlining
  * @since 2026-03-18
- * @param source The source of messages, typically the TransactionNotifier
+ * @param source The source of messages, typically the TransactionNotifier or, with the outbox, Outbox.messages
  * @param sink The sink of messages, typically the EventBus.RxSubject
+ * @param coalesce true to send one message per batch of rows, false to send one message per row
+ * @param coalesceSize The most uuids in one NatsBatchMessage
  */
-class NatsBridge(source: Subject[?], val sink: Subject[? >: NatsMessage]) extends AutoCloseable {
+class NatsBridge(
+    source: Observable[?],
+    val sink: Subject[? >: NatsEvent],
+    coalesce: Boolean = false,
+    coalesceSize: Int = 1000
+) extends AutoCloseable {
 
     private val log = System.getLogger(getClass.getName)
     private val observationClass = classOf[ObservationEntity]
     private val associationClass = classOf[AssociationEntity]
 
     private val disposable = source
-        .ofType(classOf[TransactionNotifier.Message[?]])
-        .subscribe(msg => handle(msg).foreach(sink.onNext))
+        .ofType(classOf[Object])
+        .subscribe(obj =>
+            obj match
+                case msg: TransactionNotifier.Message[?]       => handle(msg).foreach(sink.onNext)
+                case msg: TransactionNotifier.BatchMessage[?]  => handleBatch(msg).foreach(sink.onNext)
+                case msg: TransactionNotifier.RenameMessage[?] => handleRename(msg).foreach(sink.onNext)
+                case _                                         => ()
+        )
+
 
+    def handle(msg: TransactionNotifier.Message[?]): Option[NatsMessage] =
+        for
+            a <- action(msg.action())
+            d <- dataType(msg.clazz())
+        yield
+            NatsMessage(a, d, msg.uuid(), Option(msg.videoReferenceUuid()), Option(msg.concept()))
 
-    def handle(msg: TransactionNotifier.Message[?]): Option[NatsMessage] = {
+    def handleBatch(msg: TransactionNotifier.BatchMessage[?]): Seq[NatsEvent] =
+        if coalesce then
+            val opt = for
+                a <- action(msg.action())
+                d <- dataType(msg.clazz())
+            yield
+                val videoReferenceUuid = Option(msg.videoReferenceUuid())
+                val concept            = Option(msg.concept())
+                msg.uuids()
+                    .asScala
+                    .toSeq
+                    .grouped(coalesceSize)
+                    .map(uuids => NatsBatchMessage(a, d, uuids, videoReferenceUuid, concept))
+                    .toSeq
+            opt.getOrElse(Nil)
+        else
+            msg.messages().asScala.toSeq.flatMap(handle)
 
-        val action = msg.action() match
+    def handleRename(msg: TransactionNotifier.RenameMessage[?]): Option[NatsRenameMessage] =
+        dataType(msg.clazz()).map(d => NatsRenameMessage(d, msg.field(), msg.oldValue(), msg.newValue(), msg.count()))
+
+    private def action(action: TransactionNotifier.Action): Option[NatsMessage.Actions] =
+        action match
             case TransactionNotifier.Action.CREATE  => Some(NatsMessage.Actions.CREATED)
             case TransactionNotifier.Action.UPDATE  => Some(NatsMessage.Actions.UPDATED)
             case TransactionNotifier.Action.REMOVE  => Some(NatsMessage.Actions.DELETED)
             case _ => None
 
-        val clazz = msg.clazz()
-        val dataType =
-            if observationClass.isAssignableFrom(clazz) then
-                Some(NatsMessage.DataTypes.OBSERVATION)
-            else if associationClass.isAssignableFrom(clazz) then
-                Some(NatsMessage.DataTypes.ASSOCIATION)
-            else
-                None
-
-        for
-            a <- action
-            d <- dataType
-        yield
-            NatsMessage(a, d, msg.uuid())
-    }
+    private def dataType(clazz: Class[?]): Option[NatsMessage.DataTypes] =
+        if observationClass.isAssignableFrom(clazz) then
+            Some(NatsMessage.DataTypes.OBSERVATION)
+        else if associationClass.isAssignableFrom(clazz) then
+            Some(NatsMessage.DataTypes.ASSOCIATION)
+        else
+            None
 
 
     override def close(): Unit = disposable.dispose()
@@ -16,14 +16,82 @@
 
 package org.mbari.annosaurus.etc.nats
 
+import org.mbari.annosaurus.messaging.MessageEncoding
+
+import java.lang.Long as JLong
+import java.nio.file.Path
+import java.time.Duration
+
 /**
  * Configuration for NATS from application.conf/reference.conf
  * @param url e.g. nats://localhost:4222
  * @param enable true if NATS should be used
  * @param topic the NATS topic to publish to
+ * @param batchSize the most messages sent in one batch
+ * @param batchTimeout how long to wait for a batch to fill before sending what there is
+ * @param queueSize the number of messages that can wait to be published
+ * @param overflow what to do with a message when the queue is full
+ * @param spillDirectory where to spill messages when overflow is Spill. Defaults to the temp directory
+ * @param jetStream true to publish through JetStream and wait for the server's acknowledgements
+ * @param coalesce true to send the rows changed in a transaction as NatsBatchMessages. false sends one NatsMessage
+ *   per row
+ * @param coalesceSize the most uuids in one NatsBatchMessage
+ * @param partitions the number of per-video subjects for each data type. 0 publishes everything to topic
+ * @param encoding how messages are serialized. It is sent in the Content-Type header of every message
  */
 final case class NatsConfig(
     url: String,
     enable: Boolean,
-    topic: String
+    topic: String,
+    batchSize: Int = 100,
+    batchTimeout: Duration = Duration.ofMillis(50),
+    queueSize: Int = 10000,
+    overflow: NatsConfig.Overflow = NatsConfig.Overflow.DropOldest,
+    spillDirectory: Option[Path] = None,
+    jetStream: Boolean = false,
+    coalesce: Boolean = false,
+    coalesceSize: Int = 1000,
+    partitions: Int = 0,
+    encoding: MessageEncoding = MessageEncoding.Json
 )
+
+object NatsConfig:
+
+    /**
+     * The subject an event is published to. With partitions, it is `<topic>.<dataType>.<bucket>`, where dataType is
+     * lower case and bucket is the last 16 hex digits of the video reference uuid, as an unsigned number, modulo
+     * partitions. Events that aren't tied to one video, such as renames, use `all` as the bucket. Consumers of a bucket
+     * should subscribe to it and to `all`.
+     *
+     * @param event The event to publish
+     * @return The NATS subject
+     */
+    def subject(config: NatsConfig, event: NatsEvent): String =
+        if config.partitions <= 0 then config.topic
+        else
+            val bucket = event
+                .videoReferenceUuid
+                .map(uuid => JLong.remainderUnsigned(uuid.getLeastSignificantBits, config.partitions).toString)
+                .getOrElse("all")
+            s"${config.topic}.${event.dataType.toLowerCase}.$bucket"
+
+    /** What the publisher does with a message when its queue is full */
+    enum Overflow:
+        /**
+         * Wait for room. Events are emitted on the thread that committed the transaction, so while NATS is slow or
+         * unreachable the writes that produce the events stall, and with them the API requests that made them
+         */
+        case Block
+
+        /** Drop the oldest queued message */
+        case DropOldest
+
+        /** Write the message to a file and publish it once the queue has drained */
+        case Spill
+
+    object Overflow:
+        def parse(s: String): Overflow = s.trim.toLowerCase match
+            case "block"       => Block
+            case "drop-oldest" => DropOldest
+            case "spill"       => Spill
+            case _             => throw new IllegalArgumentException(s"Unknown NATS overflow policy: $s")
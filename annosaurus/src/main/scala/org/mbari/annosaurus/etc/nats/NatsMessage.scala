@@ -17,11 +17,25 @@
 package org.mbari.annosaurus.etc.nats
 
 import org.mbari.annosaurus.domain.{Annotation, Association, Observation}
-import org.mbari.annosaurus.messaging.Message
+import org.mbari.annosaurus.messaging.{Message, MessageEncoding}
 import org.mbari.annosaurus.etc.circe.CirceCodecs.{*, given}
 
 import java.util.UUID
 
+/** A message that is published to NATS */
+trait NatsEvent:
+    def toJson: String
+    def toCbor: Array[Byte]
+
+    /** The event serialized with encoding. See [[Message.encode]] */
+    def encode(encoding: MessageEncoding): Array[Byte]
+
+    /** 1 of OBSERVATION or ASSOCIATION */
+    def dataType: String
+
+    /** The video the change belongs to. Picks the subject the message is published to */
+    def videoReferenceUuid: Option[UUID] = None
+
 /**
  * A minimal message that contains the action, data type, and uuid of the affected record. This is used to trigger
  * updates in other services without sending the entire record. The receiving service can then query for the
@@ -30,17 +44,28 @@ import java.util.UUID
  * @param action 1 of CREATED, UPDATED, or DELETED
  * @param dataType 1 of OBSERVATION or ASSOCIATION
  * @param uuid The uuid of the record that was affected
+ * @param videoReferenceUuid The video of the record, if known
+ * @param concept The concept of an observation, if known
  */
-case class NatsMessage(action: String, dataType: String, uuid: UUID) extends Message[UUID]:
+case class NatsMessage(
+    action: String,
+    dataType: String,
+    uuid: UUID,
+    override val videoReferenceUuid: Option[UUID] = None,
+    concept: Option[String] = None
+) extends Message[UUID]
+    with NatsEvent:
 
     override def content: UUID = uuid
 
     override def toJson: String = this.stringify
 
+    override def toCbor: Array[Byte] = this.cborify
+
 object NatsMessage:
 
     enum Actions:
-        case DELETED, CREATED, UPDATED
+        case DELETED, CREATED, UPDATED, RENAMED
 
     enum DataTypes:
         case OBSERVATION, ASSOCIATION
@@ -50,7 +75,91 @@ object NatsMessage:
      * @param action 1 of CREATED, UPDATED, or DELETED
      * @param dataType 1 of OBSERVATION or ASSOCIATION
      * @param uuid The uuid of the record that was affected
+     * @param videoReferenceUuid The video of the record, if known
+     * @param concept The concept of an observation, if known
      * @return A NatsMessage
      */
+    def apply(
+        action: Actions,
+        dataType: DataTypes,
+        uuid: UUID,
+        videoReferenceUuid: Option[UUID],
+        concept: Option[String]
+    ): NatsMessage =
+        NatsMessage(action.toString, dataType.toString, uuid, videoReferenceUuid, concept)
+
     def apply(action: Actions, dataType: DataTypes, uuid: UUID): NatsMessage =
-        NatsMessage(action.toString, dataType.toString, uuid)
+        NatsMessage(action, dataType, uuid, None, None)
+
+/**
+ * The rows of one data type, video and concept that had the same action applied in one transaction. Bulk writes send
+ * these instead of one [[NatsMessage]] per row. A large transaction is split into several messages with at most
+ * messaging.nats.coalesce.size uuids each.
+ *
+ * @param action 1 of CREATED, UPDATED, or DELETED
+ * @param dataType 1 of OBSERVATION or ASSOCIATION
+ * @param uuids The uuids of the records that were affected
+ * @param videoReferenceUuid The video of the records, if known
+ * @param concept The concept of the observations, if known
+ */
+case class NatsBatchMessage(
+    action: String,
+    dataType: String,
+    uuids: Seq[UUID],
+    override val videoReferenceUuid: Option[UUID] = None,
+    concept: Option[String] = None
+) extends Message[Seq[UUID]]
+    with NatsEvent:
+
+    override def content: Seq[UUID] = uuids
+
+    override def toJson: String = this.stringify
+
+    override def toCbor: Array[Byte] = this.cborify
+
+object NatsBatchMessage:
+
+    def apply(
+        action: NatsMessage.Actions,
+        dataType: NatsMessage.DataTypes,
+        uuids: Seq[UUID],
+        videoReferenceUuid: Option[UUID],
+        concept: Option[String]
+    ): NatsBatchMessage =
+        NatsBatchMessage(action.toString, dataType.toString, uuids, videoReferenceUuid, concept)
+
+    def apply(action: NatsMessage.Actions, dataType: NatsMessage.DataTypes, uuids: Seq[UUID]): NatsBatchMessage =
+        NatsBatchMessage(action, dataType, uuids, None, None)
+
+/**
+ * Sent once when a value is renamed across many records, e.g. when a concept is renamed in the knowledge base.
+ * Receiving services should treat every record of dataType that has field = oldValue as changed.
+ *
+ * @param action Always RENAMED
+ * @param dataType 1 of OBSERVATION or ASSOCIATION
+ * @param field The renamed field. concept for observations, toConcept for associations
+ * @param oldValue The value before the rename
+ * @param newValue The value after the rename
+ * @param count The number of records that were renamed
+ */
+case class NatsRenameMessage(
+    action: String,
+    dataType: String,
+    field: String,
+    oldValue: String,
+    newValue: String,
+    count: Int
+) extends Message[String]
+    with NatsEvent:
+
+    override def content: String = newValue
+
+    override def toJson: String = this.stringify
+
+    override def toCbor: Array[Byte] = this.cborify
+
+object NatsRenameMessage:
+
+    def apply(dataType: NatsMessage.DataTypes, field: String, oldValue: String, newValue: String, count: Int)
+        : NatsRenameMessage =
+        NatsRenameMessage(NatsMessage.Actions.RENAMED.toString, dataType.toString, field, oldValue, newValue, count)
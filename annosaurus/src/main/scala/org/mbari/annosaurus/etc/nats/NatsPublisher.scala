@@ -16,41 +16,96 @@
 
 package org.mbari.annosaurus.etc.nats
 
-import io.nats.client.Nats
+import io.nats.client.impl.Headers
+import io.nats.client.{Nats, Options}
+import io.prometheus.metrics.core.metrics.{Counter, GaugeWithCallback, Histogram}
+import io.prometheus.metrics.model.registry.PrometheusRegistry
+import io.reactivex.rxjava3.core.Observable
 import io.reactivex.rxjava3.disposables.Disposable
 import io.reactivex.rxjava3.schedulers.Schedulers
 import io.reactivex.rxjava3.subjects.Subject
 import org.mbari.annosaurus.etc.jdk.Loggers
 import org.mbari.annosaurus.etc.jdk.Loggers.given
-import org.mbari.annosaurus.etc.rxjava.EventBus
+import org.mbari.annosaurus.etc.rxjava.{DedupeConfig, DedupeWindow, EventBus}
 import org.mbari.annosaurus.repository.jpa.TransactionNotifier
 
-import java.nio.charset.StandardCharsets
-import java.util.concurrent.{LinkedBlockingQueue, TimeUnit}
+import java.nio.file.Paths
+import java.time.Duration
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.{ArrayBlockingQueue, CompletableFuture, ConcurrentHashMap, TimeUnit}
+import scala.collection.mutable.ArrayBuffer
+import scala.jdk.CollectionConverters.*
 import scala.util.Try
 import scala.util.control.NonFatal
 
-class NatsPublisher(val url: String, val topic: String, val source: Subject[?], closeOp: () => Unit = () => {}):
+/**
+ * Publishes NatsEvents from the event bus to NATS. Events are encoded as they arrive and queued. A single thread
+ * drains the queue in batches of up to batchSize messages, or whatever arrived within batchTimeout, and confirms each
+ * batch with the server before taking the next: a flush for core NATS, or the publish acknowledgements with
+ * JetStream. A batch that fails is retried, in order, with a backoff. The NATS client reconnects on its own in the
+ * meantime.
+ *
+ * The queue is bounded. When it is full the overflow policy in the config decides what happens. Events are enqueued
+ * on the thread that emits them, which is the thread that committed the transaction. With Overflow.Block that thread,
+ * and so the API request that made the change, waits until the publisher has made room.
+ *
+ * Every message has a Content-Type header naming the encoding in the config, so subscribers can tell JSON from CBOR.
+ */
+class NatsPublisher(
+    val config: NatsConfig,
+    val source: Subject[?],
+    closeOp: () => Unit = () => {},
+    dedupe: DedupeConfig = DedupeConfig()
+):
 
     private val log                    = Loggers(getClass)
-    @volatile private var nc           = Nats.connect(url)
-    private val queue                  = new LinkedBlockingQueue[NatsMessage]()
+    private val nc                     = Nats.connect(Options.builder().server(config.url).maxReconnects(-1).build())
+    private lazy val jetStream         = nc.jetStream()
+    private val queue                  = new ArrayBlockingQueue[NatsPublisher.Outgoing](config.queueSize)
+    private val spill                  =
+        if config.overflow == NatsConfig.Overflow.Spill then
+            val dir = config.spillDirectory.getOrElse(Paths.get(System.getProperty("java.io.tmpdir")))
+            Some(new SpillQueue(dir.resolve(s"annosaurus-nats-${config.topic}.spill")))
+        else None
+    private val recent                 = DedupeWindow[NatsEvent]("nats", dedupe)
+    private val headers                = new Headers().put("Content-Type", config.encoding.contentType)
+    private val accepted               = new AtomicLong(0L)
+    private val settledLock            = new Object
+    private var settled                = 0L // guarded by settledLock
     private val disposable: Disposable = source
-        .ofType(classOf[NatsMessage])
+        .ofType(classOf[NatsEvent])
         .subscribeOn(Schedulers.io())
-        .distinct()
-        .subscribe(m => queue.offer(m))
+        .filter(m => recent.add(m))
+        .subscribe(m => enqueue(NatsPublisher.Outgoing(NatsConfig.subject(config, m), m.encode(config.encoding))))
+
+    NatsPublisher.register(this)
 
     @volatile var ok = true
 
+    def url: String   = config.url
+    def topic: String = config.topic
+
+    /** The number of messages waiting to be published, including spilled ones */
+    def depth: Int = queue.size() + spill.map(_.size).getOrElse(0)
+
     val thread = new Thread(
         () =>
+            val batch = ArrayBuffer[NatsPublisher.Outgoing]()
+            var delay = 100L
             while ok do
                 try
-                    val msg = queue.poll(3600L, TimeUnit.SECONDS)
-                    if msg != null then publish(msg)
+                    if batch.isEmpty then fill(batch)
+                    if batch.nonEmpty then
+                        if send(batch.toSeq) then
+                            settle(batch.size)
+                            batch.clear()
+                            delay = 100L
+                        else
+                            Thread.sleep(delay)
+                            delay = Math.min(delay * 2, 30000L)
                 catch
-                    case NonFatal(e) =>
+                    case _: InterruptedException => ()
+                    case NonFatal(e)             =>
                         log.atWarn
                             .withCause(e)
                             .log("Unexpected error in NatsPublisher thread")
@@ -60,65 +115,172 @@ class NatsPublisher(val url: String, val topic: String, val source: Subject[?],
     thread.setDaemon(true)
     thread.start()
 
-    private def publish(msg: NatsMessage): Unit =
+    /**
+     * Wait until every message enqueued before this call has either been confirmed by the server or dropped by the
+     * overflow policy.
+     *
+     * @return
+     *   false if that did not happen within timeout
+     */
+    def awaitDelivered(timeout: Duration): Boolean =
+        val mark     = accepted.get()
+        val deadline = System.nanoTime() + timeout.toNanos
+        settledLock.synchronized:
+            while settled < mark && deadline - System.nanoTime() > 0 do
+                settledLock.wait(Math.max(1L, (deadline - System.nanoTime()) / 1000000L))
+            settled >= mark
+
+    private def settle(n: Int): Unit = settledLock.synchronized:
+        settled = settled + n
+        settledLock.notifyAll()
+
+    private def enqueue(msg: NatsPublisher.Outgoing): Unit =
+        // Counted before it is queued so that awaitDelivered never sees a queued message it has not counted
+        accepted.incrementAndGet()
+        config.overflow match
+            case NatsConfig.Overflow.Block      => queue.put(msg)
+            case NatsConfig.Overflow.DropOldest =>
+                while !queue.offer(msg) do
+                    if queue.poll() != null then
+                        NatsPublisher.dropped.labelValues(topic).inc()
+                        settle(1)
+            case NatsConfig.Overflow.Spill      =>
+                // Once spilling, keep spilling until the file drains so that messages stay in order
+                val s = spill.get
+                if !s.isEmpty || !queue.offer(msg) then s.append(msg)
+
+    /**
+     * Wait for the first message, then gather more until the batch is full or batchTimeout has passed. While the spill
+     * file holds messages there is a backlog, so nothing waits: the batch is filled from the queue, whose messages are
+     * all older than the spilled ones, and topped up from the file.
+     */
+    private def fill(batch: ArrayBuffer[NatsPublisher.Outgoing]): Unit =
+        spill.filterNot(_.isEmpty) match
+            case Some(s) =>
+                val queued = new java.util.ArrayList[NatsPublisher.Outgoing]()
+                queue.drainTo(queued, config.batchSize)
+                batch ++= queued.asScala
+                if batch.size < config.batchSize then batch ++= s.poll(config.batchSize - batch.size)
+            case None    => gather(batch)
+
+    private def gather(batch: ArrayBuffer[NatsPublisher.Outgoing]): Unit =
+        Option(queue.poll(1L, TimeUnit.SECONDS)) match
+            case None        => ()
+            case Some(first) =>
+                batch += first
+                val deadline  = System.nanoTime() + config.batchTimeout.toNanos
+                var remaining = deadline - System.nanoTime()
+                while batch.size < config.batchSize && remaining > 0 do
+                    Option(queue.poll(remaining, TimeUnit.NANOSECONDS)).foreach(batch += _)
+                    remaining = deadline - System.nanoTime()
+
+    /** @return true if the server confirmed every message in the batch */
+    private def send(batch: Seq[NatsPublisher.Outgoing]): Boolean =
+        val start   = System.nanoTime()
+        val timeout = Duration.ofSeconds(10)
         try
-            nc.publish(topic, msg.toJson.getBytes(StandardCharsets.UTF_8))
+            if config.jetStream then
+                val acks = batch.map(m => jetStream.publishAsync(m.subject, headers, m.data))
+                CompletableFuture.allOf(acks*).get(timeout.toMillis, TimeUnit.MILLISECONDS)
+            else
+                batch.foreach(m => nc.publish(m.subject, headers, m.data))
+                nc.flush(timeout)
+            NatsPublisher.latency.labelValues(topic).observe((System.nanoTime() - start) / 1e9)
+            NatsPublisher.published.labelValues(topic).inc(batch.size.toDouble)
+            true
         catch
             case NonFatal(e) =>
-                log.atWarn.withCause(e).log("Failed to publish to NATS, requeueing message and reconnecting")
-                queue.offer(msg)
-                reconnect()
-
-    private def reconnect(): Unit =
-        var delay    = 1000L
-        var connected = false
-        while !connected && ok do
-            Try(nc.close())
-            try
-                log.atInfo.log(s"Attempting to reconnect to NATS at $url ...")
-                nc = Nats.connect(url)
-                connected = true
-                log.atInfo.log("Reconnected to NATS successfully")
-            catch
-                case NonFatal(e) =>
-                    log.atWarn.withCause(e).log(s"Reconnect failed, retrying in ${delay}ms")
-                    Thread.sleep(delay)
-                    delay = Math.min(delay * 2, 30000L)
+                log.atWarn.withCause(e).log(s"Failed to publish ${batch.size} messages to NATS. Will retry")
+                NatsPublisher.failures.labelValues(topic).inc()
+                false
 
     def close(): Unit =
         ok = false
+        thread.interrupt()
         Try(nc.close())
         disposable.dispose()
+        spill.foreach(_.close())
+        NatsPublisher.publishers.remove(this)
         closeOp()
 
 object NatsPublisher:
 
     private val log = Loggers(getClass)
 
+    /** An encoded message and the subject to publish it to */
+    final case class Outgoing(subject: String, data: Array[Byte])
+
+    // -- Metrics
+    private val registry   = PrometheusRegistry.defaultRegistry
+    private val publishers = ConcurrentHashMap.newKeySet[NatsPublisher]()
+
+    private lazy val latency = Histogram
+        .builder()
+        .name("annosaurus_nats_publish_seconds")
+        .help("Time to publish a batch and have the server confirm it")
+        .labelNames("topic")
+        .register(registry)
+
+    private lazy val published = Counter
+        .builder()
+        .name("annosaurus_nats_published")
+        .help("Messages published to NATS")
+        .labelNames("topic")
+        .register(registry)
+
+    private lazy val dropped = Counter
+        .builder()
+        .name("annosaurus_nats_dropped")
+        .help("Messages dropped because the publish queue was full")
+        .labelNames("topic")
+        .register(registry)
+
+    private lazy val failures = Counter
+        .builder()
+        .name("annosaurus_nats_failures")
+        .help("Batches that failed to publish and were retried")
+        .labelNames("topic")
+        .register(registry)
+
+    private lazy val depthGauge: Unit =
+        GaugeWithCallback
+            .builder()
+            .name("annosaurus_nats_queue_depth")
+            .help("Messages waiting to be published, including spilled ones")
+            .labelNames("topic")
+            .callback(cb => publishers.forEach(p => cb.call(p.depth.toDouble, p.topic)))
+            .register(registry)
+
+    private def register(publisher: NatsPublisher): Unit =
+        depthGauge
+        publishers.add(publisher)
+
     /**
      * Creates a NatsPublisher if the config contains NATS info. Otherwise returns None.
      *
      * @param opt The NATS config infor. The Config parser may not contain info for NATS. If it doesn't it returns None.
-     * @param subject The RX subjectd to listen for NatsMessages. This is typically the EventBus.RxSubject but can be overridden for testing.
-     *                NatsMessage are converted to JSON and published to NATS.
+     * @param subject The RX subjectd to listen for NatsEvents. This is typically the EventBus.RxSubject but can be overridden for testing.
+     *                NatsEvents are encoded as set in the config and published to NATS.
+     * @param dedupe How long, and how many, recent events are remembered to drop duplicates
+     * @param source The TransactionNotifier messages to translate. Use Outbox.messages when the outbox is enabled
      * @return
      */
     def autowire(
         opt: Option[NatsConfig],
-        subject: Subject[Any] = EventBus.RxSubject
+        subject: Subject[Any] = EventBus.RxSubject,
+        dedupe: DedupeConfig = DedupeConfig(),
+        source: Observable[?] = TransactionNotifier.getRxSubject
     ): Option[NatsPublisher] = {
         val x = try
             for
                 config <- opt
                 if config.enable
             yield
-                val source = TransactionNotifier.getRxSubject
-
                 // Translates TransactionNotifier messages to NatsMessages and forwards to subject
-                val bridge = new NatsBridge(source, subject)
+                val bridge = new NatsBridge(source, subject, config.coalesce, config.coalesceSize)
 
                 val closeOp = () => bridge.close()
-                new NatsPublisher(config.url, config.topic, subject, closeOp)
+                new NatsPublisher(config, subject, closeOp, dedupe)
         catch
             case NonFatal(e) =>
                 log.atError.withCause(e).log("Failed to initialize NATS publisher")
@@ -130,4 +292,6 @@ object NatsPublisher:
     def log(opt: Option[NatsPublisher]): Unit = opt match
         case None    => log.atInfo.log("NATS is not enabled/configured")
         case Some(p) =>
-            log.atInfo.log(s"NATS is publishing annotations to '${p.url}' using topic '${p.topic}'")
+            val subjects = if p.config.partitions > 0 then s"subjects '${p.topic}.>'" else s"topic '${p.topic}'"
+            log.atInfo
+                .log(s"NATS is publishing ${p.config.encoding.contentType} annotations to '${p.url}' using $subjects")
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2017 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mbari.annosaurus.etc.nats
+
+import org.mbari.annosaurus.etc.jdk.Loggers
+import org.mbari.annosaurus.etc.jdk.Loggers.given
+
+import java.io.{EOFException, RandomAccessFile}
+import java.nio.file.Path
+import scala.collection.mutable.ArrayBuffer
+
+/**
+ * A first-in, first-out queue of outgoing messages kept in a file. The publisher spills to it when its in-memory queue
+ * is full. Records left over from a previous run are kept and published first, so messages that were already sent
+ * just before a crash may be sent again. The file is truncated whenever the queue empties.
+ *
+ * @param path
+ *   The file to use. It is created if it does not exist
+ */
+class SpillQueue(path: Path) extends AutoCloseable:
+
+    private val log     = Loggers(getClass)
+    private val file    = new RandomAccessFile(path.toFile, "rw")
+    private var readPos = 0L
+    private var count   = recover()
+
+    if count > 0 then log.atInfo.log(s"Found $count unpublished messages in $path")
+
+    /** Count the records in the file, dropping a partial record at the end */
+    private def recover(): Int =
+        var n    = 0
+        var good = 0L
+        file.seek(0)
+        try
+            while file.getFilePointer < file.length() do
+                readRecord()
+                good = file.getFilePointer
+                n += 1
+        catch case _: EOFException => ()
+        file.setLength(good)
+        n
+
+    private def readRecord(): NatsPublisher.Outgoing =
+        val subject = file.readUTF()
+        val data    = new Array[Byte](file.readInt())
+        file.readFully(data)
+        NatsPublisher.Outgoing(subject, data)
+
+    /** The number of messages in the queue */
+    def size: Int = synchronized(count)
+
+    def isEmpty: Boolean = size == 0
+
+    def append(msg: NatsPublisher.Outgoing): Unit = synchronized:
+        file.seek(file.length())
+        file.writeUTF(msg.subject)
+        file.writeInt(msg.data.length)
+        file.write(msg.data)
+        count += 1
+
+    /** Remove and return up to `max` of the oldest messages */
+    def poll(max: Int): Seq[NatsPublisher.Outgoing] = synchronized:
+        val xs = ArrayBuffer[NatsPublisher.Outgoing]()
+        file.seek(readPos)
+        while xs.size < max && count > 0 do
+            xs += readRecord()
+            count -= 1
+        readPos = file.getFilePointer
+        if count == 0 then
+            file.setLength(0)
+            readPos = 0
+        xs.toSeq
+
+    override def close(): Unit = synchronized(file.close())
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2017 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mbari.annosaurus.etc.rxjava
+
+import io.prometheus.metrics.core.metrics.GaugeWithCallback
+import io.prometheus.metrics.model.registry.PrometheusRegistry
+import io.reactivex.rxjava3.core.Observable
+import io.reactivex.rxjava3.disposables.Disposable
+import org.mbari.annosaurus.etc.jdk.Loggers.given
+
+import java.time.Duration
+import java.util.concurrent.ConcurrentHashMap
+import scala.collection.mutable
+import scala.jdk.CollectionConverters.*
+import scala.util.control.NonFatal
+
+/**
+ * Settings for a [[ChangeFeed]]
+ * @param bufferSize
+ *   The number of recent changes kept for clients that resume
+ * @param heartbeat
+ *   How often an idle stream sends a keep-alive, so that proxies don't close it
+ */
+final case class ChangeFeedConfig(bufferSize: Int = 10000, heartbeat: Duration = Duration.ofSeconds(15))
+
+/**
+ * Gives every item from source a token and keeps the last bufferSize of them in a ring, so that a client that drops
+ * its connection can resume where it left off. Tokens increase by one per item. They start from the time the feed was
+ * created, so they keep increasing across restarts, but they are only meaningful to the instance that issued them.
+ *
+ * @param name
+ *   Labels the metrics
+ */
+class ChangeFeed[A](val name: String, source: Observable[? <: A], bufferSize: Int) extends AutoCloseable:
+
+    require(bufferSize > 0, "bufferSize must be positive")
+
+    private val log       = System.getLogger(getClass.getName)
+    private val buffer    = new Array[ChangeFeed.Change[A]](bufferSize)
+    private val listeners = mutable.LinkedHashSet.empty[ChangeFeed.Change[A] => Unit]
+    private var head      = 0 // oldest entry
+    private var length    = 0
+    private var last      = System.currentTimeMillis() * 1000L
+
+    private val disposable: Disposable = source.subscribe(a => publish(a))
+
+    /** The token of the latest change */
+    def lastToken: Long = synchronized(last)
+
+    /** The number of connected listeners */
+    def listenerCount: Int = synchronized(listeners.size)
+
+    /** Give an item the next token, remember it and pass it to every listener */
+    def publish(a: A): ChangeFeed.Change[A] = synchronized:
+        last += 1
+        val change = ChangeFeed.Change(last, a)
+        if length == bufferSize then
+            head = (head + 1) % bufferSize
+            length -= 1
+        buffer((head + length) % bufferSize) = change
+        length += 1
+        listeners.foreach(notify(_, change))
+        change
+
+    /**
+     * Listen for changes. Listeners are called while the feed is locked, so they must hand the change off rather than
+     * block.
+     *
+     * @param since
+     *   Resume after this token. The buffered changes after it are passed to the listener before any new ones. None
+     *   listens for new changes only
+     * @param onGap
+     *   Called first if changes after since are no longer buffered, or since was not issued by this feed. Every
+     *   buffered change is then passed to the listener
+     * @param listener
+     *   Receives the changes in token order
+     * @return
+     *   Close it to stop listening
+     */
+    def subscribe(since: Option[Long], onGap: () => Unit, listener: ChangeFeed.Change[A] => Unit): AutoCloseable =
+        synchronized:
+            for s <- since do
+                val oldest = if length == 0 then last + 1 else buffer(head).token
+                val gap    = s < oldest - 1 || s > last
+                if gap then onGap()
+                for i <- 0 until length do
+                    val change = buffer((head + i) % bufferSize)
+                    if gap || change.token > s then notify(listener, change)
+            listeners += listener
+        () => synchronized { listeners -= listener; () }
+
+    private def notify(listener: ChangeFeed.Change[A] => Unit, change: ChangeFeed.Change[A]): Unit =
+        try listener(change)
+        catch
+            case NonFatal(e) =>
+                log.atWarn.withCause(e).log(s"A $name change feed listener failed")
+
+    override def close(): Unit =
+        disposable.dispose()
+        ChangeFeed.feeds.remove(name)
+
+object ChangeFeed:
+
+    /** An item and its resume token */
+    final case class Change[+A](token: Long, value: A)
+
+    private val registry = PrometheusRegistry.defaultRegistry
+    private val feeds    = new ConcurrentHashMap[String, ChangeFeed[?]]()
+
+    private lazy val listenersGauge: Unit =
+        GaugeWithCallback
+            .builder()
+            .name("annosaurus_change_feed_listeners")
+            .help("Clients connected to the change feed")
+            .labelNames("feed")
+            .callback(cb => for (n, f) <- feeds.asScala do cb.call(f.listenerCount.toDouble, n))
+            .register(registry)
+
+    /** Create a feed and export its listener count on /metrics */
+    def apply[A](name: String, source: Observable[? <: A], config: ChangeFeedConfig): ChangeFeed[A] =
+        listenersGauge
+        val f = new ChangeFeed[A](name, source, config.bufferSize)
+        feeds.put(name, f)
+        f
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2017 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mbari.annosaurus.etc.rxjava
+
+import io.prometheus.metrics.core.metrics.{Counter, GaugeWithCallback}
+import io.prometheus.metrics.model.registry.PrometheusRegistry
+
+import java.time.Duration
+import java.util.concurrent.ConcurrentHashMap
+import scala.collection.mutable
+import scala.jdk.CollectionConverters.*
+
+/**
+ * Settings for a [[DedupeWindow]]
+ * @param size
+ *   The number of recent items to remember
+ * @param window
+ *   How long an item is remembered
+ */
+final case class DedupeConfig(size: Int = 10000, window: Duration = Duration.ofMinutes(5))
+
+/**
+ * Drops items that were already seen recently. Unlike RxJava's `distinct()`, which remembers every item it has ever
+ * seen, this only remembers the last `size` items and only for `window`, so memory stays bounded on a long-running
+ * instance. Items are kept in a ring in arrival order, and in a set for constant-time lookups.
+ *
+ * Use it as an RxJava filter: `observable.filter(window.add)`
+ *
+ * @param name
+ *   Labels the metrics
+ */
+class DedupeWindow[A](val name: String, size: Int, window: Duration):
+
+    require(size > 0, "size must be positive")
+
+    private val keys   = new Array[Any](size)
+    private val times  = new Array[Long](size)
+    private val seen   = mutable.HashSet.empty[Any]
+    private val ttl    = window.toNanos
+    private var head   = 0 // oldest entry
+    private var length = 0
+
+    /**
+     * Remember the item.
+     * @return
+     *   true if the item was not seen within the window
+     */
+    def add(a: A): Boolean =
+        val now  = System.nanoTime()
+        val isNew = synchronized:
+            expire(now)
+            if seen.contains(a) then false
+            else
+                if length == size then evictOldest()
+                val i = (head + length) % size
+                keys(i) = a
+                times(i) = now
+                length += 1
+                seen += a
+                true
+        if isNew then DedupeWindow.misses.labelValues(name).inc()
+        else DedupeWindow.hits.labelValues(name).inc()
+        isNew
+
+    /** The number of items remembered */
+    def count: Int = synchronized:
+        expire(System.nanoTime())
+        length
+
+    private def expire(now: Long): Unit =
+        while length > 0 && now - times(head) > ttl do evictOldest()
+
+    private def evictOldest(): Unit =
+        seen -= keys(head)
+        keys(head) = null
+        head = (head + 1) % size
+        length -= 1
+
+object DedupeWindow:
+
+    private val registry = PrometheusRegistry.defaultRegistry
+    private val windows  = new ConcurrentHashMap[String, DedupeWindow[?]]()
+
+    private lazy val hits = Counter
+        .builder()
+        .name("annosaurus_dedupe_hits")
+        .help("Items dropped as duplicates")
+        .labelNames("window")
+        .register(registry)
+
+    private lazy val misses = Counter
+        .builder()
+        .name("annosaurus_dedupe_misses")
+        .help("Items passed through as new")
+        .labelNames("window")
+        .register(registry)
+
+    private lazy val sizeGauge: Unit =
+        GaugeWithCallback
+            .builder()
+            .name("annosaurus_dedupe_size")
+            .help("Items remembered by the dedupe window")
+            .labelNames("window")
+            .callback(cb => for (n, w) <- windows.asScala do cb.call(w.count.toDouble, n))
+            .register(registry)
+
+    /** Create a window and export its size on /metrics */
+    def apply[A](name: String, config: DedupeConfig): DedupeWindow[A] =
+        sizeGauge
+        val w = new DedupeWindow[A](name, config.size, config.window)
+        windows.put(name, w)
+        w
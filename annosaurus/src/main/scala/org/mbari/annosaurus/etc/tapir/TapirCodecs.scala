@@ -17,8 +17,9 @@
 package org.mbari.annosaurus.etc.tapir
 
 import org.mbari.annosaurus.etc.jdk.Instants
+import sttp.model.MediaType
 import sttp.tapir.CodecFormat.TextPlain
-import sttp.tapir.{Codec, DecodeResult}
+import sttp.tapir.{Codec, CodecFormat, DecodeResult}
 
 import java.net.{URI, URL}
 import java.time.Instant
@@ -27,6 +28,10 @@ import scala.util.{Failure, Success, Try}
 
 object TapirCodecs:
 
+    /** Newline-delimited JSON. One JSON object per line. */
+    case class Ndjson() extends CodecFormat:
+        override val mediaType: MediaType = MediaType("application", "x-ndjson")
+
     private val hexFormat = HexFormat.of()
 
     private def decodeUrl(s: String): DecodeResult[URL] =
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2017 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mbari.annosaurus.etc.vertx
+
+import io.prometheus.metrics.core.metrics.{Counter, GaugeWithCallback, Histogram}
+import io.prometheus.metrics.model.registry.PrometheusRegistry
+import io.vertx.core.http.HttpMethod
+import io.vertx.core.{Context, Handler}
+import io.vertx.ext.web.RoutingContext
+import org.mbari.annosaurus.domain.StatusMsg
+import org.mbari.annosaurus.etc.circe.CirceCodecs.{*, given}
+import org.mbari.annosaurus.etc.jdk.Loggers
+import org.mbari.annosaurus.etc.jdk.Loggers.given
+
+import java.time.Duration
+import java.util.concurrent.ConcurrentHashMap
+import scala.collection.mutable
+import scala.jdk.CollectionConverters.*
+
+/**
+ * Limits how many requests of one workload class run at once, so that one workload can't take every worker thread and
+ * pooled connection from the others. Requests over the limit wait in a bounded queue. A request that finds the queue
+ * full, or waits longer than queueTimeout, gets a 503 with a Retry-After header.
+ *
+ * Waiting does not block a thread. The request is paused and resumed through the router when a slot frees up.
+ *
+ * @param name
+ *   The workload. Labels the metrics
+ * @param concurrency
+ *   The number of requests that run at once
+ * @param queueSize
+ *   The number of requests that can wait
+ * @param queueTimeout
+ *   How long a request can wait
+ * @param retryAfter
+ *   Sent to rejected clients as the Retry-After header
+ */
+class Bulkhead(
+    val name: String,
+    val concurrency: Int,
+    val queueSize: Int,
+    queueTimeout: Duration,
+    retryAfter: Duration
+) extends Handler[RoutingContext]:
+
+    private val log = Loggers(getClass)
+
+    private class Waiter(val ctx: RoutingContext, val context: Context, val start: Long):
+        @volatile var timerId: Long = -1
+
+    private var running = 0
+    private val waiting = mutable.ArrayDeque.empty[Waiter]
+
+    /** The number of requests that are running */
+    def active: Int = synchronized(running)
+
+    /** The number of requests waiting to run */
+    def queued: Int = synchronized(waiting.size)
+
+    override def handle(ctx: RoutingContext): Unit =
+        val waiter = new Waiter(ctx, ctx.vertx().getOrCreateContext(), System.nanoTime())
+        val admit  = synchronized:
+            if running < concurrency then
+                running += 1
+                Some(true)
+            else if waiting.size < queueSize then
+                ctx.request().pause()
+                waiting.append(waiter)
+                None
+            else Some(false)
+
+        admit match
+            case Some(true)  => start(waiter)
+            case Some(false) => reject(ctx, "full")
+            case None        =>
+                val timerId    = ctx.vertx().setTimer(queueTimeout.toMillis, _ => timeout(waiter))
+                // The slot may have been handed over before the timer was set
+                val handedOver = synchronized:
+                    waiter.timerId = timerId
+                    !waiting.contains(waiter)
+                if handedOver then ctx.vertx().cancelTimer(timerId)
+
+    private def start(waiter: Waiter): Unit =
+        Bulkhead.waitTime.labelValues(name).observe((System.nanoTime() - waiter.start) / 1e9)
+        Bulkhead.admitted.labelValues(name).inc()
+        waiter.ctx.addEndHandler(_ => release())
+        waiter.ctx.next()
+
+    /** Hand the slot to the next waiting request, if any */
+    private def release(): Unit =
+        val next = synchronized:
+            if waiting.isEmpty then
+                running -= 1
+                None
+            else Some(waiting.removeHead())
+        next.foreach(waiter =>
+            if waiter.timerId >= 0 then waiter.ctx.vertx().cancelTimer(waiter.timerId)
+            waiter.context.runOnContext(_ => start(waiter))
+        )
+
+    private def timeout(waiter: Waiter): Unit =
+        val expired = synchronized:
+            val i = waiting.indexOf(waiter)
+            if i >= 0 then waiting.remove(i)
+            i >= 0
+        if expired then reject(waiter.ctx, "timeout")
+
+    private def reject(ctx: RoutingContext, reason: String): Unit =
+        Bulkhead.rejected.labelValues(name, reason).inc()
+        log.atDebug.log(s"Rejected ${ctx.request().method()} ${ctx.request().uri()} from the $name bulkhead ($reason)")
+        val response = ctx.response()
+        if !response.ended() && !response.closed() then
+            response
+                .setStatusCode(503)
+                .putHeader("Retry-After", Math.max(1L, retryAfter.toSeconds).toString)
+                .putHeader("Content-Type", "application/json")
+                .end(StatusMsg(s"The server is busy with $name requests. Try again later", 503).stringify)
+
+object Bulkhead:
+
+    /** The classes of work that get their own bulkhead */
+    enum Workload:
+        case Interactive, Bulk, Export, Analysis
+
+        def key: String = toString.toLowerCase
+
+    /** Segments after the context path that mark heavy reads */
+    private val ExportPaths: Set[Seq[String]] = Set(
+        Seq("fast"),
+        Seq("query"),
+        Seq("annotations", "concurrent"),
+        Seq("annotations", "multi"),
+        Seq("imagedmoments", "concept"),
+        Seq("imagedmoments", "modified")
+    )
+
+    /**
+     * Decide which bulkhead a request belongs to.
+     *
+     * @param path
+     *   The request path, including the context path
+     * @return
+     *   The workload, or None for requests that are not limited, such as health checks
+     */
+    def classify(method: HttpMethod, path: String, contextPath: String = "v1"): Option[Workload] =
+        val segments = path.split('/').filter(_.nonEmpty).toSeq match
+            case `contextPath` +: rest => rest
+            case xs                    => xs
+        if segments.isEmpty || segments.head == "health" || segments.head == "changes" then None
+        else if segments.head == "histogram" then Some(Workload.Analysis)
+        else if segments.contains("bulk") && method != HttpMethod.GET then Some(Workload.Bulk)
+        else if segments.lastOption.contains("rename") then Some(Workload.Bulk)
+        else if ExportPaths.exists(p => segments.startsWith(p)) then Some(Workload.Export)
+        else Some(Workload.Interactive)
+
+    // -- Metrics
+    private val registry  = PrometheusRegistry.defaultRegistry
+    private val bulkheads = new ConcurrentHashMap[String, Bulkhead]()
+
+    private lazy val waitTime = Histogram
+        .builder()
+        .name("annosaurus_bulkhead_wait_seconds")
+        .help("Time requests waited for a slot")
+        .labelNames("bulkhead")
+        .register(registry)
+
+    private lazy val admitted = Counter
+        .builder()
+        .name("annosaurus_bulkhead_admitted")
+        .help("Requests that got a slot")
+        .labelNames("bulkhead")
+        .register(registry)
+
+    private lazy val rejected = Counter
+        .builder()
+        .name("annosaurus_bulkhead_rejected")
+        .help("Requests rejected with a 503 because the queue was full or the wait timed out")
+        .labelNames("bulkhead", "reason")
+        .register(registry)
+
+    private lazy val gauges: Unit =
+        def gauge(name: String, help: String, fn: Bulkhead => Int): Unit =
+            GaugeWithCallback
+                .builder()
+                .name(name)
+                .help(help)
+                .labelNames("bulkhead")
+                .callback(cb => for (n, b) <- bulkheads.asScala do cb.call(fn(b).toDouble, n))
+                .register(registry)
+
+        gauge("annosaurus_bulkhead_active", "Requests running", _.active)
+        gauge("annosaurus_bulkhead_queued", "Requests waiting for a slot", _.queued)
+        gauge("annosaurus_bulkhead_concurrency", "Maximum number of requests that run at once", _.concurrency)
+
+    /** Export the bulkhead's metrics on /metrics */
+    def register(bulkhead: Bulkhead): Bulkhead =
+        gauges
+        bulkheads.put(bulkhead.name, bulkhead)
+        bulkhead
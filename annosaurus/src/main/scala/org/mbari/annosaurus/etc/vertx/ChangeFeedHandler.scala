@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mbari.annosaurus.etc.vertx
+
+import io.vertx.core.Handler
+import io.vertx.core.http.HttpHeaders
+import io.vertx.ext.web.RoutingContext
+import org.mbari.annosaurus.domain.BadRequest
+import org.mbari.annosaurus.etc.circe.CirceCodecs.{*, given}
+import org.mbari.annosaurus.etc.jdk.Loggers
+import org.mbari.annosaurus.etc.jdk.Loggers.given
+import org.mbari.annosaurus.etc.rxjava.ChangeFeed
+
+import java.time.Duration
+
+/**
+ * Streams a [[ChangeFeed]] to HTTP clients. Clients that send `Accept: text/event-stream` get server-sent events whose
+ * id is the resume token. Other clients get newline-delimited JSON, one `{"token": ..., "change": ...}` object per
+ * line, and blank lines as keep-alives. To resume, send the last token seen as the `since` query parameter or, for
+ * server-sent events, the Last-Event-ID header. If the feed no longer has every change after that token, a reset is
+ * sent first (an event named reset, or `{"reset": true}`) followed by every buffered change; the client should then
+ * catch up from the database.
+ *
+ * Writes never block the feed. A client that can't keep up is disconnected and can resume with its last token.
+ *
+ * The feed only has the changes committed by this instance. Behind a load balancer, a client that reconnects to
+ * another instance gets a reset, and no single stream has the writes of the other instances; use NATS for those.
+ *
+ * @param heartbeat
+ *   How often a keep-alive is written to an idle stream
+ * @param encode
+ *   Converts a change to single-line JSON
+ */
+class ChangeFeedHandler[A](feed: ChangeFeed[A], heartbeat: Duration)(encode: A => String)
+    extends Handler[RoutingContext]:
+
+    private val log = Loggers(getClass)
+
+    override def handle(ctx: RoutingContext): Unit =
+        val request = ctx.request()
+        val sse     = Option(request.getHeader(HttpHeaders.ACCEPT)).exists(_.contains("text/event-stream"))
+        val token   = Option(request.getParam("since")).orElse(Option(request.getHeader("Last-Event-ID")))
+        token.map(t => t.trim.toLongOption) match
+            case Some(None) =>
+                ctx.response()
+                    .setStatusCode(400)
+                    .putHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+                    .end(BadRequest(s"Invalid resume token: ${token.get}").stringify)
+            case since      => stream(ctx, since.flatten, sse)
+
+    private def stream(ctx: RoutingContext, since: Option[Long], sse: Boolean): Unit =
+        val response = ctx.response()
+        val context  = ctx.vertx().getOrCreateContext()
+        response
+            .setChunked(true)
+            .putHeader(HttpHeaders.CONTENT_TYPE, if sse then "text/event-stream" else "application/x-ndjson")
+            .putHeader(HttpHeaders.CACHE_CONTROL, "no-cache")
+            .putHeader("X-Accel-Buffering", "no") // nginx: don't buffer the stream
+
+        @volatile var open = true
+
+        def write(s: String): Unit =
+            if open then
+                if response.writeQueueFull() then
+                    log.atInfo.log(s"Disconnecting a slow change feed client at ${ctx.request().remoteAddress()}")
+                    open = false
+                    response.reset()
+                else response.write(s)
+
+        def onGap(): Unit =
+            val s = if sse then "event: reset\ndata: {}\n\n" else """{"reset":true}""" + "\n"
+            context.runOnContext(_ => write(s))
+
+        def onChange(change: ChangeFeed.Change[A]): Unit =
+            val json = encode(change.value)
+            val s    =
+                if sse then s"id: ${change.token}\nevent: change\ndata: $json\n\n"
+                else s"""{"token":${change.token},"change":$json}""" + "\n"
+            context.runOnContext(_ => write(s))
+
+        // Send the headers now. Keep-alives are comments for server-sent events and blank lines for NDJSON
+        response.write(if sse then ": connected\n\n" else "\n")
+        val subscription = feed.subscribe(since, () => onGap(), onChange)
+        val timer        = ctx
+            .vertx()
+            .setPeriodic(heartbeat.toMillis, _ => write(if sse then ": keep-alive\n\n" else "\n"))
+        response.closeHandler(_ =>
+            open = false
+            ctx.vertx().cancelTimer(timer)
+            subscription.close()
+        )
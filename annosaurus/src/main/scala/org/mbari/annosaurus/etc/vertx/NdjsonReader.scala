@@ -0,0 +1,178 @@
+/*
+ * Copyright 2017 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.annosaurus.etc.vertx
+
+import io.vertx.core.buffer.Buffer
+import io.vertx.core.streams.ReadStream
+import org.mbari.annosaurus.etc.jdk.Loggers
+import org.mbari.annosaurus.etc.jdk.Loggers.given
+
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.atomic.{AtomicInteger, AtomicLong}
+import scala.collection.mutable.ArrayBuffer
+import scala.concurrent.{ExecutionContext, Future, Promise}
+import scala.util.{Failure, Success}
+
+/**
+ * Receives the records parsed by [[NdjsonReader]] one bounded batch at a time.
+ */
+trait BatchSink[A]:
+
+    /**
+     * Process one batch. The reader will not parse any more of the upload until the returned future completes.
+     * @return
+     *   The number of records that were written
+     */
+    def accept(batch: Seq[A]): Future[Long]
+
+    /**
+     * Called once after the last batch has been accepted.
+     * @return
+     *   The number of any additional records that were written
+     */
+    def complete(): Future[Long] = Future.successful(0L)
+
+/**
+ * Summary of a streamed upload
+ * @param recordCount
+ *   The number of records parsed
+ * @param batchCount
+ *   The number of batches handed to the sink
+ * @param writtenCount
+ *   The number of records the sink reported as written
+ */
+final case class BatchResult(recordCount: Long, batchCount: Int, writtenCount: Long)
+
+/**
+ * Incrementally parses newline-delimited records (e.g. NDJSON) from a Vert.x ReadStream and hands them to a
+ * [[BatchSink]] in bounded batches. The stream is paused while a batch is being processed, so memory use is bounded by
+ * the batch size rather than the size of the upload.
+ *
+ * @author
+ *   Brian Schlining
+ * @since 2026-10-19
+ */
+object NdjsonReader:
+
+    private val log = Loggers(getClass)
+
+    val DefaultBatchSize: Int     = 1000
+    val DefaultMaxRecordSize: Int = 1024 * 1024
+
+    /**
+     * @param stream
+     *   The upload
+     * @param batchSize
+     *   The number of records to hand to the sink at a time
+     * @param sink
+     *   Where the batches go
+     * @param maxRecordSize
+     *   The maximum length, in bytes, of a single line. Longer lines fail the upload.
+     * @param decode
+     *   Converts a single, non-blank line into a record
+     * @return
+     *   A summary of the upload. Fails with the first decoding or sink error.
+     */
+    def read[A](
+        stream: ReadStream[Buffer],
+        batchSize: Int,
+        sink: BatchSink[A],
+        maxRecordSize: Int = DefaultMaxRecordSize
+    )(decode: String => Either[Throwable, A])(using ec: ExecutionContext): Future[BatchResult] =
+        require(batchSize > 0, "batchSize must be greater than 0")
+
+        val promise                = Promise[BatchResult]()
+        val records                = new AtomicLong(0)
+        val batches                = new AtomicInteger(0)
+        val written                = new AtomicLong(0)
+        val buffer                 = new ArrayBuffer[A](batchSize)
+        var pending                = Buffer.buffer()
+        var lineNumber             = 0L
+        var inFlight: Future[Unit] = Future.unit
+
+        def fail(e: Throwable): Unit =
+            if promise.tryFailure(e) then
+                log.atWarn.withCause(e).log("Failed to ingest streamed records")
+                // Keep draining the upload so the client receives the error response
+                stream.resume()
+
+        def parseLine(line: String): Unit =
+            lineNumber += 1
+            val s = line.trim
+            if s.nonEmpty then
+                decode(s) match
+                    case Right(a) =>
+                        buffer += a
+                        records.incrementAndGet()
+                    case Left(e)  =>
+                        fail(new IllegalArgumentException(s"Unable to parse line $lineNumber: ${e.getMessage}", e))
+
+        def submit(batch: Seq[A]): Future[Unit] =
+            inFlight = inFlight
+                .flatMap(_ => sink.accept(batch))
+                .map { n =>
+                    batches.incrementAndGet()
+                    written.addAndGet(n)
+                    ()
+                }
+            inFlight
+
+        stream.handler { chunk =>
+            if !promise.isCompleted then
+                pending.appendBuffer(chunk)
+                var start = 0
+                var i     = 0
+                val n     = pending.length()
+                while i < n && !promise.isCompleted do
+                    if pending.getByte(i) == '\n' then
+                        parseLine(pending.getString(start, i, StandardCharsets.UTF_8.name()))
+                        start = i + 1
+                    i += 1
+                pending = if start < n then pending.getBuffer(start, n) else Buffer.buffer()
+
+                if pending.length() > maxRecordSize then
+                    fail(new IllegalArgumentException(s"Line ${lineNumber + 1} exceeds $maxRecordSize bytes"))
+                else if buffer.size >= batchSize && !promise.isCompleted then
+                    val batch = buffer.toSeq
+                    buffer.clear()
+                    stream.pause()
+                    submit(batch).onComplete:
+                        case Success(_) => stream.resume()
+                        case Failure(e) => fail(e)
+        }
+
+        stream.exceptionHandler(e => fail(e))
+
+        stream.endHandler { _ =>
+            if !promise.isCompleted then
+                if pending.length() > 0 then parseLine(pending.toString(StandardCharsets.UTF_8))
+                pending = Buffer.buffer()
+                if !promise.isCompleted then
+                    val remaining = buffer.toSeq
+                    buffer.clear()
+                    val last      = if remaining.isEmpty then inFlight else submit(remaining)
+                    last
+                        .flatMap(_ => sink.complete())
+                        .onComplete:
+                            case Success(n) =>
+                                written.addAndGet(n)
+                                promise.trySuccess(BatchResult(records.get(), batches.get(), written.get()))
+                            case Failure(e) => fail(e)
+        }
+
+        stream.resume()
+        promise.future
@@ -16,4 +16,12 @@
 
 package org.mbari.annosaurus.etc.zeromq
 
-case class ZeroMQConfig(port: Int, enable: Boolean, topic: String)
+import org.mbari.annosaurus.messaging.MessageEncoding
+
+case class ZeroMQConfig(
+    port: Int,
+    enable: Boolean,
+    topic: String,
+    encoding: MessageEncoding = MessageEncoding.Json,
+    queueSize: Int = 10000
+)
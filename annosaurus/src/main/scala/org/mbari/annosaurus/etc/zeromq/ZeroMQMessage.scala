@@ -42,8 +42,13 @@ case class AnnotationCreatedMessage(content: Annotation) extends ZeroMQMessage[A
 
     override def toJson: String = content.stringify
 
+    override def toCbor: Array[Byte] = content.cborify
+
 case class AssociationCreatedMessage(content: Association) extends ZeroMQMessage[Association]:
 
     override def toJson: String =
         content.stringify
 
+    override def toCbor: Array[Byte] =
+        content.cborify
+
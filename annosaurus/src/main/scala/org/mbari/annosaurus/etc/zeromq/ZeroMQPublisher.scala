@@ -16,32 +16,52 @@
 
 package org.mbari.annosaurus.etc.zeromq
 
+import io.prometheus.metrics.core.metrics.Counter
+import io.prometheus.metrics.model.registry.PrometheusRegistry
 import io.reactivex.rxjava3.disposables.Disposable
 import io.reactivex.rxjava3.schedulers.Schedulers
 import io.reactivex.rxjava3.subjects.Subject
 import org.mbari.annosaurus.etc.jdk.Loggers
 import org.mbari.annosaurus.etc.jdk.Loggers.given
-import org.mbari.annosaurus.etc.rxjava.EventBus
-import org.mbari.annosaurus.messaging.Message
+import org.mbari.annosaurus.etc.rxjava.{DedupeConfig, DedupeWindow, EventBus}
+import org.mbari.annosaurus.messaging.{Message, MessageEncoding}
 import org.zeromq.{SocketType, ZContext}
 
-import java.util.concurrent.{LinkedBlockingQueue, TimeUnit}
+import java.util.concurrent.{ArrayBlockingQueue, BlockingQueue, TimeUnit}
 import scala.util.control.NonFatal
 
 /**
+ * Publishes messages from the event bus on a ZeroMQ PUB socket. JSON messages are sent as two frames, the topic and
+ * the message, as they always have been. Other encodings add a content type frame between them (e.g.
+ * `application/cbor`), so a subscriber that finds more than two frames knows the second one names the encoding.
+ *
+ * At most queueSize messages wait to be sent. When the queue is full the oldest message is dropped and counted in
+ * `annosaurus_zeromq_dropped`. ZeroMQ PUB sockets drop messages for slow subscribers anyway, so this only bounds memory.
+ *
  * @author
  *   Brian Schlining
  * @since 2020-01-30T15:47:00
  */
-class ZeroMQPublisher(val topic: String, val port: Int, val subject: Subject[?]):
+class ZeroMQPublisher(
+    val topic: String,
+    val port: Int,
+    val subject: Subject[?],
+    dedupe: DedupeConfig = DedupeConfig(),
+    val encoding: MessageEncoding = MessageEncoding.Json,
+    queueSize: Int = 10000
+):
 
     private val context                = new ZContext()
-    private val queue                  = new LinkedBlockingQueue[Message[?]]()
+    private val queue                  = new ArrayBlockingQueue[Message[?]](queueSize)
+    private val recent                 = DedupeWindow[Message[?]]("zeromq", dedupe)
     private val disposable: Disposable = subject
         .ofType(classOf[Message[?]])
         .subscribeOn(Schedulers.io())
-        .distinct()
-        .subscribe(m => queue.offer(m))
+        .filter(m => recent.add(m))
+        .subscribe(m =>
+            val n = ZeroMQPublisher.offerDroppingOldest(queue, m)
+            if n > 0 then ZeroMQPublisher.dropped.labelValues(topic).inc(n.toDouble)
+        )
     private val log                    = Loggers(getClass)
 
     @volatile
@@ -55,9 +75,10 @@ class ZeroMQPublisher(val topic: String, val port: Int, val subject: Subject[?])
                 try
                     val msg = queue.poll(3600L, TimeUnit.SECONDS)
                     if msg != null then
-                        val json = msg.toJson
+                        val data = msg.encode(encoding)
                         publisher.sendMore(topic)
-                        publisher.send(json)
+                        if encoding != MessageEncoding.Json then publisher.sendMore(encoding.contentType)
+                        publisher.send(data)
                 catch
                     case NonFatal(e) =>
                         log.atWarn
@@ -78,23 +99,44 @@ object ZeroMQPublisher:
 
     private val log = Loggers(getClass)
 
+    private lazy val dropped = Counter
+        .builder()
+        .name("annosaurus_zeromq_dropped")
+        .help("Messages dropped because the ZeroMQ publish queue was full")
+        .labelNames("topic")
+        .register(PrometheusRegistry.defaultRegistry)
+
+    /**
+     * Add msg to the queue, dropping the oldest queued messages until it fits.
+     *
+     * @return
+     *   The number of messages dropped
+     */
+    def offerDroppingOldest[A](queue: BlockingQueue[A], msg: A): Int =
+        var n = 0
+        while !queue.offer(msg) do if queue.poll() != null then n = n + 1
+        n
+
     /**
      * @param opt
      *   The ZeroMQ config infor. The Config parser may not contain info for ZeroMQ. If it doesn't it returns None.
      * @param subject
      *   The message bus for zeromq to listen to
+     * @param dedupe
+     *   How long, and how many, recent messages are remembered to drop duplicates
      * @return
      *   An option with a wired and active ZeroMQ publisher that will publish new or updated annotations as they happen.
      */
     def autowire(
         opt: Option[ZeroMQConfig],
-        subject: Subject[Any] = EventBus.RxSubject
+        subject: Subject[Any] = EventBus.RxSubject,
+        dedupe: DedupeConfig = DedupeConfig()
     ): Option[ZeroMQPublisher] =
         val x = try
             for
                 conf <- opt
                 if conf.enable
-            yield new ZeroMQPublisher(conf.topic, conf.port, subject)
+            yield new ZeroMQPublisher(conf.topic, conf.port, subject, dedupe, conf.encoding, conf.queueSize)
         catch
             case NonFatal(e) =>
                 log.atError.withCause(e).log("Failed to initialize ZeroMQ publisher")
@@ -111,5 +153,6 @@ object ZeroMQPublisher:
         case Some(z) =>
             log.atInfo
                 .log(
-                    s"ZeroMQ is publishing annotations on port ${z.port} using topic '${z.topic}''"
+                    s"ZeroMQ is publishing ${z.encoding.contentType} annotations on port ${z.port} " +
+                        s"using topic '${z.topic}'"
                 )
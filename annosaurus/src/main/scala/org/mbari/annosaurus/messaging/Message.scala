@@ -16,7 +16,14 @@
 
 package org.mbari.annosaurus.messaging
 
+import java.nio.charset.StandardCharsets
+
 trait Message[+A]:
     def content: A
     def toJson: String
+    def toCbor: Array[Byte]
 
+    /** The message serialized with encoding. Subscribers are told which with encoding.contentType */
+    def encode(encoding: MessageEncoding): Array[Byte] = encoding match
+        case MessageEncoding.Json => toJson.getBytes(StandardCharsets.UTF_8)
+        case MessageEncoding.Cbor => toCbor
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2017 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.annosaurus.messaging
+
+/**
+ * How the ZeroMQ and NATS publishers serialize messages. JSON is the default. CBOR carries the same fields as the JSON,
+ * so subscribers can decode it with any CBOR library into the same structure, but it is smaller and cheaper to parse.
+ *
+ * @param contentType
+ *   The media type sent with each message so that subscribers can tell the encodings apart
+ */
+enum MessageEncoding(val contentType: String):
+    case Json extends MessageEncoding("application/json")
+    case Cbor extends MessageEncoding("application/cbor")
+
+object MessageEncoding:
+
+    def parse(s: String): MessageEncoding = s.trim.toLowerCase match
+        case "json" | "application/json" => Json
+        case "cbor" | "application/cbor" => Cbor
+        case _                           => throw new IllegalArgumentException(s"Unknown message encoding: $s")
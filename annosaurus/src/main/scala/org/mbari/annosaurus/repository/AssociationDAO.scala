@@ -54,3 +54,27 @@ trait AssociationDAO[T <: IPersistentObject] extends DAO[T]:
     def countByToConcept(toConcept: String): Long
 
     def updateToConcept(oldToConcept: String, newToConcept: String): Int
+
+    /**
+     * Rename the next chunk of associations that use a toConcept. Chunks are taken in uuid order so that a large
+     * rename can be run as a series of short transactions.
+     *
+     * @param after
+     *   Only associations with a uuid after this one are renamed. Use the last uuid of the previous chunk.
+     * @param limit
+     *   The maximum number of associations to rename
+     * @return
+     *   The renamed association uuids, in the order the database sorted them
+     */
+    def updateToConceptChunk(oldToConcept: String, newToConcept: String, after: UUID, limit: Int): Seq[UUID]
+
+    /**
+     * Delete associations with set-based statements instead of one entity at a time. Missing UUIDs are ignored. Run
+     * this in its own transaction. The persistence context is cleared afterwards.
+     *
+     * @param uuids
+     *   The associations to delete. At most a few thousand; callers should chunk larger requests
+     * @return
+     *   The associations that were deleted
+     */
+    def bulkDeleteByUuids(uuids: Seq[UUID]): BulkDeleteResult
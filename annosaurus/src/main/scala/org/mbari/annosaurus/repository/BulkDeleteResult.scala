@@ -0,0 +1,43 @@
+/*
+ * Copyright 2017 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.annosaurus.repository
+
+import java.util.UUID
+
+/**
+ * The rows removed by a set-based delete. The UUIDs are kept so that change notifications can be published once the
+ * transaction has committed.
+ *
+ * @param observationUuids
+ *   The deleted observations
+ * @param associationUuids
+ *   The deleted associations
+ * @param imagedMomentCount
+ *   The number of imaged moments deleted because they were left empty
+ */
+case class BulkDeleteResult(
+    observationUuids: Seq[UUID] = Nil,
+    associationUuids: Seq[UUID] = Nil,
+    imagedMomentCount: Int = 0
+):
+
+    def ++(that: BulkDeleteResult): BulkDeleteResult =
+        BulkDeleteResult(
+            observationUuids ++ that.observationUuids,
+            associationUuids ++ that.associationUuids,
+            imagedMomentCount + that.imagedMomentCount
+        )
@@ -37,4 +37,11 @@ trait ImageReferenceDAO[T <: IPersistentObject] extends DAO[T]:
 
     def findByURL(url: URL): Option[T]
 
+    /**
+     * Set-based version of findByURL. The lookup is done in chunks, so urls can be arbitrarily long.
+     * @return
+     *   The image references that exist for the urls. Missing urls are not in the result
+     */
+    def findByURLs(urls: Seq[URL]): Seq[T]
+
     def findByImageName(name: String): Seq[ImageReferenceEntity]
@@ -16,7 +16,7 @@
 
 package org.mbari.annosaurus.repository
 
-import org.mbari.annosaurus.domain.WindowRequest
+import org.mbari.annosaurus.domain.{DeleteCount, WindowRequest}
 import org.mbari.annosaurus.repository.jpa.entity.extensions.*
 import org.mbari.annosaurus.repository.jpa.entity.{IPersistentObject, ImagedMomentEntity}
 import org.mbari.vcr4j.time.Timecode
@@ -67,6 +67,12 @@ trait ImagedMomentDAO[T <: IPersistentObject] extends DAO[T]:
         offset: Option[Int] = None
     ): java.util.stream.Stream[T]
 
+    def findByVideoReferenceUUIDAndTimestamps(
+        uuid: UUID,
+        startTimestamp: Instant,
+        endTimestamp: Instant
+    ): Iterable[T]
+
     def streamByVideoReferenceUUIDAndTimestamps(
         uuid: UUID,
         startTimestamp: Instant,
@@ -189,6 +195,18 @@ trait ImagedMomentDAO[T <: IPersistentObject] extends DAO[T]:
      */
     def deleteByVideoReferenceUUUID(uuid: UUID): Int
 
+    /**
+     * Set-based bulk delete of all annotation related data for a single video. Deletes are issued per table rather
+     * than per entity.
+     *
+     * @param uuid
+     *   The UUID of the VideoReference. WARNING!! All annotation data associated to this videoReference will be
+     *   deleted.
+     * @return
+     *   The number of rows deleted from each table
+     */
+    def bulkDeleteByVideoReferenceUuid(uuid: UUID): DeleteCount
+
     /**
      * Deletes an imagedMoment if it does not contain any observations or imageReferences
      * @param imagedMoment
@@ -208,3 +226,16 @@ trait ImagedMomentDAO[T <: IPersistentObject] extends DAO[T]:
         imagedMomentUuids: Seq[UUID],
         newVideoStartTimestamp: Option[Instant]
     ): Int
+
+    /**
+     * Recompute the elapsed time of imaged moments as their recordedTimestamp minus a video's start timestamp. Only
+     * imaged moments that already have both an elapsed time and a recorded timestamp are changed.
+     *
+     * @param imagedMomentUuids
+     *   The imaged moments to update
+     * @param startTimestamp
+     *   The start timestamp of the video the imaged moments belong to
+     * @return
+     *   The number of imaged moments updated
+     */
+    def updateElapsedTimeFromStart(imagedMomentUuids: Seq[UUID], startTimestamp: Instant): Int
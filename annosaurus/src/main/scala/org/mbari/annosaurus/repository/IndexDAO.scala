@@ -18,6 +18,7 @@ package org.mbari.annosaurus.repository
 
 import org.mbari.annosaurus.repository.jpa.entity.IPersistentObject
 
+import java.time.Instant
 import java.util.UUID
 
 /**
@@ -34,3 +35,24 @@ trait IndexDAO[T <: IPersistentObject] extends DAO[T]:
         limit: Option[Int] = None,
         offset: Option[Int] = None
     ): Iterable[T]
+
+    def findByUuids(uuids: Seq[UUID]): Seq[T]
+
+    /**
+     * Set recordedTimestamp = startTimestamp + elapsedTime for every index of a video that has an elapsed time. This
+     * is a single statement, so no entities are loaded.
+     *
+     * @return
+     *   The number of indices whose recordedTimestamp changed
+     */
+    def updateRecordedTimestampsFromStart(videoReferenceUuid: UUID, startTimestamp: Instant): Int
+
+    /**
+     * Set explicit recordedTimestamps using a JDBC batch update.
+     *
+     * @param updates
+     *   Pairs of imaged moment uuid and the new recordedTimestamp
+     * @return
+     *   The number of indices updated
+     */
+    def updateRecordedTimestamps(updates: Seq[(UUID, Instant)]): Int
@@ -109,6 +109,23 @@ trait ObservationDAO[T <: IPersistentObject] extends DAO[T]:
 
     def updateConcept(oldName: String, newName: String): Int
 
+    /**
+     * Rename the next chunk of observations that use a concept. Chunks are taken in uuid order so that a large rename
+     * can be run as a series of short transactions instead of one that locks every matching row.
+     *
+     * @param oldName
+     *   The concept to rename
+     * @param newName
+     *   The new concept name
+     * @param after
+     *   Only observations with a uuid after this one are renamed. Use the last uuid of the previous chunk.
+     * @param limit
+     *   The maximum number of observations to rename
+     * @return
+     *   The renamed observation uuids, in the order the database sorted them
+     */
+    def updateConceptChunk(oldName: String, newName: String, after: UUID, limit: Int): Seq[UUID]
+
     /**
      * Move an observation to a different imaged moment efficeintly
      * @param imagedMomentUuid
@@ -119,3 +136,15 @@ trait ObservationDAO[T <: IPersistentObject] extends DAO[T]:
      *   The number of records affected. Should be 1
      */
     def changeImageMoment(imagedMomentUuid: UUID, observationUuid: UUID): Int
+
+    /**
+     * Delete observations and their associations with set-based statements instead of one entity at a time. As with
+     * a single delete, imaged moments that are left without observations or images are removed too. Missing UUIDs
+     * are ignored. Run this in its own transaction. The persistence context is cleared afterwards.
+     *
+     * @param uuids
+     *   The observations to delete. At most a few thousand; callers should chunk larger requests
+     * @return
+     *   The observations and associations that were deleted and the number of empty imaged moments removed
+     */
+    def bulkDeleteByUuids(uuids: Seq[UUID]): BulkDeleteResult
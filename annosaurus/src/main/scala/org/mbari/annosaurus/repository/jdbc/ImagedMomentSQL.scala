@@ -17,6 +17,7 @@
 package org.mbari.annosaurus.repository.jdbc
 
 import org.mbari.annosaurus.domain.Image
+import org.mbari.annosaurus.etc.jdbc.Databases.DatabaseType
 
 object ImagedMomentSQL:
 
@@ -65,6 +66,50 @@ object ImagedMomentSQL:
     val deleteByVideoReferenceUuid: String =
         "DELETE FROM imaged_moments WHERE video_reference_uuid = ?"
 
+    /**
+     * Recomputes recorded_timestamp as a start timestamp plus elapsed_time_millis for every imaged moment of a video
+     * that has an elapsed time. Rows whose recorded_timestamp is already correct are not touched. Parameters are: 1 =
+     * start timestamp, 2 = new last_updated_timestamp, 3 = video_reference_uuid
+     */
+    def updateRecordedTimestampFromStart(databaseType: DatabaseType): String =
+        val recordedTimestamp = databaseType match
+            // DATEADD only takes an int, so add whole seconds and the remaining millis separately
+            case DatabaseType.SQLServer =>
+                "DATEADD(MILLISECOND, elapsed_time_millis % 1000, DATEADD(SECOND, elapsed_time_millis / 1000, ?1))"
+            case _                      => "?1 + elapsed_time_millis * INTERVAL '1 millisecond'"
+        s"""UPDATE imaged_moments
+           |SET
+           |  recorded_timestamp = $recordedTimestamp,
+           |  last_updated_timestamp = ?2
+           |WHERE
+           |  video_reference_uuid = ?3 AND
+           |  elapsed_time_millis IS NOT NULL AND
+           |  (recorded_timestamp IS NULL OR recorded_timestamp <> $recordedTimestamp)
+           |""".stripMargin
+
+    /** JDBC batch update of a single imaged moment's recorded_timestamp and last_updated_timestamp */
+    val updateRecordedTimestamp: String =
+        "UPDATE imaged_moments SET recorded_timestamp = ?, last_updated_timestamp = ? WHERE uuid = ?"
+
+    /**
+     * Recomputes elapsed_time_millis as recorded_timestamp minus a start timestamp. Rows without an elapsed time or a
+     * recorded timestamp are left alone. Parameters are: 1 = start timestamp, 2 = new last_updated_timestamp, 3 =
+     * imaged moment uuids
+     */
+    def updateElapsedTimeFromStart(databaseType: DatabaseType): String =
+        val elapsedTimeMillis = databaseType match
+            case DatabaseType.SQLServer => "DATEDIFF_BIG(MILLISECOND, ?1, recorded_timestamp)"
+            case _                      => "FLOOR(EXTRACT(EPOCH FROM (recorded_timestamp - ?1)) * 1000)"
+        s"""UPDATE imaged_moments
+           |SET
+           |  elapsed_time_millis = $elapsedTimeMillis,
+           |  last_updated_timestamp = ?2
+           |WHERE
+           |  uuid IN ?3 AND
+           |  elapsed_time_millis IS NOT NULL AND
+           |  recorded_timestamp IS NOT NULL
+           |""".stripMargin
+
     def resultListToImages(rows: List[?]): Seq[Image] =
         for row <- rows
         yield
@@ -28,6 +28,7 @@ import org.mbari.annosaurus.domain.{
     ObservationsUpdate,
     QueryConstraints
 }
+import org.mbari.annosaurus.etc.jdbc.ReadRouter
 import org.mbari.annosaurus.etc.jdk.Loggers.given
 import org.mbari.annosaurus.repository.jpa.extensions.*
 
@@ -41,11 +42,19 @@ import scala.util.control.NonFatal
  * requests when looking up annotations. For 1000 rows that 4001 database calls which is very SLOW!!. With SQL we can
  * fetch annotations for a video using 3 database queries which is so amazingly fast compared to JPA.
  * @param entityManagerFactory
+ *   The primary database. Used for the few writes in this class
+ * @param readRouter
+ *   Picks the database for reads. Reads go to a replica when replicas are configured
  */
-class JdbcRepository(entityManagerFactory: EntityManagerFactory):
+class JdbcRepository(entityManagerFactory: EntityManagerFactory, readRouter: ReadRouter[EntityManagerFactory]):
+
+    def this(entityManagerFactory: EntityManagerFactory) =
+        this(entityManagerFactory, ReadRouter.primaryOnly(entityManagerFactory))
 
     private val log = System.getLogger(getClass.getName)
 
+    private def newReadOnlyEntityManager(): EntityManager = readRouter.next().createEntityManager()
+
     def updateObservations(update: ObservationsUpdate): Int =
         implicit val entityManager: EntityManager = entityManagerFactory.createEntityManager()
         val n                                     = entityManager.runTransactionSync { em =>
@@ -54,6 +63,7 @@ class JdbcRepository(entityManagerFactory: EntityManagerFactory):
             counts.headOption.getOrElse(0)
         }
         entityManager.close()
+        readRouter.markWrite()
         n
 
     def deleteByVideoReferenceUuid(videoReferenceUuid: UUID): DeleteCount =
@@ -95,11 +105,12 @@ class JdbcRepository(entityManagerFactory: EntityManagerFactory):
 
         finally if transaction.isActive then transaction.rollback()
         entityManager.close()
+        readRouter.markWrite()
         deleteCount
 
     def findByQueryConstraint(constraints: QueryConstraints): Seq[Annotation] =
-        given entityManager: EntityManager = entityManagerFactory.createEntityManager()
-        entityManagerFactory.createEntityManager().runTransactionSync { entityManager =>
+        given entityManager: EntityManager = newReadOnlyEntityManager()
+        newReadOnlyEntityManager().runTransactionSync { entityManager =>
             given EntityManager     = entityManager
             val query1              = QueryConstraintsSqlBuilder.toQuery(constraints, entityManager)
             val r1                  = query1.getResultList.asScala.toList
@@ -110,7 +121,7 @@ class JdbcRepository(entityManagerFactory: EntityManagerFactory):
         }
 
     def countByQueryConstraint(constraints: QueryConstraints): Int =
-        entityManagerFactory.createEntityManager().runTransactionSync { entityManager =>
+        newReadOnlyEntityManager().runTransactionSync { entityManager =>
             given EntityManager = entityManager
             val query           = QueryConstraintsSqlBuilder.toCountQuery(constraints, entityManager)
             query.setHint(HibernateHints.HINT_READ_ONLY, true)
@@ -123,7 +134,7 @@ class JdbcRepository(entityManagerFactory: EntityManagerFactory):
     def findGeographicRangeByQueryConstraint(
         constraints: QueryConstraints
     ): Option[GeographicRange] =
-        entityManagerFactory.createEntityManager().runTransactionSync { entityManager =>
+        newReadOnlyEntityManager().runTransactionSync { entityManager =>
             given EntityManager = entityManager
             val query           =
                 QueryConstraintsSqlBuilder.toGeographicRangeQuery(constraints, entityManager)
@@ -150,7 +161,7 @@ class JdbcRepository(entityManagerFactory: EntityManagerFactory):
         offset: Option[Int] = None,
         includeAncillaryData: Boolean = false
     ): Seq[Annotation] =
-        entityManagerFactory.createEntityManager().runTransactionSync { entityManager =>
+        newReadOnlyEntityManager().runTransactionSync { entityManager =>
             given EntityManager = entityManager
             val query1          = entityManager.createNativeQuery(AnnotationSQL.all)
             limit.foreach(query1.setMaxResults)
@@ -164,7 +175,7 @@ class JdbcRepository(entityManagerFactory: EntityManagerFactory):
         }
 
     def countAll(): Long =
-        given entityManager: EntityManager = entityManagerFactory.createEntityManager()
+        given entityManager: EntityManager = newReadOnlyEntityManager()
         val query                          = entityManager.createNativeQuery(ObservationSQL.countAll)
         query.setHint(HibernateHints.HINT_READ_ONLY, true)
         // This will throw and exception if nothing is returned. That's ok.
@@ -173,7 +184,7 @@ class JdbcRepository(entityManagerFactory: EntityManagerFactory):
         count
 
     def countImagesByVideoReferenceUuid(videoReferenceUuid: UUID): Long =
-        given entityManager: EntityManager = entityManagerFactory.createEntityManager()
+        given entityManager: EntityManager = newReadOnlyEntityManager()
         val query                          = entityManager.createNativeQuery(ImageReferenceSQL.countByVideoReferenceUuid)
         query.setHint(HibernateHints.HINT_READ_ONLY, true)
         query.setParameter(1, videoReferenceUuid.toString())
@@ -190,7 +201,7 @@ class JdbcRepository(entityManagerFactory: EntityManagerFactory):
         includeAncillaryData: Boolean = false
     ): Seq[Annotation] =
 
-        given entityManager: EntityManager = entityManagerFactory.createEntityManager()
+        given entityManager: EntityManager = newReadOnlyEntityManager()
 
         // Fetch annotations
         val queries = List(
@@ -215,7 +226,7 @@ class JdbcRepository(entityManagerFactory: EntityManagerFactory):
         includeAncillaryData: Boolean = false
     ): Seq[Annotation] =
 
-        given entityManager: EntityManager = entityManagerFactory.createEntityManager()
+        given entityManager: EntityManager = newReadOnlyEntityManager()
         val queries                        = List(
             entityManager.createNativeQuery(AnnotationSQL.byVideoReferenceUuidBetweenDates),
             entityManager.createNativeQuery(AssociationSQL.byVideoReferenceUuidBetweenDates),
@@ -245,7 +256,7 @@ class JdbcRepository(entityManagerFactory: EntityManagerFactory):
 
         val videoReferenceUuids = request.videoReferenceUuids.map(_.toString)
 
-        given entityManager: EntityManager = entityManagerFactory.createEntityManager()
+        given entityManager: EntityManager = newReadOnlyEntityManager()
         val queries                        = List(
             AnnotationSQL.byConcurrentRequest,
             AssociationSQL.byConcurrentRequest,
@@ -273,7 +284,7 @@ class JdbcRepository(entityManagerFactory: EntityManagerFactory):
         includeAncillaryData: Boolean = false
     ): Seq[Annotation] =
         val uuids                          = request.videoReferenceUuids.map(_.toString)
-        given entityManager: EntityManager = entityManagerFactory.createEntityManager()
+        given entityManager: EntityManager = newReadOnlyEntityManager()
         val queries                        = List(
             AnnotationSQL.byMultiRequest,
             AssociationSQL.byMultiRequest,
@@ -294,7 +305,7 @@ class JdbcRepository(entityManagerFactory: EntityManagerFactory):
         offset: Option[Int] = None,
         includeAncillaryData: Boolean = false
     ): Seq[Annotation] =
-        given entityManager: EntityManager = entityManagerFactory.createEntityManager()
+        given entityManager: EntityManager = newReadOnlyEntityManager()
         val query1                         = entityManager.createNativeQuery(AnnotationSQL.byConcept)
         query1.setParameter(1, concept)
         query1.setHint(HibernateHints.HINT_READ_ONLY, true)
@@ -313,7 +324,7 @@ class JdbcRepository(entityManagerFactory: EntityManagerFactory):
         offset: Option[Int] = None,
         includeAncillaryData: Boolean = false
     ): Seq[Annotation] =
-        given entityManager: EntityManager = entityManagerFactory.createEntityManager()
+        given entityManager: EntityManager = newReadOnlyEntityManager()
         val query1                         = entityManager.createNativeQuery(AnnotationSQL.byConceptWithImages)
         query1.setHint(HibernateHints.HINT_READ_ONLY, true)
         query1.setParameter(1, concept)
@@ -331,7 +342,7 @@ class JdbcRepository(entityManagerFactory: EntityManagerFactory):
         offset: Option[Int] = None,
         includeAncillaryData: Boolean = false
     ): Seq[Annotation] =
-        given entityManager: EntityManager = entityManagerFactory.createEntityManager()
+        given entityManager: EntityManager = newReadOnlyEntityManager()
         val query1                         = entityManager.createNativeQuery(AnnotationSQL.byToConceptWithImages)
         query1.setHint(HibernateHints.HINT_READ_ONLY, true)
         query1.setParameter(1, toConcept)
@@ -348,7 +359,7 @@ class JdbcRepository(entityManagerFactory: EntityManagerFactory):
         limit: Option[Int] = None,
         offset: Option[Int] = None
     ): Seq[UUID] =
-        given entityManager: EntityManager = entityManagerFactory.createEntityManager()
+        given entityManager: EntityManager = newReadOnlyEntityManager()
         val query                          = entityManager.createNativeQuery(ImagedMomentSQL.byConceptWithImages)
         query.setHint(HibernateHints.HINT_READ_ONLY, true)
         query.setParameter(1, concept)
@@ -368,7 +379,7 @@ class JdbcRepository(entityManagerFactory: EntityManagerFactory):
         limit: Option[Int] = None,
         offset: Option[Int] = None
     ): Seq[UUID] =
-        implicit val entityManager: EntityManager = entityManagerFactory.createEntityManager()
+        implicit val entityManager: EntityManager = newReadOnlyEntityManager()
         val query                                 = entityManager.createNativeQuery(ImagedMomentSQL.byToConceptWithImages)
         query.setHint(HibernateHints.HINT_READ_ONLY, true)
         query.setParameter(1, toConcept)
@@ -388,7 +399,7 @@ class JdbcRepository(entityManagerFactory: EntityManagerFactory):
         limit: Option[Int] = None,
         offset: Option[Int] = None
     ): Seq[Image] =
-        implicit val entityManager: EntityManager = entityManagerFactory.createEntityManager()
+        implicit val entityManager: EntityManager = newReadOnlyEntityManager()
         val query                                 = entityManager.createNativeQuery(ImagedMomentSQL.byVideoReferenceUuid)
         query.setHint(HibernateHints.HINT_READ_ONLY, true)
         query.setParameter(1, videoReferenceUuid.toString)
@@ -404,7 +415,7 @@ class JdbcRepository(entityManagerFactory: EntityManagerFactory):
         linkValue: String,
         includeAncillaryData: Boolean = false
     ): Seq[Annotation] =
-        implicit val entityManager: EntityManager = entityManagerFactory.createEntityManager()
+        implicit val entityManager: EntityManager = newReadOnlyEntityManager()
         val query                                 = entityManager.createNativeQuery(AssociationSQL.byLinkNameAndLinkValue)
         query.setHint(HibernateHints.HINT_READ_ONLY, true)
         query.setParameter(1, linkName)
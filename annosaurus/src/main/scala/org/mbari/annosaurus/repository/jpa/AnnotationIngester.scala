@@ -0,0 +1,266 @@
+/*
+ * Copyright 2017 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.annosaurus.repository.jpa
+
+import jakarta.persistence.EntityManagerFactory
+import org.hibernate.{SessionFactory, StatelessSession}
+import org.mbari.annosaurus.domain.{Annotation, Association, CachedAncillaryDatum, ImageReference}
+import org.mbari.annosaurus.etc.jdk.Loggers.given
+import org.mbari.annosaurus.repository.jpa.entity.{
+    AssociationEntity,
+    CachedAncillaryDatumEntity,
+    ImageReferenceEntity,
+    ImagedMomentEntity,
+    ObservationEntity
+}
+
+import java.time.{Duration, Instant}
+import java.util.UUID
+import javax.sql.DataSource
+import scala.collection.mutable
+import scala.jdk.CollectionConverters.*
+import scala.util.Using
+import scala.util.control.NonFatal
+
+/**
+ * Bulk-ingest path for annotations (e.g. ML detections) built on a Hibernate StatelessSession. Nothing is tracked in a
+ * persistence context, so there is no dirty checking, no periodic flush/clear and no re-read of the inserted rows.
+ *
+ * Keys are UUIDv7s generated in the JVM by each entity's UuidGenerator as it is inserted, so parents have their keys
+ * before their children are written. Rows are written table by table (imaged moments, image references, ancillary
+ * data, observations, associations) as ordered JDBC batches. Existing imaged moments at the same index are reused
+ * using the same index priority as [[org.mbari.annosaurus.controllers.ImagedMomentController.bulkCreate]].
+ *
+ * @param entityManagerFactory
+ *   The database to write to
+ * @param batchSize
+ *   The JDBC batch size. Defaults to hibernate.jdbc.batch_size
+ * @param dataSource
+ *   A connection pool for bulk work. When empty, connections come from the entityManagerFactory's pool
+ */
+class AnnotationIngester(
+    entityManagerFactory: EntityManagerFactory,
+    batchSize: Int,
+    dataSource: Option[DataSource] = None
+):
+
+    def this(entityManagerFactory: EntityManagerFactory, dataSource: Option[DataSource]) =
+        this(
+            entityManagerFactory,
+            entityManagerFactory.getProperties.getOrDefault("hibernate.jdbc.batch_size", "200").toString.toInt,
+            dataSource
+        )
+
+    def this(entityManagerFactory: EntityManagerFactory) = this(entityManagerFactory, None)
+
+    private val log = System.getLogger(getClass.getName)
+
+    /**
+     * Insert annotations in a single transaction.
+     *
+     * @param annotations
+     *   The annotations to insert. Each must have a videoReferenceUuid. Any UUIDs on them are ignored
+     * @param existingUrls
+     *   External forms of image URLs that are already in the database. Those images are not inserted
+     * @return
+     *   The inserted annotations, in input order, with their new keys. imageReferences holds the images that were
+     *   inserted for each annotation
+     */
+    def ingest(annotations: Seq[Annotation], existingUrls: Set[String] = Set.empty): Seq[Annotation] =
+        if annotations.isEmpty then return Nil
+        annotations
+            .find(_.videoReferenceUuid.isEmpty)
+            .foreach(a => throw new IllegalArgumentException(s"An annotation is missing a videoReferenceUuid: $a"))
+
+        val sessionFactory = entityManagerFactory.unwrap(classOf[SessionFactory])
+        dataSource match
+            case None     =>
+                Using.resource(sessionFactory.openStatelessSession())(session =>
+                    insertInTransaction(session, annotations, existingUrls)
+                )
+            case Some(ds) =>
+                // Hibernate doesn't close connections that it is given, so close it after the session
+                Using
+                    .Manager(use =>
+                        val connection = use(ds.getConnection)
+                        val session    =
+                            use(sessionFactory.withStatelessOptions().connection(connection).openStatelessSession())
+                        insertInTransaction(session, annotations, existingUrls)
+                    )
+                    .get
+
+    private def insertInTransaction(
+        session: StatelessSession,
+        annotations: Seq[Annotation],
+        existingUrls: Set[String]
+    ): Seq[Annotation] =
+        session.setJdbcBatchSize(batchSize)
+        val transaction = session.beginTransaction()
+        try
+            val result = insert(session, annotations, existingUrls)
+            transaction.commit()
+            log.atDebug.log(s"Ingested ${result.size} annotations")
+            result
+        catch
+            case NonFatal(e) =>
+                if transaction.isActive then transaction.rollback()
+                throw e
+
+    private def insert(
+        session: StatelessSession,
+        annotations: Seq[Annotation],
+        existingUrls: Set[String]
+    ): Seq[Annotation] =
+
+        // -- Index existing imaged moments. One query per video reference
+        val index = new MomentIndex
+        for uuid <- annotations.flatMap(_.videoReferenceUuid).distinct do
+            session
+                .createNamedQuery("ImagedMoment.findByVideoReferenceUUIDWithAncillaryDatum", classOf[ImagedMomentEntity])
+                .setParameter("uuid", uuid)
+                .getResultList
+                .forEach(im => index.add(im, im.getAncillaryDatum != null))
+
+        // -- Build the rows to insert
+        val newMoments      = mutable.ArrayBuffer[ImagedMomentEntity]()
+        val newImages       = mutable.ArrayBuffer[ImageReferenceEntity]()
+        val newData         = mutable.ArrayBuffer[CachedAncillaryDatumEntity]()
+        val newObservations = mutable.ArrayBuffer[ObservationEntity]()
+        val newAssociations = mutable.ArrayBuffer[AssociationEntity]()
+        val seenUrls        = mutable.Set.from(existingUrls)
+        val now             = Instant.now()
+
+        val rows = for a <- annotations yield
+            val imagedMoment = index.find(a) match
+                case Some(im) => im
+                case None     =>
+                    val im = new ImagedMomentEntity(
+                        a.videoReferenceUuid.get,
+                        a.recordedTimestamp.orNull,
+                        a.validTimecode.orNull,
+                        a.elapsedTime.orNull
+                    )
+                    index.add(im, false)
+                    newMoments += im
+                    im
+
+            val images = for
+                i <- a.imageReferences
+                if seenUrls.add(i.url.toExternalForm)
+            yield
+                val entity = i.toEntity
+                entity.setUuid(null)
+                entity.setImagedMoment(imagedMoment)
+                newImages += entity
+                entity
+
+            val datum = a.ancillaryData.filter(_ => index.claimAncillaryDatum(imagedMoment)).map { d =>
+                val entity = d.toEntity
+                entity.setUuid(null)
+                entity.setImagedMoment(imagedMoment)
+                newData += entity
+                entity
+            }
+
+            // Only the owning (child) side of each relation is set. Existing imaged moments came from a stateless
+            // session and their collections can not be initialized.
+            val observation = new ObservationEntity(
+                a.concept.orNull,
+                a.duration.orNull,
+                a.observationTimestamp.getOrElse(now),
+                a.observer.orNull,
+                a.group.orNull,
+                a.activity.orNull
+            )
+            observation.setImagedMoment(imagedMoment)
+            newObservations += observation
+
+            val associations = for x <- a.associations yield
+                val entity = x.toEntity
+                entity.setUuid(null)
+                entity.setObservation(observation)
+                newAssociations += entity
+                entity
+
+            (imagedMoment, images, datum, observation, associations)
+
+        // -- Insert parents before children. Each call is a single ordered JDBC batch for one table
+        def insertAll(xs: mutable.ArrayBuffer[?]): Unit =
+            if xs.nonEmpty then session.insertMultiple(xs.asJava)
+
+        insertAll(newMoments)
+        insertAll(newImages)
+        insertAll(newData)
+        insertAll(newObservations)
+        insertAll(newAssociations)
+
+        log.atDebug
+            .log(
+                s"Inserted ${newMoments.size} imaged moments, ${newImages.size} image references, " +
+                    s"${newData.size} ancillary data, ${newObservations.size} observations and " +
+                    s"${newAssociations.size} associations"
+            )
+
+        // -- Build the response from what we wrote. No re-read is needed
+        for (imagedMoment, images, datum, observation, associations) <- rows
+        yield Annotation(
+            activity = Option(observation.getActivity),
+            ancillaryData = datum.map(CachedAncillaryDatum.from(_, false)),
+            associations = associations.map(Association.from(_, false)),
+            concept = Option(observation.getConcept),
+            durationMillis = Option(observation.getDuration).map(_.toMillis),
+            elapsedTimeMillis = Option(imagedMoment.getElapsedTime).map(_.toMillis),
+            group = Option(observation.getGroup),
+            imagedMomentUuid = Option(imagedMoment.getUuid),
+            imageReferences = images.map(ImageReference.from(_, false)),
+            observationTimestamp = Option(observation.getObservationTimestamp),
+            observationUuid = Option(observation.getUuid),
+            observer = Option(observation.getObserver),
+            recordedTimestamp = Option(imagedMoment.getRecordedTimestamp),
+            timecode = Option(imagedMoment.getTimecode).map(_.toString),
+            videoReferenceUuid = Option(imagedMoment.getVideoReferenceUuid),
+            lastUpdated = Option(observation.getLastUpdatedTime).map(_.toInstant)
+        )
+
+/**
+ * In-memory lookup of imaged moments mirroring the priority order of findByVideoReferenceUUIDAndIndex: timecode >
+ * elapsedTime > recordedDate.
+ */
+private class MomentIndex:
+    private val byTimecode         = mutable.Map.empty[(UUID, String), ImagedMomentEntity]
+    private val byElapsedTime      = mutable.Map.empty[(UUID, Duration), ImagedMomentEntity]
+    private val byRecordedDate     = mutable.Map.empty[(UUID, Instant), ImagedMomentEntity]
+    private val withAncillaryDatum = mutable.Set.empty[ImagedMomentEntity]
+
+    def add(im: ImagedMomentEntity, hasAncillaryDatum: Boolean): Unit =
+        val uuid = im.getVideoReferenceUuid
+        Option(im.getTimecode).foreach(tc => byTimecode.put((uuid, tc.toString), im))
+        Option(im.getElapsedTime).foreach(et => byElapsedTime.put((uuid, et), im))
+        Option(im.getRecordedTimestamp).foreach(rd => byRecordedDate.put((uuid, rd), im))
+        if hasAncillaryDatum then withAncillaryDatum += im
+
+    def find(a: Annotation): Option[ImagedMomentEntity] =
+        val uuid = a.videoReferenceUuid.get
+        a.validTimecode match
+            case Some(tc) => byTimecode.get((uuid, tc.toString))
+            case None     =>
+                a.elapsedTime match
+                    case Some(et) => byElapsedTime.get((uuid, et))
+                    case None     => a.recordedTimestamp.flatMap(rd => byRecordedDate.get((uuid, rd)))
+
+    /** @return true if the imaged moment had no ancillary datum. It is marked as having one from now on */
+    def claimAncillaryDatum(im: ImagedMomentEntity): Boolean = withAncillaryDatum.add(im)
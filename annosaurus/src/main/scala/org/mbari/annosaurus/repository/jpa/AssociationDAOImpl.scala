@@ -18,10 +18,13 @@ package org.mbari.annosaurus.repository.jpa
 
 import jakarta.persistence.EntityManager
 import org.mbari.annosaurus.domain.{ConceptAssociation, ConceptAssociationRequest}
-import org.mbari.annosaurus.repository.AssociationDAO
+import org.mbari.annosaurus.repository.{AssociationDAO, BulkDeleteResult}
 import org.mbari.annosaurus.repository.jdbc.*
 import org.mbari.annosaurus.repository.jpa.entity.{AssociationEntity, ConceptAssociationDTO}
+import org.mbari.annosaurus.repository.jpa.extensions.*
 
+import java.sql.Timestamp
+import java.time.Instant
 import java.util.UUID
 import scala.jdk.CollectionConverters.*
 
@@ -141,3 +144,28 @@ class AssociationDAOImpl(entityManager: EntityManager)
         query.setParameter(1, newToConcept)
         query.setParameter(2, oldToConcept)
         query.executeUpdate()
+
+    override def updateToConceptChunk(
+        oldToConcept: String,
+        newToConcept: String,
+        after: UUID,
+        limit: Int
+    ): Seq[UUID] =
+        val uuids = findUuidsAfter("Association.findUUIDsByToConceptAfter", oldToConcept, after, limit)
+        if uuids.nonEmpty then
+            val now = Timestamp.from(Instant.now())
+            for xs <- uuids.grouped(BaseDAO.InClauseSize) do
+                executeUpdate("Association.updateToConceptByUuids", newToConcept, now, xs.asJava)
+        uuids
+
+    override def bulkDeleteByUuids(uuids: Seq[UUID]): BulkDeleteResult =
+        entityManager.flush()
+        val existing = findUuids("Association.findUUIDsByUUIDs", uuids)
+        if existing.nonEmpty then
+            val revisionId = entityManager.currentRevisionId
+            for xs <- existing.grouped(BaseDAO.InClauseSize) do
+                executeUpdate("Association.auditDeleteByUuids", revisionId, xs.asJava)
+                executeUpdate("Association.deleteByUuids", xs.asJava)
+            entityManager.clear()
+        BulkDeleteResult(associationUuids = existing)
+
@@ -20,6 +20,7 @@ import jakarta.persistence.{EntityManager, Query}
 import org.hibernate.jpa.HibernateHints
 import org.mbari.annosaurus.etc.jdk.Loggers.given
 import org.mbari.annosaurus.repository.DAO
+import org.mbari.annosaurus.repository.jdbc.asUUID
 import org.mbari.annosaurus.repository.jpa.entity.IPersistentObject
 import org.mbari.annosaurus.repository.jpa.entity.extensions.*
 import org.mbari.annosaurus.repository.jpa.extensions.*
@@ -114,6 +115,35 @@ abstract class BaseDAO[B <: IPersistentObject: ClassTag](val entityManager: Enti
         namedParameters.foreach { case (a, b) => query.setParameter(a, b) }
         query.executeUpdate()
 
+    /** Execute a named native update using positional (?1, ?2, ...) parameters */
+    protected def executeUpdate(name: String, parameters: Any*): Int =
+        val query = entityManager.createNamedQuery(name)
+        parameters.zipWithIndex.foreach((p, i) => query.setParameter(i + 1, p))
+        query.executeUpdate()
+
+    /**
+     * Run a named native query that selects the next `limit` UUIDs, in uuid order, for a value. The query takes the
+     * value as ?1 and the last UUID of the previous page as ?2. Used to walk large updates in keyset-ordered chunks.
+     */
+    protected def findUuidsAfter(name: String, value: String, after: UUID, limit: Int): Seq[UUID] =
+        val query = entityManager.createNamedQuery(name)
+        query.setParameter(1, value)
+        query.setParameter(2, after)
+        query.setMaxResults(limit)
+        query.getResultList.asScala.toSeq.flatMap(_.asInstanceOf[Object].asUUID)
+
+    /**
+     * Run a named query that selects UUIDs using a `uuids` IN parameter. The UUIDs are bound in chunks of
+     * [[BaseDAO.InClauseSize]]
+     */
+    protected def findUuids(name: String, uuids: Seq[UUID]): Seq[UUID] =
+        uuids
+            .distinct
+            .grouped(BaseDAO.InClauseSize)
+            .flatMap(xs => findByTypedNamedQuery[UUID](name, Map("uuids" -> xs.asJava)))
+            .toSeq
+            .distinct
+
     /**
      * Lookup entity by primary key. A DAO will only return entities of their type. Also, note that I had to use a
      * little scala reflection magic here
@@ -164,3 +194,6 @@ abstract class BaseDAO[B <: IPersistentObject: ClassTag](val entityManager: Enti
 
 object BaseDAO:
     val JDBC_URL_KEY = "jakarta.persistence.jdbc.url"
+
+    /** Number of parameters bound per IN clause. SQL Server allows at most 2100 parameters per statement */
+    val InClauseSize = 1000
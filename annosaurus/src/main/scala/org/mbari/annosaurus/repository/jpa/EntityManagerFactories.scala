@@ -19,10 +19,12 @@ package org.mbari.annosaurus.repository.jpa
 import com.typesafe.config.ConfigFactory
 import jakarta.persistence.{EntityManagerFactory, Persistence}
 import org.mbari.annosaurus.etc.flyway.FlywayMigrator
+import org.mbari.annosaurus.etc.jdbc.ReadRouter
 import org.mbari.annosaurus.etc.jdk.Loggers.given
 import org.mbari.annosaurus.{AppConfig, DatabaseConfig}
 
 import java.lang.System.Logger.Level
+import javax.sql.DataSource
 import scala.jdk.CollectionConverters.*
 
 /**
@@ -41,21 +43,44 @@ object EntityManagerFactories:
 
     private lazy val config = ConfigFactory.load()
 
-    // https://juliuskrah.com/tutorial/2017/02/16/getting-started-with-hikaricp-hibernate-and-jpa/
+    // The connection pool is built by DatabaseConfig and handed to Hibernate, so the JDBC code paths can share it
     val PRODUCTION_PROPS = Map(
-        "hibernate.connection.provider_class"      -> "org.hibernate.hikaricp.internal.HikariCPConnectionProvider",
         "hibernate.hbm2ddl.auto"                   -> "validate",
-        "hibernate.hikari.idleTimeout"             -> "30000",
         "hibernate.jdbc.batch_size"                -> "100",
-        "hibernate.hikari.maximumPoolSize"         -> s"${AppConfig.NumberOfVertxWorkers * 2}", // Same as vertx worker pool threads
-        "hibernate.hikari.minimumIdle"             -> "2",
         "hibernate.order_inserts"                  -> "true",
         "hibernate.order_updates"                  -> "true",
         "hibernate.type.java_time_use_direct_jdbc" -> "true"
-    )
+    ) ++ CacheProps
 
-    def apply(properties: Map[String, String]): EntityManagerFactory =
-        val props = PRODUCTION_PROPS ++ properties
+    /**
+     * In-process second-level and query cache (Caffeine via JCache). Only entities annotated with `@Cacheable` and
+     * queries with the cacheable hint are cached. The regions are configured under `caffeine.jcache` in
+     * reference.conf. Statistics are collected so they can be exported on /metrics.
+     */
+    private lazy val CacheProps: Map[String, String] =
+        if config.getBoolean("database.cache.enable") then
+            Map(
+                "hibernate.cache.use_second_level_cache"       -> "true",
+                "hibernate.cache.use_query_cache"              -> "true",
+                "hibernate.cache.region.factory_class"         -> "jcache",
+                "hibernate.javax.cache.provider"               -> "com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider",
+                "hibernate.javax.cache.missing_cache_strategy" -> "create",
+                "hibernate.generate_statistics"                -> "true",
+                "jakarta.persistence.sharedCache.mode"         -> "ENABLE_SELECTIVE"
+            )
+        else Map("hibernate.cache.use_second_level_cache" -> "false", "hibernate.cache.use_query_cache" -> "false")
+
+    /**
+     * Creates an EntityManagerFactory that gets its connections from the given pool.
+     *
+     * @param dataSource
+     *   The connection pool. It is shared, not owned; closing the factory does not close it
+     * @param properties
+     *   Additional properties. These override the production properties
+     */
+    def apply(dataSource: DataSource, properties: Map[String, String]): EntityManagerFactory =
+        val props: Map[String, AnyRef] =
+            PRODUCTION_PROPS ++ properties + ("jakarta.persistence.nonJtaDataSource" -> dataSource)
         val emf   = Persistence.createEntityManagerFactory("annosaurus", props.asJava)
         if log.isLoggable(Level.INFO) then
             val props = emf
@@ -69,6 +94,22 @@ object EntityManagerFactories:
             log.atInfo.log(s"EntityManager Properties:\n${props}")
         emf
 
+    /**
+     * Migrates the database, then creates an EntityManagerFactory that uses the interactive pool of the
+     * DatabaseConfig. Other code that uses the same DatabaseConfig shares that pool.
+     */
+    def apply(databaseConfig: DatabaseConfig, properties: Map[String, String]): EntityManagerFactory =
+        // Flyway migration here. Need to initialize the database before we
+        // can create an EntityManagerFactory
+        FlywayMigrator.migrate(databaseConfig) match
+            case Left(e)      =>
+                log.atError.withCause(e).log(s"Failed to migrate database at ${databaseConfig.url}")
+                throw e
+            case Right(value) =>
+                apply(databaseConfig.dataSource, properties)
+
+    def apply(databaseConfig: DatabaseConfig): EntityManagerFactory = apply(databaseConfig, Map.empty)
+
     def apply(
         url: String,
         username: String,
@@ -76,22 +117,33 @@ object EntityManagerFactories:
         driverName: String,
         properties: Map[String, String] = Map.empty
     ): EntityManagerFactory =
+        apply(DatabaseConfig(url, username, password, driverName, "foo"), properties)
 
-        // Flyway migration here. Need to initialize the database before we
-        // can create an EntityManagerFactory
-        val dbConfig = DatabaseConfig(url, username, password, driverName, "foo")
-        FlywayMigrator.migrate(dbConfig) match
-            case Left(e)      =>
-                log.atError.withCause(e).log(s"Failed to migrate database at $url")
-                throw e
-            case Right(value) =>
-                val map = Map(
-                    "jakarta.persistence.jdbc.url"      -> url,
-                    "jakarta.persistence.jdbc.user"     -> username,
-                    "jakarta.persistence.jdbc.password" -> password,
-                    "jakarta.persistence.jdbc.driver"   -> driverName
+    /**
+     * Builds a router that spreads read-only work over EntityManagerFactories for the configured replicas. Replicas
+     * are not migrated; they get their schema from the primary. They also skip the second-level cache because only
+     * writes through the primary invalidate it.
+     *
+     * @param primary
+     *   The EntityManagerFactory for the primary database
+     * @param databaseConfig
+     *   The database configuration, including any replicas
+     */
+    def readRouter(primary: EntityManagerFactory, databaseConfig: DatabaseConfig): ReadRouter[EntityManagerFactory] =
+        databaseConfig.replica match
+            case None    => ReadRouter.primaryOnly(primary)
+            case Some(r) =>
+                val replicas = r.urls.zip(databaseConfig.replicaDataSources).map((url, dataSource) =>
+                    log.atInfo.log(s"Routing read-only transactions to replica at $url")
+                    apply(
+                        dataSource,
+                        Map(
+                            "hibernate.cache.use_second_level_cache" -> "false",
+                            "hibernate.cache.use_query_cache"        -> "false"
+                        )
+                    )
                 )
-                apply(map ++ properties)
+                ReadRouter(primary, replicas, r.policy, r.staleness)
 
     def apply(configNode: String): EntityManagerFactory =
         val driver   = config.getString(configNode + ".driver")
@@ -19,8 +19,10 @@ package org.mbari.annosaurus.repository.jpa
 import jakarta.persistence.EntityManager
 import org.mbari.annosaurus.repository.ImageReferenceDAO
 import org.mbari.annosaurus.repository.jpa.entity.ImageReferenceEntity
+import org.mbari.annosaurus.util.UrlHash
 
 import java.net.URL
+import scala.jdk.CollectionConverters.*
 
 /**
  * @author
@@ -55,8 +57,36 @@ class ImageReferenceDAOImpl(entityManager: EntityManager)
     ): Iterable[ImageReferenceEntity] =
         findByNamedQuery("ImageReference.findAll", limit = limit, offset = offset)
 
+    /**
+     * Probes the narrow url_hash index, then confirms the full URL in memory. Until [[UrlHashBackfill]] has hashed
+     * every existing row, a miss falls back to the url column.
+     */
     override def findByURL(url: URL): Option[ImageReferenceEntity] =
-        findByNamedQuery("ImageReference.findByURL", Map("url" -> url)).headOption
+        val key = url.toExternalForm
+        findByNamedQuery("ImageReference.findByURLHash", Map("hash" -> UrlHash.of(key)))
+            .find(_.getUrl.toExternalForm == key)
+            .orElse(
+                if UrlHashBackfill.isComplete then None
+                else findByNamedQuery("ImageReference.findByURL", Map("url" -> url)).headOption
+            )
+
+    override def findByURLs(urls: Seq[URL]): Seq[ImageReferenceEntity] =
+        val keys  = urls.map(_.toExternalForm).toSet
+        val found = urls
+            .grouped(BaseDAO.InClauseSize)
+            .flatMap(xs =>
+                val hashes = xs.map(u => UrlHash.of(u)).asJava
+                findByNamedQuery("ImageReference.findByURLHashes", Map("hashes" -> hashes))
+            )
+            .filter(ir => keys.contains(ir.getUrl.toExternalForm))
+            .toSeq
+        if UrlHashBackfill.isComplete then found
+        else
+            val foundKeys = found.map(_.getUrl.toExternalForm).toSet
+            val missing   = urls.filterNot(u => foundKeys.contains(u.toExternalForm))
+            found ++ missing
+                .grouped(BaseDAO.InClauseSize)
+                .flatMap(xs => findByNamedQuery("ImageReference.findByURLs", Map("urls" -> xs.asJava)))
 
     override def findByImageName(name: String): Seq[ImageReferenceEntity] =
         findByNamedQuery("ImageReference.findByImageName", Map("name" -> s"%$name%"))
@@ -18,9 +18,12 @@ package org.mbari.annosaurus.repository.jpa
 
 import jakarta.persistence.EntityManager
 import org.hibernate.jpa.HibernateHints
-import org.mbari.annosaurus.domain.{ImagedMoment, WindowRequest}
+import org.mbari.annosaurus.domain.{DeleteCount, ImagedMoment, WindowRequest}
 import org.mbari.annosaurus.repository.ImagedMomentDAO
-import org.mbari.annosaurus.repository.jpa.entity.ImagedMomentEntity
+import org.mbari.annosaurus.repository.jdbc.ImagedMomentSQL
+import org.mbari.annosaurus.repository.jpa.TransactionNotifier.Action
+import org.mbari.annosaurus.repository.jpa.entity.{AssociationEntity, ImagedMomentEntity, ObservationEntity}
+import org.mbari.annosaurus.repository.jpa.extensions.*
 import org.mbari.vcr4j.time.Timecode
 
 import java.sql.Timestamp
@@ -98,6 +101,16 @@ class ImagedMomentDAOImpl(entityManager: EntityManager)
             offset
         )
 
+    override def findByVideoReferenceUUIDAndTimestamps(
+        uuid: UUID,
+        startTimestamp: Instant,
+        endTimestamp: Instant
+    ): Iterable[ImagedMomentEntity] =
+        findByNamedQuery(
+            "ImagedMoment.findByVideoReferenceUUIDAndTimestamps",
+            Map("uuid" -> uuid, "start" -> startTimestamp, "end" -> endTimestamp)
+        )
+
     override def streamByVideoReferenceUUIDAndTimestamps(
         uuid: UUID,
         startTimestamp: Instant,
@@ -412,9 +425,68 @@ class ImagedMomentDAOImpl(entityManager: EntityManager)
      *   deleted.
      */
     override def deleteByVideoReferenceUUUID(uuid: UUID): Int =
-        val xs = findByVideoReferenceUUID(uuid)
-        xs.foreach(delete)
-        xs.size
+        bulkDeleteByVideoReferenceUuid(uuid).imagedMomentCount
+
+    /**
+     * Set-based version of deleteByVideoReferenceUUUID. The graph is removed with one DELETE per table instead of
+     * loading and cascading through every entity. Because entity lifecycle events are bypassed, the Envers audit rows
+     * for the deleted observations and associations are written with a single INSERT per table, and one REMOVE
+     * message per deleted observation and association is published via [[TransactionNotifier]].
+     *
+     * The persistence context is flushed before and cleared after the delete.
+     */
+    override def bulkDeleteByVideoReferenceUuid(uuid: UUID): DeleteCount =
+        entityManager.flush()
+
+        val observationUuids = entityManager
+            .createNamedQuery("Observation.findUUIDsByVideoReferenceUUID", classOf[UUID])
+            .setParameter("uuid", uuid)
+            .getResultList
+        val associationUuids = entityManager
+            .createNamedQuery("Association.findUUIDsByVideoReferenceUUID", classOf[UUID])
+            .setParameter("uuid", uuid)
+            .getResultList
+
+        if !observationUuids.isEmpty then
+            // Envers only audits entity events. Record the deletes under this transaction's revision ourselves
+            val revisionId = entityManager.currentRevisionId
+            val audits     = Seq("Association.auditDeleteByVideoReferenceUuid", "Observation.auditDeleteByVideoReferenceUuid")
+            for name <- audits do
+                entityManager
+                    .createNamedQuery(name)
+                    .setParameter(1, revisionId)
+                    .setParameter(2, uuid)
+                    .executeUpdate()
+
+        def delete(name: String, table: String): Int =
+            entityManager
+                .createNamedQuery(name)
+                .setParameter(1, uuid)
+                .setHint(HibernateHints.HINT_NATIVE_SPACES, table)
+                .executeUpdate()
+
+        val associationCount    = delete("Association.deleteByVideoReferenceUuid", "associations")
+        val observationCount    = delete("Observation.deleteByVideoReferenceUuid", "observations")
+        val imageReferenceCount = delete("ImageReference.deleteByVideoReferenceUuid", "image_references")
+        val ancillaryDataCount  = delete("AncillaryDatum.deleteByVideoReferenceUuid", "ancillary_data")
+        val imagedMomentCount   = entityManager
+            .createNamedQuery("ImagedMoment.deleteByVideoReferenceUUID")
+            .setParameter("uuid", uuid)
+            .executeUpdate()
+
+        entityManager.clear()
+
+        TransactionNotifier.publish(Action.REMOVE, classOf[AssociationEntity], uuid, associationUuids)
+        TransactionNotifier.publish(Action.REMOVE, classOf[ObservationEntity], uuid, observationUuids)
+
+        DeleteCount(
+            uuid,
+            ancillaryDataCount,
+            imageReferenceCount,
+            associationCount,
+            observationCount,
+            imagedMomentCount
+        )
 
     // override def moveToVideoReference(
     //     newVideoReferenceUuid: UUID,
@@ -446,24 +518,28 @@ class ImagedMomentDAOImpl(entityManager: EntityManager)
             }
             .sum
 
-        if newVideoReferenceStartTimestamp.isDefined then
-
-            val startTimestamp = newVideoReferenceStartTimestamp.get
-
-            // Update the recorded timestamp for all the imaged moments that were moved
-            // Loop though each imaged moment and update the recorded timestamp by the difference between the new video reference start timestamp and the old video reference start timestamp
-            for imagedMomentUuid <- imageMomentUuids
-            do
-                findByUUID(imagedMomentUuid).foreach { imagedMoment =>
-                    Option(imagedMoment.getElapsedTime()) match
-                        case None                 => // do nothing
-                        case Some(oldElapsedTime) =>
-                            val recordedTimestamp = imagedMoment.getRecordedTimestamp()
-                            val newElapsedTime    = Duration.between(startTimestamp, recordedTimestamp)
-                            imagedMoment.setElapsedTime(newElapsedTime)
-                }
+        // Elapsed times are relative to the new video's start
+        newVideoReferenceStartTimestamp.foreach(start => updateElapsedTimeFromStart(imageMomentUuids, start))
         n
 
+    override def updateElapsedTimeFromStart(imagedMomentUuids: Seq[UUID], startTimestamp: Instant): Int =
+        if imagedMomentUuids.isEmpty then return 0
+        val sql         = ImagedMomentSQL.updateElapsedTimeFromStart(entityManager.databaseType)
+        val lastUpdated = Timestamp.from(Instant.now())
+        // Same batch size as moveToVideoReference to stay under database parameter limits
+        imagedMomentUuids
+            .grouped(1000)
+            .map { batch =>
+                entityManager
+                    .createNativeQuery(sql)
+                    .setParameter(1, startTimestamp)
+                    .setParameter(2, lastUpdated)
+                    .setParameter(3, batch.asJava)
+                    .setHint(HibernateHints.HINT_NATIVE_SPACES, "imaged_moments")
+                    .executeUpdate()
+            }
+            .sum
+
 //  override def delete(entity: ImagedMomentImpl): Unit = {
 //    Option(entity.ancillaryDatum).foreach(entityManager.remove)
 //    entity.observations.flatMap(_.associations).foreach(entityManager.remove)
@@ -17,10 +17,19 @@
 package org.mbari.annosaurus.repository.jpa
 
 import jakarta.persistence.EntityManager
+import org.hibernate.Session
+import org.hibernate.jpa.HibernateHints
+import org.mbari.annosaurus.etc.jdbc.Databases.DatabaseType
 import org.mbari.annosaurus.repository.IndexDAO
+import org.mbari.annosaurus.repository.jdbc.ImagedMomentSQL
 import org.mbari.annosaurus.repository.jpa.entity.IndexEntity
+import org.mbari.annosaurus.repository.jpa.extensions.*
 
+import java.sql.{Statement, Timestamp}
+import java.time.{Instant, ZoneOffset}
 import java.util.UUID
+import scala.jdk.CollectionConverters.*
+import scala.util.Using
 
 /**
  * @author
@@ -43,6 +52,46 @@ class IndexDAOImpl(entityManager: EntityManager) extends BaseDAO[IndexEntity](en
             offset
         )
 
+    override def findByUuids(uuids: Seq[UUID]): Seq[IndexEntity] =
+        uuids
+            .grouped(BaseDAO.InClauseSize)
+            .flatMap(xs => findByNamedQuery("Index.findByUUIDs", Map("uuids" -> xs.asJava)))
+            .toSeq
+
+    override def updateRecordedTimestampsFromStart(videoReferenceUuid: UUID, startTimestamp: Instant): Int =
+        entityManager
+            .createNativeQuery(ImagedMomentSQL.updateRecordedTimestampFromStart(entityManager.databaseType))
+            .setParameter(1, startTimestamp)
+            .setParameter(2, Timestamp.from(Instant.now()))
+            .setParameter(3, videoReferenceUuid)
+            .setHint(HibernateHints.HINT_NATIVE_SPACES, "imaged_moments")
+            .executeUpdate()
+
+    override def updateRecordedTimestamps(updates: Seq[(UUID, Instant)]): Int =
+        if updates.isEmpty then return 0
+        // Write pending changes first, the batch goes straight to the connection
+        entityManager.flush()
+        val isSqlServer = entityManager.databaseType == DatabaseType.SQLServer
+        val lastUpdated = Timestamp.from(Instant.now())
+        entityManager
+            .unwrap(classOf[Session])
+            .doReturningWork(connection =>
+                Using.resource(connection.prepareStatement(ImagedMomentSQL.updateRecordedTimestamp)) { statement =>
+                    updates
+                        .grouped(BatchSize)
+                        .map { batch =>
+                            for (uuid, recordedTimestamp) <- batch do
+                                statement.setObject(1, recordedTimestamp.atOffset(ZoneOffset.UTC))
+                                statement.setTimestamp(2, lastUpdated)
+                                if isSqlServer then statement.setString(3, uuid.toString)
+                                else statement.setObject(3, uuid)
+                                statement.addBatch()
+                            statement.executeBatch().count(n => n > 0 || n == Statement.SUCCESS_NO_INFO)
+                        }
+                        .sum
+                }
+            )
+
     // --- These methods are deliberately overridden ---
 
     override def findAll(
@@ -17,8 +17,12 @@
 package org.mbari.annosaurus.repository.jpa
 
 import jakarta.persistence.{EntityManager, EntityManagerFactory}
+import org.mbari.annosaurus.AppConfig
+import org.mbari.annosaurus.etc.jdbc.ReadRouter
 import org.mbari.annosaurus.repository.DAO
 
+import javax.sql.DataSource
+
 /**
  * @author
  *   Brian Schlining
@@ -28,6 +32,26 @@ trait JPADAOFactory:
 
     def entityManagerFactory: EntityManagerFactory
 
+    /** Routes read-only work to read replicas. Without replicas every read uses entityManagerFactory */
+    lazy val readRouter: ReadRouter[EntityManagerFactory] = ReadRouter.primaryOnly(entityManagerFactory)
+
+    /**
+     * A factory for read-only work. It is bound to a replica when replicas are configured.
+     *
+     * @param readYourWrites
+     *   true if the reads must see writes this instance just made. These stay on the primary for a while after a
+     *   write.
+     */
+    def readOnly(readYourWrites: Boolean = false): JPADAOFactory =
+        val emf = readRouter.next(readYourWrites)
+        if emf eq entityManagerFactory then this else new JPADAOFactoryImpl(emf)
+
+    /**
+     * A separate connection pool for bulk work, if one is configured. Without one, bulk work uses the
+     * entityManagerFactory's pool.
+     */
+    def bulkDataSource: Option[DataSource] = None
+
     private def extractEntityManager(dao: DAO[?]): EntityManager =
         dao.asInstanceOf[BaseDAO[?]].entityManager
 
@@ -79,6 +103,15 @@ trait JPADAOFactory:
 
 object JPADAOFactory extends JPADAOFactory:
 
-    lazy val entityManagerFactory = EntityManagerFactories("database")
+    lazy val entityManagerFactory = EntityManagerFactories(AppConfig.DefaultDatabaseConfig)
+
+    override def bulkDataSource: Option[DataSource] =
+        Option.when(AppConfig.DefaultPoolConfig.bulk > 0)(AppConfig.DefaultDatabaseConfig.bulkDataSource)
+
+    override lazy val readRouter: ReadRouter[EntityManagerFactory] =
+        val router = EntityManagerFactories.readRouter(entityManagerFactory, AppConfig.DefaultDatabaseConfig)
+        // Entity writes, and bulk writes that publish their changes, start the read-your-writes window
+        TransactionNotifier.getRxSubject.subscribe(_ => router.markWrite())
+        router
 
 class JPADAOFactoryImpl(val entityManagerFactory: EntityManagerFactory) extends JPADAOFactory
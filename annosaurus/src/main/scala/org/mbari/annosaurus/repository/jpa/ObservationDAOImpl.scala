@@ -19,10 +19,12 @@ package org.mbari.annosaurus.repository.jpa
 import jakarta.persistence.EntityManager
 import org.hibernate.jpa.HibernateHints
 import org.mbari.annosaurus.domain.{ConcurrentRequest, MultiRequest}
-import org.mbari.annosaurus.repository.ObservationDAO
+import org.mbari.annosaurus.repository.{BulkDeleteResult, ObservationDAO}
 import org.mbari.annosaurus.repository.jdbc.*
 import org.mbari.annosaurus.repository.jpa.entity.ObservationEntity
+import org.mbari.annosaurus.repository.jpa.extensions.*
 
+import java.sql.Timestamp
 import java.time.{Duration, Instant}
 import java.util as ju
 import java.util.{UUID, stream}
@@ -249,9 +251,44 @@ class ObservationDAOImpl(entityManager: EntityManager)
         query.setParameter(2, oldConcept)
         query.executeUpdate()
 
+    override def updateConceptChunk(oldConcept: String, newConcept: String, after: UUID, limit: Int): Seq[UUID] =
+        val uuids = findUuidsAfter("Observation.findUUIDsByConceptAfter", oldConcept, after, limit)
+        if uuids.nonEmpty then
+            val now = Timestamp.from(Instant.now())
+            for xs <- uuids.grouped(BaseDAO.InClauseSize) do
+                executeUpdate("Observation.updateConceptByUuids", newConcept, now, xs.asJava)
+        uuids
+
     override def changeImageMoment(imagedMomentUuid: UUID, observationUuid: UUID): Int =
         val query = entityManager.createNamedQuery("Observation.updateImagedMomentUUID")
         query
             .setParameter(1, imagedMomentUuid)
             .setParameter(2, observationUuid)
         query.executeUpdate()
+
+    override def bulkDeleteByUuids(uuids: Seq[UUID]): BulkDeleteResult =
+        entityManager.flush()
+        val existing = findUuids("Observation.findUUIDsByUUIDs", uuids)
+        if existing.isEmpty then return BulkDeleteResult()
+
+        val associationUuids  = findUuids("Association.findUUIDsByObservationUUIDs", existing)
+        val imagedMomentUuids = findUuids("Observation.findImagedMomentUUIDsByUUIDs", existing)
+
+        // Envers only audits entity events. Record the deletes under this transaction's revision ourselves
+        val revisionId = entityManager.currentRevisionId
+        for xs <- associationUuids.grouped(BaseDAO.InClauseSize) do
+            executeUpdate("Association.auditDeleteByUuids", revisionId, xs.asJava)
+
+        // Children first
+        var imagedMomentCount = 0
+        for xs <- existing.grouped(BaseDAO.InClauseSize) do
+            executeUpdate("Observation.auditDeleteByUuids", revisionId, xs.asJava)
+            executeUpdate("Association.deleteByObservationUuids", xs.asJava)
+            executeUpdate("Observation.deleteByUuids", xs.asJava)
+        for xs <- imagedMomentUuids.grouped(BaseDAO.InClauseSize) do
+            executeUpdate("AncillaryDatum.deleteByEmptyImagedMomentUuids", xs.asJava)
+            imagedMomentCount += executeUpdate("ImagedMoment.deleteEmptyByUuids", xs.asJava)
+
+        entityManager.clear()
+        BulkDeleteResult(existing, associationUuids, imagedMomentCount)
+
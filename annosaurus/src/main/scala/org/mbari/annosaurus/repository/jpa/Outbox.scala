@@ -0,0 +1,238 @@
+/*
+ * Copyright 2017 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.annosaurus.repository.jpa
+
+import io.reactivex.rxjava3.core.Observable
+import io.reactivex.rxjava3.subjects.{PublishSubject, Subject}
+import jakarta.persistence.{EntityManager, EntityManagerFactory}
+import org.hibernate.Session
+import org.mbari.annosaurus.etc.jdbc.Databases.DatabaseType
+import org.mbari.annosaurus.etc.jdk.Loggers.given
+import org.mbari.annosaurus.repository.jpa.extensions.*
+
+import java.time.Duration
+import java.util.UUID
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.{Executors, ScheduledExecutorService, TimeUnit}
+import scala.collection.mutable.ArrayBuffer
+import scala.jdk.CollectionConverters.*
+import scala.util.Using
+import scala.util.control.NonFatal
+
+/**
+ * A transactional outbox for change messages. While it is enabled, the messages from the entity lifecycle callbacks
+ * are also inserted into the outbox_events table in the same transaction as the changes. In-process subscribers of
+ * the TransactionNotifier still get them straight after the commit, but only for this instance's writes. An
+ * [[OutboxRelay]] hands every committed row, from any instance, to [[messages]] until the downstream publisher
+ * confirms it. Messages that were written survive a crash.
+ */
+object Outbox:
+
+    @volatile private var relay: Option[OutboxRelay] = None
+
+    private val relayed: Subject[Object] = PublishSubject.create[Object]().toSerialized
+
+    private val InsertSql =
+        "INSERT INTO outbox_events (action, entity, uuid, video_reference_uuid, concept) VALUES (?, ?, ?, ?, ?)"
+
+    /** True while a relay is running */
+    def isEnabled: Boolean = relay.isDefined
+
+    private[jpa] def start(r: OutboxRelay): Unit = relay = Some(r)
+
+    private[jpa] def stop(r: OutboxRelay): Unit = if relay.contains(r) then relay = None
+
+    /** Insert messages into the outbox. Must be called inside the transaction that made the changes */
+    def write(entityManager: EntityManager, messages: Seq[TransactionNotifier.Message[?]]): Unit =
+        if messages.nonEmpty then
+            entityManager
+                .unwrap(classOf[Session])
+                .doWork(connection =>
+                    Using.resource(connection.prepareStatement(InsertSql))(statement =>
+                        for m <- messages do
+                            statement.setString(1, m.action().name())
+                            statement.setString(2, m.clazz().getName)
+                            statement.setString(3, m.uuid().toString)
+                            statement.setString(4, Option(m.videoReferenceUuid()).map(_.toString).orNull)
+                            statement.setString(5, m.concept())
+                            statement.addBatch()
+                        statement.executeBatch()
+                    )
+                )
+
+    /** Called after a transaction that wrote to the outbox commits */
+    def committed(): Unit = relay.foreach(_.wake())
+
+    /**
+     * The messages relayed from the outbox, coalesced like those on the TransactionNotifier's subject, plus its
+     * RenameMessages, which do not go through the outbox. A batch is sent again if its relay transaction rolls back,
+     * so subscribers (i.e. the NATS bridge) get each change at least once.
+     */
+    def messages: Observable[Object] =
+        relayed.mergeWith(TransactionNotifier.getRxSubject.ofType(classOf[TransactionNotifier.RenameMessage[?]]))
+
+    private[jpa] def relay(messages: Seq[TransactionNotifier.Message[?]]): Unit =
+        TransactionNotifier.coalesce(messages.asJava).forEach(batch => relayed.onNext(batch))
+
+/**
+ * Publishes messages from the outbox in batches. Each batch is read, published to [[Outbox.messages]] (where the NATS
+ * bridge picks it up) and, once delivered confirms it, deleted in one transaction. In-process subscribers of the
+ * TransactionNotifier are not involved, so a batch that is retried never reaches them twice. A relay wakes up after every commit that wrote to the outbox and also polls, so rows written by other
+ * instances or left over from a crash are published too. Rows are locked with SKIP LOCKED/READPAST so several
+ * instances can relay at once; a batch that is not confirmed, or whose transaction fails, is rolled back and
+ * published again later.
+ *
+ * @param batchSize
+ *   The most rows read per transaction
+ * @param interval
+ *   How often to poll when there are no commits
+ * @param delivered
+ *   Called after a batch is published. Blocks until the downstream publishers (e.g. NATS) have sent it and returns
+ *   false if they could not
+ */
+class OutboxRelay(
+    entityManagerFactory: EntityManagerFactory,
+    batchSize: Int,
+    interval: Duration,
+    delivered: () => Boolean = () => true
+) extends AutoCloseable:
+
+    private val log                                = System.getLogger(getClass.getName)
+    private val scheduled                          = new AtomicBoolean(false)
+    private val executor: ScheduledExecutorService = Executors.newSingleThreadScheduledExecutor(r =>
+        val thread = new Thread(r, "annosaurus-outbox-relay")
+        thread.setDaemon(true)
+        thread
+    )
+
+    private val databaseType =
+        val entityManager = entityManagerFactory.createEntityManager()
+        try entityManager.databaseType
+        finally entityManager.close()
+
+    private val selectSql = databaseType match
+        case DatabaseType.SQLServer =>
+            "SELECT TOP (?) id, action, entity, uuid, video_reference_uuid, concept " +
+                "FROM outbox_events WITH (UPDLOCK, READPAST, ROWLOCK) ORDER BY id"
+        case _                      =>
+            "SELECT id, action, entity, uuid, video_reference_uuid, concept " +
+                "FROM outbox_events ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED"
+
+    executor.scheduleWithFixedDelay(() => wake(), interval.toMillis, interval.toMillis, TimeUnit.MILLISECONDS)
+    Outbox.start(this)
+
+    /** Relay everything in the outbox. Calls made while a relay is pending are coalesced */
+    def wake(): Unit =
+        if scheduled.compareAndSet(false, true) then
+            executor.execute(() =>
+                scheduled.set(false)
+                try while relayBatch() == batchSize do ()
+                catch
+                    case NonFatal(e) =>
+                        log.atWarn.withCause(e).log("Failed to relay messages from the outbox. Will retry")
+            )
+
+    /**
+     * Publish and delete one batch. Rows are only deleted after delivered confirms them.
+     * @return
+     *   The number of messages relayed
+     */
+    def relayBatch(): Int =
+        val entityManager = entityManagerFactory.createEntityManager()
+        try
+            entityManager.runTransactionSync(em =>
+                val ids      = ArrayBuffer[Long]()
+                val messages = ArrayBuffer[TransactionNotifier.Message[?]]()
+                val session  = em.unwrap(classOf[Session])
+                session.doWork(connection =>
+                    Using.resource(connection.prepareStatement(selectSql))(statement =>
+                        statement.setInt(1, batchSize)
+                        Using.resource(statement.executeQuery())(rs =>
+                            while rs.next() do
+                                ids += rs.getLong(1)
+                                toMessage(
+                                    rs.getString(2),
+                                    rs.getString(3),
+                                    rs.getString(4),
+                                    Option(rs.getString(5)),
+                                    Option(rs.getString(6))
+                                ).foreach(messages += _)
+                        )
+                    )
+                )
+                if ids.nonEmpty then
+                    Outbox.relay(messages.toSeq)
+                    // Throwing rolls back the transaction, which keeps the rows and releases their locks
+                    if !delivered() then
+                        throw new IllegalStateException(s"${ids.size} outbox messages were not delivered")
+                    session.doWork(connection =>
+                        Using.resource(connection.createStatement())(statement =>
+                            statement.executeUpdate(s"DELETE FROM outbox_events WHERE id IN (${ids.mkString(",")})")
+                        )
+                    )
+                ids.size
+            )
+        finally entityManager.close()
+
+    private def toMessage(
+        action: String,
+        entity: String,
+        uuid: String,
+        videoReferenceUuid: Option[String],
+        concept: Option[String]
+    ): Option[TransactionNotifier.Message[?]] =
+        try
+            Some(
+                new TransactionNotifier.Message[AnyRef](
+                    TransactionNotifier.Action.valueOf(action),
+                    Class.forName(entity).asInstanceOf[Class[AnyRef]],
+                    UUID.fromString(uuid),
+                    videoReferenceUuid.map(UUID.fromString).orNull,
+                    concept.orNull
+                )
+            )
+        catch
+            case NonFatal(e) =>
+                log.atWarn.withCause(e).log(s"Skipping an unreadable outbox row: $action $entity $uuid")
+                None
+
+    override def close(): Unit =
+        Outbox.stop(this)
+        executor.shutdown()
+
+object OutboxRelay:
+
+    private val log = System.getLogger(getClass.getName)
+
+    /** Start relaying if the outbox is enabled */
+    def autowire(
+        entityManagerFactory: EntityManagerFactory,
+        enable: Boolean,
+        batchSize: Int,
+        interval: Duration,
+        delivered: () => Boolean = () => true
+    ): Option[OutboxRelay] =
+        if !enable then None
+        else
+            try
+                val relay = new OutboxRelay(entityManagerFactory, batchSize, interval, delivered)
+                log.atInfo.log("Publishing change messages through the transactional outbox")
+                Some(relay)
+            catch
+                case NonFatal(e) =>
+                    log.atError.withCause(e).log("Failed to start the outbox relay")
+                    None
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2017 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.annosaurus.repository.jpa
+
+import jakarta.persistence.EntityManagerFactory
+import org.hibernate.Session
+import org.mbari.annosaurus.etc.jdk.Loggers.given
+import org.mbari.annosaurus.util.UrlHash
+
+import scala.collection.mutable.ListBuffer
+import scala.util.Using
+import scala.util.control.NonFatal
+
+/**
+ * Fills in image_references.url_hash for rows written before the column existed. Rows are hashed in small
+ * transactions using JDBC batch updates so the job never holds long locks. It is safe to run on several annosaurus
+ * instances at once since the update is idempotent.
+ *
+ * @param entityManagerFactory
+ *   The database to backfill
+ * @param batchSize
+ *   The number of rows hashed per transaction
+ */
+class UrlHashBackfill(entityManagerFactory: EntityManagerFactory, batchSize: Int = 1000):
+
+    private val log = System.getLogger(getClass.getName)
+
+    /**
+     * Hash rows until none are left.
+     * @return
+     *   The number of rows updated
+     */
+    def run(): Long =
+        var total  = 0L
+        var result = step()
+        while result._2 > 0 do
+            total += result._2
+            log.atDebug.log(s"Backfilled url_hash for $total image references")
+            result = step()
+        val selected = result._1
+        if selected == 0 then
+            UrlHashBackfill.markComplete()
+            log.atInfo.log(s"Finished backfilling url_hash. $total image references were updated")
+        else log.atWarn.log(s"Backfilled $total image references, but $selected rows could not be updated")
+        total
+
+    /**
+     * Hash the next batch of rows
+     * @return
+     *   The number of rows without a hash that were found and the number that were updated. (0, 0) when every row has
+     *   a hash
+     */
+    def step(): (Int, Int) =
+        val entityManager = entityManagerFactory.createEntityManager()
+        val transaction   = entityManager.getTransaction
+        try
+            transaction.begin()
+            var selected = 0
+            var n        = 0
+            entityManager
+                .unwrap(classOf[Session])
+                .doWork(connection =>
+                    val urls = ListBuffer[String]()
+                    Using.resource(connection.prepareStatement("SELECT url FROM image_references WHERE url_hash IS NULL")) {
+                        select =>
+                            select.setMaxRows(batchSize)
+                            Using.resource(select.executeQuery()) { rs =>
+                                while rs.next() do urls += rs.getString(1)
+                            }
+                    }
+                    Using.resource(connection.prepareStatement("UPDATE image_references SET url_hash = ? WHERE url = ?")) {
+                        update =>
+                            for url <- urls do
+                                update.setBytes(1, UrlHash.of(url))
+                                update.setString(2, url)
+                                update.addBatch()
+                            // Count the rows actually updated so rows that can not be matched don't loop forever
+                            if urls.nonEmpty then n = update.executeBatch().count(_ != 0)
+                    }
+                    selected = urls.size
+                )
+            transaction.commit()
+            (selected, n)
+        finally
+            if transaction.isActive then transaction.rollback()
+            entityManager.close()
+
+object UrlHashBackfill:
+
+    private val log = System.getLogger(getClass.getName)
+
+    @volatile private var complete = false
+
+    /**
+     * @return
+     *   true once a backfill on this instance has confirmed that every image reference has a url_hash. New rows always
+     *   get a hash, so from then on URL lookups can rely on url_hash alone.
+     */
+    def isComplete: Boolean = complete
+
+    private[jpa] def markComplete(): Unit = complete = true
+
+    /**
+     * Run the backfill on a background daemon thread
+     */
+    def start(entityManagerFactory: EntityManagerFactory): Thread =
+        val task: Runnable = () =>
+            try new UrlHashBackfill(entityManagerFactory).run()
+            catch
+                case NonFatal(e) =>
+                    log.atWarn.withCause(e).log("Failed to backfill image_references.url_hash. Lookups will fall back to url")
+            ()
+        val thread         = new Thread(task, "annosaurus-url-hash-backfill")
+        thread.setDaemon(true)
+        thread.start()
+        thread
@@ -17,9 +17,15 @@
 package org.mbari.annosaurus.repository.jpa
 
 import jakarta.persistence.{EntityManager, FlushModeType}
+import org.hibernate.dialect.{OracleDialect, SQLServerDialect}
+import org.hibernate.engine.spi.SessionFactoryImplementor
+import org.hibernate.envers.AuditReaderFactory
+import org.mbari.annosaurus.etc.jdbc.DatabaseExecutor
+import org.mbari.annosaurus.etc.jdbc.Databases.DatabaseType
 import org.mbari.annosaurus.etc.jdk.Loggers.given
 
-import scala.concurrent.{ExecutionContext, Future}
+import scala.concurrent.Future
+import scala.jdk.CollectionConverters.*
 import scala.util.control.NonFatal
 
 /**
@@ -34,31 +40,71 @@ object extensions:
     private val log = System.getLogger(getClass.getName)
 
     extension (entityManager: EntityManager)
-        def runTransaction[R](fn: EntityManager => R)(implicit ec: ExecutionContext): Future[R] =
-            Future:
-                runTransactionSync(fn)
+        /**
+         * Runs a transaction on the bounded [[org.mbari.annosaurus.etc.jdbc.DatabaseExecutor.Default]]. Only this
+         * submission can be rejected when the executor is saturated, and then nothing has been written. Callbacks on
+         * the returned Future run on the caller's ExecutionContext.
+         */
+        def runTransaction[R](fn: EntityManager => R): Future[R] =
+            Future(runTransactionSync(fn))(using DatabaseExecutor.Default)
+
+        /** The type of database behind this EntityManager, resolved from Hibernate's dialect */
+        def databaseType: DatabaseType =
+            entityManager
+                .getEntityManagerFactory
+                .unwrap(classOf[SessionFactoryImplementor])
+                .getJdbcServices
+                .getDialect match
+                case _: SQLServerDialect => DatabaseType.SQLServer
+                case _: OracleDialect    => DatabaseType.Oracle
+                case _                   => DatabaseType.PostgreSQL
+
+        /**
+         * The id of the Envers revision for the current transaction, creating the revision if needed. Bulk statements
+         * bypass Envers, so use this to write audit rows for them by hand. Must be called inside a transaction.
+         */
+        def currentRevisionId: AnyRef =
+            val revision = AuditReaderFactory.get(entityManager).getCurrentRevision(classOf[AnyRef], true)
+            entityManager.flush()
+            entityManager.getEntityManagerFactory.getPersistenceUnitUtil.getIdentifier(revision)
 
+        /**
+         * Runs a transaction on the calling thread. Change messages from the entity lifecycle callbacks are collected
+         * while it runs and published after the commit. They are also written to the outbox inside the transaction
+         * when the outbox is enabled. Either way nothing is published for a transaction that rolls back.
+         */
         def runTransactionSync[R](fn: EntityManager => R): R =
             val transaction = entityManager.getTransaction
+            val collecting  = TransactionNotifier.beginTransaction()
             transaction.begin()
             try
                 val n = fn.apply(entityManager)
-                transaction.commit()
+                if collecting then
+                    // Fire the lifecycle callbacks now so that their messages can join this transaction
+                    entityManager.flush()
+                    val messages = TransactionNotifier.endTransaction()
+                    val outbox   = Outbox.isEnabled
+                    if outbox then Outbox.write(entityManager, messages.asScala.toSeq)
+                    transaction.commit()
+                    TransactionNotifier.publishAll(messages)
+                    if outbox then Outbox.committed()
+                else transaction.commit()
                 n
             catch
                 case NonFatal(e) =>
                     log.atError.withCause(e).log("Error running transaction")
                     throw e
-            finally if transaction.isActive then transaction.rollback()
+            finally
+                if collecting then TransactionNotifier.endTransaction()
+                if transaction.isActive then transaction.rollback()
 
         /**
          * Runs a read-only transaction that does not flush changes to the database. This prevents Hibernate from
          * attempting to UPDATE entities that were loaded but not explicitly modified, which is important when running
          * with a read-only database connection.
          */
-        def runReadOnlyTransaction[R](fn: EntityManager => R)(implicit ec: ExecutionContext): Future[R] =
-            Future:
-                runReadOnlyTransactionSync(fn)
+        def runReadOnlyTransaction[R](fn: EntityManager => R): Future[R] =
+            Future(runReadOnlyTransactionSync(fn))(using DatabaseExecutor.Default)
 
         /**
          * Synchronous version of runReadOnlyTransaction. Sets flush mode to COMMIT (no auto-flush) and rolls back the
@@ -45,7 +45,8 @@ object JDBC:
 
 class JDBC(config: DatabaseConfig):
 
-    def newConnection(): Connection = config.newConnection()
+    /** Everything run through this class is read-only, so connections come from a replica when one is configured */
+    def newConnection(): Connection = config.newReadOnlyConnection()
 
     def runQuery[T](
         sql: String,
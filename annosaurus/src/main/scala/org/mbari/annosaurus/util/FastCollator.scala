@@ -65,3 +65,20 @@ object FastCollator:
                 else None
                 listA(iA) -> nearest
         tmp.toSeq
+
+    /**
+     * A boxing-free collation of primitive long keys, such as epoch milliseconds. Unlike `apply`, this does not sort or
+     * copy the data itself and allocates no per-element tuples or Options.
+     *
+     * @param keysA
+     *   The keys to match. These do not need to be sorted
+     * @param keysB
+     *   The keys to match against. These do not need to be sorted
+     * @param tolerance
+     *   The maximum allowed distance between a key in keysA and its match in keysB
+     * @return
+     *   Parallel index arrays, ordered by ascending keysA. `indexA(i)` is an index into keysA and `indexB(i)` is the
+     *   index of its nearest neighbor in keysB, or -1 if there was no match within the tolerance.
+     */
+    def collate(keysA: Array[Long], keysB: Array[Long], tolerance: Long): LongCollator.Collation =
+        LongCollator.apply(keysA, keysB, tolerance)
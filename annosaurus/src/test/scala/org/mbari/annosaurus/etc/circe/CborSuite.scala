@@ -0,0 +1,146 @@
+/*
+ * Copyright 2017 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.annosaurus.etc.circe
+
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper
+import io.circe.Json
+import org.mbari.annosaurus.domain.{Annotation, Association}
+import org.mbari.annosaurus.etc.circe.CirceCodecs.{*, given}
+import org.mbari.annosaurus.util.HexUtil
+
+import java.time.Instant
+import java.util.UUID
+
+class CborSuite extends munit.FunSuite:
+
+    private def hex(json: Json): String = HexUtil.toHex(Cbor.encode(json)).toLowerCase
+
+    private def parse(hex: String): Json = Cbor.parse(HexUtil.fromHex(hex)).fold(e => fail(e.getMessage), identity)
+
+    // Jackson databind reads and writes the same CBOR without going through circe, as a check on the conversion
+    private val jsonMapper = new ObjectMapper()
+    private val cborMapper = new CBORMapper()
+
+    private val sample = Json.obj(
+        "name"   -> Json.fromString("Nanomia bijuga ü"),
+        "small"  -> Json.fromInt(23),
+        "count"  -> Json.fromLong(4294967296L),
+        "min"    -> Json.fromLong(Long.MinValue),
+        "depth"  -> Json.fromDoubleOrNull(-812.5),
+        "ratio"  -> Json.fromDoubleOrNull(0.1),
+        "tags"   -> Json.arr(Json.fromString("a"), Json.Null, Json.True, Json.False),
+        "nested" -> Json.obj("x" -> Json.fromInt(-24), "empty" -> Json.obj(), "none" -> Json.arr())
+    )
+
+    // Examples from RFC 8949, Appendix A
+    test("encode integers"):
+        assertEquals(hex(Json.fromInt(0)), "00")
+        assertEquals(hex(Json.fromInt(23)), "17")
+        assertEquals(hex(Json.fromInt(24)), "1818")
+        assertEquals(hex(Json.fromInt(1000)), "1903e8")
+        assertEquals(hex(Json.fromLong(1000000L)), "1a000f4240")
+        assertEquals(hex(Json.fromLong(1000000000000L)), "1b000000e8d4a51000")
+        assertEquals(hex(Json.fromInt(-1)), "20")
+        assertEquals(hex(Json.fromInt(-1000)), "3903e7")
+        assertEquals(hex(Json.fromLong(Long.MinValue)), "3b7fffffffffffffff")
+
+    test("encode floats, strings and simple values"):
+        assertEquals(hex(Json.fromDoubleOrNull(1.1)), "fb3ff199999999999a")
+        assertEquals(hex(Json.fromString("")), "60")
+        assertEquals(hex(Json.fromString("IETF")), "6449455446")
+        assertEquals(hex(Json.fromString("ü")), "62c3bc")
+        assertEquals(hex(Json.True), "f5")
+        assertEquals(hex(Json.False), "f4")
+        assertEquals(hex(Json.Null), "f6")
+
+    test("encode arrays and maps"):
+        assertEquals(hex(Json.arr(Json.fromInt(1), Json.fromInt(2), Json.fromInt(3))), "83010203")
+        val json = Json.obj("a" -> Json.fromInt(1), "b" -> Json.arr(Json.fromInt(2), Json.fromInt(3)))
+        assertEquals(hex(json), "a26161016162820203")
+
+    test("parse what was encoded"):
+        val json = Json.obj(
+            "name"   -> Json.fromString("Nanomia bijuga"),
+            "count"  -> Json.fromLong(4294967296L),
+            "depth"  -> Json.fromDoubleOrNull(-812.5),
+            "tags"   -> Json.arr(Json.fromString("a"), Json.Null, Json.True),
+            "nested" -> Json.obj("x" -> Json.fromInt(-24))
+        )
+        assertEquals(Cbor.parse(Cbor.encode(json)), Right(json))
+
+    test("parse half and single precision floats"):
+        assertEquals(parse("f93c00").asNumber.map(_.toDouble), Some(1.0))
+        assertEquals(parse("f97bff").asNumber.map(_.toDouble), Some(65504.0))
+        assertEquals(parse("f90001").asNumber.map(_.toDouble), Some(5.960464477539063e-8))
+        assertEquals(parse("fa47c35000").asNumber.map(_.toDouble), Some(100000.0))
+
+    test("parse indefinite length items and ignore tags"):
+        assertEquals(parse("7f657374726561646d696e67ff"), Json.fromString("streaming"))
+        val expected = Json.arr(
+            Json.fromInt(1),
+            Json.arr(Json.fromInt(2), Json.fromInt(3)),
+            Json.arr(Json.fromInt(4), Json.fromInt(5))
+        )
+        assertEquals(parse("9f018202039f0405ffff"), expected)
+        assertEquals(parse("bf6346756ef563416d7421ff"), Json.obj("Fun" -> Json.True, "Amt" -> Json.fromInt(-2)))
+        assertEquals(parse("c11a514b67b0"), Json.fromLong(1363896240L))
+
+    test("parse rejects truncated, trailing and byte string input"):
+        assert(Cbor.parse(HexUtil.fromHex("1903")).isLeft)
+        assert(Cbor.parse(HexUtil.fromHex("0000")).isLeft)
+        assert(Cbor.parse(HexUtil.fromHex("4401020304")).isLeft)
+        assert(Cbor.parse(HexUtil.fromHex("7a7fffffff")).isLeft)
+
+    test("Jackson reads what encode writes"):
+        val obtained = cborMapper.readTree(Cbor.encode(sample))
+        assertEquals(obtained, jsonMapper.readTree(sample.noSpaces))
+
+    test("parse reads what Jackson writes"):
+        val bytes = cborMapper.writeValueAsBytes(jsonMapper.readTree(sample.noSpaces))
+        assertEquals(Cbor.parse(bytes), Right(sample))
+
+    test("Jackson reads a cborified annotation like its JSON"):
+        val annotation = Annotation(
+            concept = Some("Aegina"),
+            observationUuid = Some(UUID.randomUUID()),
+            observationTimestamp = Some(Instant.parse("2025-01-02T03:04:05.678Z")),
+            elapsedTimeMillis = Some(123456L),
+            associations = Seq(Association("eating", "self", "Pyrosoma"))
+        )
+        assertEquals(cborMapper.readTree(annotation.cborify), jsonMapper.readTree(annotation.stringify))
+
+    test("cborify and reifyCbor round trip an annotation"):
+        val annotation = Annotation(
+            concept = Some("Aegina"),
+            observationUuid = Some(UUID.randomUUID()),
+            observationTimestamp = Some(Instant.parse("2025-01-02T03:04:05.678Z")),
+            recordedTimestamp = Some(Instant.parse("2025-01-02T03:04:00Z")),
+            videoReferenceUuid = Some(UUID.randomUUID()),
+            elapsedTimeMillis = Some(123456L),
+            associations = Seq(Association("eating", "self", "Pyrosoma"))
+        )
+        val bytes      = annotation.cborify
+        assertEquals(bytes.reifyCbor[Annotation], Right(annotation))
+        assert(bytes.length < annotation.stringify.getBytes("UTF-8").length)
+
+    test("cborify drops nulls like stringify"):
+        val annotation = Annotation(concept = Some("Aegina"))
+        val fromCbor   = Cbor.parse(annotation.cborify).toOption
+        val fromJson   = io.circe.parser.parse(annotation.stringify).toOption
+        assertEquals(fromCbor, fromJson)
+        assert(fromCbor.flatMap(_.asObject).exists(_.values.forall(!_.isNull)))
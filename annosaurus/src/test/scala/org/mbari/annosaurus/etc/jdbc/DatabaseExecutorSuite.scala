@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mbari.annosaurus.etc.jdbc
+
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.{CountDownLatch, RejectedExecutionException}
+import scala.concurrent.duration.*
+import scala.concurrent.{Await, ExecutionContext, Future}
+import scala.util.Using
+
+class DatabaseExecutorSuite extends munit.FunSuite:
+
+    /** Occupies the only thread until the latch opens */
+    private def block(executor: DatabaseExecutor, latch: CountDownLatch): Future[Unit] =
+        Future(latch.await())(using executor)
+
+    test("runs work on its own named threads"):
+        Using.resource(new DatabaseExecutor("test-threads", 2, 10)): executor =>
+            val name = Await.result(Future(Thread.currentThread().getName)(using executor), 5.seconds)
+            assert(name.startsWith("annosaurus-test-threads-"), name)
+
+    test("abort fails the Future when the queue is full"):
+        Using.resource(new DatabaseExecutor("test-abort", 1, 1)): executor =>
+            val latch    = new CountDownLatch(1)
+            val running  = block(executor, latch)
+            val queued   = Future(1)(using executor)
+            val overflow = Future(2)(using executor)
+            intercept[RejectedExecutionException](Await.result(overflow, 5.seconds))
+            assertEquals(executor.rejectedCount, 1L)
+            latch.countDown()
+            Await.result(running, 5.seconds)
+            assertEquals(Await.result(queued, 5.seconds), 1)
+
+    test("caller-runs runs the task on the submitting thread when the queue is full"):
+        Using.resource(new DatabaseExecutor("test-caller", 1, 1, DatabaseExecutor.Rejection.CallerRuns)): executor =>
+            val latch   = new CountDownLatch(1)
+            val running = block(executor, latch)
+            Future(())(using executor)
+            val caller   = Thread.currentThread().getName
+            val overflow = Future(Thread.currentThread().getName)(using executor)
+            assertEquals(Await.result(overflow, 5.seconds), caller)
+            assertEquals(executor.rejectedCount, 1L)
+            latch.countDown()
+            Await.result(running, 5.seconds)
+
+    test("virtual mode runs each task on a virtual thread"):
+        Using.resource(new DatabaseExecutor("test-virtual", 2, 10, mode = DatabaseExecutor.Mode.Virtual)): executor =>
+            val virtual = Await.result(Future(Thread.currentThread().isVirtual)(using executor), 5.seconds)
+            assert(virtual)
+
+    test("virtual mode limits how many tasks run at once"):
+        Using.resource(new DatabaseExecutor("test-permits", 2, 100, mode = DatabaseExecutor.Mode.Virtual)): executor =>
+            given ExecutionContext = executor
+            val running            = new AtomicInteger(0)
+            val maximum            = new AtomicInteger(0)
+            val tasks              = (0 until 20).map(_ =>
+                Future:
+                    maximum.accumulateAndGet(running.incrementAndGet(), (a, b) => Math.max(a, b))
+                    Thread.sleep(10)
+                    running.decrementAndGet()
+            )
+            Await.result(Future.sequence(tasks), 10.seconds)
+            assertEquals(maximum.get(), 2)
+            assertEquals(executor.completedCount, 20L)
+
+    test("virtual mode rejects tasks when the queue is full"):
+        Using.resource(new DatabaseExecutor("test-virtual-abort", 1, 1, mode = DatabaseExecutor.Mode.Virtual)):
+            executor =>
+                val latch   = new CountDownLatch(1)
+                val running = block(executor, latch)
+                while executor.active < 1 do Thread.sleep(1)
+                val queued = Future(1)(using executor)
+                while executor.queued < 1 do Thread.sleep(1)
+                val overflow = Future(2)(using executor)
+                intercept[RejectedExecutionException](Await.result(overflow, 5.seconds))
+                latch.countDown()
+                Await.result(running, 5.seconds)
+                assertEquals(Await.result(queued, 5.seconds), 1)
+
+    test("Mode.parse"):
+        assertEquals(DatabaseExecutor.Mode.parse("platform"), DatabaseExecutor.Mode.Platform)
+        assertEquals(DatabaseExecutor.Mode.parse(" Virtual "), DatabaseExecutor.Mode.Virtual)
+
+    test("Rejection.parse"):
+        assertEquals(DatabaseExecutor.Rejection.parse("abort"), DatabaseExecutor.Rejection.Abort)
+        assertEquals(DatabaseExecutor.Rejection.parse(" Caller-Runs "), DatabaseExecutor.Rejection.CallerRuns)
+        intercept[IllegalArgumentException](DatabaseExecutor.Rejection.parse("drop"))
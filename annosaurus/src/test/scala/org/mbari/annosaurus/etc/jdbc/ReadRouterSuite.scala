@@ -0,0 +1,61 @@
+/*
+ * Copyright 2017 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.annosaurus.etc.jdbc
+
+import java.time.Duration
+
+class ReadRouterSuite extends munit.FunSuite:
+
+    test("primaryOnly always returns the primary"):
+        val router = ReadRouter.primaryOnly("primary")
+        assertEquals(router.next(), "primary")
+        router.markWrite()
+        assertEquals(router.next(readYourWrites = true), "primary")
+
+    test("round-robin cycles through the replicas"):
+        val router   = ReadRouter("primary", Seq("a", "b", "c"), ReadRouter.Policy.RoundRobin)
+        val obtained = (0 until 6).map(_ => router.next())
+        assertEquals(obtained, Seq("a", "b", "c", "a", "b", "c"))
+
+    test("random only returns replicas"):
+        val router = ReadRouter("primary", Seq("a", "b"), ReadRouter.Policy.Random)
+        for _ <- 0 until 100 do assert(Set("a", "b").contains(router.next()))
+
+    test("read-your-writes reads use the primary within the staleness window"):
+        val router = ReadRouter("primary", Seq("a"), ReadRouter.Policy.RoundRobin, Duration.ofMinutes(1))
+        assertEquals(router.next(readYourWrites = true), "a")
+        router.markWrite()
+        assert(router.isStale)
+        assertEquals(router.next(readYourWrites = true), "primary")
+        assertEquals(router.next(), "a")
+
+    test("read-your-writes reads use the replicas after the staleness window"):
+        val router = ReadRouter("primary", Seq("a"), ReadRouter.Policy.RoundRobin, Duration.ofMillis(10))
+        router.markWrite()
+        Thread.sleep(50)
+        assert(!router.isStale)
+        assertEquals(router.next(readYourWrites = true), "a")
+
+    test("a zero staleness never falls back to the primary"):
+        val router = ReadRouter("primary", Seq("a"))
+        router.markWrite()
+        assertEquals(router.next(readYourWrites = true), "a")
+
+    test("Policy.parse"):
+        assertEquals(ReadRouter.Policy.parse("round-robin"), ReadRouter.Policy.RoundRobin)
+        assertEquals(ReadRouter.Policy.parse(" Random "), ReadRouter.Policy.Random)
+        intercept[IllegalArgumentException](ReadRouter.Policy.parse("fastest"))
@@ -22,6 +22,7 @@ import org.mbari.annosaurus.repository.jpa.entity.{AssociationEntity, Observatio
 
 import java.util.UUID
 import scala.collection.mutable
+import scala.jdk.CollectionConverters.*
 
 class NatsBridgeSuite extends munit.FunSuite:
 
@@ -69,12 +70,109 @@ class NatsBridgeSuite extends munit.FunSuite:
         val result = bridge.handle(makeMsg(TransactionNotifier.Action.REMOVE, classOf[AssociationEntity], uuid))
         assertEquals(result, Some(NatsMessage(NatsMessage.Actions.DELETED, NatsMessage.DataTypes.ASSOCIATION, uuid)))
 
+    test("handle keeps the video and concept"):
+        val bridge             = NatsBridge(makeSource, makeSource)
+        val uuid               = UUID.randomUUID()
+        val videoReferenceUuid = UUID.randomUUID()
+        val msg                = new TransactionNotifier.Message(
+            TransactionNotifier.Action.CREATE,
+            classOf[ObservationEntity],
+            uuid,
+            videoReferenceUuid,
+            "Nanomia"
+        )
+        assertEquals(
+            bridge.handle(msg),
+            Some(
+                NatsMessage(
+                    NatsMessage.Actions.CREATED,
+                    NatsMessage.DataTypes.OBSERVATION,
+                    uuid,
+                    Some(videoReferenceUuid),
+                    Some("Nanomia")
+                )
+            )
+        )
+
     test("handle returns None for unknown entity class"):
         val bridge = NatsBridge(makeSource, makeSource)
         val uuid   = UUID.randomUUID()
         val result = bridge.handle(makeMsg(TransactionNotifier.Action.CREATE, classOf[String], uuid))
         assertEquals(result, None)
 
+    test("handleRename returns RENAMED/OBSERVATION for ObservationEntity rename"):
+        val bridge = NatsBridge(makeSource, makeSource)
+        val msg    = new TransactionNotifier.RenameMessage(classOf[ObservationEntity], "concept", "foo", "bar", 42)
+        val result = bridge.handleRename(msg)
+        assertEquals(
+            result,
+            Some(NatsRenameMessage("RENAMED", "OBSERVATION", "concept", "foo", "bar", 42))
+        )
+
+    test("handleRename returns None for unknown entity class"):
+        val bridge = NatsBridge(makeSource, makeSource)
+        val msg    = new TransactionNotifier.RenameMessage(classOf[String], "concept", "foo", "bar", 42)
+        assertEquals(bridge.handleRename(msg), None)
+
+    test("handleBatch sends one message per row when coalesce is off"):
+        val bridge = NatsBridge(makeSource, makeSource)
+        val uuids  = (0 until 3).map(_ => UUID.randomUUID())
+        val msg    = new TransactionNotifier.BatchMessage(
+            TransactionNotifier.Action.CREATE,
+            classOf[ObservationEntity],
+            uuids.asJava
+        )
+        assertEquals(
+            bridge.handleBatch(msg),
+            uuids.map(NatsMessage(NatsMessage.Actions.CREATED, NatsMessage.DataTypes.OBSERVATION, _))
+        )
+
+    test("handleBatch splits rows into messages of at most coalesceSize uuids"):
+        val bridge = NatsBridge(makeSource, makeSource, coalesce = true, coalesceSize = 2)
+        val uuids  = (0 until 5).map(_ => UUID.randomUUID())
+        val msg    = new TransactionNotifier.BatchMessage(
+            TransactionNotifier.Action.REMOVE,
+            classOf[AssociationEntity],
+            uuids.asJava
+        )
+        assertEquals(
+            bridge.handleBatch(msg),
+            uuids
+                .grouped(2)
+                .map(NatsBatchMessage(NatsMessage.Actions.DELETED, NatsMessage.DataTypes.ASSOCIATION, _))
+                .toSeq
+        )
+
+    test("handleBatch returns nothing for unknown entity class"):
+        val bridge = NatsBridge(makeSource, makeSource, coalesce = true)
+        val msg    = new TransactionNotifier.BatchMessage(
+            TransactionNotifier.Action.CREATE,
+            classOf[String],
+            java.util.List.of(UUID.randomUUID())
+        )
+        assertEquals(bridge.handleBatch(msg), Nil)
+
+    test("coalesce groups messages by action and entity class"):
+        val a        = UUID.randomUUID()
+        val b        = UUID.randomUUID()
+        val c        = UUID.randomUUID()
+        val messages = Seq(
+            makeMsg(TransactionNotifier.Action.CREATE, classOf[ObservationEntity], a),
+            makeMsg(TransactionNotifier.Action.CREATE, classOf[AssociationEntity], b),
+            makeMsg(TransactionNotifier.Action.CREATE, classOf[ObservationEntity], c),
+            makeMsg(TransactionNotifier.Action.UPDATE, classOf[ObservationEntity], a),
+            makeMsg(TransactionNotifier.Action.CREATE, classOf[ObservationEntity], a)
+        )
+        val batches  = TransactionNotifier.coalesce(messages.asJava).asScala.toSeq
+        assertEquals(
+            batches.map(b => (b.action(), b.clazz(), b.uuids().asScala.toSeq)),
+            Seq(
+                (TransactionNotifier.Action.CREATE, classOf[ObservationEntity], Seq(a, c)),
+                (TransactionNotifier.Action.CREATE, classOf[AssociationEntity], Seq(b)),
+                (TransactionNotifier.Action.UPDATE, classOf[ObservationEntity], Seq(a))
+            )
+        )
+
     // --- subscription tests (source → sink wiring) ---
 
     test("messages on source are forwarded to sink"):
@@ -102,3 +200,24 @@ class NatsBridgeSuite extends munit.FunSuite:
         source.onNext(makeMsg(TransactionNotifier.Action.UPDATE, classOf[AssociationEntity], UUID.randomUUID()))
 
         assertEquals(received.size, 1)
+
+    test("batches on source are forwarded to sink as coalesced messages"):
+        val source   = makeSource
+        val sink     = makeSource
+        val received = mutable.Buffer[Any]()
+        sink.subscribe(received.append(_))
+        NatsBridge(source, sink, coalesce = true)
+
+        val uuids = Seq(UUID.randomUUID(), UUID.randomUUID())
+        source.onNext(
+            new TransactionNotifier.BatchMessage(
+                TransactionNotifier.Action.UPDATE,
+                classOf[ObservationEntity],
+                uuids.asJava
+            )
+        )
+
+        assertEquals(
+            received.toSeq,
+            Seq(NatsBatchMessage(NatsMessage.Actions.UPDATED, NatsMessage.DataTypes.OBSERVATION, uuids))
+        )
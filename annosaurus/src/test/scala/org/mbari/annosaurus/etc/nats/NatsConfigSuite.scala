@@ -0,0 +1,49 @@
+/*
+ * Copyright 2017 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mbari.annosaurus.etc.nats
+
+import java.util.UUID
+
+class NatsConfigSuite extends munit.FunSuite:
+
+    private val config = NatsConfig(url = "nats://localhost:4222", enable = true, topic = "vars", partitions = 16)
+
+    test("subject is partitioned by data type and video"):
+        val videoReferenceUuid = UUID.fromString("0f3a6a5e-2b1c-4d6e-8f00-00000000001f")
+        val msg                = NatsMessage("CREATED", "OBSERVATION", UUID.randomUUID(), Some(videoReferenceUuid))
+        assertEquals(NatsConfig.subject(config, msg), "vars.observation.15")
+
+    test("subject uses the same bucket for every change to a video"):
+        val videoReferenceUuid = UUID.randomUUID()
+        val a                  = NatsMessage("CREATED", "ASSOCIATION", UUID.randomUUID(), Some(videoReferenceUuid))
+        val b                  =
+            NatsBatchMessage("DELETED", "ASSOCIATION", Seq(UUID.randomUUID()), Some(videoReferenceUuid))
+        assertEquals(NatsConfig.subject(config, a), NatsConfig.subject(config, b))
+
+    test("subject uses the all bucket when there is no video"):
+        val msg = NatsRenameMessage("RENAMED", "OBSERVATION", "concept", "foo", "bar", 42)
+        assertEquals(NatsConfig.subject(config, msg), "vars.observation.all")
+
+    test("subject is the topic without partitions"):
+        val msg = NatsMessage("CREATED", "OBSERVATION", UUID.randomUUID(), Some(UUID.randomUUID()))
+        assertEquals(NatsConfig.subject(config.copy(partitions = 0), msg), "vars")
+
+    test("subject is the topic by default"):
+        val defaults = NatsConfig(url = "nats://localhost:4222", enable = true, topic = "vars")
+        val msg      = NatsMessage("CREATED", "OBSERVATION", UUID.randomUUID(), Some(UUID.randomUUID()))
+        assertEquals(NatsConfig.subject(defaults, msg), "vars")
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2017 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.annosaurus.etc.nats
+
+import io.nats.client.Nats
+import io.prometheus.metrics.model.registry.PrometheusRegistry
+import io.prometheus.metrics.model.snapshots.CounterSnapshot
+import io.reactivex.rxjava3.subjects.PublishSubject
+import org.mbari.annosaurus.etc.circe.CirceCodecs.given
+import org.testcontainers.containers.GenericContainer
+import org.testcontainers.utility.DockerImageName
+
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.time.Duration
+import java.util.UUID
+import java.util.concurrent.{LinkedBlockingQueue, TimeUnit}
+import scala.jdk.CollectionConverters.*
+
+/**
+ * Checks the overflow policies with a small queue. The NATS server is paused so that the publisher thread is stuck
+ * waiting for the flush of its first batch while more messages arrive. Pauses are kept shorter than the publisher's
+ * 10 second flush timeout so that nothing is retried.
+ */
+class NatsOverflowSuite extends munit.FunSuite:
+
+    val container = new GenericContainer(DockerImageName.parse("nats:latest"))
+    container.addExposedPort(4222)
+    container.start()
+    Runtime.getRuntime.addShutdownHook(new Thread(() => container.stop()))
+
+    val natsUrl = s"nats://localhost:${container.getMappedPort(4222)}"
+
+    @volatile private var paused = false
+
+    private def pause(): Unit =
+        container.getDockerClient.pauseContainerCmd(container.getContainerId).exec()
+        paused = true
+
+    private def unpause(): Unit =
+        if paused then
+            container.getDockerClient.unpauseContainerCmd(container.getContainerId).exec()
+            paused = false
+
+    private def newMessage(): NatsMessage =
+        NatsMessage(NatsMessage.Actions.CREATED, NatsMessage.DataTypes.OBSERVATION, UUID.randomUUID())
+
+    private def dropped(topic: String): Double =
+        PrometheusRegistry
+            .defaultRegistry
+            .scrape()
+            .asScala
+            .collect { case c: CounterSnapshot if c.getMetadata.getName == "annosaurus_nats_dropped" => c }
+            .flatMap(_.getDataPoints.asScala)
+            .filter(_.getLabels.get("topic") == topic)
+            .map(_.getValue)
+            .sum
+
+    /**
+     * Start a publisher and a subscriber for topic, pause the server and hand the publisher its first message, which
+     * its thread takes and then waits on.
+     */
+    private def withStalledPublisher(config: NatsConfig)(
+        fn: (NatsPublisher, PublishSubject[Any], LinkedBlockingQueue[UUID]) => Unit
+    ): Unit =
+        val subject   = PublishSubject.create[Any]()
+        val publisher = new NatsPublisher(config, subject)
+        val nc        = Nats.connect(natsUrl)
+        val received  = new LinkedBlockingQueue[UUID]()
+        nc.createDispatcher(msg =>
+            io.circe.parser
+                .decode[NatsMessage](new String(msg.getData, StandardCharsets.UTF_8))
+                .foreach(m => received.offer(m.uuid))
+        ).subscribe(config.topic)
+        nc.flush(Duration.ofSeconds(2))
+        Thread.sleep(200) // let the publisher subscribe to subject
+        try
+            pause()
+            try
+                subject.onNext(newMessage())
+                val deadline = System.currentTimeMillis() + 2000
+                while publisher.depth > 0 && System.currentTimeMillis() < deadline do Thread.sleep(10)
+                fn(publisher, subject, received)
+            finally unpause()
+        finally
+            publisher.close()
+            nc.close()
+
+    test("drop-oldest drops and counts messages once the queue is full"):
+        val config = NatsConfig(natsUrl, true, "overflow.drop", batchSize = 1, queueSize = 2)
+        withStalledPublisher(config) { (publisher, subject, _) =>
+            val before = dropped(config.topic)
+            (0 until 5).foreach(_ => subject.onNext(newMessage()))
+            assertEquals(publisher.depth, 2)
+            assertEquals(dropped(config.topic) - before, 3.0)
+            assert(!publisher.awaitDelivered(Duration.ofMillis(200)))
+            unpause()
+            // The three dropped messages count as settled, so this returns once the rest are confirmed
+            assert(publisher.awaitDelivered(Duration.ofSeconds(10)))
+        }
+
+    test("spill writes to a file once the queue is full and publishes in order afterwards"):
+        val dir    = Files.createTempDirectory("nats-spill")
+        val config = NatsConfig(
+            natsUrl,
+            true,
+            "overflow.spill",
+            batchSize = 1,
+            queueSize = 2,
+            overflow = NatsConfig.Overflow.Spill,
+            spillDirectory = Some(dir)
+        )
+        withStalledPublisher(config) { (publisher, subject, received) =>
+            val messages = (0 until 5).map(_ => newMessage())
+            messages.foreach(subject.onNext)
+            assertEquals(publisher.depth, 5)
+            assert(Files.size(dir.resolve(s"annosaurus-nats-${config.topic}.spill")) > 0)
+            unpause()
+            assert(publisher.awaitDelivered(Duration.ofSeconds(10)))
+            val obtained = (0 until 6).flatMap(_ => Option(received.poll(3, TimeUnit.SECONDS)))
+            assertEquals(obtained.drop(1), messages.map(_.uuid))
+        }
+
+    test("block stalls the emitting thread until there is room"):
+        val config = NatsConfig(
+            natsUrl,
+            true,
+            "overflow.block",
+            batchSize = 1,
+            queueSize = 1,
+            overflow = NatsConfig.Overflow.Block
+        )
+        withStalledPublisher(config) { (publisher, subject, _) =>
+            subject.onNext(newMessage())
+            val emitter = new Thread(() => subject.onNext(newMessage()))
+            emitter.start()
+            emitter.join(500)
+            assert(emitter.isAlive, "The emitting thread should wait while the queue is full")
+            unpause()
+            emitter.join(10000)
+            assert(!emitter.isAlive)
+            assert(publisher.awaitDelivered(Duration.ofSeconds(10)))
+        }
@@ -42,17 +42,21 @@ class NatsPublisherSuite extends munit.FunSuite:
 
     // Dedicated subject so tests are isolated from the global EventBus
     val subject   = PublishSubject.create[Any]().toSerialized
-    val config    = NatsConfig(url = natsUrl, enable = true, topic = topic)
+    val config    = NatsConfig(url = natsUrl, enable = true, topic = topic, partitions = 16)
     val publisher = NatsPublisher.autowire(Some(config), subject)
         .getOrElse(fail("NatsPublisher.autowire returned None"))
 
     // Subscriber that collects raw JSON from NATS into a queue
     val nc       = Nats.connect(natsUrl)
-    val received = new LinkedBlockingQueue[String]()
-    val dispatcher = nc.createDispatcher(msg =>
+    val received     = new LinkedBlockingQueue[String]()
+    val subjects     = new LinkedBlockingQueue[String]()
+    val contentTypes = new LinkedBlockingQueue[String]()
+    val dispatcher   = nc.createDispatcher(msg =>
+        subjects.offer(msg.getSubject)
+        Option(msg.getHeaders).flatMap(h => Option(h.getFirst("Content-Type"))).foreach(contentTypes.offer)
         received.offer(new String(msg.getData, StandardCharsets.UTF_8))
     )
-    dispatcher.subscribe(topic)
+    dispatcher.subscribe(s"$topic.>")
     Thread.sleep(200) // let the subscription establish before tests run
 
     override def afterAll(): Unit =
@@ -62,16 +66,24 @@ class NatsPublisherSuite extends munit.FunSuite:
     // --- helpers ---
 
     /** Drains the queue before each test to prevent cross-test interference. */
-    override def beforeEach(context: BeforeEach): Unit = received.clear()
+    override def beforeEach(context: BeforeEach): Unit =
+        received.clear()
+        subjects.clear()
+        contentTypes.clear()
 
     def pollMessage(timeoutMs: Long = 3000): Option[NatsMessage] =
         Option(received.poll(timeoutMs, TimeUnit.MILLISECONDS)).flatMap { json =>
             io.circe.parser.decode[NatsMessage](json).toOption
         }
 
-    def fireEvent(action: TransactionNotifier.Action, clazz: Class[?], uuid: UUID): Unit =
+    def fireEvent(
+        action: TransactionNotifier.Action,
+        clazz: Class[?],
+        uuid: UUID,
+        videoReferenceUuid: UUID = null
+    ): Unit =
         TransactionNotifier.getRxSubject().onNext(
-            new TransactionNotifier.Message(action, clazz, uuid)
+            new TransactionNotifier.Message(action, clazz, uuid, videoReferenceUuid, null)
         )
 
     // --- tests ---
@@ -127,3 +139,22 @@ class NatsPublisherSuite extends munit.FunSuite:
     test("does not publish for unrecognised entity types"):
         fireEvent(TransactionNotifier.Action.CREATE, classOf[String], UUID.randomUUID())
         assertEquals(pollMessage(timeoutMs = 500), None)
+
+    test("publishes a burst larger than a batch"):
+        val uuids = (0 until 250).map(_ => UUID.randomUUID())
+        uuids.foreach(uuid => fireEvent(TransactionNotifier.Action.CREATE, classOf[ObservationEntity], uuid))
+        val obtained = (0 until uuids.size).flatMap(_ => pollMessage()).map(_.uuid)
+        assertEquals(obtained.toSet, uuids.toSet)
+
+    test("publishes to a subject partitioned by video"):
+        val uuid               = UUID.randomUUID()
+        val videoReferenceUuid = UUID.randomUUID()
+        fireEvent(TransactionNotifier.Action.CREATE, classOf[ObservationEntity], uuid, videoReferenceUuid)
+        assertEquals(pollMessage().flatMap(_.videoReferenceUuid), Some(videoReferenceUuid))
+        val bucket             = java.lang.Long.remainderUnsigned(videoReferenceUuid.getLeastSignificantBits, 16)
+        assertEquals(Option(subjects.poll(3, TimeUnit.SECONDS)), Some(s"$topic.observation.$bucket"))
+
+    test("sends the content type in a header"):
+        fireEvent(TransactionNotifier.Action.CREATE, classOf[ObservationEntity], UUID.randomUUID())
+        assert(pollMessage().isDefined)
+        assertEquals(Option(contentTypes.poll(3, TimeUnit.SECONDS)), Some("application/json"))
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mbari.annosaurus.etc.nats
+
+import java.nio.charset.StandardCharsets
+import java.nio.file.{Files, Path}
+import scala.util.Using
+
+class SpillQueueSuite extends munit.FunSuite:
+
+    private def msg(s: String) = NatsPublisher.Outgoing("test", s.getBytes(StandardCharsets.UTF_8))
+
+    private def text(m: NatsPublisher.Outgoing) = new String(m.data, StandardCharsets.UTF_8)
+
+    private def tempFile(): Path =
+        val path = Files.createTempFile("annosaurus", ".spill")
+        path.toFile.deleteOnExit()
+        path
+
+    test("messages come out in the order they went in"):
+        Using.resource(new SpillQueue(tempFile())): queue =>
+            for i <- 0 until 5 do queue.append(msg(s"m$i"))
+            assertEquals(queue.size, 5)
+            assertEquals(queue.poll(3).map(text), Seq("m0", "m1", "m2"))
+            queue.append(msg("m5"))
+            assertEquals(queue.poll(10).map(text), Seq("m3", "m4", "m5"))
+            assert(queue.isEmpty)
+
+    test("the file is truncated when the queue empties"):
+        val path = tempFile()
+        Using.resource(new SpillQueue(path)): queue =>
+            queue.append(msg("a"))
+            assert(Files.size(path) > 0)
+            queue.poll(1)
+            assertEquals(Files.size(path), 0L)
+
+    test("unpublished messages survive a restart"):
+        val path = tempFile()
+        Using.resource(new SpillQueue(path)): queue =>
+            queue.append(msg("a"))
+            queue.append(msg("b"))
+        Using.resource(new SpillQueue(path)): queue =>
+            assertEquals(queue.size, 2)
+            assertEquals(queue.poll(10).map(text), Seq("a", "b"))
+
+    test("a partial record at the end of the file is dropped"):
+        val path = tempFile()
+        Using.resource(new SpillQueue(path)): queue =>
+            queue.append(msg("a"))
+        Files.write(path, Array[Byte](0, 4, 't'.toByte), java.nio.file.StandardOpenOption.APPEND)
+        Using.resource(new SpillQueue(path)): queue =>
+            assertEquals(queue.poll(10).map(text), Seq("a"))
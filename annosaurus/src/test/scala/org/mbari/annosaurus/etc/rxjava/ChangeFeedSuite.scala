@@ -0,0 +1,83 @@
+/*
+ * Copyright 2017 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mbari.annosaurus.etc.rxjava
+
+import io.reactivex.rxjava3.subjects.PublishSubject
+
+import scala.collection.mutable
+
+class ChangeFeedSuite extends munit.FunSuite:
+
+    def newFeed(bufferSize: Int = 3): (PublishSubject[String], ChangeFeed[String]) =
+        val source = PublishSubject.create[String]()
+        (source, new ChangeFeed[String]("test", source, bufferSize))
+
+    test("tokens increase by one per item"):
+        val (source, feed) = newFeed()
+        val start          = feed.lastToken
+        source.onNext("a")
+        source.onNext("b")
+        assertEquals(feed.lastToken, start + 2)
+
+    test("listeners get new items only when not resuming"):
+        val (source, feed) = newFeed()
+        source.onNext("a")
+        val received       = mutable.Buffer[String]()
+        feed.subscribe(None, () => fail("unexpected gap"), c => received += c.value)
+        source.onNext("b")
+        assertEquals(received.toSeq, Seq("b"))
+
+    test("resuming replays the buffered items after the token, then new ones"):
+        val (source, feed) = newFeed()
+        source.onNext("a")
+        val token          = feed.lastToken
+        source.onNext("b")
+        source.onNext("c")
+        val received       = mutable.Buffer[ChangeFeed.Change[String]]()
+        feed.subscribe(Some(token), () => fail("unexpected gap"), received += _)
+        source.onNext("d")
+        assertEquals(received.map(_.value).toSeq, Seq("b", "c", "d"))
+        assertEquals(received.map(_.token).toSeq, (1 to 3).map(token + _))
+
+    test("resuming from a token that is no longer buffered reports a gap"):
+        val (source, feed) = newFeed()
+        source.onNext("a")
+        val token          = feed.lastToken
+        for s <- Seq("b", "c", "d", "e") do source.onNext(s)
+        var gaps           = 0
+        val received       = mutable.Buffer[String]()
+        feed.subscribe(Some(token), () => gaps += 1, c => received += c.value)
+        assertEquals(gaps, 1)
+        assertEquals(received.toSeq, Seq("c", "d", "e"))
+
+    test("a token from the future reports a gap"):
+        val (source, feed) = newFeed()
+        source.onNext("a")
+        var gaps           = 0
+        feed.subscribe(Some(feed.lastToken + 100), () => gaps += 1, _ => ())
+        assertEquals(gaps, 1)
+
+    test("closed subscriptions get nothing"):
+        val (source, feed) = newFeed()
+        val received       = mutable.Buffer[String]()
+        val subscription   = feed.subscribe(None, () => (), c => received += c.value)
+        source.onNext("a")
+        subscription.close()
+        source.onNext("b")
+        assertEquals(received.toSeq, Seq("a"))
+        assertEquals(feed.listenerCount, 0)
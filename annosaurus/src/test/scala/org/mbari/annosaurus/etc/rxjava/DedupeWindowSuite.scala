@@ -0,0 +1,48 @@
+/*
+ * Copyright 2017 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mbari.annosaurus.etc.rxjava
+
+import java.time.Duration
+
+class DedupeWindowSuite extends munit.FunSuite:
+
+    test("drops items seen within the window"):
+        val window = new DedupeWindow[String]("test", 10, Duration.ofMinutes(1))
+        assert(window.add("a"))
+        assert(window.add("b"))
+        assert(!window.add("a"))
+        assertEquals(window.count, 2)
+
+    test("forgets the oldest item when full"):
+        val window = new DedupeWindow[Int]("test", 3, Duration.ofMinutes(1))
+        for i <- 0 until 4 do assert(window.add(i))
+        assertEquals(window.count, 3)
+        assert(window.add(0)) // evicted by 3
+        assert(!window.add(3))
+
+    test("forgets items older than the window"):
+        val window = new DedupeWindow[String]("test", 10, Duration.ofMillis(20))
+        assert(window.add("a"))
+        Thread.sleep(50)
+        assertEquals(window.count, 0)
+        assert(window.add("a"))
+
+    test("keeps memory bounded under sustained traffic"):
+        val window = new DedupeWindow[Int]("test", 100, Duration.ofMinutes(1))
+        for i <- 0 until 10000 do window.add(i)
+        assertEquals(window.count, 100)
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2017 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mbari.annosaurus.etc.vertx
+
+import io.vertx.core.Vertx
+import io.vertx.core.http.HttpMethod
+import io.vertx.ext.web.Router
+import org.mbari.annosaurus.etc.vertx.Bulkhead.Workload
+
+import java.net.URI
+import java.net.http.{HttpClient, HttpRequest, HttpResponse}
+import java.time.Duration
+import java.util.concurrent.{CompletableFuture, TimeUnit}
+
+class BulkheadSuite extends munit.FunSuite:
+
+    test("classify"):
+        assertEquals(Bulkhead.classify(HttpMethod.GET, "/v1/health"), None)
+        assertEquals(Bulkhead.classify(HttpMethod.GET, "/v1/changes"), None)
+        assertEquals(Bulkhead.classify(HttpMethod.GET, "/v1/annotations/1234"), Some(Workload.Interactive))
+        assertEquals(Bulkhead.classify(HttpMethod.PUT, "/v1/annotations"), Some(Workload.Interactive))
+        assertEquals(Bulkhead.classify(HttpMethod.POST, "/v1/annotations/bulk/ingest"), Some(Workload.Bulk))
+        assertEquals(Bulkhead.classify(HttpMethod.PUT, "/v1/observations/concept/rename"), Some(Workload.Bulk))
+        assertEquals(Bulkhead.classify(HttpMethod.GET, "/v1/fast/concept/Nanomia"), Some(Workload.Export))
+        assertEquals(Bulkhead.classify(HttpMethod.POST, "/v1/query/run"), Some(Workload.Export))
+        assertEquals(Bulkhead.classify(HttpMethod.POST, "/v1/annotations/concurrent/count"), Some(Workload.Export))
+        assertEquals(Bulkhead.classify(HttpMethod.GET, "/v1/histogram/depth"), Some(Workload.Analysis))
+
+    test("requests over the limit wait, then get a 503 with Retry-After"):
+        val vertx    = Vertx.vertx()
+        val bulkhead = new Bulkhead("test", 1, 1, Duration.ofMillis(200), Duration.ofSeconds(7))
+        val router   = Router.router(vertx)
+        router.route().handler(bulkhead)
+        // Hold the slot for longer than the queue timeout
+        router.route().handler(ctx => vertx.setTimer(1000, _ => ctx.response().end("ok")))
+        val server = vertx
+            .createHttpServer()
+            .requestHandler(router)
+            .listen(0)
+            .toCompletionStage
+            .toCompletableFuture
+            .get(5, TimeUnit.SECONDS)
+        try
+            val client  = HttpClient.newHttpClient()
+            val request = HttpRequest.newBuilder(URI.create(s"http://localhost:${server.actualPort()}/")).build()
+            def send(): CompletableFuture[HttpResponse[String]] =
+                client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+
+            val first = send()
+            while bulkhead.active < 1 do Thread.sleep(5)
+            val second = send()
+            while bulkhead.queued < 1 do Thread.sleep(5)
+            val third = send().get(5, TimeUnit.SECONDS)
+            assertEquals(third.statusCode(), 503)
+            assertEquals(third.headers().firstValue("Retry-After").orElse(""), "7")
+
+            assertEquals(second.get(5, TimeUnit.SECONDS).statusCode(), 503) // timed out in the queue
+            assertEquals(first.get(5, TimeUnit.SECONDS).statusCode(), 200)
+        finally vertx.close().toCompletionStage.toCompletableFuture.get(5, TimeUnit.SECONDS)
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2017 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.mbari.annosaurus.etc.vertx
+
+import io.reactivex.rxjava3.subjects.PublishSubject
+import io.vertx.core.Vertx
+import io.vertx.ext.web.Router
+import org.mbari.annosaurus.etc.rxjava.ChangeFeed
+
+import java.net.URI
+import java.net.http.{HttpClient, HttpRequest, HttpResponse}
+import java.time.Duration
+import java.util.concurrent.TimeUnit
+
+class ChangeFeedHandlerSuite extends munit.FunSuite:
+
+    test("streams changes as NDJSON and resumes from a token"):
+        val vertx  = Vertx.vertx()
+        val source = PublishSubject.create[String]()
+        val feed   = new ChangeFeed[String]("test", source, 10)
+        val router = Router.router(vertx)
+        router.get("/changes").handler(new ChangeFeedHandler(feed, Duration.ofSeconds(15))(s => s"\"$s\""))
+        val server = vertx
+            .createHttpServer()
+            .requestHandler(router)
+            .listen(0)
+            .toCompletionStage
+            .toCompletableFuture
+            .get(5, TimeUnit.SECONDS)
+        try
+            source.onNext("a")
+            val token   = feed.lastToken
+            source.onNext("b")
+            val client  = HttpClient.newHttpClient()
+            val request = HttpRequest
+                .newBuilder(URI.create(s"http://localhost:${server.actualPort()}/changes?since=$token"))
+                .build()
+            val lines   = client
+                .sendAsync(request, HttpResponse.BodyHandlers.ofLines())
+                .get(5, TimeUnit.SECONDS)
+                .body()
+                .filter(_.nonEmpty) // keep-alives
+                .iterator()
+            assertEquals(lines.next(), s"""{"token":${token + 1},"change":"b"}""")
+            source.onNext("c")
+            assertEquals(lines.next(), s"""{"token":${token + 2},"change":"c"}""")
+        finally vertx.close().toCompletionStage.toCompletableFuture.get(5, TimeUnit.SECONDS)
+
+    test("an invalid token is a bad request"):
+        val vertx  = Vertx.vertx()
+        val feed   = new ChangeFeed[String]("test", PublishSubject.create[String](), 10)
+        val router = Router.router(vertx)
+        router.get("/changes").handler(new ChangeFeedHandler(feed, Duration.ofSeconds(15))(identity))
+        val server = vertx
+            .createHttpServer()
+            .requestHandler(router)
+            .listen(0)
+            .toCompletionStage
+            .toCompletableFuture
+            .get(5, TimeUnit.SECONDS)
+        try
+            val request  = HttpRequest
+                .newBuilder(URI.create(s"http://localhost:${server.actualPort()}/changes?since=abc"))
+                .build()
+            val response = HttpClient.newHttpClient().send(request, HttpResponse.BodyHandlers.ofString())
+            assertEquals(response.statusCode(), 400)
+        finally vertx.close().toCompletionStage.toCompletableFuture.get(5, TimeUnit.SECONDS)
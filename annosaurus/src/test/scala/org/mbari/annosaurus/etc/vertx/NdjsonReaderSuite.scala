@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.annosaurus.etc.vertx
+
+import io.vertx.core.Handler
+import io.vertx.core.buffer.Buffer
+import io.vertx.core.streams.ReadStream
+
+import scala.collection.mutable.ListBuffer
+import scala.concurrent.duration.*
+import scala.concurrent.{Await, ExecutionContext, Future}
+import scala.util.Try
+
+class NdjsonReaderSuite extends munit.FunSuite:
+
+    given ExecutionContext = ExecutionContext.global
+
+    /** A ReadStream that emits the given chunks whenever it is not paused. */
+    class ChunkedStream(chunks: Seq[String]) extends ReadStream[Buffer]:
+        private var queue                             = chunks.toList
+        private var paused                            = true
+        private var ended                             = false
+        private var dataHandler: Handler[Buffer]      = _ => ()
+        private var endHandler0: Handler[Void]        = _ => ()
+        @volatile var pauseCount                      = 0
+
+        override def exceptionHandler(h: Handler[Throwable]): ReadStream[Buffer] = this
+        override def handler(h: Handler[Buffer]): ReadStream[Buffer]             =
+            dataHandler = h
+            this
+        override def pause(): ReadStream[Buffer]                                 = synchronized {
+            paused = true
+            pauseCount += 1
+            this
+        }
+        override def resume(): ReadStream[Buffer]                                = synchronized {
+            paused = false
+            while !paused && queue.nonEmpty do
+                val chunk = queue.head
+                queue = queue.tail
+                dataHandler.handle(Buffer.buffer(chunk))
+            if !paused && queue.isEmpty && !ended then
+                ended = true
+                endHandler0.handle(null)
+            this
+        }
+        override def fetch(amount: Long): ReadStream[Buffer]                     = resume()
+        override def endHandler(h: Handler[Void]): ReadStream[Buffer]            =
+            endHandler0 = h
+            this
+
+    class CollectingSink extends BatchSink[Int]:
+        val batches                                      = ListBuffer[Seq[Int]]()
+        @volatile var completed                          = false
+        override def accept(batch: Seq[Int]): Future[Long] = Future:
+            synchronized(batches += batch)
+            batch.size.toLong
+        override def complete(): Future[Long]            =
+            completed = true
+            Future.successful(0L)
+
+    private def decodeInt(line: String): Either[Throwable, Int] = Try(line.toInt).toEither
+
+    test("read records split across chunks in bounded batches"):
+        val stream = new ChunkedStream(Seq("1\n2", "\n\n3\n4\n", "5"))
+        val sink   = new CollectingSink
+        val result = Await.result(NdjsonReader.read(stream, 2, sink)(decodeInt), 5.seconds)
+        assertEquals(result, BatchResult(5, 3, 5))
+        assertEquals(sink.batches.toList.flatten, List(1, 2, 3, 4, 5))
+        assert(sink.batches.forall(_.size <= 3))
+        assert(sink.completed)
+        assert(stream.pauseCount > 0)
+
+    test("fail on a malformed line"):
+        val stream = new ChunkedStream(Seq("1\n2\nthree\n4\n"))
+        val sink   = new CollectingSink
+        val result = Try(Await.result(NdjsonReader.read(stream, 10, sink)(decodeInt), 5.seconds))
+        assert(result.isFailure)
+        assert(result.failed.get.getMessage.contains("line 3"))
+        assert(sink.batches.isEmpty)
+        assert(!sink.completed)
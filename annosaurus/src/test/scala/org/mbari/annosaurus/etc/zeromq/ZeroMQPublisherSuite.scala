@@ -24,7 +24,9 @@ import java.time.Instant
 import java.util.UUID
 import org.mbari.annosaurus.domain.Annotation
 import org.mbari.annosaurus.domain.Association
-import org.mbari.annosaurus.etc.rxjava.EventBus
+import org.mbari.annosaurus.etc.circe.CirceCodecs.{*, given}
+import org.mbari.annosaurus.etc.rxjava.{DedupeConfig, EventBus}
+import org.mbari.annosaurus.messaging.MessageEncoding
 
 class ZeroMQPublisherSuite extends munit.FunSuite {
 
@@ -176,4 +178,48 @@ class ZeroMQPublisherSuite extends munit.FunSuite {
         assertEquals(count, 1)
     }
 
+    test("publish annotations as CBOR with a content type frame") {
+        val port = 9996
+        val mq   = new ZeroMQPublisher("test", port, EventBus.RxSubject, DedupeConfig(), MessageEncoding.Cbor)
+
+        @volatile
+        var received: Option[(String, Annotation)] = None
+
+        val listenerThread = new Thread(new Runnable {
+
+            val subscriber = context.createSocket(SocketType.SUB)
+            subscriber.connect(s"tcp://localhost:$port")
+            subscriber.subscribe(mq.topic.getBytes(ZMQ.CHARSET))
+
+            override def run(): Unit = {
+                val address     = subscriber.recvStr()
+                val contentType = subscriber.recvStr()
+                if (subscriber.hasReceiveMore) {
+                    received = subscriber.recv().reifyCbor[Annotation].toOption.map(a => (contentType, a))
+                }
+            }
+        })
+        listenerThread.start()
+        Thread.sleep(200) // Give the thread above time to get set up.
+
+        val annotation = Annotation(
+            concept = Some("foo"),
+            observationUuid = Some(UUID.randomUUID()),
+            observationTimestamp = Some(Instant.now()),
+            recordedTimestamp = Some(Instant.now())
+        )
+        EventBus.RxSubject.onNext(AnnotationCreatedMessage(annotation))
+        Thread.sleep(1000)
+        mq.close()
+        assertEquals(received, Some(("application/cbor", annotation)))
+    }
+
+    test("offerDroppingOldest drops the oldest messages when the queue is full") {
+        val queue = new java.util.concurrent.ArrayBlockingQueue[Int](2)
+        assertEquals(ZeroMQPublisher.offerDroppingOldest(queue, 1), 0)
+        assertEquals(ZeroMQPublisher.offerDroppingOldest(queue, 2), 0)
+        assertEquals(ZeroMQPublisher.offerDroppingOldest(queue, 3), 1)
+        assertEquals(queue.toArray.toSeq, Seq[Any](2, 3))
+    }
+
 }
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.annosaurus.messaging
+
+import io.circe.parser
+import org.mbari.annosaurus.domain.{Annotation, Association, CachedAncillaryDatum, ImageReference}
+import org.mbari.annosaurus.etc.circe.CirceCodecs.{*, given}
+import org.mbari.annosaurus.etc.nats.NatsBatchMessage
+import org.mbari.annosaurus.etc.zeromq.AnnotationCreatedMessage
+
+import java.net.URI
+import java.nio.charset.StandardCharsets
+import java.time.Instant
+import java.util.UUID
+
+/**
+ * Compares the throughput of the JSON and CBOR message encodings. It is not part of the test suite. Run it with:
+ *
+ * {{{
+ * sbt "annosaurus/Test/runMain org.mbari.annosaurus.messaging.MessageEncodingBenchmark"
+ * }}}
+ *
+ * Each case is warmed up and then timed for a few seconds. Decoding is timed as a subscriber would do it, into the
+ * domain object.
+ */
+object MessageEncodingBenchmark:
+
+    private val WarmupMillis = 3000L
+    private val RunMillis    = 5000L
+
+    @volatile private var sink: Any = null // keeps the JIT from dropping the work
+
+    def main(args: Array[String]): Unit =
+        val annotation = AnnotationCreatedMessage(sampleAnnotation())
+        val batch      = NatsBatchMessage("CREATED", "OBSERVATION", (0 until 100).map(_ => UUID.randomUUID()))
+
+        run("annotation", annotation)(
+            bytes => parser.decode[Annotation](new String(bytes, StandardCharsets.UTF_8)),
+            bytes => bytes.reifyCbor[Annotation]
+        )
+        run("batch of 100 uuids", batch)(
+            bytes => parser.decode[NatsBatchMessage](new String(bytes, StandardCharsets.UTF_8)),
+            bytes => bytes.reifyCbor[NatsBatchMessage]
+        )
+
+    private def run(name: String, msg: Message[?])(
+        decodeJson: Array[Byte] => Either[?, ?],
+        decodeCbor: Array[Byte] => Either[?, ?]
+    ): Unit =
+        val json = msg.encode(MessageEncoding.Json)
+        val cbor = msg.encode(MessageEncoding.Cbor)
+        require(decodeJson(json).isRight && decodeCbor(cbor).isRight, s"$name did not round trip")
+        println(s"-- $name: JSON ${json.length} bytes, CBOR ${cbor.length} bytes")
+        report("encode JSON", msg.encode(MessageEncoding.Json))
+        report("encode CBOR", msg.encode(MessageEncoding.Cbor))
+        report("decode JSON", decodeJson(json))
+        report("decode CBOR", decodeCbor(cbor))
+
+    private def report(label: String, f: => Any): Unit =
+        measure(WarmupMillis, f)
+        val (n, nanos) = measure(RunMillis, f)
+        println(f"$label%-12s ${n * 1e9 / nanos}%,12.0f msgs/s ${nanos / 1e3 / n}%8.2f us/msg")
+
+    private def measure(millis: Long, f: => Any): (Long, Long) =
+        val start    = System.nanoTime()
+        val deadline = start + millis * 1000000L
+        var n        = 0L
+        var now      = start
+        while now < deadline do
+            var i = 0
+            while i < 100 do
+                sink = f
+                i += 1
+            n += 100
+            now = System.nanoTime()
+        (n, now - start)
+
+    private def sampleAnnotation(): Annotation =
+        val now = Instant.now()
+        Annotation(
+            activity = Some("descend"),
+            ancillaryData = Some(
+                CachedAncillaryDatum(
+                    latitude = Some(36.7),
+                    longitude = Some(-122.05),
+                    depthMeters = Some(812.5f),
+                    temperatureCelsius = Some(4.2f),
+                    crs = Some("EPSG:4326")
+                )
+            ),
+            associations = Seq(
+                Association("eating", "self", "Pyrosoma", uuid = Some(UUID.randomUUID()), lastUpdated = Some(now)),
+                Association(
+                    "bounding box",
+                    "self",
+                    """{"x":10,"y":20,"width":320,"height":240}""",
+                    Some("application/json")
+                )
+            ),
+            concept = Some("Nanomia bijuga"),
+            durationMillis = Some(1500L),
+            elapsedTimeMillis = Some(3723456L),
+            group = Some("ROV"),
+            imagedMomentUuid = Some(UUID.randomUUID()),
+            imageReferences = Seq(
+                ImageReference(
+                    URI.create("http://example.org/frames/V4000_00_05_23.png").toURL,
+                    format = Some("image/png"),
+                    widthPixels = Some(1920),
+                    heightPixels = Some(1080),
+                    uuid = Some(UUID.randomUUID())
+                )
+            ),
+            observationTimestamp = Some(now),
+            observationUuid = Some(UUID.randomUUID()),
+            observer = Some("brian"),
+            recordedTimestamp = Some(now),
+            timecode = Some("01:02:03:04"),
+            videoReferenceUuid = Some(UUID.randomUUID()),
+            lastUpdated = Some(now)
+        )
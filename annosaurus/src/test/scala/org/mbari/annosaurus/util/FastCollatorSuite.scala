@@ -33,5 +33,23 @@ class FastCollatorSuite extends munit.FunSuite {
         }
     }
 
+    test("collate long keys") {
+        // same as above but unsorted
+        val a = Array(17L, 8L, 22L, 13L, 14L, 15L, 16L, 9L, 21L)
+        val b = Array(20L, 10L, 15L)
+
+        val c = FastCollator.collate(a, b, 1L)
+
+        val expected = Map(8L -> None, 9L -> Some(10L), 13L -> None, 14L -> Some(15L), 15L -> Some(15L),
+            16L -> Some(15L), 17L -> None, 21L -> Some(20L), 22L -> None)
+        assertEquals(c.size(), a.length)
+        for (i <- 0 until c.size()) {
+            val vA = a(c.indexA()(i))
+            val iB = c.indexB()(i)
+            val vB = if (iB >= 0) Some(b(iB)) else None
+            assertEquals(vB, expected(vA))
+            if (i > 0) assert(a(c.indexA()(i - 1)) <= vA)
+        }
+    }
 
 }
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2017 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.annosaurus.util
+
+class LinearInterpolatorSuite extends munit.FunSuite:
+
+    private val x  = Array(0L, 1000L, 2000L, 10000L, 11000L)
+    private val xi = Array(-600L, 0L, 500L, 1500L, 5000L, 9500L, 11400L, 12500L)
+
+    test("brackets"):
+        val b = LinearInterpolator.brackets(x, xi, 1000L)
+        assertEquals(b.lower().toSeq, Seq(0, 0, 0, 1, -1, 3, 4, -1))
+        assertEquals(b.upper().toSeq, Seq(0, 0, 1, 2, -1, 3, 4, -1))
+        assertEquals(b.weight().toSeq, Seq(0d, 0d, 0.5, 0.5, 0d, 0d, 0d, 0d))
+
+    test("interpolate"):
+        val b  = LinearInterpolator.brackets(x, xi, 1000L)
+        val y  = Array(0d, 10d, 20d, Double.NaN, 30d)
+        val yi = LinearInterpolator.interpolate(b, y)
+        assertEquals(yi.take(4).toSeq, Seq(0d, 0d, 5d, 15d))
+        assert(yi(4).isNaN)
+        assert(yi(5).isNaN)
+        assertEquals(yi(6), 30d)
+        assert(yi(7).isNaN)
+
+    test("interpolateDegrees"):
+        val b  = LinearInterpolator.brackets(Array(0L, 1000L), Array(250L, 500L), 1000L)
+        val yi = LinearInterpolator.interpolateDegrees(b, Array(350d, 10d))
+        assertEqualsDouble(yi(0), 355d, 1e-9)
+        assertEqualsDouble(yi(1), 0d, 1e-9)
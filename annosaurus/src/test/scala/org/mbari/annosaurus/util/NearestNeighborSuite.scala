@@ -0,0 +1,56 @@
+/*
+ * Copyright 2017 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.annosaurus.util
+
+import java.util.concurrent.ForkJoinPool
+import scala.util.Random
+
+class NearestNeighborSuite extends munit.FunSuite:
+
+    // outside -2, outside -1, inside - 2, inside -1, match, inside + 1, inside + 2, outside + 1, outside + 2
+    private val x        = Array(10L, 15L, 20L)
+    private val xi       = Array(8L, 9L, 13L, 14L, 15L, 16L, 17L, 21L, 22L)
+    private val expected = Array(-1, 0, -1, 1, 1, 1, -1, 2, -1)
+
+    test("apply"):
+        assertEquals(NearestNeighbor.apply(x, xi, 1L).toSeq, expected.toSeq)
+
+    test("applySorted"):
+        assertEquals(NearestNeighbor.applySorted(x, xi, 1L).toSeq, expected.toSeq)
+
+    test("applySorted with empty x"):
+        assertEquals(NearestNeighbor.applySorted(Array.empty[Long], xi, 1L).toSeq, Seq.fill(xi.length)(-1))
+
+    test("applyParallel matches apply for large inputs"):
+        val random = new Random(4242)
+        val n      = NearestNeighbor.PARALLEL_THRESHOLD * 4 + 17
+        val a      = Array.fill(5000)(random.nextInt(1000000).toLong).distinct.sorted
+        val b      = Array.fill(n)(random.nextInt(1100000).toLong - 50000L).sorted
+        val pool   = new ForkJoinPool(4)
+        try
+            val actual = NearestNeighbor.applyParallel(a, b, 100L, pool)
+            assertEquals(actual.toSeq, NearestNeighbor.apply(a, b, 100L).toSeq)
+        finally pool.shutdown()
+
+    test("collate permutation"):
+        // values in original (unsorted) order
+        val values      = Array(20L, 10L, 15L)
+        val permutation = Array(1, 2, 0) // values sorted by index
+        val sorted      = permutation.map(values(_))
+        val idx         = NearestNeighbor.applySorted(sorted, xi, 1L)
+        val actual      = NearestNeighbor.collate(permutation, idx)
+        assertEquals(actual.toSeq, Seq(-1, 1, -1, 2, 2, 2, -1, 0, -1))
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2017 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.annosaurus.util
+
+import java.net.URI
+import java.security.MessageDigest
+
+class UrlHashSuite extends munit.FunSuite:
+
+    private val url = URI.create("http://www.mbari.org/images/i2MAP/2024/02/i2MAP_20240210T120000Z.png").toURL
+
+    test("hash is the first 16 bytes of the SHA-256 of the external form"):
+        val expected = MessageDigest
+            .getInstance("SHA-256")
+            .digest(url.toExternalForm.getBytes("UTF-8"))
+            .take(UrlHash.LENGTH)
+        assertEquals(UrlHash.of(url).toSeq, expected.toSeq)
+        assertEquals(UrlHash.of(url.toExternalForm).toSeq, expected.toSeq)
+
+    test("different urls have different hashes"):
+        val other = URI.create(url.toExternalForm.replace(".png", ".jpg")).toURL
+        assertNotEquals(UrlHash.of(url).toSeq, UrlHash.of(other).toSeq)
+
+    test("null urls have no hash"):
+        assert(UrlHash.of(null: java.net.URL) == null)
+        assert(UrlHash.of(null: String) == null)
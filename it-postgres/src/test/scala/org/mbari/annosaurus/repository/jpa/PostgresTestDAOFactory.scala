@@ -46,13 +46,7 @@ object PostgresTestDAOFactory extends TestDAOFactory:
         val db = databaseConfig
         Class.forName(db.driver)
             // Create the EntityManagerFactory with the provided database configuration
-        EntityManagerFactories(
-            db.url,
-            db.user,
-            db.password,
-            db.driver,
-            testProps()
-        )
+        EntityManagerFactories(db, testProps())
 
     lazy val databaseConfig: DatabaseConfig = DatabaseConfig(
         container.getJdbcUrl(),
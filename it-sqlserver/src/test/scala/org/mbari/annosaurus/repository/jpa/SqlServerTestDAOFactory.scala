@@ -17,12 +17,14 @@
 package org.mbari.annosaurus.repository.jpa
 
 import jakarta.persistence.EntityManagerFactory
-import org.mbari.annosaurus.DatabaseConfig
+import org.mbari.annosaurus.{DatabaseConfig, PoolConfig}
 import org.mbari.annosaurus.etc.flyway.FlywayMigrator
 import org.mbari.annosaurus.etc.tc.AzureSqlEdgeContainerProvider
 import org.testcontainers.containers.MSSQLServerContainer
 import org.testcontainers.utility.DockerImageName
 
+import java.time.Duration
+
 object SqlServerTestDAOFactory extends TestDAOFactory:
 
     // val container = new AzureSqlEdgeContainerProvider().newInstance()
@@ -44,8 +46,6 @@ object SqlServerTestDAOFactory extends TestDAOFactory:
             Map(
                 "hibernate.dialect"            -> "org.hibernate.dialect.SQLServerDialect",
                 "hibernate.hbm2ddl.auto"       -> "validate",
-                "hibernate.hikari.idleTimeout" -> "1000",
-                "hibernate.hikari.maxLifetime" -> "3000",
                 "jakarta.persistence.schema-generation.scripts.action" -> "drop-and-create"
             )
 
@@ -53,18 +53,13 @@ object SqlServerTestDAOFactory extends TestDAOFactory:
         val db = databaseConfig
         Class.forName(db.driver)
         // Create the EntityManagerFactory with the provided database configuration
-        EntityManagerFactories(
-            db.url,
-            db.user,
-            db.password,
-            db.driver,
-            testProps()
-        )
+        EntityManagerFactories(db, testProps())
 
     lazy val databaseConfig: DatabaseConfig = DatabaseConfig(
         container.getJdbcUrl(),
         container.getUsername(),
         container.getPassword(),
         container.getDriverClassName(),
-        annotationView
+        annotationView,
+        pools = PoolConfig(idleTimeout = Duration.ofSeconds(1), maxLifetime = Duration.ofSeconds(3))
     )
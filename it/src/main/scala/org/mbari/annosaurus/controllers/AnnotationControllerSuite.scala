@@ -282,6 +282,40 @@ trait AnnotationControllerSuite extends BaseDAOSuite:
 
     }
 
+    test("bulkIngest") {
+        val existing = TestUtils.create(1, 1).head
+        val b        = TestUtils.build(1, 1, 2, 1).head
+        b.setVideoReferenceUuid(existing.getVideoReferenceUuid)
+        b.setTimecode(existing.getTimecode)
+        b.setRecordedTimestamp(existing.getRecordedTimestamp)
+        b.setElapsedTime(existing.getElapsedTime)
+        val annos = Annotation.fromImagedMoment(b, true) ++
+            Annotation.fromImagedMoment(TestUtils.build(2, 1, 1, 1).head, true)
+        val n     = exec(controller.bulkIngest(annos))
+        assertEquals(n.size, annos.size)
+
+        // The first annotation is added to the existing imaged moment
+        assertEquals(n.head.imagedMomentUuid, Some(existing.getUuid))
+        for a <- n do
+            assert(a.observationUuid.isDefined)
+            assert(a.associations.forall(_.uuid.isDefined))
+            assert(a.imageReferences.forall(_.uuid.isDefined))
+
+        // Compare against what was written
+        for a <- n do
+            val opt = exec(controller.findByUUID(a.observationUuid.get))
+            assert(opt.isDefined)
+            val obtained = opt.get
+            assertEquals(obtained.imagedMomentUuid, a.imagedMomentUuid)
+            assertEquals(obtained.concept, a.concept)
+            assertEquals(obtained.associations.flatMap(_.uuid).toSet, a.associations.flatMap(_.uuid).toSet)
+
+        // Images are not inserted a second time
+        val again = exec(controller.bulkIngest(annos.take(1)))
+        assertEquals(again.size, 1)
+        assert(again.head.imageReferences.isEmpty)
+    }
+
     test("update") {
         val im0  = TestUtils.create(1, 1).head
         val obs0 = im0.getObservations.asScala.head
@@ -413,8 +447,7 @@ trait AnnotationControllerSuite extends BaseDAOSuite:
     test("rxCreate") {
         val queue      = new LinkedBlockingQueue[TransactionNotifier.Message[?]]()
         val disposable = TransactionNotifier
-            .getRxSubject()
-            .ofType(classOf[TransactionNotifier.Message[?]])
+            .getMessages()
             .subscribe(queue.offer(_))
 
         try
@@ -452,8 +485,7 @@ trait AnnotationControllerSuite extends BaseDAOSuite:
 
         val queue      = new LinkedBlockingQueue[TransactionNotifier.Message[?]]()
         val disposable = TransactionNotifier
-            .getRxSubject()
-            .ofType(classOf[TransactionNotifier.Message[?]])
+            .getMessages()
             .subscribe(queue.offer(_))
 
         try
@@ -481,8 +513,7 @@ trait AnnotationControllerSuite extends BaseDAOSuite:
 
         val queue      = new LinkedBlockingQueue[TransactionNotifier.Message[?]]()
         val disposable = TransactionNotifier
-            .getRxSubject()
-            .ofType(classOf[TransactionNotifier.Message[?]])
+            .getMessages()
             .subscribe(queue.offer(_))
 
         try
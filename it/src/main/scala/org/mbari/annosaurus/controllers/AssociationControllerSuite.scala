@@ -145,6 +145,15 @@ trait AssociationControllerSuite extends BaseDAOSuite:
             assert(a.isEmpty)
     }
 
+    test("bulkDeleteCount") {
+        val x            = TestUtils.create(1, 1, 8, 0).head
+        val associations = x.getObservations.asScala.flatMap(_.getAssociations.asScala)
+        val uuids        = associations.map(_.getUuid).toSeq
+        val n            = exec(controller.bulkDeleteCount(uuids ++ uuids.take(2)))
+        assertEquals(n, uuids.size)
+        assertEquals(exec(controller.bulkDeleteCount(uuids)), 0)
+    }
+
     test("findByLinkName") {
         val x   = TestUtils.create(1, 1, 1).head
         val obs = x.getObservations.asScala.head
@@ -302,6 +302,68 @@ trait CachedAncillaryDatumControllerSuite extends BaseDAOSuite:
                     assertEquals(obtained.recordedTimestamp.orNull, x.getRecordedTimestamp)
     }
 
+    test("merge with interpolation") {
+        val xs = TestUtils.create(10)
+        // Bracket each imaged moment with a sample 1s before and 3s after it
+        val s0 = xs.flatMap(im =>
+            val t = im.getRecordedTimestamp.toEpochMilli
+            Seq(
+                CachedAncillaryDatum(
+                    latitude = Some(36.0),
+                    longitude = Some(-122.0),
+                    depthMeters = Some(100),
+                    psi = Some(350.0),
+                    recordedTimestamp = Some(Instant.ofEpochMilli(t - 1000))
+                ),
+                CachedAncillaryDatum(
+                    latitude = Some(36.4),
+                    longitude = Some(-122.4),
+                    depthMeters = Some(500),
+                    psi = Some(10.0),
+                    recordedTimestamp = Some(Instant.ofEpochMilli(t + 3000))
+                )
+            )
+        )
+        val ys = exec(
+            controller.merge(s0, xs.head.getVideoReferenceUuid, Duration.ofSeconds(5), interpolate = true)
+        )
+        assertEquals(ys.size, xs.size)
+        for x <- xs
+        do
+            val opt = exec(controller.findByImagedMomentUUID(x.getUuid))
+            opt match
+                case None           => fail("Failed to find CachedAncillaryDatum")
+                case Some(obtained) =>
+                    assertEqualsDouble(obtained.latitude.getOrElse(Double.NaN), 36.1, 1e-9)
+                    assertEqualsDouble(obtained.longitude.getOrElse(Double.NaN), -122.1, 1e-9)
+                    assertEqualsFloat(obtained.depthMeters.getOrElse(Float.NaN), 200f, 1e-3f)
+                    assertEqualsDouble(obtained.psi.getOrElse(Double.NaN), 355.0, 1e-9)
+    }
+
+    test("newMergeSink") {
+        val xs = TestUtils.create(10)
+        val s0 = xs
+            .map(im =>
+                val ts = Instant.ofEpochMilli(im.getRecordedTimestamp.toEpochMilli + Random.nextInt(2000))
+                CachedAncillaryDatum
+                    .from(TestUtils.randomData())
+                    .copy(recordedTimestamp = Some(ts), depthMeters = Some(1000))
+            )
+            .sortBy(_.recordedTimestamp.get.toEpochMilli)
+        val sink = controller.newMergeSink(xs.head.getVideoReferenceUuid, Duration.ofSeconds(3))
+        // Feed the sink in small batches like a streamed upload would
+        val n    = s0.grouped(3).map(batch => exec(sink.accept(batch))).sum + exec(sink.complete())
+        assertEquals(n, xs.size.toLong)
+        for x <- xs
+        do
+            val opt = exec(controller.findByImagedMomentUUID(x.getUuid))
+            opt match
+                case None           => fail("Failed to find CachedAncillaryDatum")
+                case Some(obtained) =>
+                    assertEquals(obtained.depthMeters.orNull, 1000.0f)
+                    assertEquals(obtained.recordedTimestamp.orNull, x.getRecordedTimestamp)
+    }
+
     test("deleteByVideoReferenceUuid") {
         val xs       = TestUtils.create(4, 1, 1, 1, includeData = true)
         val ok       = exec(controller.deleteByVideoReferenceUuid(xs.head.getVideoReferenceUuid))
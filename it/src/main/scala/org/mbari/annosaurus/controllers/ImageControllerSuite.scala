@@ -93,6 +93,24 @@ trait ImageControllerSuite extends BaseDAOSuite:
         assertEquals(images2.size, 0)
     }
 
+    test("bulkCreateWithStatus") {
+        val xs           = TestUtils.build(2, 2, 0, 2)
+        val seed         = xs.flatMap(ImageCreateSC.from(_))
+        val (old, young) = seed.splitAt(seed.size / 2)
+        exec(controller.bulkCreate(old))
+
+        val results = exec(controller.bulkCreateWithStatus(seed ++ seed))
+        assertEquals(results.size, seed.size)
+        assertEquals(results.map(_.image.url.orNull.toExternalForm), seed.map(_.url.toExternalForm))
+        assertEquals(results.count(_.created), young.size)
+        for r <- results.take(old.size) do assert(!r.created)
+        for r <- results.drop(old.size) do
+            assert(r.created)
+            exec(controller.findByURL(r.image.url.orNull)) match
+                case Some(image) => assertEquals(image, r.image)
+                case None        => fail(s"Could not find ImageReference with url=${r.image.url}")
+    }
+
     test("create") {
         val im = TestUtils.create().head
         val i  = TestUtils.randomImageReference()
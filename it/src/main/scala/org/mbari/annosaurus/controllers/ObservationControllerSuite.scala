@@ -17,9 +17,12 @@
 package org.mbari.annosaurus.controllers
 
 import org.mbari.annosaurus.AssertUtils
-import org.mbari.annosaurus.repository.jpa.{BaseDAOSuite, JPADAOFactory}
+import org.mbari.annosaurus.repository.jpa.entity.{AssociationEntity, ObservationEntity}
+import org.mbari.annosaurus.repository.jpa.{BaseDAOSuite, JPADAOFactory, TransactionNotifier}
 
 import java.time.Duration
+import java.util.UUID
+import java.util.concurrent.ConcurrentLinkedQueue
 import scala.concurrent.ExecutionContext
 import scala.jdk.CollectionConverters.*
 
@@ -187,6 +190,41 @@ trait ObservationControllerSuite extends BaseDAOSuite:
             assert(obtained.isEmpty)
     }
 
+    test("bulkDeleteCount") {
+        // The first imaged moment has an image so it is kept. The others are removed when left empty
+        val withImage  = TestUtils.create(1, 2, 2, 1).head
+        val xs         = TestUtils.create(2, 2, 2)
+        val obsUuids   = (withImage +: xs).flatMap(im => im.getObservations().asScala.map(_.getUuid()))
+        val assocUuids = (withImage +: xs)
+            .flatMap(_.getObservations().asScala)
+            .flatMap(_.getAssociations().asScala.map(_.getUuid()))
+        val removed    = new ConcurrentLinkedQueue[TransactionNotifier.Message[?]]()
+        val disposable = TransactionNotifier
+            .getMessages()
+            .filter(_.action() == TransactionNotifier.Action.REMOVE)
+            .subscribe(removed.add(_))
+        try
+            val result = exec(controller.bulkDeleteCount(obsUuids :+ UUID.randomUUID()))
+            assertEquals(result.observationUuids.toSet, obsUuids.toSet)
+            assertEquals(result.associationUuids.toSet, assocUuids.toSet)
+            assertEquals(result.imagedMomentCount, xs.size)
+
+            val imController = new ImagedMomentController(daoFactory)
+            assert(exec(imController.findByUUID(withImage.getUuid())).isDefined)
+            for im <- xs do assert(exec(imController.findByUUID(im.getUuid())).isEmpty)
+
+            val messages = removed.asScala.toSeq
+            assertEquals(
+                messages.filter(_.clazz() == classOf[ObservationEntity]).map(_.uuid()).toSet,
+                obsUuids.toSet
+            )
+            assertEquals(
+                messages.filter(_.clazz() == classOf[AssociationEntity]).map(_.uuid()).toSet,
+                assocUuids.toSet
+            )
+        finally disposable.dispose()
+    }
+
     test("countByConcept") {
         val xs      = TestUtils.create(1, 1)
         val concept = xs.head.getObservations().iterator().next().getConcept()
@@ -268,3 +306,30 @@ trait ObservationControllerSuite extends BaseDAOSuite:
         o0.setConcept(newConcept)
         AssertUtils.assertSameObservation(o0, obtained.get.toEntity)
     }
+
+    test("updateConcept reports progress and publishes a single rename message") {
+        val xs         = TestUtils.create(2, 3)
+        val oldConcept = s"rename-${UUID.randomUUID()}"
+        val newConcept = s"renamed-${UUID.randomUUID()}"
+        val obs        = xs.flatMap(_.getObservations().asScala)
+        obs.foreach(o => exec(controller.update(o.getUuid(), concept = Some(oldConcept))))
+
+        val progress   = new ConcurrentLinkedQueue[Int]()
+        val renames    = new ConcurrentLinkedQueue[TransactionNotifier.RenameMessage[?]]()
+        val disposable = TransactionNotifier
+            .getRxSubject()
+            .ofType(classOf[TransactionNotifier.RenameMessage[?]])
+            .subscribe(renames.add(_))
+        try
+            val count = exec(controller.updateConcept(oldConcept, newConcept, n => progress.add(n)))
+            assertEquals(count, obs.size)
+            assertEquals(progress.asScala.toSeq, Seq(obs.size))
+            assertEquals(exec(controller.countByConcept(oldConcept)), 0)
+            assertEquals(exec(controller.countByConcept(newConcept)), obs.size)
+            assertEquals(renames.size(), 1)
+            val rename = renames.peek()
+            assertEquals(rename.oldValue(), oldConcept)
+            assertEquals(rename.newValue(), newConcept)
+            assertEquals(rename.count(), obs.size)
+        finally disposable.dispose()
+    }
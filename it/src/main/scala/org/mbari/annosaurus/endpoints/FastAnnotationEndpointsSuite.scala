@@ -31,6 +31,7 @@ import org.mbari.annosaurus.domain.{
     QueryConstraintsResponseSC
 }
 import org.mbari.annosaurus.etc.circe.CirceCodecs.{*, given}
+import org.mbari.annosaurus.etc.jdbc.DatabaseExecutor
 import org.mbari.annosaurus.etc.jwt.JwtService
 import org.mbari.annosaurus.etc.sdk.Futures.*
 import org.mbari.annosaurus.repository.jdbc.JdbcRepository
@@ -39,6 +40,8 @@ import sttp.client3.*
 import sttp.model.StatusCode
 
 import java.util.UUID
+import java.util.concurrent.ConcurrentLinkedQueue
+import scala.concurrent.ExecutionContext
 import scala.jdk.CollectionConverters.*
 
 trait FastAnnotationEndpointsSuite extends EndpointsSuite:
@@ -502,3 +505,28 @@ trait FastAnnotationEndpointsSuite extends EndpointsSuite:
         )
 
     }
+
+    test("findAllAnnotations runs on a virtual thread in virtual mode") {
+        val executor = new DatabaseExecutor("fast-virtual", 2, 10, mode = DatabaseExecutor.Mode.Virtual)
+        val threads  = new ConcurrentLinkedQueue[Thread]()
+        val repo     = new JdbcRepository(daoFactory.entityManagerFactory):
+            override def findAll(
+                limit: Option[Int],
+                offset: Option[Int],
+                includeAncillaryData: Boolean
+            ): Seq[Annotation] =
+                threads.add(Thread.currentThread())
+                super.findAll(limit, offset, includeAncillaryData)
+        val virtual  = new FastAnnotationEndpoints(repo):
+            override def databaseExecutor: ExecutionContext = executor
+        try
+            TestUtils.create(1, 1)
+            runGet(
+                virtual.findAllAnnotationsImpl,
+                "http://test.com/v1/fast?limit=10",
+                response => assertEquals(response.code, StatusCode.Ok)
+            )
+            assertEquals(threads.size(), 1)
+            assert(threads.peek().isVirtual, s"Ran on ${threads.peek()}")
+        finally executor.close()
+    }
@@ -16,10 +16,15 @@
 
 package org.mbari.annosaurus.repository.jpa
 
+import org.hibernate.Session
 import org.mbari.annosaurus.AssertUtils
 import org.mbari.annosaurus.controllers.TestUtils
+import org.mbari.annosaurus.etc.jpa.CacheInvalidator
 import org.mbari.annosaurus.repository.jpa.entity.CachedVideoReferenceInfoEntity
 
+import java.sql.Timestamp
+import java.time.{Duration, Instant}
+
 trait CachedVideoReferenceInfoDAOSuite extends BaseDAOSuite:
 
     given JPADAOFactory = daoFactory
@@ -165,3 +170,43 @@ trait CachedVideoReferenceInfoDAOSuite extends BaseDAOSuite:
         assert(xs.contains(vi.getMissionId()))
         dao.close()
     }
+
+    test("CacheInvalidator evicts entities modified outside of Hibernate") {
+        val vi                                     = createTestData()
+        val emf                                    = daoFactory.entityManagerFactory
+        val invalidator                            =
+            new CacheInvalidator(emf, CacheInvalidator.DefaultTables, Duration.ofHours(1))
+        given dao: CachedVideoReferenceInfoDAOImpl = daoFactory.newCachedVideoReferenceInfoDAO()
+        run(() => dao.findByVideoReferenceUUID(vi.getVideoReferenceUuid()))
+        assert(emf.getCache.contains(classOf[CachedVideoReferenceInfoEntity], vi.getUuid()))
+        invalidator.poll()
+
+        // Simulate a write by another annosaurus instance. Plain JDBC bypasses Hibernate's cache
+        val newContact = vi.getMissionContact() + "-updated"
+        run(() =>
+            dao.entityManager
+                .unwrap(classOf[Session])
+                .doWork(connection =>
+                    val stmt = connection.prepareStatement(
+                        "UPDATE video_reference_information SET mission_contact = ?, last_updated_timestamp = ? WHERE platform_name = ?"
+                    )
+                    stmt.setString(1, newContact)
+                    stmt.setTimestamp(2, Timestamp.from(Instant.now().plusSeconds(1)))
+                    stmt.setString(3, vi.getPlatformName())
+                    stmt.executeUpdate()
+                    stmt.close()
+                )
+        )
+        dao.close()
+
+        val evicted = invalidator.poll()
+        invalidator.close()
+        assertEquals(evicted, CacheInvalidator.DefaultTables)
+        assert(!emf.getCache.contains(classOf[CachedVideoReferenceInfoEntity], vi.getUuid()))
+
+        given dao2: CachedVideoReferenceInfoDAOImpl = daoFactory.newCachedVideoReferenceInfoDAO()
+        run(() => dao2.findByVideoReferenceUUID(vi.getVideoReferenceUuid())) match
+            case None        => fail("should have found the entity")
+            case Some(value) => assertEquals(value.getMissionContact(), newContact)
+        dao2.close()
+    }
@@ -16,10 +16,13 @@
 
 package org.mbari.annosaurus.repository.jpa
 
+import org.hibernate.Session
 import org.mbari.annosaurus.AssertUtils
 import org.mbari.annosaurus.controllers.TestUtils
+import org.mbari.annosaurus.util.UrlHash
 
 import java.net.URI
+import scala.jdk.CollectionConverters.*
 
 trait ImageReferenceDAOSuite extends BaseDAOSuite:
 
@@ -112,6 +115,43 @@ trait ImageReferenceDAOSuite extends BaseDAOSuite:
         dao.close()
     }
 
+    test("findByURLs") {
+        val im                           = TestUtils.create(1, nImageReferences = 3).head
+        val irs                          = im.getImageReferences.asScala.toSeq
+        val missing                      = URI.create("http://www.foo.bar/missing/image.png").toURL
+        given dao: ImageReferenceDAOImpl = daoFactory.newImageReferenceDAO()
+        val xs                           = run(() => dao.findByURLs(irs.map(_.getUrl) :+ missing))
+        assertEquals(xs.size, irs.size)
+        assertEquals(xs.map(_.getUrl.toExternalForm).toSet, irs.map(_.getUrl.toExternalForm).toSet)
+        dao.close()
+    }
+
+    test("UrlHashBackfill hashes rows without a url_hash") {
+        val im                           = TestUtils.create(1, nImageReferences = 2).head
+        val irs                          = im.getImageReferences.asScala.toSeq
+        given dao: ImageReferenceDAOImpl = daoFactory.newImageReferenceDAO()
+        // Simulate rows written before the url_hash column existed
+        run(() =>
+            dao.entityManager
+                .unwrap(classOf[Session])
+                .doWork(connection =>
+                    val stmt = connection.createStatement()
+                    stmt.executeUpdate("UPDATE image_references SET url_hash = NULL")
+                    stmt.close()
+                )
+        )
+        val n = new UrlHashBackfill(daoFactory.entityManagerFactory, 1).run()
+        assert(n >= irs.size)
+        assert(UrlHashBackfill.isComplete)
+        for ir <- irs do
+            run(() => dao.findByURL(ir.getUrl())) match
+                case None        => fail("should have found the entity")
+                case Some(value) =>
+                    assertEquals(value.getUrlHash().toSeq, UrlHash.of(ir.getUrl()).toSeq)
+                    AssertUtils.assertSameImageReference(value, ir)
+        dao.close()
+    }
+
     test("findByImageName") {
         val im                           = TestUtils.create(1, nImageReferences = 1).head
         val ir                           = im.getImageReferences.iterator().next()
@@ -19,10 +19,13 @@ package org.mbari.annosaurus.repository.jpa
 import org.mbari.annosaurus.AssertUtils
 import org.mbari.annosaurus.controllers.TestUtils
 import org.mbari.annosaurus.domain.WindowRequest
+import org.mbari.annosaurus.repository.jpa.entity.{AssociationEntity, ObservationEntity}
 import org.mbari.vcr4j.time.Timecode
 
+import java.time.temporal.ChronoUnit
 import java.time.{Duration, Instant}
 import java.util.UUID
+import java.util.concurrent.ConcurrentLinkedQueue
 import scala.jdk.CollectionConverters.*
 
 trait ImagedMomentDAOSuite extends BaseDAOSuite:
@@ -392,6 +395,81 @@ trait ImagedMomentDAOSuite extends BaseDAOSuite:
         assert(im1.isEmpty)
     }
 
+    test("bulkDeleteByVideoReferenceUuid") {
+        val xs                         = TestUtils.create(3, 2, 2, 1, true)
+        val videoReferenceUuid         = xs.head.getVideoReferenceUuid()
+        val observationUuids           = xs.flatMap(_.getObservations().asScala).map(_.getUuid()).toSet
+        val associationUuids           =
+            xs.flatMap(_.getObservations().asScala).flatMap(_.getAssociations().asScala).map(_.getUuid()).toSet
+        val removed                    = new ConcurrentLinkedQueue[TransactionNotifier.Message[?]]()
+        val disposable                 = TransactionNotifier
+            .getMessages()
+            .filter(_.action() == TransactionNotifier.Action.REMOVE)
+            .subscribe(removed.add(_))
+        given dao: ImagedMomentDAOImpl = daoFactory.newImagedMomentDAO()
+        try
+            val n = run(() => dao.bulkDeleteByVideoReferenceUuid(videoReferenceUuid))
+            assertEquals(n.imagedMomentCount, 3)
+            assertEquals(n.observationCount, 6)
+            assertEquals(n.associationCount, 12)
+            assertEquals(n.imageReferenceCount, 3)
+            assertEquals(n.ancillaryDataCount, 3)
+            assert(run(() => dao.findByVideoReferenceUUID(videoReferenceUuid)).isEmpty)
+
+            val messages = removed.asScala.toSeq
+            assertEquals(
+                messages.filter(_.clazz() == classOf[ObservationEntity]).map(_.uuid()).toSet,
+                observationUuids
+            )
+            assertEquals(
+                messages.filter(_.clazz() == classOf[AssociationEntity]).map(_.uuid()).toSet,
+                associationUuids
+            )
+        finally disposable.dispose()
+    }
+
+    test("a rolled back transaction publishes no change messages") {
+        val messages   = new ConcurrentLinkedQueue[TransactionNotifier.Message[?]]()
+        val disposable = TransactionNotifier
+            .getMessages()
+            .subscribe(messages.add(_))
+        try
+            val dao0 = daoFactory.newImagedMomentDAO()
+            val im   = TestUtils.build(1, 1).head
+            intercept[Exception](run { () =>
+                dao0.create(im)
+                dao0.flush()
+                throw new IllegalStateException("Roll back")
+            }(using dao0))
+            dao0.close()
+            assert(messages.isEmpty)
+
+            given dao: ImagedMomentDAOImpl = daoFactory.newImagedMomentDAO()
+            val committed                  = TestUtils.build(1, 1).head
+            run(() => dao.create(committed))
+            dao.close()
+            val uuids                      = messages.asScala.map(_.uuid()).toSet
+            assert(uuids.contains(committed.getUuid))
+            assert(uuids.contains(committed.getObservations.iterator().next().getUuid))
+        finally disposable.dispose()
+    }
+
+    test("moveToVideoReference with a new start timestamp") {
+        val xs                         = TestUtils.create(4, 1)
+        val newVideoReferenceUuid      = UUID.randomUUID()
+        val start                      =
+            xs.map(_.getRecordedTimestamp()).min.minusSeconds(60).truncatedTo(ChronoUnit.MILLIS)
+        given dao: ImagedMomentDAOImpl = daoFactory.newImagedMomentDAO()
+        val n                          =
+            run(() => dao.moveToVideoReference(newVideoReferenceUuid, xs.map(_.getUuid()), Some(start)))
+        assertEquals(n, xs.size)
+        val moved                      = run(() => dao.findByVideoReferenceUUID(newVideoReferenceUuid))
+        assertEquals(moved.size, xs.size)
+        for im <- moved do
+            val expected = Duration.between(start, im.getRecordedTimestamp())
+            assertEquals(im.getElapsedTime().toMillis(), expected.toMillis())
+    }
+
     test("deleteIfEmpty") {
 
         // Should not delete because it has an observation
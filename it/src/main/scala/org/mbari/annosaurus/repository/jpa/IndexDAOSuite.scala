@@ -21,6 +21,8 @@ import org.mbari.annosaurus.controllers.TestUtils
 import org.mbari.annosaurus.repository.jpa.entity.IndexEntity
 import org.mbari.vcr4j.time.Timecode
 
+import java.time.Instant
+
 trait IndexDAOSuite extends BaseDAOSuite:
 
     given JPADAOFactory = daoFactory
@@ -138,3 +140,36 @@ trait IndexDAOSuite extends BaseDAOSuite:
         AssertUtils.assertSameIndex(opt.get, idx)
         dao.close()
     }
+
+    test("updateRecordedTimestampsFromStart") {
+        val xs                  = TestUtils.create(4)
+        val videoReferenceUuid  = xs.head.getVideoReferenceUuid()
+        val start               = Instant.parse("1968-09-22T02:00:00Z")
+        given dao: IndexDAOImpl = daoFactory.newIndexDAO()
+        val before              = run(() => dao.findByVideoReferenceUuid(videoReferenceUuid)).toSeq
+        val n                   = run(() => dao.updateRecordedTimestampsFromStart(videoReferenceUuid, start))
+        assertEquals(n, xs.size)
+        dao.entityManager.clear()
+        val after               = run(() => dao.findByVideoReferenceUuid(videoReferenceUuid)).toSeq
+        for x <- after do
+            assertEquals(x.getRecordedTimestamp(), start.plus(x.getElapsedTime()))
+            val old = before.find(_.getUuid() == x.getUuid()).get
+            assertNotEquals(x.getLastUpdatedTime(), old.getLastUpdatedTime())
+
+        // Nothing changes the second time
+        assertEquals(run(() => dao.updateRecordedTimestampsFromStart(videoReferenceUuid, start)), 0)
+        dao.close()
+    }
+
+    test("updateRecordedTimestamps") {
+        val xs                  = TestUtils.create(4)
+        val t                   = Instant.parse("1968-09-22T02:00:00Z")
+        val updates             = xs.zipWithIndex.map((x, i) => x.getUuid() -> t.plusSeconds(i))
+        given dao: IndexDAOImpl = daoFactory.newIndexDAO()
+        val n                   = run(() => dao.updateRecordedTimestamps(updates))
+        assertEquals(n, xs.size)
+        val found               = run(() => dao.findByUuids(updates.map(_._1)))
+        assertEquals(found.size, xs.size)
+        for x <- found do assertEquals(Some(x.getRecordedTimestamp()), updates.toMap.get(x.getUuid()))
+        dao.close()
+    }
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2017 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.annosaurus.repository.jpa
+
+import org.mbari.annosaurus.controllers.TestUtils
+import org.mbari.annosaurus.repository.jpa.entity.ImagedMomentEntity
+import org.mbari.annosaurus.repository.jpa.extensions.*
+
+import java.time.{Duration, Instant}
+import java.util.UUID
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.atomic.AtomicInteger
+import scala.jdk.CollectionConverters.*
+
+trait OutboxSuite extends BaseDAOSuite:
+
+    given JPADAOFactory = daoFactory
+
+    override def afterEach(context: AfterEach): Unit =
+        super.afterEach(context)
+        val entityManager = daoFactory.entityManagerFactory.createEntityManager()
+        try entityManager.runTransactionSync(_.createNativeQuery("DELETE FROM outbox_events").executeUpdate())
+        finally entityManager.close()
+
+    /**
+     * Runs fn while a relay is running, collecting the uuids it relays and those published in-process. The relay
+     * only polls once an hour, so it is driven by the commits
+     */
+    private def withRelay[T](
+        delivered: () => Boolean
+    )(fn: (ConcurrentLinkedQueue[UUID], ConcurrentLinkedQueue[UUID]) => T): T =
+        val relayed = new ConcurrentLinkedQueue[UUID]()
+        val local   = new ConcurrentLinkedQueue[UUID]()
+        val a       = Outbox
+            .messages
+            .subscribe(obj =>
+                obj match
+                    case msg: TransactionNotifier.BatchMessage[?] => relayed.addAll(msg.uuids())
+                    case _                                        => ()
+            )
+        val b       = TransactionNotifier.getMessages.subscribe(msg => local.add(msg.uuid()))
+        val relay   = new OutboxRelay(daoFactory.entityManagerFactory, 100, Duration.ofHours(1), delivered)
+        try fn(relayed, local)
+        finally
+            relay.close()
+            a.dispose()
+            b.dispose()
+
+    private def countRows(): Long =
+        val entityManager = daoFactory.entityManagerFactory.createEntityManager()
+        try
+            entityManager
+                .createNativeQuery("SELECT COUNT(*) FROM outbox_events")
+                .getSingleResult
+                .asInstanceOf[Number]
+                .longValue
+        finally entityManager.close()
+
+    private def eventually(condition: => Boolean, timeout: Duration = Duration.ofSeconds(10)): Boolean =
+        val deadline = Instant.now().plus(timeout)
+        while !condition && Instant.now().isBefore(deadline) do Thread.sleep(50)
+        condition
+
+    private def observationUuids(xs: Seq[ImagedMomentEntity]): Seq[UUID] =
+        xs.flatMap(_.getObservations.asScala).map(_.getUuid)
+
+    test("committed rows are relayed and deleted") {
+        withRelay(() => true)((relayed, local) =>
+            val uuids = observationUuids(TestUtils.create(2, 2))
+            // In-process subscribers get the changes from the commit, before create returns
+            assert(uuids.forall(local.contains))
+            val n     = local.size()
+            assert(eventually(uuids.forall(relayed.contains) && countRows() == 0L))
+            // and never again from the relay
+            assertEquals(local.size(), n)
+        )
+    }
+
+    test("rolled-back rows are never written") {
+        withRelay(() => true)((relayed, local) =>
+            val im  = TestUtils.build(1, 2).head
+            val dao = daoFactory.newImagedMomentDAO()
+            intercept[IllegalStateException](
+                exec(dao.runTransaction(d =>
+                    d.create(im)
+                    // Fire the lifecycle callbacks before giving up
+                    d.entityManager.flush()
+                    throw new IllegalStateException("roll back")
+                ))
+            )
+            dao.close()
+            val uuids = observationUuids(Seq(im))
+            assertEquals(countRows(), 0L)
+            assert(!uuids.exists(relayed.contains))
+            assert(!uuids.exists(local.contains))
+        )
+    }
+
+    test("unconfirmed batches stay in the outbox") {
+        val attempts = new AtomicInteger(0)
+        withRelay(() =>
+            attempts.incrementAndGet()
+            false
+        )((relayed, _) =>
+            val uuids = observationUuids(TestUtils.create(1, 2))
+            assert(eventually(attempts.get() > 0 && uuids.forall(relayed.contains)))
+        )
+        // The relay is closed, so nothing else can delete them
+        assert(countRows() >= 2L)
+    }
@@ -2,6 +2,7 @@ import sbt.*
 object Dependencies {
 
     lazy val auth0                   = "com.auth0"                      % "java-jwt"                   % "4.5.1"
+    lazy val caffeineJCache          = "com.github.ben-manes.caffeine"  % "jcache"                     % "3.2.3"
     val circeVersion                 = "0.14.15"
     lazy val circeCore               = "io.circe"                      %% "circe-core"                 % circeVersion
     lazy val circeGeneric            = "io.circe"                      %% "circe-generic"              % circeVersion
@@ -14,8 +15,10 @@ object Dependencies {
     val hibernateVersion             = "7.3.0.Final" // See https://github.com/mbari-org/annosaurus/issues/47
     lazy val hibernateCore           = "org.hibernate.orm"              % "hibernate-core"             % hibernateVersion
     lazy val hibernateEnvers         = "org.hibernate.orm"              % "hibernate-envers"           % hibernateVersion
+    lazy val hibernateJCache         = "org.hibernate.orm"              % "hibernate-jcache"           % hibernateVersion
     lazy val hibernateHikari         = "org.hibernate.orm"              % "hibernate-hikaricp"         % hibernateVersion
     lazy val hikariCp                = "com.zaxxer"                     % "HikariCP"                   % "7.0.2"
+    lazy val jacksonCbor             = "com.fasterxml.jackson.dataformat" % "jackson-dataformat-cbor"    % "2.18.2"
     lazy val jansi                   = "org.fusesource.jansi"           % "jansi"                      % "2.4.2"
     lazy val javaxServlet            = "javax.servlet"                  % "javax.servlet-api"          % "4.0.1"
     lazy val javaxTransaction        = "javax.transaction"              % "jta"                        % "1.1"